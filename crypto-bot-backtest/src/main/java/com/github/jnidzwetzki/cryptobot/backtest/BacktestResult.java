@@ -0,0 +1,326 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Immutable snapshot of the outcome of one backtest run
+ */
+public class BacktestResult {
+
+	/**
+	 * The name of the strategy
+	 */
+	private final String name;
+
+	/**
+	 * The portfolio value at the end of the run
+	 */
+	private final double portfolioValue;
+
+	/**
+	 * The total P/L
+	 */
+	private final double totalPL;
+
+	/**
+	 * The paid fees
+	 */
+	private final double fees;
+
+	/**
+	 * The amount of trades
+	 */
+	private final int totalTrades;
+
+	/**
+	 * The amount of winning trades
+	 */
+	private final int winner;
+
+	/**
+	 * The amount of losing trades
+	 */
+	private final int looser;
+
+	/**
+	 * The biggest win
+	 */
+	private final double maxWin;
+
+	/**
+	 * The biggest loss
+	 */
+	private final double maxLoose;
+
+	/**
+	 * The longest series of losing trades
+	 */
+	private final int looserInARow;
+
+	/**
+	 * The amount of executed hard stop losses
+	 */
+	private final int executedStopLoss;
+
+	/**
+	 * The maximal drawdown of the equity curve (0.1 = 10%)
+	 */
+	private final double maxDrawdown;
+
+	/**
+	 * The longest time below a peak in bars
+	 */
+	private final int maxDrawdownDuration;
+
+	/**
+	 * The per bar Sharpe ratio
+	 */
+	private final double sharpeRatio;
+
+	/**
+	 * The per bar Sortino ratio
+	 */
+	private final double sortinoRatio;
+
+	/**
+	 * The part of the bars with an open position
+	 */
+	private final double exposure;
+
+	/**
+	 * The gross profit divided by the gross loss
+	 */
+	private final double profitFactor;
+
+	/**
+	 * The average P/L per trade
+	 */
+	private final double averageTrade;
+
+	public BacktestResult(final String name, final double portfolioValue, final double totalPL,
+			final double fees, final int totalTrades, final int winner, final int looser,
+			final double maxWin, final double maxLoose, final int looserInARow,
+			final int executedStopLoss, final double maxDrawdown, final int maxDrawdownDuration,
+			final double sharpeRatio, final double sortinoRatio, final double exposure,
+			final double profitFactor, final double averageTrade) {
+
+		this.name = name;
+		this.portfolioValue = portfolioValue;
+		this.totalPL = totalPL;
+		this.fees = fees;
+		this.totalTrades = totalTrades;
+		this.winner = winner;
+		this.looser = looser;
+		this.maxWin = maxWin;
+		this.maxLoose = maxLoose;
+		this.looserInARow = looserInARow;
+		this.executedStopLoss = executedStopLoss;
+		this.maxDrawdown = maxDrawdown;
+		this.maxDrawdownDuration = maxDrawdownDuration;
+		this.sharpeRatio = sharpeRatio;
+		this.sortinoRatio = sortinoRatio;
+		this.exposure = exposure;
+		this.profitFactor = profitFactor;
+		this.averageTrade = averageTrade;
+	}
+
+	/**
+	 * Build the result from an executed trade executor
+	 * @param name
+	 * @param tradeExecutor
+	 * @return
+	 */
+	public static BacktestResult fromExecutor(final String name, final TradeExecutor tradeExecutor) {
+		final EquityCurveMetrics metrics = tradeExecutor.getMetrics();
+		
+		return new BacktestResult(name, tradeExecutor.getPortfolioValue(),
+				tradeExecutor.getTotalPL(), tradeExecutor.getFees(),
+				tradeExecutor.getTotalTrades(), tradeExecutor.getWinner(),
+				tradeExecutor.getLooser(), tradeExecutor.getMaxWin(),
+				tradeExecutor.getMaxLoose(), tradeExecutor.getLoserInARow(),
+				tradeExecutor.getExecutedStopLoss(), metrics.getMaxDrawdown(),
+				metrics.getMaxDrawdownDuration(), metrics.getSharpeRatio(),
+				metrics.getSortinoRatio(), metrics.getExposure(),
+				metrics.getProfitFactor(), metrics.getAverageTrade());
+	}
+
+	/**
+	 * Write the result in a binary format
+	 * @param dataOutput
+	 * @throws IOException
+	 */
+	public void writeTo(final DataOutput dataOutput) throws IOException {
+		dataOutput.writeUTF(name);
+		dataOutput.writeDouble(portfolioValue);
+		dataOutput.writeDouble(totalPL);
+		dataOutput.writeDouble(fees);
+		dataOutput.writeInt(totalTrades);
+		dataOutput.writeInt(winner);
+		dataOutput.writeInt(looser);
+		dataOutput.writeDouble(maxWin);
+		dataOutput.writeDouble(maxLoose);
+		dataOutput.writeInt(looserInARow);
+		dataOutput.writeInt(executedStopLoss);
+		dataOutput.writeDouble(maxDrawdown);
+		dataOutput.writeInt(maxDrawdownDuration);
+		dataOutput.writeDouble(sharpeRatio);
+		dataOutput.writeDouble(sortinoRatio);
+		dataOutput.writeDouble(exposure);
+		dataOutput.writeDouble(profitFactor);
+		dataOutput.writeDouble(averageTrade);
+	}
+
+	/**
+	 * Read a result written by writeTo
+	 * @param dataInput
+	 * @return
+	 * @throws IOException
+	 */
+	public static BacktestResult readFrom(final DataInput dataInput) throws IOException {
+		final String name = dataInput.readUTF();
+		final double portfolioValue = dataInput.readDouble();
+		final double totalPL = dataInput.readDouble();
+		final double fees = dataInput.readDouble();
+		final int totalTrades = dataInput.readInt();
+		final int winner = dataInput.readInt();
+		final int looser = dataInput.readInt();
+		final double maxWin = dataInput.readDouble();
+		final double maxLoose = dataInput.readDouble();
+		final int looserInARow = dataInput.readInt();
+		final int executedStopLoss = dataInput.readInt();
+		final double maxDrawdown = dataInput.readDouble();
+		final int maxDrawdownDuration = dataInput.readInt();
+		final double sharpeRatio = dataInput.readDouble();
+		final double sortinoRatio = dataInput.readDouble();
+		final double exposure = dataInput.readDouble();
+		final double profitFactor = dataInput.readDouble();
+		final double averageTrade = dataInput.readDouble();
+
+		return new BacktestResult(name, portfolioValue, totalPL, fees, totalTrades, winner, looser,
+				maxWin, maxLoose, looserInARow, executedStopLoss, maxDrawdown, maxDrawdownDuration,
+				sharpeRatio, sortinoRatio, exposure, profitFactor, averageTrade);
+	}
+
+	/**
+	 * Get the header of the tabular output
+	 * @return
+	 */
+	public static String getTabularHeader() {
+		return "Strategy\tPortfolio value\tP/L\tFees\tTrades\tWinner\tLooser\tMax win\tMax loose\tLooser row\tStop loss hard"
+				+ "\tMax drawdown\tMax drawdown bars\tSharpe\tSortino\tExposure\tProfit factor\tAvg trade";
+	}
+
+	/**
+	 * Format the result as one line of the tabular output
+	 * @return
+	 */
+	public String toTabularString() {
+		return String.format("%s\t%f\t%f\t%f\t%d\t%d\t%d\t%f\t%f\t%d\t%d\t%f\t%d\t%f\t%f\t%f\t%f\t%f", name,
+				portfolioValue, totalPL, fees, totalTrades, winner, looser, maxWin,
+				maxLoose, looserInARow, executedStopLoss, maxDrawdown, maxDrawdownDuration,
+				sharpeRatio, sortinoRatio, exposure, profitFactor, averageTrade);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public double getPortfolioValue() {
+		return portfolioValue;
+	}
+
+	public double getTotalPL() {
+		return totalPL;
+	}
+
+	public double getFees() {
+		return fees;
+	}
+
+	public int getTotalTrades() {
+		return totalTrades;
+	}
+
+	public int getWinner() {
+		return winner;
+	}
+
+	public int getLooser() {
+		return looser;
+	}
+
+	public double getMaxWin() {
+		return maxWin;
+	}
+
+	public double getMaxLoose() {
+		return maxLoose;
+	}
+
+	public int getLooserInARow() {
+		return looserInARow;
+	}
+
+	public int getExecutedStopLoss() {
+		return executedStopLoss;
+	}
+
+	public double getMaxDrawdown() {
+		return maxDrawdown;
+	}
+
+	public int getMaxDrawdownDuration() {
+		return maxDrawdownDuration;
+	}
+
+	public double getSharpeRatio() {
+		return sharpeRatio;
+	}
+
+	public double getSortinoRatio() {
+		return sortinoRatio;
+	}
+
+	public double getExposure() {
+		return exposure;
+	}
+
+	public double getProfitFactor() {
+		return profitFactor;
+	}
+
+	public double getAverageTrade() {
+		return averageTrade;
+	}
+
+	@Override
+	public String toString() {
+		return "BacktestResult [name=" + name + ", portfolioValue=" + portfolioValue + ", totalPL=" + totalPL
+				+ ", fees=" + fees + ", totalTrades=" + totalTrades + ", winner=" + winner + ", looser=" + looser
+				+ ", maxWin=" + maxWin + ", maxLoose=" + maxLoose + ", looserInARow=" + looserInARow
+				+ ", executedStopLoss=" + executedStopLoss + ", maxDrawdown=" + maxDrawdown
+				+ ", maxDrawdownDuration=" + maxDrawdownDuration + ", sharpeRatio=" + sharpeRatio
+				+ ", sortinoRatio=" + sortinoRatio + ", exposure=" + exposure + ", profitFactor=" + profitFactor
+				+ ", averageTrade=" + averageTrade + "]";
+	}
+
+}
@@ -0,0 +1,474 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.ta4j.core.Bar;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.cryptobot.strategy.TradeStrategyFactory;
+import com.github.jnidzwetzki.cryptobot.util.ColumnarTimeSeries;
+
+/**
+ * A persistent cache for backtest results.
+ * <p>
+ * The key is a SHA-256 hash of the bars of the time series, the name of 
+ * the strategy and the settings of the trade executor. So a result is 
+ * reused only if the same strategy configuration is executed on the same 
+ * data. Each result is stored in its own file; when the files exceed the 
+ * maximal size, the least recently used results are removed. The access 
+ * order is kept in the modification time of the files, so it survives 
+ * restarts.
+ * <p>
+ * The cache relies on strategy names that contain all parameters of 
+ * the strategy. The methods are thread safe.
+ *
+ */
+public class BacktestResultCache {
+
+	/**
+	 * The magic number of the result files
+	 */
+	private final static int MAGIC = 0x43425243;
+
+	/**
+	 * The version of the file format, part of the key
+	 */
+	private final static int VERSION = 2;
+
+	/**
+	 * The suffix of the result files
+	 */
+	private final static String SUFFIX = ".result";
+
+	/**
+	 * The directory of the result files
+	 */
+	private final File directory;
+
+	/**
+	 * The maximal size of all result files in bytes
+	 */
+	private final long maxSize;
+
+	/**
+	 * The size of the result files in access order (key -> size)
+	 */
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * The hashes of the known time series
+	 */
+	private final Map<TimeSeries, DatasetHash> datasetHashes = new WeakHashMap<>();
+
+	/**
+	 * The size of all result files
+	 */
+	private long totalSize = 0;
+
+	/**
+	 * The amount of cache hits
+	 */
+	private long hits = 0;
+
+	/**
+	 * The amount of cache misses
+	 */
+	private long misses = 0;
+
+	public BacktestResultCache(final File directory, final long maxSize) throws IOException {
+		this.directory = directory;
+		this.maxSize = maxSize;
+
+		if(! directory.isDirectory() && ! directory.mkdirs()) {
+			throw new IOException("Unable to create cache directory " + directory);
+		}
+
+		loadEntries();
+	}
+
+	/**
+	 * Load the existing result files, the oldest file is the least recently used
+	 */
+	private void loadEntries() {
+		final File[] files = directory.listFiles((d, name) -> name.endsWith(SUFFIX));
+
+		if(files == null) {
+			return;
+		}
+
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+
+		for(final File file : files) {
+			final String key = file.getName().substring(0, file.getName().length() - SUFFIX.length());
+			entries.put(key, file.length());
+			totalSize = totalSize + file.length();
+		}
+
+		evict();
+	}
+
+	/**
+	 * Execute the trades of the strategy or return the cached result
+	 * @param strategyFactory
+	 * @param portfolioValue
+	 * @return
+	 */
+	public BacktestResult execute(final TradeStrategyFactory strategyFactory, final double portfolioValue) {
+		final String key = getKey(strategyFactory.getTimeSeries(), strategyFactory.getName(), 
+				strategyFactory.isIndicatorRegistryUsed(), portfolioValue);
+		final BacktestResult cachedResult = get(key);
+
+		if(cachedResult != null) {
+			return cachedResult;
+		}
+
+		final TradeExecutor tradeExecutor = new TradeExecutor(portfolioValue, strategyFactory);
+		tradeExecutor.executeTrades();
+
+		final BacktestResult result = BacktestResult.fromExecutor(strategyFactory.getName(), tradeExecutor);
+		put(key, result);
+
+		return result;
+	}
+
+	/**
+	 * Get the key of a backtest. The indicators of the registry (double 
+	 * kernels) and the ta4j indicators round differently, so they can 
+	 * produce different trades and are part of the key.
+	 * @param timeSeries
+	 * @param strategyName
+	 * @param indicatorRegistryUsed
+	 * @param portfolioValue
+	 * @return
+	 */
+	public String getKey(final TimeSeries timeSeries, final String strategyName, 
+			final boolean indicatorRegistryUsed, final double portfolioValue) {
+		final MessageDigest digest = getDigest();
+		digest.update(getDatasetHash(timeSeries).getBytes(StandardCharsets.US_ASCII));
+		digest.update((byte) 0);
+		digest.update(strategyName.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+
+		final String settings = VERSION + "|" + TradeExecutor.COMISSION + "|" 
+				+ TradeExecutor.STOP_LOSS + "|" + portfolioValue + "|" 
+				+ (indicatorRegistryUsed ? "kernels" : "ta4j");
+		digest.update(settings.getBytes(StandardCharsets.US_ASCII));
+
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Get the result of the key
+	 * @param key
+	 * @return the result or null
+	 */
+	public synchronized BacktestResult get(final String key) {
+
+		// The lookup moves the entry to the end of the access order
+		if(entries.get(key) == null) {
+			misses++;
+			return null;
+		}
+
+		final File file = getFile(key);
+
+		try (final DataInputStream inputStream = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+
+			if(inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+				throw new IOException("Invalid result file " + file);
+			}
+
+			final BacktestResult result = BacktestResult.readFrom(inputStream);
+
+			// Keep the access order for the next run
+			file.setLastModified(System.currentTimeMillis());
+			hits++;
+
+			return result;
+		} catch (IOException e) {
+			System.err.println("Unable to read cached result " + file + ": " + e.getMessage());
+			remove(key);
+			misses++;
+			return null;
+		}
+	}
+
+	/**
+	 * Store the result of the key
+	 * @param key
+	 * @param result
+	 */
+	public synchronized void put(final String key, final BacktestResult result) {
+		final File file = getFile(key);
+		final File tempFile = new File(directory, key + ".tmp");
+
+		try {
+			try (final DataOutputStream outputStream = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+
+				outputStream.writeInt(MAGIC);
+				outputStream.writeInt(VERSION);
+				result.writeTo(outputStream);
+			}
+
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			System.err.println("Unable to write cached result " + file + ": " + e.getMessage());
+			tempFile.delete();
+			return;
+		}
+
+		final Long oldSize = entries.put(key, file.length());
+
+		if(oldSize != null) {
+			totalSize = totalSize - oldSize;
+		}
+
+		totalSize = totalSize + file.length();
+		evict();
+	}
+
+	/**
+	 * Remove the least recently used results until the size limit is reached
+	 */
+	private void evict() {
+		final Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+
+		while(totalSize > maxSize && iterator.hasNext()) {
+			final Map.Entry<String, Long> entry = iterator.next();
+			getFile(entry.getKey()).delete();
+			totalSize = totalSize - entry.getValue();
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Remove the result of the key
+	 * @param key
+	 */
+	private void remove(final String key) {
+		final Long size = entries.remove(key);
+
+		if(size != null) {
+			totalSize = totalSize - size;
+		}
+
+		getFile(key).delete();
+	}
+
+	/**
+	 * Get the file of the key
+	 * @param key
+	 * @return
+	 */
+	private File getFile(final String key) {
+		return new File(directory, key + SUFFIX);
+	}
+
+	/**
+	 * Get the hash of the time series, the hash is recalculated when bars are added
+	 * @param timeSeries
+	 * @return
+	 */
+	private String getDatasetHash(final TimeSeries timeSeries) {
+		synchronized (datasetHashes) {
+			final DatasetHash datasetHash = datasetHashes.get(timeSeries);
+
+			if(datasetHash != null && datasetHash.beginIndex == timeSeries.getBeginIndex() 
+					&& datasetHash.endIndex == timeSeries.getEndIndex()) {
+				return datasetHash.hash;
+			}
+
+			final String hash = hashTimeSeries(timeSeries);
+			datasetHashes.put(timeSeries, new DatasetHash(timeSeries.getBeginIndex(), 
+					timeSeries.getEndIndex(), hash));
+
+			return hash;
+		}
+	}
+
+	/**
+	 * Calculate the SHA-256 hash of the bars of the time series
+	 * @param timeSeries
+	 * @return
+	 */
+	public static String hashTimeSeries(final TimeSeries timeSeries) {
+		final MessageDigest digest = getDigest();
+		final byte[] buffer = new byte[6 * Long.BYTES];
+
+		if(timeSeries.getBarCount() == 0) {
+			return toHex(digest.digest());
+		}
+
+		for(int i = timeSeries.getBeginIndex(); i <= timeSeries.getEndIndex(); i++) {
+
+			if(timeSeries instanceof ColumnarTimeSeries) {
+				final ColumnarTimeSeries columnarTimeSeries = (ColumnarTimeSeries) timeSeries;
+				putLong(buffer, 0, columnarTimeSeries.getEndTime(i));
+				putDouble(buffer, 1, columnarTimeSeries.getOpenPrice(i));
+				putDouble(buffer, 2, columnarTimeSeries.getMaxPrice(i));
+				putDouble(buffer, 3, columnarTimeSeries.getMinPrice(i));
+				putDouble(buffer, 4, columnarTimeSeries.getClosePrice(i));
+				putDouble(buffer, 5, columnarTimeSeries.getVolume(i));
+			} else {
+				final Bar bar = timeSeries.getBar(i);
+				putLong(buffer, 0, bar.getEndTime().toInstant().toEpochMilli());
+				putDouble(buffer, 1, bar.getOpenPrice().doubleValue());
+				putDouble(buffer, 2, bar.getMaxPrice().doubleValue());
+				putDouble(buffer, 3, bar.getMinPrice().doubleValue());
+				putDouble(buffer, 4, bar.getClosePrice().doubleValue());
+				putDouble(buffer, 5, bar.getVolume().doubleValue());
+			}
+
+			digest.update(buffer);
+		}
+
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * Write the double into the buffer
+	 * @param buffer
+	 * @param field
+	 * @param value
+	 */
+	private static void putDouble(final byte[] buffer, final int field, final double value) {
+		putLong(buffer, field, Double.doubleToLongBits(value));
+	}
+
+	/**
+	 * Write the long into the buffer
+	 * @param buffer
+	 * @param field
+	 * @param value
+	 */
+	private static void putLong(final byte[] buffer, final int field, final long value) {
+		final int offset = field * Long.BYTES;
+
+		for(int i = 0; i < Long.BYTES; i++) {
+			buffer[offset + i] = (byte) (value >>> (56 - (i * 8)));
+		}
+	}
+
+	/**
+	 * Get a new SHA-256 digest
+	 * @return
+	 */
+	private static MessageDigest getDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every JVM has to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Convert the bytes into a hex string
+	 * @param bytes
+	 * @return
+	 */
+	private static String toHex(final byte[] bytes) {
+		final StringBuilder sb = new StringBuilder(bytes.length * 2);
+
+		for(final byte value : bytes) {
+			sb.append(Character.forDigit((value >> 4) & 0xF, 16));
+			sb.append(Character.forDigit(value & 0xF, 16));
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Get the amount of cache hits
+	 * @return
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Get the amount of cache misses
+	 * @return
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Get the amount of cached results
+	 * @return
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Get the size of all result files
+	 * @return
+	 */
+	public synchronized long getTotalSize() {
+		return totalSize;
+	}
+
+	private static class DatasetHash {
+
+		/**
+		 * The begin index of the hashed series
+		 */
+		private final int beginIndex;
+
+		/**
+		 * The end index of the hashed series
+		 */
+		private final int endIndex;
+
+		/**
+		 * The hash
+		 */
+		private final String hash;
+
+		public DatasetHash(final int beginIndex, final int endIndex, final String hash) {
+			this.beginIndex = beginIndex;
+			this.endIndex = endIndex;
+			this.hash = hash;
+		}
+	}
+}
@@ -0,0 +1,316 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A streaming parser for CSV tick files (timestamp in seconds, price, volume).
+ * <p>
+ * The bytes are read into a reusable buffer and the fields are parsed
+ * directly into primitives, no objects are created per line. Decimal
+ * numbers with up to 15 significant digits are parsed without rounding
+ * errors; longer numbers and numbers with an exponent are passed to
+ * Double.parseDouble.
+ *
+ */
+public class CSVTickParser {
+
+	/**
+	 * The size of the read buffer
+	 */
+	private final static int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The maximal length of a field
+	 */
+	private final static int MAX_FIELD_LENGTH = 64;
+
+	/**
+	 * The biggest mantissa that is exactly representable as double
+	 */
+	private final static long MAX_EXACT_MANTISSA = 1L << 53;
+
+	/**
+	 * The powers of ten that are exactly representable as double
+	 */
+	private final static double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * The first timestamp in milliseconds (inclusive)
+	 */
+	private final long fromTimestamp;
+
+	/**
+	 * The last timestamp in milliseconds (exclusive)
+	 */
+	private final long toTimestamp;
+
+	/**
+	 * The read buffer
+	 */
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	/**
+	 * The bytes of the current field
+	 */
+	private final byte[] field = new byte[MAX_FIELD_LENGTH];
+
+	/**
+	 * The length of the current field
+	 */
+	private int fieldLength;
+
+	/**
+	 * The index of the current field in the line
+	 */
+	private int fieldIndex;
+
+	/**
+	 * The current line number
+	 */
+	private long lineNumber;
+
+	/**
+	 * The timestamp of the current line
+	 */
+	private long timestamp;
+
+	/**
+	 * The price of the current line
+	 */
+	private double price;
+
+	/**
+	 * The volume of the current line
+	 */
+	private double volume;
+
+	public CSVTickParser() {
+		this(Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param fromTimestamp - first timestamp in milliseconds (inclusive)
+	 * @param toTimestamp - last timestamp in milliseconds (exclusive)
+	 */
+	public CSVTickParser(final long fromTimestamp, final long toTimestamp) {
+		this.fromTimestamp = fromTimestamp;
+		this.toTimestamp = toTimestamp;
+	}
+
+	/**
+	 * Parse the ticks of the stream and pass them to the consumer
+	 * @param inputStream
+	 * @param tickConsumer
+	 * @return the amount of parsed lines
+	 * @throws IOException
+	 */
+	public long parse(final InputStream inputStream, final TickConsumer tickConsumer) throws IOException {
+		fieldLength = 0;
+		fieldIndex = 0;
+		lineNumber = 1;
+
+		int read = 0;
+		while((read = inputStream.read(buffer)) != -1) {
+			for(int i = 0; i < read; i++) {
+				final byte value = buffer[i];
+
+				if(value == ',') {
+					handleFieldEnd();
+				} else if(value == '\n') {
+					handleLineEnd(tickConsumer);
+				} else if(value != '\r') {
+					if(fieldLength == MAX_FIELD_LENGTH) {
+						throw new NumberFormatException("Field too long in line " + lineNumber);
+					}
+					field[fieldLength++] = value;
+				}
+			}
+		}
+
+		// Last line without line break
+		if(fieldIndex > 0 || fieldLength > 0) {
+			handleLineEnd(tickConsumer);
+		}
+
+		return lineNumber - 1;
+	}
+
+	/**
+	 * Handle the end of a field
+	 */
+	private void handleFieldEnd() {
+		switch(fieldIndex) {
+		case 0:
+			timestamp = TimeUnit.SECONDS.toMillis(parseLong());
+			break;
+		case 1:
+			price = parseDouble();
+			break;
+		case 2:
+			volume = parseDouble();
+			break;
+		default:
+			// Ignore additional fields
+			break;
+		}
+
+		fieldIndex++;
+		fieldLength = 0;
+	}
+
+	/**
+	 * Handle the end of a line
+	 * @param tickConsumer
+	 */
+	private void handleLineEnd(final TickConsumer tickConsumer) {
+
+		// Skip empty lines
+		if(fieldIndex == 0 && fieldLength == 0) {
+			lineNumber++;
+			return;
+		}
+
+		handleFieldEnd();
+
+		if(fieldIndex < 3) {
+			throw new NumberFormatException("Expected 3 fields in line " + lineNumber + ", got " + fieldIndex);
+		}
+
+		if(timestamp >= fromTimestamp && timestamp < toTimestamp) {
+			tickConsumer.accept(timestamp, price, volume);
+		}
+
+		fieldIndex = 0;
+		lineNumber++;
+	}
+
+	/**
+	 * Parse the current field as long
+	 * @return
+	 */
+	private long parseLong() {
+		if(fieldLength == 0) {
+			throw new NumberFormatException("Empty field in line " + lineNumber);
+		}
+
+		final boolean negative = field[0] == '-';
+		int position = (negative || field[0] == '+') ? 1 : 0;
+
+		if(position == fieldLength || fieldLength - position > 18) {
+			return Long.parseLong(getFieldAsString());
+		}
+
+		long result = 0;
+
+		for(; position < fieldLength; position++) {
+			final int digit = field[position] - '0';
+
+			if(digit < 0 || digit > 9) {
+				throw new NumberFormatException("Invalid number '" + getFieldAsString()
+					+ "' in line " + lineNumber);
+			}
+
+			result = result * 10 + digit;
+		}
+
+		return negative ? -result : result;
+	}
+
+	/**
+	 * Parse the current field as double
+	 * @return
+	 */
+	private double parseDouble() {
+		if(fieldLength == 0) {
+			throw new NumberFormatException("Empty field in line " + lineNumber);
+		}
+
+		final boolean negative = field[0] == '-';
+		int position = (negative || field[0] == '+') ? 1 : 0;
+
+		long mantissa = 0;
+		int scale = 0;
+		int digits = 0;
+		boolean fraction = false;
+
+		for(; position < fieldLength; position++) {
+			final byte value = field[position];
+
+			if(value == '.' && ! fraction) {
+				fraction = true;
+				continue;
+			}
+
+			final int digit = value - '0';
+
+			if(digit < 0 || digit > 9 || digits == 18) {
+				// Exponent, too many digits or invalid data
+				return parseDoubleFallback();
+			}
+
+			// Leading zeros are not significant
+			if(mantissa != 0 || digit != 0) {
+				digits++;
+			}
+
+			mantissa = mantissa * 10 + digit;
+
+			if(fraction) {
+				scale++;
+			}
+		}
+
+		if(mantissa > MAX_EXACT_MANTISSA || scale >= POWERS_OF_TEN.length) {
+			return parseDoubleFallback();
+		}
+
+		// Both values are exact, so the division is correctly rounded
+		final double result = mantissa / POWERS_OF_TEN[scale];
+
+		return negative ? -result : result;
+	}
+
+	/**
+	 * Parse the current field with Double.parseDouble
+	 * @return
+	 */
+	private double parseDoubleFallback() {
+		try {
+			return Double.parseDouble(getFieldAsString());
+		} catch (NumberFormatException e) {
+			throw new NumberFormatException("Invalid number '" + getFieldAsString()
+				+ "' in line " + lineNumber);
+		}
+	}
+
+	/**
+	 * Get the current field as string
+	 * @return
+	 */
+	private String getFieldAsString() {
+		return new String(field, 0, fieldLength, StandardCharsets.US_ASCII);
+	}
+}
@@ -19,38 +19,52 @@ package com.github.jnidzwetzki.cryptobot.backtest;
 
 import java.awt.Color;
 import java.awt.Dimension;
+import java.io.File;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
 
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartPanel;
+import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.DateAxis;
 import org.jfree.chart.plot.Marker;
 import org.jfree.chart.plot.ValueMarker;
 import org.jfree.chart.plot.XYPlot;
-import org.jfree.data.time.Minute;
-import org.jfree.data.time.TimeSeriesCollection;
+import org.jfree.data.xy.XYSeries;
+import org.jfree.data.xy.XYSeriesCollection;
 import org.jfree.ui.ApplicationFrame;
 import org.jfree.ui.RefineryUtilities;
-import org.ta4j.core.Bar;
-import org.ta4j.core.Decimal;
-import org.ta4j.core.Indicator;
 import org.ta4j.core.Strategy;
 import org.ta4j.core.TimeSeries;
 import org.ta4j.core.TimeSeriesManager;
 import org.ta4j.core.Trade;
-import org.ta4j.core.indicators.EMAIndicator;
-import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+
+import com.github.jnidzwetzki.cryptobot.strategy.indicator.IndicatorKernels;
 
 /**
  * 
  * Inspired by: https://github.com/ta4j/ta4j/blob/master/ta4j-examples/src/main/java/ta4jexamples/analysis/BuyAndSellSignalsToChart.java
+ * <p>
+ * The price and indicator series are downsampled with LTTB to a few points
+ * per pixel, so charts of long series can be rendered quickly. The charts
+ * can be displayed in a frame or written to PNG files (also on headless 
+ * systems).
  *
  */
 public class Chart {
 
+	/**
+	 * The points per series for the displayed chart (allows some zooming)
+	 */
+	private final static int DISPLAY_POINTS = 4096;
+
+	/**
+	 * The points per pixel for the exported charts
+	 */
+	private final static int POINTS_PER_PIXEL = 2;
+
 	private Strategy strategy;
 	private TimeSeries timeSeries;
 	private String symbol;
@@ -61,18 +75,41 @@ public class Chart {
 		this.timeSeries = timeSeries;
 	}
 
+	/**
+	 * Build a downsampled chart series
+	 * @param timestamps
+	 * @param values
+	 * @param name
+	 * @param maxPoints
+	 * @return
+	 */
+	private static XYSeries buildChartSeries(final double[] timestamps, final double[] values, 
+			final String name, final int maxPoints) {
+		
+		final XYSeries chartSeries = new XYSeries(name, false, false);
+		final int[] points = LTTBDownsampler.downsample(timestamps, values, maxPoints);
+		
+		for(final int point : points) {
+			chartSeries.add(timestamps[point], values[point], false);
+		}
+		
+		return chartSeries;
+	}
 
-	private static org.jfree.data.time.TimeSeries buildChartTimeSeries(TimeSeries tickSeries,
-			Indicator<Decimal> indicator, String name) {
-		org.jfree.data.time.TimeSeries chartTimeSeries = new org.jfree.data.time.TimeSeries(name);
-		for (int i = 0; i < tickSeries.getBarCount(); i++) {
-			final Bar tick = tickSeries.getBar(i);
-			chartTimeSeries.add(new Minute(Date.from(tick.getEndTime().toInstant())), indicator.getValue(i).doubleValue());
+	/**
+	 * Get the end times of the bars in milliseconds
+	 * @param series
+	 * @return
+	 */
+	private static double[] getTimestamps(final TimeSeries series) {
+		final double[] timestamps = new double[series.getBarCount()];
+		
+		for(int i = 0; i < timestamps.length; i++) {
+			timestamps[i] = series.getBar(series.getBeginIndex() + i).getEndTime().toInstant().toEpochMilli();
 		}
-		return chartTimeSeries;
+		
+		return timestamps;
 	}
-	
-	
 
 	private static void addBuySellSignals(TimeSeries series, Strategy strategy, XYPlot plot) {
 		// Running the strategy
@@ -81,17 +118,15 @@ public class Chart {
 		// Adding markers to plot
 		for (Trade trade : trades) {
 			// Buy signal
-			double buySignalTickTime = new Minute(
-					Date.from(series.getBar(trade.getEntry().getIndex()).getEndTime().toInstant()))
-							.getFirstMillisecond();
+			double buySignalTickTime = series.getBar(trade.getEntry().getIndex())
+					.getEndTime().toInstant().toEpochMilli();
 			Marker buyMarker = new ValueMarker(buySignalTickTime);
 			buyMarker.setPaint(Color.GREEN);
 			buyMarker.setLabel("B");
 			plot.addDomainMarker(buyMarker);
 			// Sell signal
-			double sellSignalTickTime = new Minute(
-					Date.from(series.getBar(trade.getExit().getIndex()).getEndTime().toInstant()))
-							.getFirstMillisecond();
+			double sellSignalTickTime = series.getBar(trade.getExit().getIndex())
+					.getEndTime().toInstant().toEpochMilli();
 			Marker sellMarker = new ValueMarker(sellSignalTickTime);
 			sellMarker.setPaint(Color.RED);
 			sellMarker.setLabel("S");
@@ -119,32 +154,36 @@ public class Chart {
 		frame.setVisible(true);
 	}
 	
-	public void showChart() {
+	/**
+	 * Build the chart
+	 * @param maxPoints - the maximal amount of points per series
+	 * @return
+	 */
+	public JFreeChart buildChart(final int maxPoints) {
 		/**
 		 * Building chart datasets
 		 */
-		TimeSeriesCollection dataset = new TimeSeriesCollection();
-		dataset.addSeries(
-				buildChartTimeSeries(timeSeries, new ClosePriceIndicator(timeSeries), symbol));
+		final double[] timestamps = getTimestamps(timeSeries);
+		final double[] closePrices = IndicatorKernels.getClosePrices(timeSeries);
+		
+		XYSeriesCollection dataset = new XYSeriesCollection();
+		dataset.addSeries(buildChartSeries(timestamps, closePrices, symbol, maxPoints));
 
-		dataset.addSeries(
-				buildChartTimeSeries(timeSeries, new EMAIndicator(new ClosePriceIndicator(timeSeries), 5), "EMA5"));
+		dataset.addSeries(buildChartSeries(timestamps, IndicatorKernels.ema(closePrices, 5), "EMA5", maxPoints));
 		
-		dataset.addSeries(
-				buildChartTimeSeries(timeSeries, new EMAIndicator(new ClosePriceIndicator(timeSeries), 10), "EMA10"));
+		dataset.addSeries(buildChartSeries(timestamps, IndicatorKernels.ema(closePrices, 10), "EMA10", maxPoints));
 		
-		dataset.addSeries(
-				buildChartTimeSeries(timeSeries, new EMAIndicator(new ClosePriceIndicator(timeSeries), 40), "EMA40"));
+		dataset.addSeries(buildChartSeries(timestamps, IndicatorKernels.ema(closePrices, 40), "EMA40", maxPoints));
 		
 		/**
 		 * Creating the chart
 		 */
-		JFreeChart chart = ChartFactory.createTimeSeriesChart("BTC", // title
+		JFreeChart chart = ChartFactory.createTimeSeriesChart(symbol, // title
 				"Date", // x-axis label
 				"Price", // y-axis label
 				dataset, // data
 				true, // create legend?
-				true, // generate tooltips?
+				false, // generate tooltips?
 				false // generate URLs?
 		);
 		XYPlot plot = (XYPlot) chart.getPlot();
@@ -154,7 +193,23 @@ public class Chart {
 	
 		addBuySellSignals(timeSeries, strategy, plot);
 		
-		displayChart(chart);
+		return chart;
+	}
+	
+	public void showChart() {
+		displayChart(buildChart(DISPLAY_POINTS));
+	}
+	
+	/**
+	 * Write the chart to a PNG file (works without a display)
+	 * @param file
+	 * @param width
+	 * @param height
+	 * @throws IOException
+	 */
+	public void saveChartAsPNG(final File file, final int width, final int height) throws IOException {
+		final JFreeChart chart = buildChart(width * POINTS_PER_PIXEL);
+		ChartUtilities.saveChartAsPNG(file, chart, width, height);
 	}
 
 }
@@ -0,0 +1,253 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+/**
+ * Risk and return metrics of an equity curve, updated bar by bar.
+ * <p>
+ * The metrics are calculated in one pass with constant memory: the mean
+ * and the variance of the per bar returns with Welford's algorithm, the
+ * drawdown with the running peak. The Sharpe and Sortino ratios are per
+ * bar (risk free rate 0); multiply them with the square root of the bars
+ * per year to annualize them.
+ *
+ */
+public class EquityCurveMetrics {
+
+	/**
+	 * The portfolio value of the last bar
+	 */
+	private double lastValue;
+	
+	/**
+	 * The highest portfolio value
+	 */
+	private double peakValue;
+	
+	/**
+	 * The amount of bars
+	 */
+	private int bars;
+	
+	/**
+	 * The amount of bars with an open position
+	 */
+	private int investedBars;
+	
+	/**
+	 * The mean of the per bar returns
+	 */
+	private double returnMean;
+	
+	/**
+	 * The sum of squared differences from the mean (Welford)
+	 */
+	private double returnM2;
+	
+	/**
+	 * The sum of the squared negative returns
+	 */
+	private double downsideSquareSum;
+	
+	/**
+	 * The maximal drawdown (0.1 = 10%)
+	 */
+	private double maxDrawdown;
+	
+	/**
+	 * The bars since the last peak
+	 */
+	private int drawdownDuration;
+	
+	/**
+	 * The longest time below a peak in bars
+	 */
+	private int maxDrawdownDuration;
+	
+	/**
+	 * The amount of trades
+	 */
+	private int trades;
+	
+	/**
+	 * The sum of the winning trades
+	 */
+	private double grossProfit;
+	
+	/**
+	 * The sum of the losing trades (positive value)
+	 */
+	private double grossLoss;
+	
+	public EquityCurveMetrics(final double initialValue) {
+		this.lastValue = initialValue;
+		this.peakValue = initialValue;
+	}
+	
+	/**
+	 * Add the portfolio value on the close of a bar
+	 * @param value
+	 * @param invested - is a position open on the close of the bar
+	 */
+	public void addBar(final double value, final boolean invested) {
+		final double barReturn = lastValue == 0 ? 0 : (value / lastValue) - 1;
+		
+		bars++;
+		
+		if(invested) {
+			investedBars++;
+		}
+		
+		// Welford's online algorithm
+		final double delta = barReturn - returnMean;
+		returnMean = returnMean + (delta / bars);
+		returnM2 = returnM2 + (delta * (barReturn - returnMean));
+		
+		if(barReturn < 0) {
+			downsideSquareSum = downsideSquareSum + (barReturn * barReturn);
+		}
+		
+		if(value >= peakValue) {
+			peakValue = value;
+			drawdownDuration = 0;
+		} else {
+			drawdownDuration++;
+			maxDrawdownDuration = Math.max(maxDrawdownDuration, drawdownDuration);
+			maxDrawdown = Math.max(maxDrawdown, (peakValue - value) / peakValue);
+		}
+		
+		lastValue = value;
+	}
+	
+	/**
+	 * Add a closed trade
+	 * @param pl
+	 */
+	public void addTrade(final double pl) {
+		trades++;
+		
+		if(pl > 0) {
+			grossProfit = grossProfit + pl;
+		} else {
+			grossLoss = grossLoss - pl;
+		}
+	}
+	
+	/**
+	 * Get the maximal drawdown (0.1 = 10%)
+	 * @return
+	 */
+	public double getMaxDrawdown() {
+		return maxDrawdown;
+	}
+	
+	/**
+	 * Get the longest time below a peak in bars
+	 * @return
+	 */
+	public int getMaxDrawdownDuration() {
+		return maxDrawdownDuration;
+	}
+	
+	/**
+	 * Get the mean of the per bar returns
+	 * @return
+	 */
+	public double getReturnMean() {
+		return returnMean;
+	}
+	
+	/**
+	 * Get the standard deviation of the per bar returns
+	 * @return
+	 */
+	public double getReturnStandardDeviation() {
+		return bars == 0 ? 0 : Math.sqrt(returnM2 / bars);
+	}
+	
+	/**
+	 * Get the downside deviation of the per bar returns (target return 0)
+	 * @return
+	 */
+	public double getDownsideDeviation() {
+		return bars == 0 ? 0 : Math.sqrt(downsideSquareSum / bars);
+	}
+	
+	/**
+	 * Get the per bar Sharpe ratio (0 without volatility)
+	 * @return
+	 */
+	public double getSharpeRatio() {
+		final double standardDeviation = getReturnStandardDeviation();
+		return standardDeviation == 0 ? 0 : returnMean / standardDeviation;
+	}
+	
+	/**
+	 * Get the per bar Sortino ratio (0 without negative returns)
+	 * @return
+	 */
+	public double getSortinoRatio() {
+		final double downsideDeviation = getDownsideDeviation();
+		return downsideDeviation == 0 ? 0 : returnMean / downsideDeviation;
+	}
+	
+	/**
+	 * Get the part of the bars with an open position (0.0 - 1.0)
+	 * @return
+	 */
+	public double getExposure() {
+		return bars == 0 ? 0 : (double) investedBars / bars;
+	}
+	
+	/**
+	 * Get the gross profit divided by the gross loss 
+	 * (infinity without losing trades, 0 without trades)
+	 * @return
+	 */
+	public double getProfitFactor() {
+		if(grossLoss == 0) {
+			return grossProfit == 0 ? 0 : Double.POSITIVE_INFINITY;
+		}
+		
+		return grossProfit / grossLoss;
+	}
+	
+	/**
+	 * Get the average P/L per trade
+	 * @return
+	 */
+	public double getAverageTrade() {
+		return trades == 0 ? 0 : (grossProfit - grossLoss) / trades;
+	}
+	
+	public int getBars() {
+		return bars;
+	}
+	
+	public int getTrades() {
+		return trades;
+	}
+	
+	@Override
+	public String toString() {
+		return "EquityCurveMetrics [bars=" + bars + ", maxDrawdown=" + maxDrawdown + ", maxDrawdownDuration="
+				+ maxDrawdownDuration + ", sharpeRatio=" + getSharpeRatio() + ", sortinoRatio=" 
+				+ getSortinoRatio() + ", exposure=" + getExposure() + ", profitFactor=" + getProfitFactor() 
+				+ ", averageTrade=" + getAverageTrade() + "]";
+	}
+}
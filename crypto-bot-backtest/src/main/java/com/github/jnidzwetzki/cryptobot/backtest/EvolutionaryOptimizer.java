@@ -0,0 +1,379 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import org.ta4j.core.TimeSeries;
+
+/**
+ * Search a parameter space with differential evolution (DE/rand/1/bin).
+ * <p>
+ * The members of the population are vectors of value indices of the 
+ * parameter space, so arbitrary large ranges can be searched without 
+ * evaluating the whole grid. The trial vectors of a generation are created 
+ * with a seeded random generator on the calling thread and evaluated 
+ * concurrently on the fork join pool. A run with the same seed yields the 
+ * same result, independent of the parallelism.
+ * <p>
+ * Each combination is evaluated only once, the results are memoized. The 
+ * evaluation budget limits the amount of executed backtests.
+ *
+ */
+public class EvolutionaryOptimizer {
+
+	/**
+	 * The differential weight
+	 */
+	private final static double DIFFERENTIAL_WEIGHT = 0.5;
+
+	/**
+	 * The crossover probability
+	 */
+	private final static double CROSSOVER_PROBABILITY = 0.9;
+
+	/**
+	 * Stop after this amount of generations without a new combination
+	 */
+	private final static int MAX_STALE_GENERATIONS = 50;
+
+	/**
+	 * The parameter space
+	 */
+	private final ParameterSpace parameterSpace;
+
+	/**
+	 * The sweep that evaluates single combinations
+	 */
+	private final ParameterSweep parameterSweep;
+
+	/**
+	 * The fitness function
+	 */
+	private final FitnessFunction fitnessFunction;
+
+	/**
+	 * The size of the population
+	 */
+	private final int populationSize;
+
+	/**
+	 * The maximal amount of backtests
+	 */
+	private final int evaluationBudget;
+
+	/**
+	 * The seed of the random generator
+	 */
+	private final long seed;
+
+	/**
+	 * The pool that executes the evaluations
+	 */
+	private final ForkJoinPool forkJoinPool;
+
+	/**
+	 * The results of the evaluated combinations
+	 */
+	private final Map<Long, BacktestResult> results = new HashMap<>();
+
+	/**
+	 * The best combination
+	 */
+	private long bestCombination;
+
+	/**
+	 * The fitness of the best combination
+	 */
+	private double bestFitness;
+
+	public EvolutionaryOptimizer(final TimeSeries timeSeries, final ParameterSpace parameterSpace,
+			final StrategyFactoryBuilder strategyFactoryBuilder, final double portfolioValue,
+			final FitnessFunction fitnessFunction, final int populationSize, final int evaluationBudget,
+			final long seed, final ForkJoinPool forkJoinPool) {
+
+		// Mutation needs three members beside the target
+		if(populationSize < 4) {
+			throw new IllegalArgumentException("The population needs at least 4 members: " + populationSize);
+		}
+
+		if(evaluationBudget <= 0) {
+			throw new IllegalArgumentException("Invalid evaluation budget: " + evaluationBudget);
+		}
+
+		this.parameterSpace = parameterSpace;
+		this.parameterSweep = new ParameterSweep(timeSeries, parameterSpace, strategyFactoryBuilder,
+				portfolioValue, forkJoinPool);
+		this.fitnessFunction = fitnessFunction;
+		this.populationSize = populationSize;
+		this.evaluationBudget = evaluationBudget;
+		this.seed = seed;
+		this.forkJoinPool = forkJoinPool;
+	}
+
+	/**
+	 * Run the optimization. The consumer is called on the calling thread 
+	 * for each evaluated combination.
+	 *
+	 * @param resultConsumer
+	 * @return the best combination or null if the parameter space is empty
+	 */
+	public OptimizerResult run(final Consumer<BacktestResult> resultConsumer) {
+		results.clear();
+		bestCombination = -1;
+		bestFitness = Double.NEGATIVE_INFINITY;
+
+		final int dimensions = parameterSpace.getDimensions();
+		final long combinations = parameterSpace.getCombinations();
+
+		if(combinations == 0) {
+			return null;
+		}
+
+		final long maxEvaluations = Math.min(evaluationBudget, combinations);
+		final Random random = new Random(seed);
+
+		final double[][] population = new double[populationSize][dimensions];
+		final long[] populationCombinations = new long[populationSize];
+		final double[] populationFitness = new double[populationSize];
+
+		for(int member = 0; member < populationSize; member++) {
+			for(int dimension = 0; dimension < dimensions; dimension++) {
+				population[member][dimension] = random.nextInt(parameterSpace.getValueCount(dimension));
+			}
+
+			populationCombinations[member] = getCombination(population[member]);
+		}
+
+		evaluate(populationCombinations, maxEvaluations, resultConsumer);
+
+		// Members outside of the budget are not evaluated, every evaluated trial replaces them
+		for(int member = 0; member < populationSize; member++) {
+			if(results.containsKey(populationCombinations[member])) {
+				populationFitness[member] = getFitness(populationCombinations[member]);
+			} else {
+				populationFitness[member] = Double.NEGATIVE_INFINITY;
+			}
+		}
+
+		final double[][] trials = new double[populationSize][dimensions];
+		final long[] trialCombinations = new long[populationSize];
+		int staleGenerations = 0;
+
+		while(results.size() < maxEvaluations && staleGenerations < MAX_STALE_GENERATIONS) {
+
+			for(int member = 0; member < populationSize; member++) {
+				createTrial(random, population, member, trials[member]);
+				trialCombinations[member] = getCombination(trials[member]);
+			}
+
+			final int evaluations = evaluate(trialCombinations, maxEvaluations, resultConsumer);
+			staleGenerations = (evaluations == 0) ? staleGenerations + 1 : 0;
+
+			// Selection, combinations outside of the budget are not evaluated and dropped
+			for(int member = 0; member < populationSize; member++) {
+				if(! results.containsKey(trialCombinations[member])) {
+					continue;
+				}
+
+				final double trialFitness = getFitness(trialCombinations[member]);
+
+				if(trialFitness >= populationFitness[member]) {
+					System.arraycopy(trials[member], 0, population[member], 0, dimensions);
+					populationCombinations[member] = trialCombinations[member];
+					populationFitness[member] = trialFitness;
+				}
+			}
+		}
+
+		return new OptimizerResult(parameterSpace.getCombination(bestCombination),
+				results.get(bestCombination), bestFitness, results.size());
+	}
+
+	/**
+	 * Create the trial vector for the member
+	 * @param random
+	 * @param population
+	 * @param member
+	 * @param trial
+	 */
+	private void createTrial(final Random random, final double[][] population, final int member,
+			final double[] trial) {
+
+		int a, b, c;
+
+		do {
+			a = random.nextInt(populationSize);
+		} while(a == member);
+
+		do {
+			b = random.nextInt(populationSize);
+		} while(b == member || b == a);
+
+		do {
+			c = random.nextInt(populationSize);
+		} while(c == member || c == a || c == b);
+
+		// At least one dimension is taken from the mutant
+		final int forcedDimension = random.nextInt(trial.length);
+
+		for(int dimension = 0; dimension < trial.length; dimension++) {
+			if(dimension == forcedDimension || random.nextDouble() < CROSSOVER_PROBABILITY) {
+				final double value = population[a][dimension] 
+						+ DIFFERENTIAL_WEIGHT * (population[b][dimension] - population[c][dimension]);
+
+				final int maxValue = parameterSpace.getValueCount(dimension) - 1;
+				trial[dimension] = Math.max(0, Math.min(maxValue, value));
+			} else {
+				trial[dimension] = population[member][dimension];
+			}
+		}
+	}
+
+	/**
+	 * Get the combination of the vector
+	 * @param vector
+	 * @return
+	 */
+	private long getCombination(final double[] vector) {
+		final int[] valueIndices = new int[vector.length];
+
+		for(int dimension = 0; dimension < vector.length; dimension++) {
+			valueIndices[dimension] = (int) Math.round(vector[dimension]);
+		}
+
+		return parameterSpace.getCombinationIndex(valueIndices);
+	}
+
+	/**
+	 * Get the fitness of an evaluated combination
+	 * @param combination
+	 * @return
+	 */
+	private double getFitness(final long combination) {
+		final double fitness = fitnessFunction.getFitness(results.get(combination));
+
+		if(Double.isNaN(fitness)) {
+			return Double.NEGATIVE_INFINITY;
+		}
+
+		return fitness;
+	}
+
+	/**
+	 * Evaluate the unknown combinations in parallel, as long as the budget allows
+	 * @param combinations
+	 * @param maxEvaluations
+	 * @param resultConsumer
+	 * @return the amount of evaluated combinations
+	 */
+	private int evaluate(final long[] combinations, final long maxEvaluations,
+			final Consumer<BacktestResult> resultConsumer) {
+
+		final List<Long> pending = new ArrayList<>();
+
+		for(final long combination : combinations) {
+			if(results.size() + pending.size() >= maxEvaluations) {
+				break;
+			}
+
+			if(! results.containsKey(combination) && ! pending.contains(combination)) {
+				pending.add(combination);
+			}
+		}
+
+		if(pending.isEmpty()) {
+			return 0;
+		}
+
+		final BacktestResult[] pendingResults = new BacktestResult[pending.size()];
+		forkJoinPool.invoke(new EvaluationTask(pending, pendingResults, 0, pending.size()));
+
+		// Process the results in a fixed order, the best combination does not depend on the scheduling
+		for(int i = 0; i < pending.size(); i++) {
+			final long combination = pending.get(i);
+			results.put(combination, pendingResults[i]);
+			resultConsumer.accept(pendingResults[i]);
+
+			final double fitness = getFitness(combination);
+
+			if(bestCombination < 0 || fitness > bestFitness) {
+				bestCombination = combination;
+				bestFitness = fitness;
+			}
+		}
+
+		return pending.size();
+	}
+
+	private class EvaluationTask extends RecursiveAction {
+
+		private static final long serialVersionUID = -3491434209720532640L;
+
+		/**
+		 * The combinations
+		 */
+		private final List<Long> combinations;
+
+		/**
+		 * The results of the combinations
+		 */
+		private final BacktestResult[] results;
+
+		/**
+		 * The first combination (inclusive)
+		 */
+		private final int from;
+
+		/**
+		 * The last combination (exclusive)
+		 */
+		private final int to;
+
+		public EvaluationTask(final List<Long> combinations, final BacktestResult[] results,
+				final int from, final int to) {
+
+			this.combinations = combinations;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+
+			// One evaluation is a full backtest, so split down to single combinations
+			if(to - from == 1) {
+				results[from] = parameterSweep.evaluate(combinations.get(from));
+				return;
+			}
+
+			final int middle = from + ((to - from) / 2);
+
+			invokeAll(new EvaluationTask(combinations, results, from, middle),
+					new EvaluationTask(combinations, results, middle, to));
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+@FunctionalInterface
+public interface FillConsumer {
+
+	/**
+	 * Handle the fill of an order
+	 *
+	 * @param orderId
+	 * @param timestamp - the timestamp of the tick in milliseconds since epoch
+	 * @param price - the fill price (including slippage)
+	 * @param amount - the amount of the order (negative for sell orders)
+	 */
+	public void accept(final int orderId, final long timestamp, final double price, final double amount);
+}
@@ -0,0 +1,70 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+@FunctionalInterface
+public interface FitnessFunction {
+
+	/**
+	 * The total P/L
+	 */
+	public final static FitnessFunction TOTAL_PL = r -> r.getTotalPL();
+
+	/**
+	 * The total P/L per biggest loss. The loss is at least one unit of 
+	 * the portfolio currency, so runs without losing trades stay comparable.
+	 */
+	public final static FitnessFunction PL_PER_MAX_LOSS = r -> r.getTotalPL() / Math.max(1, -r.getMaxLoose());
+
+	/**
+	 * The per bar Sharpe ratio of the equity curve
+	 */
+	public final static FitnessFunction SHARPE_RATIO = r -> r.getSharpeRatio();
+
+	/**
+	 * The per bar Sortino ratio of the equity curve
+	 */
+	public final static FitnessFunction SORTINO_RATIO = r -> r.getSortinoRatio();
+
+	/**
+	 * Get the fitness function with the given name (e.g. SHARPE_RATIO)
+	 * @param name
+	 * @return
+	 */
+	public static FitnessFunction forName(final String name) {
+		switch(name) {
+		case "TOTAL_PL":
+			return TOTAL_PL;
+		case "PL_PER_MAX_LOSS":
+			return PL_PER_MAX_LOSS;
+		case "SHARPE_RATIO":
+			return SHARPE_RATIO;
+		case "SORTINO_RATIO":
+			return SORTINO_RATIO;
+		default:
+			throw new IllegalArgumentException("Unknown fitness function: " + name);
+		}
+	}
+
+	/**
+	 * Get the fitness of the result (higher is better)
+	 * @param result
+	 * @return
+	 */
+	public double getFitness(final BacktestResult result);
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+/**
+ * Downsample a series with the Largest-Triangle-Three-Buckets algorithm
+ * (Sveinn Steinarsson, 2013).
+ * <p>
+ * The first and the last point are kept, the points in between are split
+ * into equally sized buckets. From each bucket the point is selected that 
+ * forms the largest triangle with the point selected from the previous 
+ * bucket and the average of the next bucket. Peaks and troughs are kept, 
+ * so the shape of the series is preserved with a few points per pixel.
+ *
+ */
+public final class LTTBDownsampler {
+	
+	private LTTBDownsampler() {
+		// Static helper
+	}
+
+	/**
+	 * Select the points to keep
+	 * @param x - the x values in ascending order
+	 * @param y - the y values
+	 * @param threshold - the amount of points to keep
+	 * @return the indices of the selected points in ascending order
+	 */
+	public static int[] downsample(final double[] x, final double[] y, final int threshold) {
+		
+		if(x.length != y.length) {
+			throw new IllegalArgumentException("Different lengths " + x.length + " / " + y.length);
+		}
+		
+		final int length = x.length;
+		
+		if(threshold >= length || threshold < 3) {
+			final int[] all = new int[length];
+			
+			for(int i = 0; i < length; i++) {
+				all[i] = i;
+			}
+			
+			return all;
+		}
+		
+		final int[] sampled = new int[threshold];
+		final double bucketSize = (double) (length - 2) / (threshold - 2);
+		
+		// The previous selected point
+		int previous = 0;
+		sampled[0] = 0;
+		
+		for(int bucket = 0; bucket < threshold - 2; bucket++) {
+			
+			// The average point of the next bucket
+			final int averageFrom = (int) ((bucket + 1) * bucketSize) + 1;
+			final int averageTo = Math.min((int) ((bucket + 2) * bucketSize) + 1, length);
+			
+			double averageX = 0;
+			double averageY = 0;
+			int averageCount = 0;
+			
+			for(int i = averageFrom; i < averageTo; i++) {
+				if(Double.isNaN(y[i])) {
+					continue;
+				}
+				
+				averageX = averageX + x[i];
+				averageY = averageY + y[i];
+				averageCount++;
+			}
+			
+			if(averageCount > 0) {
+				averageX = averageX / averageCount;
+				averageY = averageY / averageCount;
+			} else {
+				averageX = x[length - 1];
+				averageY = y[length - 1];
+			}
+			
+			// The point of the current bucket with the largest triangle
+			final int from = (int) (bucket * bucketSize) + 1;
+			final int to = (int) ((bucket + 1) * bucketSize) + 1;
+			
+			double maxArea = -1;
+			int selected = from;
+			
+			for(int i = from; i < to; i++) {
+				final double area = Math.abs((x[previous] - averageX) * (y[i] - y[previous])
+						- (x[previous] - x[i]) * (averageY - y[previous]));
+				
+				if(area > maxArea) {
+					maxArea = area;
+					selected = i;
+				}
+			}
+			
+			sampled[bucket + 1] = selected;
+			previous = selected;
+		}
+		
+		sampled[threshold - 1] = length - 1;
+		
+		return sampled;
+	}
+}
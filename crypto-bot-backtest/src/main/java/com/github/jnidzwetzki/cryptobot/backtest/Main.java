@@ -17,17 +17,17 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.cryptobot.backtest;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
-import org.ta4j.core.BaseTimeSeries;
 import org.ta4j.core.TimeSeries;
 
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
@@ -35,21 +35,67 @@ import com.github.jnidzwetzki.bitfinex.v2.entity.Timeframe;
 import com.github.jnidzwetzki.cryptobot.strategy.DonchianChannelStrategy;
 import com.github.jnidzwetzki.cryptobot.strategy.EMAStrategy03;
 import com.github.jnidzwetzki.cryptobot.strategy.TradeStrategyFactory;
+import com.github.jnidzwetzki.cryptobot.strategy.indicator.IndicatorRegistry;
 import com.github.jnidzwetzki.cryptobot.util.BarMerger;
+import com.github.jnidzwetzki.cryptobot.util.ColumnarTimeSeries;
 
 public class Main implements Runnable {
 
 	protected final static String FILENAME = "/Users/kristofnidzwetzki/Desktop/coinbaseUSD.csv";
 
-	private TimeSeries timeSeries = new BaseTimeSeries("BTC");
+	/**
+	 * The binary tick archive, created from the CSV file on the first run
+	 */
+	protected final static String ARCHIVE_FILENAME = "/Users/kristofnidzwetzki/Desktop/coinbaseUSD.ticks";
+
+	/**
+	 * The directory of the backtest result cache
+	 */
+	protected final static String CACHE_DIRECTORY = "/Users/kristofnidzwetzki/Desktop/backtest-cache";
+	
+	/**
+	 * The file for the results of the sweeps
+	 */
+	protected final static String RESULT_FILENAME = "/Users/kristofnidzwetzki/Desktop/sweep.results";
+	
+	/**
+	 * The amount of best results that are printed after a sweep
+	 */
+	private final static int TOP_RESULTS = 20;
+	
+	/**
+	 * The maximal size of the result cache (100 MB)
+	 */
+	private final static long CACHE_SIZE = 100 * 1024 * 1024;
+
+	private final static Timeframe TIMEFRAME = Timeframe.MINUTES_15;
+
+	/**
+	 * The bars are stored in primitive columns, a multi-year history of
+	 * 15 minute bars fits into a few MB
+	 */
+	private TimeSeries timeSeries = new ColumnarTimeSeries("BTC", 
+			Duration.ofMillis(TIMEFRAME.getMilliSeconds()));
 	
 	private float USD_AMOUNT = 1000;
+	
+	/**
+	 * The amount of threads used for parameter sweeps
+	 */
+	private final static int SWEEP_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * The result cache, unchanged configurations are not executed again
+	 */
+	private BacktestResultCache resultCache;
 
 	@Override
 	public void run() {
 		try {
 			System.out.println("Load data from file");
 			loadDataFromFile();
+			
+			resultCache = new BacktestResultCache(new File(CACHE_DIRECTORY), CACHE_SIZE);
 
 			System.out.println("Executing trading on ticks: " + timeSeries.getEndIndex());
 			
@@ -71,24 +117,122 @@ public class Main implements Runnable {
 			
 			//findEma();
 			
+			//walkForwardDonchian();
+			
+			//optimizeEma();
+			
+			//simulateRisk(factory1);
+			
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
 
-	protected void findEma() throws InterruptedException {
+	protected void findEma() throws IOException {
+		
+		final ParameterSpace parameterSpace = new ParameterSpace()
+				.addParameter("sma1", Arrays.asList(5, 6, 7, 8, 9, 10, 11, 12, 15))
+				.addParameter("sma2", Arrays.asList(10, 12, 14, 16, 18, 20, 30, 40))
+				.addParameter("sma3", Arrays.asList(40, 50, 60, 70, 80, 90));
+		
+		final Map<String, FitnessFunction> metrics = new LinkedHashMap<>();
+		metrics.put("P/L", FitnessFunction.TOTAL_PL);
+		metrics.put("Sharpe", FitnessFunction.SHARPE_RATIO);
+		
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(SWEEP_PARALLELISM);
+		
+		try (final ResultSink resultSink = new ResultSink(new File(RESULT_FILENAME), metrics, TOP_RESULTS)) {
+			final ParameterSweep parameterSweep = new ParameterSweep(timeSeries, parameterSpace, 
+					(p, s) -> new EMAStrategy03(p[0], p[1], p[2], s), USD_AMOUNT, forkJoinPool);
+			
+			parameterSweep.setResultCache(resultCache);
+			parameterSweep.setIndicatorRegistry(new IndicatorRegistry(timeSeries));
+			parameterSweep.run(resultSink);
+			
+			for(final String metric : resultSink.getMetrics()) {
+				System.out.println("Best results by " + metric);
+				resultSink.getTopResults(metric).forEach(r -> printResult(r));
+			}
+		} finally {
+			forkJoinPool.shutdown();
+		}
+	}
+
+	/**
+	 * Resample the trades of the strategy to estimate the drawdown and the risk of ruin
+	 * @param strategyFactory
+	 */
+	protected void simulateRisk(final TradeStrategyFactory strategyFactory) {
 		
-		final List<Integer> sma1 = Arrays.asList(5, 6, 7, 8, 9, 10, 11, 12, 15);
-		final List<Integer> sma2 = Arrays.asList(10, 12, 14, 16, 18, 20, 30, 40);
-		final List<Integer> sma3 = Arrays.asList(40, 50, 60, 70, 80, 90);
+		final TradeExecutor tradeExecutor = new TradeExecutor(USD_AMOUNT, strategyFactory);
+		tradeExecutor.executeTrades();
+		
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(SWEEP_PARALLELISM);
 		
-		for(final int sma1Value : sma1) {
-			for(final int sma2Value : sma2) {
-				for(final int sma3Value : sma3) {
-					final TradeStrategyFactory factory = new EMAStrategy03(sma1Value, sma2Value, sma3Value, timeSeries);
-					processTrade(factory);	
-				}
+		try {
+			for(final MonteCarloSimulation.Mode mode : MonteCarloSimulation.Mode.values()) {
+				final MonteCarloSimulation simulation = new MonteCarloSimulation(
+						tradeExecutor.getTradeReturns(), USD_AMOUNT, 0.5, mode);
+				
+				System.out.println(mode + " " + simulation.run(100_000, 42, forkJoinPool));
 			}
+		} finally {
+			forkJoinPool.shutdown();
+		}
+	}
+
+	/**
+	 * Search wide EMA ranges with differential evolution
+	 */
+	protected void optimizeEma() {
+		
+		final ParameterSpace parameterSpace = new ParameterSpace()
+				.addRange("sma1", 2, 50, 1)
+				.addRange("sma2", 5, 200, 1)
+				.addRange("sma3", 20, 400, 2);
+		
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(SWEEP_PARALLELISM);
+		
+		try {
+			final EvolutionaryOptimizer optimizer = new EvolutionaryOptimizer(timeSeries, parameterSpace, 
+					(p, s) -> new EMAStrategy03(p[0], p[1], p[2], s), USD_AMOUNT, 
+					FitnessFunction.PL_PER_MAX_LOSS, 30, 2000, 42, forkJoinPool);
+			
+			final OptimizerResult result = optimizer.run(r -> printResult(r));
+			System.out.println("Best: " + result);
+		} finally {
+			forkJoinPool.shutdown();
+		}
+	}
+
+	/**
+	 * Optimize the donchian periods on 60 days and trade them on the following 15 days
+	 */
+	protected void walkForwardDonchian() {
+		
+		final ParameterSpace parameterSpace = new ParameterSpace()
+				.addParameter("upper", Arrays.asList(12 * 4, 24 * 4, 48 * 4, 72 * 4))
+				.addParameter("lower", Arrays.asList(6 * 4, 12 * 4, 24 * 4, 48 * 4));
+		
+		final int barsPerDay = 24 * 4;
+		
+		final List<WalkForwardWindow> windows = WalkForwardWindow.rolling(timeSeries.getBeginIndex(), 
+				timeSeries.getEndIndex(), 60 * barsPerDay, 15 * barsPerDay);
+		
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(SWEEP_PARALLELISM);
+		
+		try {
+			final WalkForwardOptimizer optimizer = new WalkForwardOptimizer(timeSeries, parameterSpace, 
+					(p, s) -> new DonchianChannelStrategy(p[0], p[1], s), USD_AMOUNT, windows, 
+					BacktestResult::getTotalPL, forkJoinPool);
+			
+			final List<WalkForwardResult> results = optimizer.run();
+			
+			System.out.println(WalkForwardResult.getTabularHeader());
+			results.forEach(r -> System.out.println(r.toTabularString()));
+			System.out.println("Out-of-sample P/L: " + WalkForwardOptimizer.getOutOfSamplePL(results));
+		} finally {
+			forkJoinPool.shutdown();
 		}
 	}
 
@@ -96,55 +240,40 @@ public class Main implements Runnable {
 
 		//debugTrades(strategy);
 		
-		final TradeExecutor tradeExecutor = new TradeExecutor(USD_AMOUNT, strategyFactory);
-		tradeExecutor.executeTrades();
+		printResult(resultCache.execute(strategyFactory, USD_AMOUNT));
+	}
 	
-		System.out.format("%s\t%f\t%f\t%f\t%d\t%d\t%d\t%f\t%f\t%d\t%d\n", strategyFactory.getName(), 
-				tradeExecutor.getPortfolioValue(), tradeExecutor.getTotalPL(), 
-				tradeExecutor.getFees(), tradeExecutor.getTotalTrades(),
-				tradeExecutor.getWinner(), tradeExecutor.getLooser(), tradeExecutor.getMaxWin(), 
-				tradeExecutor.getMaxLoose(), tradeExecutor.getLoserInARow(), 
-				tradeExecutor.getExecutedStopLoss());
-
-		/*
-		final Chart chart = new Chart(strategy, timeSeries);
-		chart.showChart();
-*/
+	private void printResult(final BacktestResult result) {
+		System.out.println(result.toTabularString());
 	}
 
 	private void printHeader() {
-		System.out.println("Strategy\tPortfolio value\tP/L\tFees\tTrades\tWinner\tLooser\tMax win\tMax loose\tLooser row\tStop loss hard\n");
+		System.out.println(BacktestResult.getTabularHeader() + "\n");
 	}
 
 	protected void loadDataFromFile() throws FileNotFoundException, IOException {
+		
+		final File archiveFile = new File(ARCHIVE_FILENAME);
+		
+		// Convert the CSV file only once, the archive is memory mapped on the next runs
+		if(! archiveFile.exists()) {
+			System.out.println("Converting " + FILENAME + " into tick archive " + ARCHIVE_FILENAME);
+			TickArchiveConverter.convert(new File(FILENAME), archiveFile);
+		}
+		
 		try (
-				final BufferedReader br = new BufferedReader(new FileReader(new File(FILENAME)));
+				final TickArchive tickArchive = new TickArchive(archiveFile);
 				final BarMerger tickMerger = new BarMerger(BitfinexCurrencyPair.BTC_USD, 
-								Timeframe.MINUTES_15, (s, t) -> timeSeries.addBar(t));
+								TIMEFRAME, (s, t) -> timeSeries.addBar(t));
 				) {
-			String line = null;
-			while ((line = br.readLine()) != null) {
-				final String[] parts = line.split(",");
-				final long timestamp = Long.parseLong(parts[0]);
-				final double price = Double.parseDouble(parts[1]);
-				final double volume = Double.parseDouble(parts[2]);
-				
-				// Drop unstable data 
-				// 1483228800 - 01.01.2017
-				// 1451606400 - 01.01.2016
-				
-				if (timestamp < 1451606400) {
-					continue;
-				}
-				
-				//if(timestamp > 1483228800) {
-				//	continue;
-				//}
-	
-				tickMerger.addNewPrice(TimeUnit.SECONDS.toMillis(timestamp), 
-						new BigDecimal(price), new BigDecimal(volume));
-			}
 			
+			// Drop unstable data 
+			// 1483228800 - 01.01.2017
+			// 1451606400 - 01.01.2016
+			final long fromTimestamp = TimeUnit.SECONDS.toMillis(1451606400);
+			final long toTimestamp = Long.MAX_VALUE;
+			
+			tickArchive.forEach(fromTimestamp, toTimestamp, tickMerger::addNewPrice);
 		}
 	}
 
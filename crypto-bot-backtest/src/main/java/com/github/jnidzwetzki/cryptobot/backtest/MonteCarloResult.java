@@ -0,0 +1,116 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.util.Arrays;
+
+/**
+ * The distributions of a Monte Carlo simulation
+ */
+public class MonteCarloResult {
+
+	/**
+	 * The final portfolio values (sorted)
+	 */
+	private final double[] finalValues;
+
+	/**
+	 * The maximal drawdowns relative to the peak value (sorted)
+	 */
+	private final double[] maxDrawdowns;
+
+	/**
+	 * The amount of paths that reached the ruin level
+	 */
+	private final int ruinedPaths;
+
+	public MonteCarloResult(final double[] finalValues, final double[] maxDrawdowns, final int ruinedPaths) {
+		this.finalValues = finalValues.clone();
+		this.maxDrawdowns = maxDrawdowns.clone();
+		this.ruinedPaths = ruinedPaths;
+
+		Arrays.sort(this.finalValues);
+		Arrays.sort(this.maxDrawdowns);
+	}
+
+	/**
+	 * Get the amount of simulated paths
+	 * @return
+	 */
+	public int getPaths() {
+		return finalValues.length;
+	}
+
+	/**
+	 * Get the share of paths that reached the ruin level
+	 * @return
+	 */
+	public double getRuinProbability() {
+		return ruinedPaths / (double) finalValues.length;
+	}
+
+	/**
+	 * Get the percentile of the final portfolio values
+	 * @param percentile - between 0 and 100
+	 * @return
+	 */
+	public double getFinalValuePercentile(final double percentile) {
+		return getPercentile(finalValues, percentile);
+	}
+
+	/**
+	 * Get the percentile of the max drawdowns (0.2 = 20% below the peak)
+	 * @param percentile - between 0 and 100
+	 * @return
+	 */
+	public double getMaxDrawdownPercentile(final double percentile) {
+		return getPercentile(maxDrawdowns, percentile);
+	}
+
+	/**
+	 * Get the mean of the final portfolio values
+	 * @return
+	 */
+	public double getMeanFinalValue() {
+		return Arrays.stream(finalValues).average().orElse(0);
+	}
+
+	/**
+	 * Get the percentile of the sorted values (nearest rank)
+	 * @param values
+	 * @param percentile
+	 * @return
+	 */
+	private static double getPercentile(final double[] values, final double percentile) {
+
+		if(percentile < 0 || percentile > 100) {
+			throw new IllegalArgumentException("Invalid percentile: " + percentile);
+		}
+
+		final int rank = (int) Math.ceil((percentile / 100.0) * values.length);
+		return values[Math.max(0, rank - 1)];
+	}
+
+	@Override
+	public String toString() {
+		return String.format("MonteCarloResult [paths=%d, ruin probability=%f, final value 5%%/50%%/95%%=%f/%f/%f, "
+				+ "max drawdown 50%%/95%%/99%%=%f/%f/%f]", getPaths(), getRuinProbability(),
+				getFinalValuePercentile(5), getFinalValuePercentile(50), getFinalValuePercentile(95),
+				getMaxDrawdownPercentile(50), getMaxDrawdownPercentile(95), getMaxDrawdownPercentile(99));
+	}
+}
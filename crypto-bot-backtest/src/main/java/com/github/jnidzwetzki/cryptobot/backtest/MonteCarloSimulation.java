@@ -0,0 +1,243 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Monte Carlo resampling of the trades of a backtest.
+ * <p>
+ * Each path compounds a resampled sequence of trade returns (see 
+ * TradeExecutor.getTradeReturns()) and records the final portfolio value, 
+ * the maximal drawdown and whether the portfolio value fell to the ruin 
+ * level. The paths are split into fixed blocks; each block has its own 
+ * random generator that is derived from the seed and the block number, so 
+ * the result does not depend on the parallelism.
+ *
+ */
+public class MonteCarloSimulation {
+
+	public enum Mode {
+		/**
+		 * Draw the trades with replacement
+		 */
+		BOOTSTRAP,
+
+		/**
+		 * Shuffle the trades, every trade is used once per path
+		 */
+		PERMUTATION
+	}
+
+	/**
+	 * The amount of paths simulated by one task
+	 */
+	private final static int BLOCK_SIZE = 1024;
+
+	/**
+	 * The returns of the trades
+	 */
+	private final double[] tradeReturns;
+
+	/**
+	 * The initial portfolio value
+	 */
+	private final double initialValue;
+
+	/**
+	 * The ruin level relative to the initial value (e.g. 0.5)
+	 */
+	private final double ruinLevel;
+
+	/**
+	 * The resampling mode
+	 */
+	private final Mode mode;
+
+	public MonteCarloSimulation(final double[] tradeReturns, final double initialValue,
+			final double ruinLevel, final Mode mode) {
+
+		if(tradeReturns.length == 0) {
+			throw new IllegalArgumentException("No trades to resample");
+		}
+
+		this.tradeReturns = tradeReturns.clone();
+		this.initialValue = initialValue;
+		this.ruinLevel = ruinLevel;
+		this.mode = mode;
+	}
+
+	/**
+	 * Simulate the paths
+	 * @param paths
+	 * @param seed
+	 * @param forkJoinPool
+	 * @return
+	 */
+	public MonteCarloResult run(final int paths, final long seed, final ForkJoinPool forkJoinPool) {
+
+		if(paths <= 0) {
+			throw new IllegalArgumentException("Invalid amount of paths: " + paths);
+		}
+
+		final double[] finalValues = new double[paths];
+		final double[] maxDrawdowns = new double[paths];
+		final boolean[] ruined = new boolean[paths];
+
+		final int blocks = ((paths - 1) / BLOCK_SIZE) + 1;
+		forkJoinPool.invoke(new SimulationTask(0, blocks, seed, finalValues, maxDrawdowns, ruined));
+
+		int ruinedPaths = 0;
+
+		for(final boolean pathRuined : ruined) {
+			if(pathRuined) {
+				ruinedPaths++;
+			}
+		}
+
+		return new MonteCarloResult(finalValues, maxDrawdowns, ruinedPaths);
+	}
+
+	/**
+	 * Simulate the paths of one block
+	 * @param block
+	 * @param seed
+	 * @param finalValues
+	 * @param maxDrawdowns
+	 * @param ruined
+	 */
+	private void simulateBlock(final int block, final long seed, final double[] finalValues,
+			final double[] maxDrawdowns, final boolean[] ruined) {
+
+		final SplittableRandom random = new SplittableRandom(seed + (block * 0x9E3779B97F4A7C15L));
+		final double[] sequence = tradeReturns.clone();
+		final double ruinValue = initialValue * ruinLevel;
+
+		final int from = block * BLOCK_SIZE;
+		final int to = Math.min(finalValues.length, from + BLOCK_SIZE);
+
+		for(int path = from; path < to; path++) {
+
+			if(mode == Mode.PERMUTATION) {
+				shuffle(sequence, random);
+			}
+
+			double value = initialValue;
+			double peak = initialValue;
+			double maxDrawdown = 0;
+			boolean pathRuined = false;
+
+			for(int trade = 0; trade < sequence.length; trade++) {
+				final double tradeReturn = (mode == Mode.BOOTSTRAP)
+						? tradeReturns[random.nextInt(tradeReturns.length)] : sequence[trade];
+
+				value = value * (1 + tradeReturn);
+
+				if(value > peak) {
+					peak = value;
+				} else {
+					maxDrawdown = Math.max(maxDrawdown, (peak - value) / peak);
+				}
+
+				if(value <= ruinValue) {
+					pathRuined = true;
+				}
+			}
+
+			finalValues[path] = value;
+			maxDrawdowns[path] = maxDrawdown;
+			ruined[path] = pathRuined;
+		}
+	}
+
+	/**
+	 * Fisher-Yates shuffle
+	 * @param values
+	 * @param random
+	 */
+	private static void shuffle(final double[] values, final SplittableRandom random) {
+		for(int i = values.length - 1; i > 0; i--) {
+			final int j = random.nextInt(i + 1);
+			final double value = values[i];
+			values[i] = values[j];
+			values[j] = value;
+		}
+	}
+
+	private class SimulationTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 2180386370530466862L;
+
+		/**
+		 * The first block (inclusive)
+		 */
+		private final int fromBlock;
+
+		/**
+		 * The last block (exclusive)
+		 */
+		private final int toBlock;
+
+		/**
+		 * The seed
+		 */
+		private final long seed;
+
+		/**
+		 * The final values of the paths
+		 */
+		private final double[] finalValues;
+
+		/**
+		 * The max drawdowns of the paths
+		 */
+		private final double[] maxDrawdowns;
+
+		/**
+		 * The ruined paths
+		 */
+		private final boolean[] ruined;
+
+		public SimulationTask(final int fromBlock, final int toBlock, final long seed,
+				final double[] finalValues, final double[] maxDrawdowns, final boolean[] ruined) {
+
+			this.fromBlock = fromBlock;
+			this.toBlock = toBlock;
+			this.seed = seed;
+			this.finalValues = finalValues;
+			this.maxDrawdowns = maxDrawdowns;
+			this.ruined = ruined;
+		}
+
+		@Override
+		protected void compute() {
+
+			if(toBlock - fromBlock == 1) {
+				simulateBlock(fromBlock, seed, finalValues, maxDrawdowns, ruined);
+				return;
+			}
+
+			final int middle = fromBlock + ((toBlock - fromBlock) / 2);
+
+			invokeAll(new SimulationTask(fromBlock, middle, seed, finalValues, maxDrawdowns, ruined),
+					new SimulationTask(middle, toBlock, seed, finalValues, maxDrawdowns, ruined));
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.util.Arrays;
+
+/**
+ * The best parameters found by an optimizer
+ */
+public class OptimizerResult {
+
+	/**
+	 * The parameters
+	 */
+	private final int[] parameters;
+
+	/**
+	 * The backtest result of the parameters
+	 */
+	private final BacktestResult result;
+
+	/**
+	 * The fitness of the result
+	 */
+	private final double fitness;
+
+	/**
+	 * The amount of executed backtests
+	 */
+	private final int evaluations;
+
+	public OptimizerResult(final int[] parameters, final BacktestResult result, 
+			final double fitness, final int evaluations) {
+		
+		this.parameters = parameters.clone();
+		this.result = result;
+		this.fitness = fitness;
+		this.evaluations = evaluations;
+	}
+
+	public int[] getParameters() {
+		return parameters.clone();
+	}
+
+	public BacktestResult getResult() {
+		return result;
+	}
+
+	public double getFitness() {
+		return fitness;
+	}
+
+	public int getEvaluations() {
+		return evaluations;
+	}
+
+	@Override
+	public String toString() {
+		return "OptimizerResult [parameters=" + Arrays.toString(parameters) + ", result=" + result 
+				+ ", fitness=" + fitness + ", evaluations=" + evaluations + "]";
+	}
+}
@@ -0,0 +1,197 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A grid of integer strategy parameters.
+ * <p>
+ * The combinations are not materialized, the n-th combination is decoded
+ * from its index on demand. The last parameter changes fastest, so the
+ * order matches nested for loops over the parameters.
+ *
+ */
+public class ParameterSpace {
+
+	/**
+	 * The names of the parameters
+	 */
+	private final List<String> names = new ArrayList<>();
+
+	/**
+	 * The values of the parameters
+	 */
+	private final List<int[]> values = new ArrayList<>();
+
+	/**
+	 * Add a parameter with the given values
+	 * @param name
+	 * @param parameterValues
+	 * @return
+	 */
+	public ParameterSpace addParameter(final String name, final List<Integer> parameterValues) {
+
+		if(parameterValues.isEmpty()) {
+			throw new IllegalArgumentException("No values given for parameter " + name);
+		}
+
+		names.add(name);
+		values.add(parameterValues.stream().mapToInt(e -> e).toArray());
+		return this;
+	}
+
+	/**
+	 * Add a parameter with the values from, from + step, ... up to to (inclusive)
+	 * @param name
+	 * @param from
+	 * @param to
+	 * @param step
+	 * @return
+	 */
+	public ParameterSpace addRange(final String name, final int from, final int to, final int step) {
+
+		if(step <= 0 || from > to) {
+			throw new IllegalArgumentException("Invalid range for parameter " + name + ": from " 
+					+ from + " to " + to + " step " + step);
+		}
+
+		final int[] parameterValues = new int[(int) ((((long) to - from) / step) + 1)];
+
+		for(int i = 0; i < parameterValues.length; i++) {
+			parameterValues[i] = from + (i * step);
+		}
+
+		names.add(name);
+		values.add(parameterValues);
+		return this;
+	}
+
+	/**
+	 * Get the amount of parameters
+	 * @return
+	 */
+	public int getDimensions() {
+		return names.size();
+	}
+
+	/**
+	 * Get the name of the parameter
+	 * @param dimension
+	 * @return
+	 */
+	public String getName(final int dimension) {
+		return names.get(dimension);
+	}
+
+	/**
+	 * Get the amount of values for the parameter
+	 * @param dimension
+	 * @return
+	 */
+	public int getValueCount(final int dimension) {
+		return values.get(dimension).length;
+	}
+
+	/**
+	 * Get the value of the parameter
+	 * @param dimension
+	 * @param valueIndex
+	 * @return
+	 */
+	public int getValue(final int dimension, final int valueIndex) {
+		return values.get(dimension)[valueIndex];
+	}
+
+	/**
+	 * Get the total amount of combinations
+	 * @return
+	 */
+	public long getCombinations() {
+
+		if(values.isEmpty()) {
+			return 0;
+		}
+
+		long combinations = 1;
+
+		for(final int[] parameterValues : values) {
+			combinations = Math.multiplyExact(combinations, parameterValues.length);
+		}
+
+		return combinations;
+	}
+
+	/**
+	 * Get the parameter values of the n-th combination
+	 * @param index
+	 * @return
+	 */
+	public int[] getCombination(final long index) {
+
+		if(index < 0 || index >= getCombinations()) {
+			throw new IllegalArgumentException("Invalid combination index: " + index);
+		}
+
+		final int[] result = new int[values.size()];
+		long remaining = index;
+
+		for(int dimension = values.size() - 1; dimension >= 0; dimension--) {
+			final int[] parameterValues = values.get(dimension);
+			result[dimension] = parameterValues[(int) (remaining % parameterValues.length)];
+			remaining = remaining / parameterValues.length;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get the index of the combination with the given value indices
+	 * @param valueIndices
+	 * @return
+	 */
+	public long getCombinationIndex(final int[] valueIndices) {
+
+		if(valueIndices.length != values.size()) {
+			throw new IllegalArgumentException("Expected " + values.size() 
+				+ " value indices, got " + valueIndices.length);
+		}
+
+		long index = 0;
+
+		for(int dimension = 0; dimension < values.size(); dimension++) {
+			final int valueCount = values.get(dimension).length;
+
+			if(valueIndices[dimension] < 0 || valueIndices[dimension] >= valueCount) {
+				throw new IllegalArgumentException("Invalid value index " + valueIndices[dimension] 
+						+ " for parameter " + names.get(dimension));
+			}
+
+			index = (index * valueCount) + valueIndices[dimension];
+		}
+
+		return index;
+	}
+
+	@Override
+	public String toString() {
+		return "ParameterSpace [names=" + names + ", combinations=" + getCombinations() + "]";
+	}
+
+}
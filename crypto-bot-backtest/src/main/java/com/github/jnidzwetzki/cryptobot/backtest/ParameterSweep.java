@@ -0,0 +1,181 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.cryptobot.strategy.TradeStrategyFactory;
+import com.github.jnidzwetzki.cryptobot.strategy.indicator.IndicatorRegistry;
+
+/**
+ * Evaluate all combinations of a parameter space on a fork join pool.
+ * <p>
+ * The time series is shared between all workers and has to stay unmodified
+ * during the sweep. Each evaluation builds its own strategy factory and
+ * therefore its own (not thread safe) indicator caches.
+ *
+ */
+public class ParameterSweep {
+
+	/**
+	 * The time series
+	 */
+	private final TimeSeries timeSeries;
+
+	/**
+	 * The parameter space
+	 */
+	private final ParameterSpace parameterSpace;
+
+	/**
+	 * The strategy factory builder
+	 */
+	private final StrategyFactoryBuilder strategyFactoryBuilder;
+
+	/**
+	 * The initial portfolio value
+	 */
+	private final double portfolioValue;
+
+	/**
+	 * The pool that executes the evaluations
+	 */
+	private final ForkJoinPool forkJoinPool;
+
+	/**
+	 * The optional result cache
+	 */
+	private BacktestResultCache resultCache;
+
+	/**
+	 * The optional indicators shared between the combinations
+	 */
+	private IndicatorRegistry indicatorRegistry;
+
+	public ParameterSweep(final TimeSeries timeSeries, final ParameterSpace parameterSpace,
+			final StrategyFactoryBuilder strategyFactoryBuilder, final double portfolioValue,
+			final ForkJoinPool forkJoinPool) {
+
+		this.timeSeries = timeSeries;
+		this.parameterSpace = parameterSpace;
+		this.strategyFactoryBuilder = strategyFactoryBuilder;
+		this.portfolioValue = portfolioValue;
+		this.forkJoinPool = forkJoinPool;
+	}
+
+	/**
+	 * Run the sweep. The consumer is called concurrently from the
+	 * worker threads as soon as a combination is evaluated.
+	 *
+	 * @param resultConsumer
+	 */
+	public void run(final Consumer<BacktestResult> resultConsumer) {
+		final long combinations = parameterSpace.getCombinations();
+
+		if(combinations == 0) {
+			return;
+		}
+
+		forkJoinPool.invoke(new SweepTask(0, combinations, resultConsumer));
+	}
+
+	/**
+	 * Evaluate one combination of the parameter space
+	 * @param combination
+	 * @return
+	 */
+	public BacktestResult evaluate(final long combination) {
+		final int[] parameters = parameterSpace.getCombination(combination);
+		final TradeStrategyFactory strategyFactory = strategyFactoryBuilder.build(parameters, timeSeries);
+
+		if(indicatorRegistry != null) {
+			strategyFactory.setIndicatorRegistry(indicatorRegistry);
+		}
+
+		if(resultCache != null) {
+			return resultCache.execute(strategyFactory, portfolioValue);
+		}
+
+		final TradeExecutor tradeExecutor = new TradeExecutor(portfolioValue, strategyFactory);
+		tradeExecutor.executeTrades();
+
+		return BacktestResult.fromExecutor(strategyFactory.getName(), tradeExecutor);
+	}
+
+	/**
+	 * Serve already executed combinations from the cache
+	 * @param resultCache
+	 */
+	public void setResultCache(final BacktestResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	/**
+	 * Share the indicators between the combinations, so each distinct 
+	 * indicator is calculated only once per sweep
+	 * @param indicatorRegistry
+	 */
+	public void setIndicatorRegistry(final IndicatorRegistry indicatorRegistry) {
+		this.indicatorRegistry = indicatorRegistry;
+	}
+
+	private class SweepTask extends RecursiveAction {
+
+		private static final long serialVersionUID = -1771253493367453727L;
+
+		/**
+		 * The first combination (inclusive)
+		 */
+		private final long from;
+
+		/**
+		 * The last combination (exclusive)
+		 */
+		private final long to;
+
+		/**
+		 * The result consumer
+		 */
+		private final Consumer<BacktestResult> resultConsumer;
+
+		public SweepTask(final long from, final long to, final Consumer<BacktestResult> resultConsumer) {
+			this.from = from;
+			this.to = to;
+			this.resultConsumer = resultConsumer;
+		}
+
+		@Override
+		protected void compute() {
+
+			// One evaluation is a full backtest, so split down to single combinations
+			if(to - from == 1) {
+				resultConsumer.accept(evaluate(from));
+				return;
+			}
+
+			final long middle = from + ((to - from) / 2);
+
+			invokeAll(new SweepTask(from, middle, resultConsumer),
+					new SweepTask(middle, to, resultConsumer));
+		}
+	}
+}
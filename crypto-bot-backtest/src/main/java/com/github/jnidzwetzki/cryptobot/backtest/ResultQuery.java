@@ -0,0 +1,111 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Rank and filter the results of a result file (see ResultSink)
+ *
+ */
+public class ResultQuery {
+
+	/**
+	 * Read all results of the file
+	 * @param file
+	 * @param resultConsumer
+	 * @return the amount of read results
+	 * @throws IOException
+	 */
+	public static long read(final File file, final Consumer<BacktestResult> resultConsumer) throws IOException {
+		try (final DataInputStream inputStream = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+
+			if(inputStream.readInt() != ResultSink.MAGIC || inputStream.readInt() != ResultSink.VERSION) {
+				throw new IOException("Invalid result file " + file);
+			}
+
+			long results = 0;
+
+			while(true) {
+				final BacktestResult result;
+
+				try {
+					result = BacktestResult.readFrom(inputStream);
+				} catch (EOFException e) {
+					// End of file or a partly written last result
+					return results;
+				}
+
+				resultConsumer.accept(result);
+				results++;
+			}
+		}
+	}
+
+	/**
+	 * Get the best results of the file that match the filter
+	 * @param file
+	 * @param filter
+	 * @param fitnessFunction
+	 * @param limit
+	 * @return the best result first
+	 * @throws IOException
+	 */
+	public static List<BacktestResult> query(final File file, final Predicate<BacktestResult> filter,
+			final FitnessFunction fitnessFunction, final int limit) throws IOException {
+
+		final TopResults topResults = new TopResults(fitnessFunction, limit);
+
+		read(file, r -> {
+			if(filter.test(r)) {
+				topResults.offer(r);
+			}
+		});
+
+		return topResults.getResults();
+	}
+
+	public static void main(final String[] args) throws IOException {
+		if(args.length < 3 || args.length > 4) {
+			System.err.println("Usage: <Result file> <Fitness function> <Limit> [<Min trades>]");
+			System.exit(-1);
+		}
+
+		final FitnessFunction fitnessFunction = FitnessFunction.forName(args[1]);
+		final int limit = Integer.parseInt(args[2]);
+		final int minTrades = args.length == 4 ? Integer.parseInt(args[3]) : 0;
+
+		final List<BacktestResult> results = query(new File(args[0]), 
+				r -> r.getTotalTrades() >= minTrades, fitnessFunction, limit);
+
+		System.out.println(BacktestResult.getTabularHeader());
+
+		for(final BacktestResult result : results) {
+			System.out.println(result.toTabularString());
+		}
+	}
+}
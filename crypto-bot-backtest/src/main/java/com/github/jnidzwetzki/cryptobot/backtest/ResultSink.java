@@ -0,0 +1,250 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A consumer for the results of a sweep.
+ * <p>
+ * The best results of each metric are kept in memory (see TopResults), 
+ * all results are appended to a binary result file. The file is written 
+ * by a background thread, the workers only put the result into a queue. 
+ * The file can be ranked and filtered afterwards with the ResultQuery.
+ * <p>
+ * File format: MAGIC, VERSION, followed by the results in the format of
+ * BacktestResult.writeTo.
+ *
+ */
+public class ResultSink implements Consumer<BacktestResult>, Closeable {
+
+	/**
+	 * The magic number of the result file
+	 */
+	public final static int MAGIC = 0x43425253;
+
+	/**
+	 * The version of the file format, has to be changed together 
+	 * with BacktestResult.writeTo
+	 */
+	public final static int VERSION = 1;
+
+	/**
+	 * The maximal amount of results waiting for the writer
+	 */
+	private final static int QUEUE_CAPACITY = 1 << 16;
+
+	/**
+	 * The best results of the metrics
+	 */
+	private final Map<String, TopResults> topResults;
+
+	/**
+	 * The results waiting for the writer
+	 */
+	private final BlockingQueue<BacktestResult> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+
+	/**
+	 * The output stream of the result file
+	 */
+	private final DataOutputStream outputStream;
+
+	/**
+	 * The writer thread
+	 */
+	private final Thread writerThread;
+
+	/**
+	 * Is the sink closed
+	 */
+	private volatile boolean closed = false;
+
+	/**
+	 * The first exception of the writer
+	 */
+	private volatile IOException writeException;
+
+	/**
+	 * The amount of written results
+	 */
+	private volatile long writtenResults = 0;
+
+	/**
+	 * @param file - the result file, an existing file is replaced
+	 * @param metrics - the metrics (name -> fitness function)
+	 * @param size - the amount of kept results per metric
+	 * @throws IOException
+	 */
+	public ResultSink(final File file, final Map<String, FitnessFunction> metrics, final int size) 
+			throws IOException {
+
+		final Map<String, TopResults> topResults = new LinkedHashMap<>();
+
+		for(final Map.Entry<String, FitnessFunction> metric : metrics.entrySet()) {
+			topResults.put(metric.getKey(), new TopResults(metric.getValue(), size));
+		}
+
+		this.topResults = Collections.unmodifiableMap(topResults);
+
+		this.outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		outputStream.writeInt(MAGIC);
+		outputStream.writeInt(VERSION);
+
+		this.writerThread = new Thread(() -> writeResults(), "Result writer " + file.getName());
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	/**
+	 * Add a result, can be called concurrently
+	 */
+	@Override
+	public void accept(final BacktestResult result) {
+
+		if(closed) {
+			throw new IllegalStateException("The sink is closed");
+		}
+
+		for(final TopResults results : topResults.values()) {
+			results.offer(result);
+		}
+
+		try {
+			// Blocks only when the writer is far behind
+			queue.put(result);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while adding result", e);
+		}
+	}
+
+	/**
+	 * Write the queued results until the sink is closed
+	 */
+	private void writeResults() {
+		final List<BacktestResult> results = new ArrayList<>();
+
+		try {
+			while(! closed || ! queue.isEmpty()) {
+				final BacktestResult result = queue.poll(100, TimeUnit.MILLISECONDS);
+
+				if(result == null) {
+					continue;
+				}
+
+				results.add(result);
+				queue.drainTo(results);
+
+				for(final BacktestResult resultToWrite : results) {
+					writeResult(resultToWrite);
+				}
+
+				results.clear();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Write the result, the results are dropped after the first error
+	 * @param result
+	 */
+	private void writeResult(final BacktestResult result) {
+		if(writeException != null) {
+			return;
+		}
+
+		try {
+			result.writeTo(outputStream);
+			writtenResults++;
+		} catch (IOException e) {
+			writeException = e;
+		}
+	}
+
+	/**
+	 * Get the best results of the metric, the best result first
+	 * @param metric
+	 * @return
+	 */
+	public List<BacktestResult> getTopResults(final String metric) {
+		final TopResults results = topResults.get(metric);
+
+		if(results == null) {
+			throw new IllegalArgumentException("Unknown metric: " + metric);
+		}
+
+		return results.getResults();
+	}
+
+	/**
+	 * Get the names of the metrics
+	 * @return
+	 */
+	public List<String> getMetrics() {
+		return new ArrayList<>(topResults.keySet());
+	}
+
+	/**
+	 * Get the amount of written results
+	 * @return
+	 */
+	public long getWrittenResults() {
+		return writtenResults;
+	}
+
+	/**
+	 * Write the pending results and close the file
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) {
+			return;
+		}
+
+		closed = true;
+
+		try {
+			writerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing the results", e);
+		} finally {
+			outputStream.close();
+		}
+
+		if(writeException != null) {
+			throw writeException;
+		}
+	}
+}
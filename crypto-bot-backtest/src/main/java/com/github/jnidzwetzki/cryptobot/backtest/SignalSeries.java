@@ -0,0 +1,291 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+import org.ta4j.core.Strategy;
+
+/**
+ * The entry and exit signals of a strategy for a range of bars.
+ * <p>
+ * The rules are evaluated once and stored in two bitsets, so the signals 
+ * can be replayed by the trade executor with different position sizes or 
+ * stop losses without walking the rule tree again. The signals do not 
+ * depend on a trading record, so rules that need the open trade (e.g. the 
+ * ta4j stop loss rules) are never satisfied; use the hard stop loss of the 
+ * trade executor instead.
+ *
+ */
+public class SignalSeries {
+
+	/**
+	 * The first bar (inclusive)
+	 */
+	private final int beginIndex;
+
+	/**
+	 * The last bar (inclusive)
+	 */
+	private final int endIndex;
+
+	/**
+	 * The entry signals, bit 0 is the begin index
+	 */
+	private final BitSet entries;
+
+	/**
+	 * The exit signals, bit 0 is the begin index
+	 */
+	private final BitSet exits;
+
+	public SignalSeries(final int beginIndex, final int endIndex, final BitSet entries, final BitSet exits) {
+		this.beginIndex = beginIndex;
+		this.endIndex = endIndex;
+		this.entries = entries;
+		this.exits = exits;
+	}
+
+	/**
+	 * Evaluate the rules of the strategy for the bars between beginIndex and endIndex
+	 * @param strategy
+	 * @param beginIndex
+	 * @param endIndex
+	 * @return
+	 */
+	public static SignalSeries compute(final Strategy strategy, final int beginIndex, final int endIndex) {
+		final BitSet entries = new BitSet(endIndex - beginIndex + 1);
+		final BitSet exits = new BitSet(endIndex - beginIndex + 1);
+
+		for(int i = beginIndex; i <= endIndex; i++) {
+			if(strategy.shouldEnter(i)) {
+				entries.set(i - beginIndex);
+			}
+
+			if(strategy.shouldExit(i)) {
+				exits.set(i - beginIndex);
+			}
+		}
+
+		return new SignalSeries(beginIndex, endIndex, entries, exits);
+	}
+
+	/**
+	 * Evaluate the rules in parallel chunks. The ta4j indicators are not 
+	 * thread safe, so every chunk evaluates its own strategy. Each call of 
+	 * the supplier has to return a strategy with a new indicator graph 
+	 * (e.g. from a new strategy factory).
+	 * <p>
+	 * Every chunk calculates the indicator values it needs from scratch. 
+	 * This pays off for indicators with a bounded look back (e.g. SMA, 
+	 * donchian channel); recursive indicators like the EMA calculate all 
+	 * values before the chunk again.
+	 * 
+	 * @param strategySupplier
+	 * @param beginIndex
+	 * @param endIndex
+	 * @param chunkSize
+	 * @param forkJoinPool
+	 * @return
+	 */
+	public static SignalSeries compute(final Supplier<Strategy> strategySupplier, final int beginIndex, 
+			final int endIndex, final int chunkSize, final ForkJoinPool forkJoinPool) {
+		
+		if(chunkSize <= 0) {
+			throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+		}
+		
+		return forkJoinPool.invoke(new ChunkTask(strategySupplier, beginIndex, endIndex, chunkSize));
+	}
+
+	/**
+	 * Is an entry signal present
+	 * @param index
+	 * @return
+	 */
+	public boolean isEntry(final int index) {
+		checkIndex(index);
+		return entries.get(index - beginIndex);
+	}
+
+	/**
+	 * Is an exit signal present
+	 * @param index
+	 * @return
+	 */
+	public boolean isExit(final int index) {
+		checkIndex(index);
+		return exits.get(index - beginIndex);
+	}
+
+	/**
+	 * Get the next entry signal at or after the index
+	 * @param index
+	 * @return the index of the signal or -1
+	 */
+	public int nextEntry(final int index) {
+		return nextSignal(entries, index);
+	}
+
+	/**
+	 * Get the next exit signal at or after the index
+	 * @param index
+	 * @return the index of the signal or -1
+	 */
+	public int nextExit(final int index) {
+		return nextSignal(exits, index);
+	}
+
+	/**
+	 * Get the next set bit as bar index
+	 * @param signals
+	 * @param index
+	 * @return
+	 */
+	private int nextSignal(final BitSet signals, final int index) {
+		final int bit = signals.nextSetBit(Math.max(0, index - beginIndex));
+
+		if(bit < 0) {
+			return -1;
+		}
+
+		return beginIndex + bit;
+	}
+
+	/**
+	 * Check that the index is covered by the signals
+	 * @param index
+	 */
+	private void checkIndex(final int index) {
+		if(index < beginIndex || index > endIndex) {
+			throw new IllegalArgumentException("Index " + index + " is not in range [" 
+					+ beginIndex + ", " + endIndex + "]");
+		}
+	}
+
+	public int getBeginIndex() {
+		return beginIndex;
+	}
+
+	public int getEndIndex() {
+		return endIndex;
+	}
+
+	/**
+	 * Get the amount of entry signals
+	 * @return
+	 */
+	public int getEntryCount() {
+		return entries.cardinality();
+	}
+
+	/**
+	 * Get the amount of exit signals
+	 * @return
+	 */
+	public int getExitCount() {
+		return exits.cardinality();
+	}
+
+	@Override
+	public String toString() {
+		return "SignalSeries [beginIndex=" + beginIndex + ", endIndex=" + endIndex + ", entries="
+				+ getEntryCount() + ", exits=" + getExitCount() + "]";
+	}
+
+	private static class ChunkTask extends RecursiveTask<SignalSeries> {
+
+		private static final long serialVersionUID = -6315950457390431467L;
+
+		/**
+		 * The strategy supplier
+		 */
+		private final Supplier<Strategy> strategySupplier;
+
+		/**
+		 * The first bar (inclusive)
+		 */
+		private final int beginIndex;
+
+		/**
+		 * The last bar (inclusive)
+		 */
+		private final int endIndex;
+
+		/**
+		 * The size of a chunk
+		 */
+		private final int chunkSize;
+
+		public ChunkTask(final Supplier<Strategy> strategySupplier, final int beginIndex, 
+				final int endIndex, final int chunkSize) {
+			
+			this.strategySupplier = strategySupplier;
+			this.beginIndex = beginIndex;
+			this.endIndex = endIndex;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		protected SignalSeries compute() {
+			
+			if(endIndex - beginIndex + 1 <= chunkSize) {
+				return SignalSeries.compute(strategySupplier.get(), beginIndex, endIndex);
+			}
+			
+			// Split on a chunk boundary
+			final int chunks = ((endIndex - beginIndex) / chunkSize) + 1;
+			final int middle = beginIndex + ((chunks / 2) * chunkSize);
+			
+			final ChunkTask left = new ChunkTask(strategySupplier, beginIndex, middle - 1, chunkSize);
+			final ChunkTask right = new ChunkTask(strategySupplier, middle, endIndex, chunkSize);
+			
+			right.fork();
+			final SignalSeries leftSignals = left.compute();
+			final SignalSeries rightSignals = right.join();
+			
+			return merge(leftSignals, rightSignals);
+		}
+		
+		/**
+		 * Merge the signals of two adjacent ranges
+		 * @param left
+		 * @param right
+		 * @return
+		 */
+		private SignalSeries merge(final SignalSeries left, final SignalSeries right) {
+			final int offset = right.beginIndex - left.beginIndex;
+			
+			final BitSet entries = left.entries;
+			final BitSet exits = left.exits;
+			
+			for(int bit = right.entries.nextSetBit(0); bit >= 0; bit = right.entries.nextSetBit(bit + 1)) {
+				entries.set(offset + bit);
+			}
+			
+			for(int bit = right.exits.nextSetBit(0); bit >= 0; bit = right.exits.nextSetBit(bit + 1)) {
+				exits.set(offset + bit);
+			}
+			
+			return new SignalSeries(left.beginIndex, right.endIndex, entries, exits);
+		}
+	}
+}
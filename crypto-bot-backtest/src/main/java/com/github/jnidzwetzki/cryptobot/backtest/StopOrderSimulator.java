@@ -0,0 +1,503 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.util.Arrays;
+
+/**
+ * Fill resting stop orders on the first tick that crosses the stop price.
+ * <p>
+ * Buy stops (positive amount) are executed when the price rises to the stop
+ * price, sell stops (negative amount) when the price falls to the stop price.
+ * The pending orders are kept in two binary heaps on primitive arrays (the
+ * lowest buy stop and the highest sell stop on top), so a tick without a
+ * fill costs two comparisons, regardless of the amount of orders. Orders
+ * with the same stop price are filled in the order they were placed.
+ * <p>
+ * Canceled orders are only marked and skipped when they reach the top of
+ * the heap; the heaps are compacted when most of their entries are canceled.
+ * <p>
+ * The fill price is the price of the crossing tick (which may be beyond the
+ * stop price after a gap), worsened by the slippage.
+ *
+ */
+public class StopOrderSimulator implements TickConsumer {
+	
+	/**
+	 * The order is active
+	 */
+	private final static byte STATE_ACTIVE = 0;
+	
+	/**
+	 * The order is canceled
+	 */
+	private final static byte STATE_CANCELED = 1;
+	
+	/**
+	 * The order is filled
+	 */
+	private final static byte STATE_FILLED = 2;
+	
+	/**
+	 * The amount of canceled heap entries that are tolerated without compaction
+	 */
+	private final static int COMPACTION_THRESHOLD = 1024;
+	
+	/**
+	 * The slippage (0.001 = 0.1%)
+	 */
+	private final double slippage;
+	
+	/**
+	 * The fill consumer
+	 */
+	private final FillConsumer fillConsumer;
+	
+	/**
+	 * The pending buy stops (lowest stop price on top)
+	 */
+	private final OrderHeap buyOrders = new OrderHeap(false);
+	
+	/**
+	 * The pending sell stops (highest stop price on top)
+	 */
+	private final OrderHeap sellOrders = new OrderHeap(true);
+	
+	/**
+	 * The amounts of the orders
+	 */
+	private double[] amounts = new double[16];
+	
+	/**
+	 * The stop prices of the orders
+	 */
+	private double[] stopPrices = new double[16];
+	
+	/**
+	 * The fill prices of the orders
+	 */
+	private double[] fillPrices = new double[16];
+	
+	/**
+	 * The fill timestamps of the orders
+	 */
+	private long[] fillTimestamps = new long[16];
+	
+	/**
+	 * The states of the orders
+	 */
+	private byte[] states = new byte[16];
+	
+	/**
+	 * The amount of placed orders
+	 */
+	private int orderCount;
+	
+	/**
+	 * The amount of active buy orders
+	 */
+	private int activeBuyOrders;
+	
+	/**
+	 * The amount of active sell orders
+	 */
+	private int activeSellOrders;
+	
+	/**
+	 * The amount of filled orders
+	 */
+	private int filledOrders;
+	
+	/**
+	 * The amount of processed ticks
+	 */
+	private long ticks;
+
+	/**
+	 * @param slippage - the slippage of the fill price (0.001 = 0.1%)
+	 * @param fillConsumer
+	 */
+	public StopOrderSimulator(final double slippage, final FillConsumer fillConsumer) {
+		
+		if(slippage < 0) {
+			throw new IllegalArgumentException("Invalid slippage: " + slippage);
+		}
+		
+		this.slippage = slippage;
+		this.fillConsumer = fillConsumer;
+	}
+	
+	/**
+	 * Place a stop order
+	 * @param amount - positive for a buy stop, negative for a sell stop
+	 * @param stopPrice
+	 * @return the order id
+	 */
+	public int placeOrder(final double amount, final double stopPrice) {
+		
+		if(amount == 0 || Double.isNaN(amount)) {
+			throw new IllegalArgumentException("Invalid amount: " + amount);
+		}
+		
+		if(! (stopPrice > 0)) {
+			throw new IllegalArgumentException("Invalid stop price: " + stopPrice);
+		}
+		
+		if(orderCount == states.length) {
+			final int newLength = orderCount * 2;
+			amounts = Arrays.copyOf(amounts, newLength);
+			stopPrices = Arrays.copyOf(stopPrices, newLength);
+			fillPrices = Arrays.copyOf(fillPrices, newLength);
+			fillTimestamps = Arrays.copyOf(fillTimestamps, newLength);
+			states = Arrays.copyOf(states, newLength);
+		}
+		
+		final int orderId = orderCount++;
+		amounts[orderId] = amount;
+		stopPrices[orderId] = stopPrice;
+		states[orderId] = STATE_ACTIVE;
+		
+		if(amount > 0) {
+			buyOrders.push(stopPrice, orderId);
+			activeBuyOrders++;
+		} else {
+			sellOrders.push(stopPrice, orderId);
+			activeSellOrders++;
+		}
+		
+		return orderId;
+	}
+	
+	/**
+	 * Cancel the order
+	 * @param orderId
+	 * @return true if the order was active
+	 */
+	public boolean cancelOrder(final int orderId) {
+		checkOrderId(orderId);
+		
+		if(states[orderId] != STATE_ACTIVE) {
+			return false;
+		}
+		
+		states[orderId] = STATE_CANCELED;
+		
+		if(amounts[orderId] > 0) {
+			activeBuyOrders--;
+			
+			if(buyOrders.size() > (activeBuyOrders * 2) + COMPACTION_THRESHOLD) {
+				buyOrders.compact();
+			}
+		} else {
+			activeSellOrders--;
+			
+			if(sellOrders.size() > (activeSellOrders * 2) + COMPACTION_THRESHOLD) {
+				sellOrders.compact();
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Replay the ticks of the archive
+	 * @param tickArchive
+	 * @param fromTimestamp - first timestamp in milliseconds (inclusive)
+	 * @param toTimestamp - last timestamp in milliseconds (exclusive)
+	 */
+	public void replay(final TickArchive tickArchive, final long fromTimestamp, final long toTimestamp) {
+		tickArchive.forEach(fromTimestamp, toTimestamp, this);
+	}
+	
+	@Override
+	public void accept(final long timestamp, final double price, final double volume) {
+		ticks++;
+		
+		while(buyOrders.size() > 0 && buyOrders.peekPrice() <= price) {
+			final int orderId = buyOrders.pop();
+			
+			if(states[orderId] == STATE_ACTIVE) {
+				activeBuyOrders--;
+				fillOrder(orderId, timestamp, price * (1 + slippage));
+			}
+		}
+		
+		while(sellOrders.size() > 0 && sellOrders.peekPrice() >= price) {
+			final int orderId = sellOrders.pop();
+			
+			if(states[orderId] == STATE_ACTIVE) {
+				activeSellOrders--;
+				fillOrder(orderId, timestamp, price * (1 - slippage));
+			}
+		}
+	}
+
+	/**
+	 * Fill the order
+	 * @param orderId
+	 * @param timestamp
+	 * @param price
+	 */
+	private void fillOrder(final int orderId, final long timestamp, final double price) {
+		states[orderId] = STATE_FILLED;
+		fillPrices[orderId] = price;
+		fillTimestamps[orderId] = timestamp;
+		filledOrders++;
+		
+		// The consumer may place new orders
+		fillConsumer.accept(orderId, timestamp, price, amounts[orderId]);
+	}
+	
+	/**
+	 * Check the order id
+	 * @param orderId
+	 */
+	private void checkOrderId(final int orderId) {
+		if(orderId < 0 || orderId >= orderCount) {
+			throw new IllegalArgumentException("Unknown order: " + orderId);
+		}
+	}
+	
+	/**
+	 * Is the order active
+	 * @param orderId
+	 * @return
+	 */
+	public boolean isActive(final int orderId) {
+		checkOrderId(orderId);
+		return states[orderId] == STATE_ACTIVE;
+	}
+	
+	/**
+	 * Is the order filled
+	 * @param orderId
+	 * @return
+	 */
+	public boolean isFilled(final int orderId) {
+		checkOrderId(orderId);
+		return states[orderId] == STATE_FILLED;
+	}
+	
+	/**
+	 * Get the fill price of the order (NaN if not filled)
+	 * @param orderId
+	 * @return
+	 */
+	public double getFillPrice(final int orderId) {
+		return isFilled(orderId) ? fillPrices[orderId] : Double.NaN;
+	}
+	
+	/**
+	 * Get the fill timestamp of the order (-1 if not filled)
+	 * @param orderId
+	 * @return
+	 */
+	public long getFillTimestamp(final int orderId) {
+		return isFilled(orderId) ? fillTimestamps[orderId] : -1;
+	}
+	
+	/**
+	 * Get the stop price of the order
+	 * @param orderId
+	 * @return
+	 */
+	public double getStopPrice(final int orderId) {
+		checkOrderId(orderId);
+		return stopPrices[orderId];
+	}
+	
+	/**
+	 * Get the amount of active orders
+	 * @return
+	 */
+	public int getActiveOrders() {
+		return activeBuyOrders + activeSellOrders;
+	}
+	
+	public int getFilledOrders() {
+		return filledOrders;
+	}
+	
+	public long getTicks() {
+		return ticks;
+	}
+	
+	public double getSlippage() {
+		return slippage;
+	}
+	
+	@Override
+	public String toString() {
+		return "StopOrderSimulator [activeBuyOrders=" + activeBuyOrders + ", activeSellOrders=" 
+				+ activeSellOrders + ", filledOrders=" + filledOrders + ", ticks=" + ticks + "]";
+	}
+	
+	/**
+	 * A binary heap of orders, ordered by the stop price and the order id
+	 */
+	private class OrderHeap {
+		
+		/**
+		 * Highest price on top
+		 */
+		private final boolean maxHeap;
+		
+		/**
+		 * The stop prices
+		 */
+		private double[] prices = new double[16];
+		
+		/**
+		 * The order ids
+		 */
+		private int[] orders = new int[16];
+		
+		/**
+		 * The amount of entries
+		 */
+		private int size;
+		
+		public OrderHeap(final boolean maxHeap) {
+			this.maxHeap = maxHeap;
+		}
+		
+		/**
+		 * Add an order
+		 * @param price
+		 * @param orderId
+		 */
+		public void push(final double price, final int orderId) {
+			if(size == prices.length) {
+				prices = Arrays.copyOf(prices, size * 2);
+				orders = Arrays.copyOf(orders, size * 2);
+			}
+			
+			prices[size] = price;
+			orders[size] = orderId;
+			siftUp(size);
+			size++;
+		}
+		
+		/**
+		 * Get the price of the top order
+		 * @return
+		 */
+		public double peekPrice() {
+			return prices[0];
+		}
+		
+		/**
+		 * Remove the top order
+		 * @return the order id
+		 */
+		public int pop() {
+			final int orderId = orders[0];
+			size--;
+			
+			if(size > 0) {
+				prices[0] = prices[size];
+				orders[0] = orders[size];
+				siftDown(0);
+			}
+			
+			return orderId;
+		}
+		
+		/**
+		 * Remove the inactive orders and rebuild the heap
+		 */
+		public void compact() {
+			int newSize = 0;
+			
+			for(int i = 0; i < size; i++) {
+				if(states[orders[i]] == STATE_ACTIVE) {
+					prices[newSize] = prices[i];
+					orders[newSize] = orders[i];
+					newSize++;
+				}
+			}
+			
+			size = newSize;
+			
+			for(int i = (size / 2) - 1; i >= 0; i--) {
+				siftDown(i);
+			}
+		}
+		
+		public int size() {
+			return size;
+		}
+		
+		/**
+		 * Is the entry at position a before the entry at position b
+		 * @param a
+		 * @param b
+		 * @return
+		 */
+		private boolean isBefore(final int a, final int b) {
+			if(prices[a] != prices[b]) {
+				return maxHeap ? prices[a] > prices[b] : prices[a] < prices[b];
+			}
+			
+			return orders[a] < orders[b];
+		}
+		
+		private void siftUp(int position) {
+			while(position > 0) {
+				final int parent = (position - 1) / 2;
+				
+				if(! isBefore(position, parent)) {
+					break;
+				}
+				
+				swap(position, parent);
+				position = parent;
+			}
+		}
+		
+		private void siftDown(int position) {
+			while(true) {
+				final int left = (2 * position) + 1;
+				
+				if(left >= size) {
+					break;
+				}
+				
+				final int right = left + 1;
+				final int child = (right < size && isBefore(right, left)) ? right : left;
+				
+				if(! isBefore(child, position)) {
+					break;
+				}
+				
+				swap(position, child);
+				position = child;
+			}
+		}
+		
+		private void swap(final int a, final int b) {
+			final double price = prices[a];
+			prices[a] = prices[b];
+			prices[b] = price;
+			
+			final int orderId = orders[a];
+			orders[a] = orders[b];
+			orders[b] = orderId;
+		}
+	}
+}
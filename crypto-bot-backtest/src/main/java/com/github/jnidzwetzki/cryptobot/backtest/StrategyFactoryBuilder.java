@@ -0,0 +1,36 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.cryptobot.strategy.TradeStrategyFactory;
+
+@FunctionalInterface
+public interface StrategyFactoryBuilder {
+
+	/**
+	 * Build a new strategy factory for the given parameters. Every call
+	 * has to return a new instance with its own indicators.
+	 *
+	 * @param parameters
+	 * @param timeSeries
+	 * @return
+	 */
+	public TradeStrategyFactory build(final int[] parameters, final TimeSeries timeSeries);
+}
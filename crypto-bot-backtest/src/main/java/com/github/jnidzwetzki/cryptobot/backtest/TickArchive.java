@@ -0,0 +1,226 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read only archive of ticks in a fixed width binary format.
+ * <p>
+ * The file starts with a header (magic number, version, amount of ticks)
+ * followed by one record per tick (timestamp in milliseconds, price and
+ * volume). The file is memory mapped, so the ticks are read from the page
+ * cache and not copied to the heap. Files bigger than 2 GB are mapped in
+ * multiple chunks.
+ *
+ */
+public class TickArchive implements Closeable {
+
+	/**
+	 * The magic number of the file format
+	 */
+	public final static int MAGIC = 0x43425441;
+
+	/**
+	 * The version of the file format
+	 */
+	public final static int VERSION = 1;
+
+	/**
+	 * The size of the header (magic, version, tick count)
+	 */
+	public final static int HEADER_SIZE = 16;
+
+	/**
+	 * The size of one record (timestamp, price, volume)
+	 */
+	public final static int RECORD_SIZE = 24;
+
+	/**
+	 * The amount of records per mapped chunk
+	 */
+	private final static int RECORDS_PER_CHUNK = Integer.MAX_VALUE / RECORD_SIZE;
+
+	/**
+	 * The file channel
+	 */
+	private final FileChannel fileChannel;
+
+	/**
+	 * The mapped chunks of the file
+	 */
+	private final MappedByteBuffer[] chunks;
+
+	/**
+	 * The amount of ticks
+	 */
+	private final long tickCount;
+
+	/**
+	 * The amount of records per mapped chunk
+	 */
+	private final int recordsPerChunk;
+
+	public TickArchive(final File file) throws IOException {
+		this(file, RECORDS_PER_CHUNK);
+	}
+
+	protected TickArchive(final File file, final int recordsPerChunk) throws IOException {
+		this.recordsPerChunk = recordsPerChunk;
+		this.fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		try {
+			if(fileChannel.size() < HEADER_SIZE) {
+				throw new IOException("File " + file + " is not a tick archive");
+			}
+
+			final MappedByteBuffer header = fileChannel.map(MapMode.READ_ONLY, 0, HEADER_SIZE);
+
+			if(header.getInt(0) != MAGIC) {
+				throw new IOException("File " + file + " is not a tick archive");
+			}
+
+			if(header.getInt(4) != VERSION) {
+				throw new IOException("Unsupported tick archive version " + header.getInt(4));
+			}
+
+			tickCount = header.getLong(8);
+
+			if(HEADER_SIZE + (tickCount * RECORD_SIZE) > fileChannel.size()) {
+				throw new IOException("Tick archive " + file + " is truncated, expected ticks: " + tickCount);
+			}
+
+			final int chunkCount = (int) ((tickCount + recordsPerChunk - 1) / recordsPerChunk);
+			chunks = new MappedByteBuffer[chunkCount];
+
+			for(int chunk = 0; chunk < chunkCount; chunk++) {
+				final long firstRecord = (long) chunk * recordsPerChunk;
+				final long records = Math.min(recordsPerChunk, tickCount - firstRecord);
+				final long position = HEADER_SIZE + (firstRecord * RECORD_SIZE);
+				chunks[chunk] = fileChannel.map(MapMode.READ_ONLY, position, records * RECORD_SIZE);
+			}
+		} catch (IOException | RuntimeException e) {
+			fileChannel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Get the amount of ticks
+	 * @return
+	 */
+	public long getTickCount() {
+		return tickCount;
+	}
+
+	/**
+	 * Get the timestamp of the tick in milliseconds since epoch
+	 * @param tick
+	 * @return
+	 */
+	public long getTimestamp(final long tick) {
+		return getChunk(tick).getLong(getOffset(tick));
+	}
+
+	/**
+	 * Get the price of the tick
+	 * @param tick
+	 * @return
+	 */
+	public double getPrice(final long tick) {
+		return getChunk(tick).getDouble(getOffset(tick) + 8);
+	}
+
+	/**
+	 * Get the volume of the tick
+	 * @param tick
+	 * @return
+	 */
+	public double getVolume(final long tick) {
+		return getChunk(tick).getDouble(getOffset(tick) + 16);
+	}
+
+	/**
+	 * Pass all ticks in the given time range to the consumer
+	 *
+	 * @param fromTimestamp - first timestamp in milliseconds (inclusive)
+	 * @param toTimestamp - last timestamp in milliseconds (exclusive)
+	 * @param tickConsumer
+	 */
+	public void forEach(final long fromTimestamp, final long toTimestamp, final TickConsumer tickConsumer) {
+		for(final MappedByteBuffer chunk : chunks) {
+			final int limit = chunk.limit();
+
+			for(int offset = 0; offset < limit; offset = offset + RECORD_SIZE) {
+				final long timestamp = chunk.getLong(offset);
+
+				if(timestamp < fromTimestamp || timestamp >= toTimestamp) {
+					continue;
+				}
+
+				tickConsumer.accept(timestamp, chunk.getDouble(offset + 8), chunk.getDouble(offset + 16));
+			}
+		}
+	}
+
+	/**
+	 * Pass all ticks to the consumer
+	 * @param tickConsumer
+	 */
+	public void forEach(final TickConsumer tickConsumer) {
+		forEach(Long.MIN_VALUE, Long.MAX_VALUE, tickConsumer);
+	}
+
+	/**
+	 * Get the chunk of the tick
+	 * @param tick
+	 * @return
+	 */
+	private MappedByteBuffer getChunk(final long tick) {
+		if(tick < 0 || tick >= tickCount) {
+			throw new IndexOutOfBoundsException("Invalid tick " + tick + " (" + tickCount + " ticks)");
+		}
+
+		return chunks[(int) (tick / recordsPerChunk)];
+	}
+
+	/**
+	 * Get the offset of the tick in its chunk
+	 * @param tick
+	 * @return
+	 */
+	private int getOffset(final long tick) {
+		return (int) (tick % recordsPerChunk) * RECORD_SIZE;
+	}
+
+	@Override
+	public void close() throws IOException {
+		fileChannel.close();
+	}
+
+	@Override
+	public String toString() {
+		return "TickArchive [tickCount=" + tickCount + ", chunks=" + chunks.length + "]";
+	}
+}
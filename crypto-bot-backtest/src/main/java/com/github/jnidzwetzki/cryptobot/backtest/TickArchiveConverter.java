@@ -0,0 +1,84 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Convert a CSV tick file (timestamp in seconds, price, volume) into a
+ * binary tick archive
+ *
+ */
+public class TickArchiveConverter {
+
+	/**
+	 * Convert the CSV file into a tick archive. The archive is written into 
+	 * a temporary file first and moved to the archive file when the whole 
+	 * CSV file is converted, so a failed conversion leaves no truncated 
+	 * archive behind.
+	 * @param csvFile
+	 * @param archiveFile
+	 * @return the amount of converted ticks
+	 * @throws IOException
+	 */
+	public static long convert(final File csvFile, final File archiveFile) throws IOException {
+		final File directory = archiveFile.getAbsoluteFile().getParentFile();
+		final File tempFile = File.createTempFile(archiveFile.getName(), ".tmp", directory);
+		
+		boolean converted = false;
+		
+		try {
+			final long ticks;
+			
+			try (
+					final InputStream inputStream = new FileInputStream(csvFile);
+					final TickArchiveWriter writer = new TickArchiveWriter(tempFile);
+					) {
+
+				new CSVTickParser().parse(inputStream, writer);
+				ticks = writer.getTickCount();
+			}
+			
+			Files.move(tempFile.toPath(), archiveFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			converted = true;
+			
+			return ticks;
+		} finally {
+			if(! converted) {
+				Files.deleteIfExists(tempFile.toPath());
+			}
+		}
+	}
+
+	public static void main(final String[] args) throws IOException {
+		if(args.length != 2) {
+			System.err.println("Usage: <CSV file> <Tick archive>");
+			System.exit(-1);
+		}
+
+		final long start = System.currentTimeMillis();
+		final long ticks = convert(new File(args[0]), new File(args[1]));
+
+		System.out.format("Converted %d ticks in %d ms\n", ticks, System.currentTimeMillis() - start);
+	}
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+
+/**
+ * Write ticks into a new tick archive. The amount of ticks is written
+ * into the header when the writer is closed.
+ *
+ */
+public class TickArchiveWriter implements TickConsumer, Closeable {
+
+	/**
+	 * The archive file
+	 */
+	private final File file;
+
+	/**
+	 * The output stream
+	 */
+	private final DataOutputStream outputStream;
+
+	/**
+	 * The amount of written ticks
+	 */
+	private long tickCount = 0;
+
+	public TickArchiveWriter(final File file) throws IOException {
+		this.file = file;
+		this.outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+
+		outputStream.writeInt(TickArchive.MAGIC);
+		outputStream.writeInt(TickArchive.VERSION);
+		outputStream.writeLong(0);
+	}
+
+	/**
+	 * Write a tick
+	 * @param timestamp
+	 * @param price
+	 * @param volume
+	 * @throws IOException
+	 */
+	public void write(final long timestamp, final double price, final double volume) throws IOException {
+		outputStream.writeLong(timestamp);
+		outputStream.writeDouble(price);
+		outputStream.writeDouble(volume);
+		tickCount++;
+	}
+
+	@Override
+	public void accept(final long timestamp, final double price, final double volume) {
+		try {
+			write(timestamp, price, volume);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Get the amount of written ticks
+	 * @return
+	 */
+	public long getTickCount() {
+		return tickCount;
+	}
+
+	@Override
+	public void close() throws IOException {
+		outputStream.close();
+
+		try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			randomAccessFile.seek(8);
+			randomAccessFile.writeLong(tickCount);
+		}
+	}
+}
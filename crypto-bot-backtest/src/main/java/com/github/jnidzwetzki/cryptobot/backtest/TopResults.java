@@ -0,0 +1,136 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+/**
+ * The best results for one fitness function.
+ * <p>
+ * The results are kept in a bounded min heap, so only the given amount 
+ * of results is held in memory, independent of the amount of offered 
+ * results. Results with a NaN fitness are ignored. The methods are 
+ * thread safe.
+ *
+ */
+public class TopResults {
+
+	/**
+	 * The fitness function
+	 */
+	private final FitnessFunction fitnessFunction;
+
+	/**
+	 * The maximal amount of results
+	 */
+	private final int size;
+
+	/**
+	 * The results, the worst result is the head
+	 */
+	private final PriorityQueue<RatedResult> heap;
+
+	public TopResults(final FitnessFunction fitnessFunction, final int size) {
+
+		if(size <= 0) {
+			throw new IllegalArgumentException("Invalid size: " + size);
+		}
+
+		this.fitnessFunction = fitnessFunction;
+		this.size = size;
+		this.heap = new PriorityQueue<>(size, Comparator.comparingDouble(RatedResult::getFitness));
+	}
+
+	/**
+	 * Offer a result
+	 * @param result
+	 * @return true if the result is one of the best results
+	 */
+	public boolean offer(final BacktestResult result) {
+		final double fitness = fitnessFunction.getFitness(result);
+
+		if(Double.isNaN(fitness)) {
+			return false;
+		}
+
+		synchronized (heap) {
+			if(heap.size() < size) {
+				heap.add(new RatedResult(result, fitness));
+				return true;
+			}
+
+			if(fitness <= heap.peek().getFitness()) {
+				return false;
+			}
+
+			heap.poll();
+			heap.add(new RatedResult(result, fitness));
+			return true;
+		}
+	}
+
+	/**
+	 * Get the results, the best result first
+	 * @return
+	 */
+	public List<BacktestResult> getResults() {
+		final List<RatedResult> results;
+
+		synchronized (heap) {
+			results = new ArrayList<>(heap);
+		}
+
+		return results.stream()
+				.sorted(Comparator.comparingDouble(RatedResult::getFitness).reversed())
+				.map(RatedResult::getResult)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * A result and its fitness
+	 */
+	private static class RatedResult {
+
+		/**
+		 * The result
+		 */
+		private final BacktestResult result;
+
+		/**
+		 * The fitness of the result
+		 */
+		private final double fitness;
+
+		public RatedResult(final BacktestResult result, final double fitness) {
+			this.result = result;
+			this.fitness = fitness;
+		}
+
+		public BacktestResult getResult() {
+			return result;
+		}
+
+		public double getFitness() {
+			return fitness;
+		}
+	}
+}
@@ -18,6 +18,7 @@
 package com.github.jnidzwetzki.cryptobot.backtest;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.ta4j.core.Decimal;
@@ -25,6 +26,7 @@ import org.ta4j.core.Strategy;
 import org.ta4j.core.TimeSeries;
 
 import com.github.jnidzwetzki.cryptobot.strategy.TradeStrategyFactory;
+import com.github.jnidzwetzki.cryptobot.util.ColumnarTimeSeries;
 
 public class TradeExecutor {
 	
@@ -45,31 +47,108 @@ public class TradeExecutor {
 	private double openContracts = 0;
 	private int openBarIndex = -1;
 	
+	/**
+	 * The portfolio value before the open trade (including the fees of the trade)
+	 */
+	private double openPortfolioValue = 0;
+	
+	/**
+	 * The P/L of the closed trades (including fees)
+	 */
+	private double[] tradePL = new double[16];
+	
+	/**
+	 * The P/L of the closed trades relative to the portfolio value before the trade
+	 */
+	private double[] tradeReturns = new double[16];
+	
+	/**
+	 * The amount of recorded trades
+	 */
+	private int recordedTrades = 0;
+	
+	/**
+	 * The open price of the open trade
+	 */
+	private double openPrice = 0;
+	
+	/**
+	 * The last bar that is added to the metrics
+	 */
+	private int lastMarkedBar;
+	
+	/**
+	 * The metrics of the equity curve
+	 */
+	private final EquityCurveMetrics metrics;
+	
 	private final TimeSeries timeSeries;
 	private TradeStrategyFactory tradeStrategyFactory;
+	
+	/**
+	 * The first bar of the traded range
+	 */
+	private final int beginIndex;
+	
+	/**
+	 * The last bar of the traded range, open trades are closed on this bar
+	 */
+	private final int endIndex;
 
 	/**
 	 * The trading comission (0.2% for market orders)
 	 */
-	private static final double COMISSION = 0.002;
+	public static final double COMISSION = 0.002;
 	
 	/**
 	 * Hard stop loss at 5% portfolio value
 	 */
-	private final static double STOP_LOSS = -0.05;
+	public final static double STOP_LOSS = -0.05;
 	
 	public TradeExecutor(final double portfolioValue, final TradeStrategyFactory tradeStrategyFactory) {
+		this(portfolioValue, tradeStrategyFactory, tradeStrategyFactory.getTimeSeries().getBeginIndex(), 
+				tradeStrategyFactory.getTimeSeries().getEndIndex());
+	}
+	
+	/**
+	 * Trade only the bars between beginIndex and endIndex (inclusive). The 
+	 * indicators still see the whole time series, so the bars before the 
+	 * range serve as warm up period and the indicator caches of the factory 
+	 * can be shared by multiple ranges.
+	 * 
+	 * @param portfolioValue
+	 * @param tradeStrategyFactory
+	 * @param beginIndex
+	 * @param endIndex
+	 */
+	public TradeExecutor(final double portfolioValue, final TradeStrategyFactory tradeStrategyFactory,
+			final int beginIndex, final int endIndex) {
+		
+		final TimeSeries timeSeries = tradeStrategyFactory.getTimeSeries();
+		
+		if(beginIndex < timeSeries.getBeginIndex() || endIndex > timeSeries.getEndIndex() 
+				|| beginIndex > endIndex) {
+			throw new IllegalArgumentException("Invalid range [" + beginIndex + ", " + endIndex 
+					+ "] for time series [" + timeSeries.getBeginIndex() + ", " 
+					+ timeSeries.getEndIndex() + "]");
+		}
+		
 		this.portfolioValue = portfolioValue;
 		this.initialPortfolioValue = portfolioValue;
-		this.timeSeries = tradeStrategyFactory.getTimeSeries();
+		this.timeSeries = timeSeries;
 		this.tradeStrategyFactory = tradeStrategyFactory;
+		this.beginIndex = beginIndex;
+		this.endIndex = endIndex;
+		this.lastMarkedBar = beginIndex - 1;
+		this.metrics = new EquityCurveMetrics(portfolioValue);
 	}
 
 	public void executeTrades() {
-		for (int i = timeSeries.getBeginIndex(); i < timeSeries.getEndIndex(); i++) {
-			
-			final Strategy strategy = tradeStrategyFactory.getStrategy();
-			
+		
+		// Build the strategy only once, the indicator caches are reused for all bars
+		final Strategy strategy = tradeStrategyFactory.getStrategy();
+		
+		for (int i = beginIndex; i < endIndex; i++) {
 			if(strategy.shouldEnter(i) && openContracts == 0) {
 				openTrade(i);
 			} else if(strategy.shouldExit(i) && openContracts > 0) {
@@ -78,11 +157,63 @@ public class TradeExecutor {
 		}
 		
 		if(openContracts > 0) {
-			closeTrade(timeSeries.getEndIndex());
-		}		
+			closeTrade(endIndex);
+		}
+		
+		markBarsUntil(endIndex);
+	}
+
+	/**
+	 * Replay precomputed signals instead of evaluating the strategy rules. 
+	 * The result is the same as executeTrades() for strategies whose rules 
+	 * do not depend on a trading record.
+	 * 
+	 * @param signalSeries
+	 */
+	public void executeTrades(final SignalSeries signalSeries) {
+		
+		if(signalSeries.getBeginIndex() > beginIndex || signalSeries.getEndIndex() < endIndex) {
+			throw new IllegalArgumentException("The signals " + signalSeries 
+					+ " do not cover the range [" + beginIndex + ", " + endIndex + "]");
+		}
+		
+		int position = beginIndex;
+		
+		while(position < endIndex) {
+			final int entry = signalSeries.nextEntry(position);
+			
+			if(entry < 0 || entry >= endIndex) {
+				break;
+			}
+			
+			openTrade(entry);
+			
+			// No contracts bought, the next entry signal opens the trade
+			if(openContracts == 0) {
+				position = entry + 1;
+				continue;
+			}
+			
+			final int exit = signalSeries.nextExit(entry + 1);
+			
+			if(exit < 0 || exit >= endIndex) {
+				break;
+			}
+			
+			closeTrade(exit);
+			position = exit + 1;
+		}
+		
+		if(openContracts > 0) {
+			closeTrade(endIndex);
+		}
+		
+		markBarsUntil(endIndex);
 	}
 
 	private void closeTrade(final int i) {
+		
+		markBarsUntil(i - 1);
 
 		final Decimal priceOut = timeSeries.getBar(i).getOpenPrice();
 		final Decimal priceIn = timeSeries.getBar(openBarIndex).getOpenPrice();
@@ -112,13 +243,35 @@ public class TradeExecutor {
 			looserInARow = 0;
 		}
 		
+		recordTrade(portfolioValue - openPortfolioValue);
+		metrics.addTrade(portfolioValue - openPortfolioValue);
+		
 		openContracts = 0;
 		openBarIndex = -1;
 	}
+	
+	/**
+	 * Record the P/L of a closed trade
+	 * @param pl
+	 */
+	private void recordTrade(final double pl) {
+		
+		if(recordedTrades == tradePL.length) {
+			tradePL = Arrays.copyOf(tradePL, recordedTrades * 2);
+			tradeReturns = Arrays.copyOf(tradeReturns, recordedTrades * 2);
+		}
+		
+		tradePL[recordedTrades] = pl;
+		tradeReturns[recordedTrades] = pl / openPortfolioValue;
+		recordedTrades++;
+	}
 
 	private void openTrade(final int i) {
+		markBarsUntil(i - 1);
+		
 		openBarIndex = i;
-		final double openPrice = timeSeries.getBar(i).getOpenPrice().doubleValue();
+		openPortfolioValue = portfolioValue;
+		openPrice = timeSeries.getBar(i).getOpenPrice().doubleValue();
 		openContracts = tradeStrategyFactory.getContracts(portfolioValue, i);
 		
 		final double positionSize = openPrice * openContracts;
@@ -131,12 +284,69 @@ public class TradeExecutor {
 		calculateFees(openPrice);
 	}
 
+	/**
+	 * Add the portfolio value on the close of the bars until the given bar 
+	 * to the metrics. The open position is valued with the close price, 
+	 * limited by the hard stop loss.
+	 * 
+	 * @param bar
+	 */
+	private void markBarsUntil(final int bar) {
+		for(int i = lastMarkedBar + 1; i <= bar; i++) {
+			if(openContracts > 0) {
+				final double pl = (getClosePrice(i) - openPrice) * openContracts;
+				metrics.addBar(portfolioValue + Math.max(pl, portfolioValue * STOP_LOSS), true);
+			} else {
+				metrics.addBar(portfolioValue, false);
+			}
+		}
+		
+		lastMarkedBar = Math.max(lastMarkedBar, bar);
+	}
+	
+	/**
+	 * Get the close price of the bar
+	 * @param i
+	 * @return
+	 */
+	private double getClosePrice(final int i) {
+		if(timeSeries instanceof ColumnarTimeSeries) {
+			return ((ColumnarTimeSeries) timeSeries).getClosePrice(i);
+		}
+		
+		return timeSeries.getBar(i).getClosePrice().doubleValue();
+	}
+
 	private void calculateFees(final double price) {
 		final double fees = (openContracts * price) * COMISSION;
 		totalFees = totalFees + fees;
 		portfolioValue = portfolioValue - fees;
 	}
 	
+	/**
+	 * Get the P/L of each closed trade (including fees)
+	 * @return
+	 */
+	public double[] getTradePL() {
+		return Arrays.copyOf(tradePL, recordedTrades);
+	}
+	
+	/**
+	 * Get the P/L of each closed trade relative to the portfolio value before the trade
+	 * @return
+	 */
+	public double[] getTradeReturns() {
+		return Arrays.copyOf(tradeReturns, recordedTrades);
+	}
+	
+	/**
+	 * Get the metrics of the equity curve
+	 * @return
+	 */
+	public EquityCurveMetrics getMetrics() {
+		return metrics;
+	}
+	
 	public double getFees() {
 		return totalFees;
 	}
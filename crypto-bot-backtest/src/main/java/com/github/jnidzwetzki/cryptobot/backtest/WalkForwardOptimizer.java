@@ -0,0 +1,245 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.ToDoubleFunction;
+
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.cryptobot.strategy.TradeStrategyFactory;
+
+/**
+ * Walk forward optimization of a parameter space.
+ * <p>
+ * For each window, the combination with the best in-sample objective is 
+ * selected and reported with its out-of-sample result. 
+ * <p>
+ * Every combination is evaluated by one task of the fork join pool. The task 
+ * builds one strategy factory on the whole time series and executes all 
+ * windows on it, ordered by their bar indices. So the indicator values of 
+ * overlapping windows are calculated only once and the bars before a window 
+ * serve as warm up period. The out-of-sample ranges are evaluated in the 
+ * same pass, the values are already cached when the winner is known.
+ *
+ */
+public class WalkForwardOptimizer {
+
+	/**
+	 * The time series
+	 */
+	private final TimeSeries timeSeries;
+
+	/**
+	 * The parameter space
+	 */
+	private final ParameterSpace parameterSpace;
+
+	/**
+	 * The strategy factory builder
+	 */
+	private final StrategyFactoryBuilder strategyFactoryBuilder;
+
+	/**
+	 * The initial portfolio value of each window
+	 */
+	private final double portfolioValue;
+
+	/**
+	 * The windows
+	 */
+	private final List<WalkForwardWindow> windows;
+
+	/**
+	 * The optimized objective (higher is better)
+	 */
+	private final ToDoubleFunction<BacktestResult> objective;
+
+	/**
+	 * The pool that executes the evaluations
+	 */
+	private final ForkJoinPool forkJoinPool;
+
+	public WalkForwardOptimizer(final TimeSeries timeSeries, final ParameterSpace parameterSpace,
+			final StrategyFactoryBuilder strategyFactoryBuilder, final double portfolioValue,
+			final List<WalkForwardWindow> windows, final ToDoubleFunction<BacktestResult> objective,
+			final ForkJoinPool forkJoinPool) {
+
+		this.timeSeries = timeSeries;
+		this.parameterSpace = parameterSpace;
+		this.strategyFactoryBuilder = strategyFactoryBuilder;
+		this.portfolioValue = portfolioValue;
+		this.objective = objective;
+		this.forkJoinPool = forkJoinPool;
+		this.windows = new ArrayList<>(windows);
+		
+		// Evaluate the windows in ascending bar order, the indicators are filled sequentially
+		this.windows.sort((w1, w2) -> Integer.compare(w1.getInSampleBegin(), w2.getInSampleBegin()));
+	}
+
+	/**
+	 * Run the optimization
+	 * @return the results of the windows, ordered by their bar indices
+	 */
+	public List<WalkForwardResult> run() {
+		final long combinations = parameterSpace.getCombinations();
+		
+		if(combinations > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many combinations: " + combinations);
+		}
+		
+		final List<WalkForwardResult> results = new ArrayList<>();
+
+		if(combinations == 0 || windows.isEmpty()) {
+			return results;
+		}
+		
+		final BacktestResult[][] inSampleResults = new BacktestResult[(int) combinations][];
+		final BacktestResult[][] outOfSampleResults = new BacktestResult[(int) combinations][];
+		
+		forkJoinPool.invoke(new EvaluationTask(0, (int) combinations, inSampleResults, outOfSampleResults));
+		
+		for(int window = 0; window < windows.size(); window++) {
+			int bestCombination = 0;
+			double bestValue = objective.applyAsDouble(inSampleResults[0][window]);
+			
+			for(int combination = 1; combination < combinations; combination++) {
+				final double value = objective.applyAsDouble(inSampleResults[combination][window]);
+				
+				if(value > bestValue) {
+					bestValue = value;
+					bestCombination = combination;
+				}
+			}
+			
+			results.add(new WalkForwardResult(windows.get(window), 
+					parameterSpace.getCombination(bestCombination), 
+					inSampleResults[bestCombination][window], 
+					outOfSampleResults[bestCombination][window]));
+		}
+		
+		return results;
+	}
+	
+	/**
+	 * Get the total out-of-sample P/L of the results
+	 * @param results
+	 * @return
+	 */
+	public static double getOutOfSamplePL(final List<WalkForwardResult> results) {
+		return results.stream()
+				.mapToDouble(r -> r.getOutOfSampleResult().getTotalPL())
+				.sum();
+	}
+
+	/**
+	 * Evaluate one combination on all windows
+	 * @param combination
+	 * @param inSampleResults
+	 * @param outOfSampleResults
+	 */
+	private void evaluate(final int combination, final BacktestResult[][] inSampleResults, 
+			final BacktestResult[][] outOfSampleResults) {
+		
+		final int[] parameters = parameterSpace.getCombination(combination);
+		final TradeStrategyFactory strategyFactory = strategyFactoryBuilder.build(parameters, timeSeries);
+		
+		final BacktestResult[] inSample = new BacktestResult[windows.size()];
+		final BacktestResult[] outOfSample = new BacktestResult[windows.size()];
+		
+		for(int i = 0; i < windows.size(); i++) {
+			final WalkForwardWindow window = windows.get(i);
+			
+			inSample[i] = execute(strategyFactory, window.getInSampleBegin(), window.getInSampleEnd());
+			outOfSample[i] = execute(strategyFactory, window.getOutOfSampleBegin(), window.getOutOfSampleEnd());
+		}
+		
+		inSampleResults[combination] = inSample;
+		outOfSampleResults[combination] = outOfSample;
+	}
+	
+	/**
+	 * Execute the trades of the range
+	 * @param strategyFactory
+	 * @param beginIndex
+	 * @param endIndex
+	 * @return
+	 */
+	private BacktestResult execute(final TradeStrategyFactory strategyFactory, 
+			final int beginIndex, final int endIndex) {
+		
+		final TradeExecutor tradeExecutor = new TradeExecutor(portfolioValue, strategyFactory, 
+				beginIndex, endIndex);
+		
+		tradeExecutor.executeTrades();
+		
+		return BacktestResult.fromExecutor(strategyFactory.getName(), tradeExecutor);
+	}
+
+	private class EvaluationTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 4660409524725069826L;
+
+		/**
+		 * The first combination (inclusive)
+		 */
+		private final int from;
+
+		/**
+		 * The last combination (exclusive)
+		 */
+		private final int to;
+
+		/**
+		 * The in-sample results [combination][window]
+		 */
+		private final BacktestResult[][] inSampleResults;
+
+		/**
+		 * The out-of-sample results [combination][window]
+		 */
+		private final BacktestResult[][] outOfSampleResults;
+
+		public EvaluationTask(final int from, final int to, final BacktestResult[][] inSampleResults,
+				final BacktestResult[][] outOfSampleResults) {
+			
+			this.from = from;
+			this.to = to;
+			this.inSampleResults = inSampleResults;
+			this.outOfSampleResults = outOfSampleResults;
+		}
+
+		@Override
+		protected void compute() {
+
+			// One evaluation covers all windows, so split down to single combinations
+			if(to - from == 1) {
+				evaluate(from, inSampleResults, outOfSampleResults);
+				return;
+			}
+
+			final int middle = from + ((to - from) / 2);
+
+			invokeAll(new EvaluationTask(from, middle, inSampleResults, outOfSampleResults),
+					new EvaluationTask(middle, to, inSampleResults, outOfSampleResults));
+		}
+	}
+}
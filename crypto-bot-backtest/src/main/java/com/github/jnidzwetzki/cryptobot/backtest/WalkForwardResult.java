@@ -0,0 +1,98 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.util.Arrays;
+
+/**
+ * The outcome of one walk forward window: the best in-sample parameters 
+ * and their results on the in-sample and the out-of-sample bars
+ */
+public class WalkForwardResult {
+
+	/**
+	 * The window
+	 */
+	private final WalkForwardWindow window;
+
+	/**
+	 * The best in-sample parameters
+	 */
+	private final int[] parameters;
+
+	/**
+	 * The in-sample result of the parameters
+	 */
+	private final BacktestResult inSampleResult;
+
+	/**
+	 * The out-of-sample result of the parameters
+	 */
+	private final BacktestResult outOfSampleResult;
+
+	public WalkForwardResult(final WalkForwardWindow window, final int[] parameters, 
+			final BacktestResult inSampleResult, final BacktestResult outOfSampleResult) {
+		
+		this.window = window;
+		this.parameters = parameters.clone();
+		this.inSampleResult = inSampleResult;
+		this.outOfSampleResult = outOfSampleResult;
+	}
+
+	public WalkForwardWindow getWindow() {
+		return window;
+	}
+
+	public int[] getParameters() {
+		return parameters.clone();
+	}
+
+	public BacktestResult getInSampleResult() {
+		return inSampleResult;
+	}
+
+	public BacktestResult getOutOfSampleResult() {
+		return outOfSampleResult;
+	}
+	
+	/**
+	 * Get the header of the tabular output
+	 * @return
+	 */
+	public static String getTabularHeader() {
+		return "Out-of-sample begin\tOut-of-sample end\tParameters\tIn-sample P/L\t" 
+				+ BacktestResult.getTabularHeader();
+	}
+
+	/**
+	 * Format the result as one line of the tabular output, the 
+	 * backtest columns contain the out-of-sample result
+	 * @return
+	 */
+	public String toTabularString() {
+		return String.format("%d\t%d\t%s\t%f\t%s", window.getOutOfSampleBegin(), 
+				window.getOutOfSampleEnd(), Arrays.toString(parameters), 
+				inSampleResult.getTotalPL(), outOfSampleResult.toTabularString());
+	}
+
+	@Override
+	public String toString() {
+		return "WalkForwardResult [window=" + window + ", parameters=" + Arrays.toString(parameters)
+				+ ", inSampleResult=" + inSampleResult + ", outOfSampleResult=" + outOfSampleResult + "]";
+	}
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.backtest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One window of a walk forward optimization. The parameters are optimized 
+ * on the in-sample bars and evaluated on the directly following 
+ * out-of-sample bars. All indices are inclusive.
+ */
+public class WalkForwardWindow {
+
+	/**
+	 * The first in-sample bar
+	 */
+	private final int inSampleBegin;
+
+	/**
+	 * The last in-sample bar
+	 */
+	private final int inSampleEnd;
+
+	/**
+	 * The first out-of-sample bar
+	 */
+	private final int outOfSampleBegin;
+
+	/**
+	 * The last out-of-sample bar
+	 */
+	private final int outOfSampleEnd;
+
+	public WalkForwardWindow(final int inSampleBegin, final int inSampleEnd, 
+			final int outOfSampleBegin, final int outOfSampleEnd) {
+		
+		if(inSampleBegin > inSampleEnd || outOfSampleBegin > outOfSampleEnd 
+				|| inSampleEnd >= outOfSampleBegin) {
+			throw new IllegalArgumentException("Invalid window: in-sample [" + inSampleBegin + ", " 
+				+ inSampleEnd + "] out-of-sample [" + outOfSampleBegin + ", " + outOfSampleEnd + "]");
+		}
+		
+		this.inSampleBegin = inSampleBegin;
+		this.inSampleEnd = inSampleEnd;
+		this.outOfSampleBegin = outOfSampleBegin;
+		this.outOfSampleEnd = outOfSampleEnd;
+	}
+	
+	/**
+	 * Split the bars between beginIndex and endIndex into rolling windows. 
+	 * The windows are moved by the out-of-sample size, so the out-of-sample 
+	 * ranges are consecutive and do not overlap. Bars at the end that do 
+	 * not fill a whole out-of-sample range are not used.
+	 * 
+	 * @param beginIndex
+	 * @param endIndex
+	 * @param inSampleBars
+	 * @param outOfSampleBars
+	 * @return
+	 */
+	public static List<WalkForwardWindow> rolling(final int beginIndex, final int endIndex, 
+			final int inSampleBars, final int outOfSampleBars) {
+		
+		if(inSampleBars <= 0 || outOfSampleBars <= 0) {
+			throw new IllegalArgumentException("Invalid window size: in-sample " + inSampleBars 
+					+ " out-of-sample " + outOfSampleBars);
+		}
+		
+		final List<WalkForwardWindow> windows = new ArrayList<>();
+		
+		for(long begin = beginIndex; begin + inSampleBars + outOfSampleBars - 1 <= endIndex; 
+				begin = begin + outOfSampleBars) {
+			
+			final int outOfSampleBegin = (int) begin + inSampleBars;
+			windows.add(new WalkForwardWindow((int) begin, outOfSampleBegin - 1, 
+					outOfSampleBegin, outOfSampleBegin + outOfSampleBars - 1));
+		}
+		
+		return windows;
+	}
+
+	public int getInSampleBegin() {
+		return inSampleBegin;
+	}
+
+	public int getInSampleEnd() {
+		return inSampleEnd;
+	}
+
+	public int getOutOfSampleBegin() {
+		return outOfSampleBegin;
+	}
+
+	public int getOutOfSampleEnd() {
+		return outOfSampleEnd;
+	}
+
+	@Override
+	public String toString() {
+		return "WalkForwardWindow [inSampleBegin=" + inSampleBegin + ", inSampleEnd=" + inSampleEnd
+				+ ", outOfSampleBegin=" + outOfSampleBegin + ", outOfSampleEnd=" + outOfSampleEnd + "]";
+	}
+}
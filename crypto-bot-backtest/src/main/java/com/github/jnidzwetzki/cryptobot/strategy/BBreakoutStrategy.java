@@ -46,7 +46,7 @@ public class BBreakoutStrategy extends TradeStrategyFactory {
 		this.deviationDown = deviationDown;
 	}
 
-	public Strategy getStrategy() {
+	public Strategy buildStrategy() {
 		
 		final ClosePriceIndicator closePrice = new ClosePriceIndicator(timeSeries);
 		final SMAIndicator sma = new SMAIndicator(closePrice, bbPeriod);
@@ -19,11 +19,11 @@ package com.github.jnidzwetzki.cryptobot.strategy;
 
 import org.ta4j.core.BaseStrategy;
 import org.ta4j.core.Decimal;
+import org.ta4j.core.Indicator;
 import org.ta4j.core.Rule;
 import org.ta4j.core.Strategy;
 import org.ta4j.core.TimeSeries;
 import org.ta4j.core.indicators.EMAIndicator;
-import org.ta4j.core.indicators.MACDIndicator;
 import org.ta4j.core.trading.rules.AndRule;
 import org.ta4j.core.trading.rules.IsFallingRule;
 import org.ta4j.core.trading.rules.IsRisingRule;
@@ -49,8 +49,8 @@ public class DonchianChannelStrategy extends TradeStrategyFactory {
 	}
 	
 	@Override
-	public Strategy getStrategy() {		
-	    final MACDIndicator macd = new MACDIndicator(closePriceIndicator, 9, 26);
+	public Strategy buildStrategy() {		
+	    final Indicator<Decimal> macd = getMACD(9, 26);
 	    final EMAIndicator emaMacd = new EMAIndicator(macd, 9);
 				
 		final Rule buyingRule = new AndRule(
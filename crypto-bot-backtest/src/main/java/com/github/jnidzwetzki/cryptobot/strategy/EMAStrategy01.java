@@ -19,10 +19,10 @@ package com.github.jnidzwetzki.cryptobot.strategy;
 
 import org.ta4j.core.BaseStrategy;
 import org.ta4j.core.Decimal;
+import org.ta4j.core.Indicator;
 import org.ta4j.core.Rule;
 import org.ta4j.core.Strategy;
 import org.ta4j.core.TimeSeries;
-import org.ta4j.core.indicators.SMAIndicator;
 import org.ta4j.core.trading.rules.CrossedDownIndicatorRule;
 import org.ta4j.core.trading.rules.CrossedUpIndicatorRule;
 import org.ta4j.core.trading.rules.StopGainRule;
@@ -34,9 +34,9 @@ public class EMAStrategy01 extends TradeStrategyFactory {
 		super(timeSeries);
 	}
 	
-	public Strategy getStrategy() {
-		SMAIndicator shortSma = new SMAIndicator(closePriceIndicator, 5);
-		SMAIndicator longSma = new SMAIndicator(closePriceIndicator, 30);
+	public Strategy buildStrategy() {
+		Indicator<Decimal> shortSma = getSMA(5);
+		Indicator<Decimal> longSma = getSMA(30);
 
 		Rule buyingRule = new CrossedUpIndicatorRule(shortSma, longSma);
 
@@ -18,10 +18,11 @@
 package com.github.jnidzwetzki.cryptobot.strategy;
 
 import org.ta4j.core.BaseStrategy;
+import org.ta4j.core.Decimal;
+import org.ta4j.core.Indicator;
 import org.ta4j.core.Rule;
 import org.ta4j.core.Strategy;
 import org.ta4j.core.TimeSeries;
-import org.ta4j.core.indicators.EMAIndicator;
 import org.ta4j.core.trading.rules.CrossedDownIndicatorRule;
 import org.ta4j.core.trading.rules.CrossedUpIndicatorRule;
 import org.ta4j.core.trading.rules.OverIndicatorRule;
@@ -39,10 +40,10 @@ public class EMAStrategy02 extends TradeStrategyFactory  {
 		this.sma3Value = sma3Value;
 	}
 
-	public Strategy getStrategy() {
-		EMAIndicator sma1 = new EMAIndicator(closePriceIndicator, sma1Value);
-		EMAIndicator sma2 = new EMAIndicator(closePriceIndicator, sma2Value);
-		EMAIndicator sma3 = new EMAIndicator(closePriceIndicator, sma3Value);
+	public Strategy buildStrategy() {
+		Indicator<Decimal> sma1 = getEMA(sma1Value);
+		Indicator<Decimal> sma2 = getEMA(sma2Value);
+		Indicator<Decimal> sma3 = getEMA(sma3Value);
 		
 		Rule buyingRule = new CrossedUpIndicatorRule(sma1, sma2).and(new OverIndicatorRule(sma2, sma3));
 
@@ -56,7 +57,7 @@ public class EMAStrategy02 extends TradeStrategyFactory  {
 
 	@Override
 	public String getName() {
-		return "EMAStrategy02";
+		return "EMAStrategy02-" + sma1Value + "-" + sma2Value + "-" + sma3Value;
 	}
 	
 	@Override
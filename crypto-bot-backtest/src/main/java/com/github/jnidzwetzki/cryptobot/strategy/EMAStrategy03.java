@@ -19,12 +19,10 @@ package com.github.jnidzwetzki.cryptobot.strategy;
 
 import org.ta4j.core.BaseStrategy;
 import org.ta4j.core.Decimal;
+import org.ta4j.core.Indicator;
 import org.ta4j.core.Rule;
 import org.ta4j.core.Strategy;
 import org.ta4j.core.TimeSeries;
-import org.ta4j.core.indicators.EMAIndicator;
-import org.ta4j.core.indicators.RSIIndicator;
-import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
 import org.ta4j.core.trading.rules.CrossedDownIndicatorRule;
 import org.ta4j.core.trading.rules.OverIndicatorRule;
 import org.ta4j.core.trading.rules.StopLossRule;
@@ -42,14 +40,12 @@ public class EMAStrategy03 extends TradeStrategyFactory {
 		this.sma3Value = sma3Value;
 	}
 	
-	public Strategy getStrategy() {
-		ClosePriceIndicator closePrice = new ClosePriceIndicator(timeSeries);
-
-		EMAIndicator sma1 = new EMAIndicator(closePrice, sma1Value);
-		EMAIndicator sma2 = new EMAIndicator(closePrice, sma2Value);
-		EMAIndicator sma3 = new EMAIndicator(closePrice, sma3Value);
+	public Strategy buildStrategy() {
+		Indicator<Decimal> sma1 = getEMA(sma1Value);
+		Indicator<Decimal> sma2 = getEMA(sma2Value);
+		Indicator<Decimal> sma3 = getEMA(sma3Value);
 		
-		RSIIndicator rsi = new RSIIndicator(closePrice, 14);
+		Indicator<Decimal> rsi = getRSI(14);
 		
 		Rule buyingRule = new OverIndicatorRule(sma1, sma2)
 				.and(new OverIndicatorRule(sma2, sma3))
@@ -57,7 +53,7 @@ public class EMAStrategy03 extends TradeStrategyFactory {
 
 		Rule sellingRule = new CrossedDownIndicatorRule(sma1, sma3)
 				.or(new CrossedDownIndicatorRule(sma2, sma3))
-				.or(new StopLossRule(closePrice, Decimal.valueOf("3")));
+				.or(new StopLossRule(closePriceIndicator, Decimal.valueOf("3")));
 
 		final BaseStrategy strategy = new BaseStrategy(buyingRule, sellingRule);
 		
@@ -19,13 +19,10 @@ package com.github.jnidzwetzki.cryptobot.strategy;
 
 import org.ta4j.core.BaseStrategy;
 import org.ta4j.core.Decimal;
+import org.ta4j.core.Indicator;
 import org.ta4j.core.Rule;
 import org.ta4j.core.Strategy;
 import org.ta4j.core.TimeSeries;
-import org.ta4j.core.indicators.EMAIndicator;
-import org.ta4j.core.indicators.RSIIndicator;
-import org.ta4j.core.indicators.StochasticOscillatorDIndicator;
-import org.ta4j.core.indicators.StochasticOscillatorKIndicator;
 import org.ta4j.core.trading.rules.CrossedDownIndicatorRule;
 import org.ta4j.core.trading.rules.CrossedUpIndicatorRule;
 import org.ta4j.core.trading.rules.OverIndicatorRule;
@@ -37,14 +34,14 @@ public class ForexStrategy01 extends TradeStrategyFactory {
 		super(timeSeries);
 	}
 	
-	public Strategy getStrategy() {
-		EMAIndicator sma1 = new EMAIndicator(closePriceIndicator, 5);
-		EMAIndicator sma2 = new EMAIndicator(closePriceIndicator, 10);
+	public Strategy buildStrategy() {
+		Indicator<Decimal> sma1 = getEMA(5);
+		Indicator<Decimal> sma2 = getEMA(10);
 		
-		RSIIndicator rsi = new RSIIndicator(closePriceIndicator, 14);
+		Indicator<Decimal> rsi = getRSI(14);
 		
-		StochasticOscillatorKIndicator stochK = new StochasticOscillatorKIndicator(timeSeries, 14);
-		StochasticOscillatorDIndicator stochD = new StochasticOscillatorDIndicator(stochK);
+		Indicator<Decimal> stochK = getStochasticK(14);
+		Indicator<Decimal> stochD = getStochasticD(14);
 		
 		Rule buyingRule = new CrossedUpIndicatorRule(sma1, sma2)
 				.and(new OverIndicatorRule(rsi, Decimal.valueOf(50)))
@@ -17,13 +17,23 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.cryptobot.strategy;
 
+import org.ta4j.core.Decimal;
+import org.ta4j.core.Indicator;
 import org.ta4j.core.Strategy;
 import org.ta4j.core.TimeSeries;
+import org.ta4j.core.indicators.EMAIndicator;
+import org.ta4j.core.indicators.MACDIndicator;
+import org.ta4j.core.indicators.RSIIndicator;
+import org.ta4j.core.indicators.SMAIndicator;
+import org.ta4j.core.indicators.StochasticOscillatorDIndicator;
+import org.ta4j.core.indicators.StochasticOscillatorKIndicator;
 import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
 import org.ta4j.core.indicators.helpers.MaxPriceIndicator;
 import org.ta4j.core.indicators.helpers.MinPriceIndicator;
 import org.ta4j.core.indicators.helpers.OpenPriceIndicator;
 
+import com.github.jnidzwetzki.cryptobot.strategy.indicator.IndicatorRegistry;
+
 public abstract class TradeStrategyFactory {
 	
 	/**
@@ -51,6 +61,16 @@ public abstract class TradeStrategyFactory {
 	 */
 	protected final MinPriceIndicator lowPriceIndicator;
 	
+	/**
+	 * The strategy, built on first access
+	 */
+	private Strategy strategy;
+	
+	/**
+	 * The optional shared indicators
+	 */
+	private IndicatorRegistry indicatorRegistry;
+	
 	public TradeStrategyFactory(final TimeSeries timeSeries) {
 		this.timeSeries = timeSeries;
 		this.closePriceIndicator = new ClosePriceIndicator(timeSeries);
@@ -64,14 +84,131 @@ public abstract class TradeStrategyFactory {
 	}
 	
 	/**
-	 * Get the strategy
-	 * @param timeSeries
+	 * Get the strategy. The strategy and its indicators are built only once, 
+	 * so the indicator caches stay warm for the whole time series.
+	 * @return
+	 */
+	public Strategy getStrategy() {
+		if(strategy == null) {
+			strategy = buildStrategy();
+		}
+		
+		return strategy;
+	}
+	
+	/**
+	 * Use the shared indicators of the registry instead of own ta4j 
+	 * indicators. Has to be called before the strategy is built.
+	 * @param indicatorRegistry
+	 */
+	public void setIndicatorRegistry(final IndicatorRegistry indicatorRegistry) {
+		if(indicatorRegistry != null && indicatorRegistry.getTimeSeries() != timeSeries) {
+			throw new IllegalArgumentException("The registry belongs to a different time series");
+		}
+		
+		if(strategy != null) {
+			throw new IllegalStateException("The strategy is already built");
+		}
+		
+		this.indicatorRegistry = indicatorRegistry;
+	}
+	
+	/**
+	 * Are the indicators of the registry used instead of the ta4j indicators
+	 * @return
+	 */
+	public boolean isIndicatorRegistryUsed() {
+		return indicatorRegistry != null;
+	}
+	
+	/**
+	 * Get the EMA of the close prices
+	 * @param timeFrame
+	 * @return
+	 */
+	protected Indicator<Decimal> getEMA(final int timeFrame) {
+		if(indicatorRegistry != null) {
+			return indicatorRegistry.getEMA(timeFrame);
+		}
+		
+		return new EMAIndicator(closePriceIndicator, timeFrame);
+	}
+	
+	/**
+	 * Get the SMA of the close prices
+	 * @param timeFrame
+	 * @return
+	 */
+	protected Indicator<Decimal> getSMA(final int timeFrame) {
+		if(indicatorRegistry != null) {
+			return indicatorRegistry.getSMA(timeFrame);
+		}
+		
+		return new SMAIndicator(closePriceIndicator, timeFrame);
+	}
+	
+	/**
+	 * Get the RSI of the close prices
+	 * @param timeFrame
+	 * @return
+	 */
+	protected Indicator<Decimal> getRSI(final int timeFrame) {
+		if(indicatorRegistry != null) {
+			return indicatorRegistry.getRSI(timeFrame);
+		}
+		
+		return new RSIIndicator(closePriceIndicator, timeFrame);
+	}
+	
+	/**
+	 * Get the MACD of the close prices
+	 * @param shortTimeFrame
+	 * @param longTimeFrame
+	 * @return
+	 */
+	protected Indicator<Decimal> getMACD(final int shortTimeFrame, final int longTimeFrame) {
+		if(indicatorRegistry != null) {
+			return indicatorRegistry.getMACD(shortTimeFrame, longTimeFrame);
+		}
+		
+		return new MACDIndicator(closePriceIndicator, shortTimeFrame, longTimeFrame);
+	}
+	
+	/**
+	 * Get the stochastic oscillator K
+	 * @param timeFrame
+	 * @return
+	 */
+	protected Indicator<Decimal> getStochasticK(final int timeFrame) {
+		if(indicatorRegistry != null) {
+			return indicatorRegistry.getStochasticK(timeFrame);
+		}
+		
+		return new StochasticOscillatorKIndicator(timeSeries, timeFrame);
+	}
+	
+	/**
+	 * Get the stochastic oscillator D of the stochastic oscillator K
+	 * @param timeFrame - the time frame of K
+	 * @return
+	 */
+	protected Indicator<Decimal> getStochasticD(final int timeFrame) {
+		if(indicatorRegistry != null) {
+			return indicatorRegistry.getStochasticD(timeFrame);
+		}
+		
+		return new StochasticOscillatorDIndicator(new StochasticOscillatorKIndicator(timeSeries, timeFrame));
+	}
+	
+	/**
+	 * Build a new strategy with a new indicator graph
 	 * @return
 	 */
-	public abstract Strategy getStrategy();
+	public abstract Strategy buildStrategy();
 	
 	/**
-	 * Get the name of the strategy
+	 * Get the name of the strategy. The name contains all parameters, 
+	 * backtest results are cached by the name.
 	 * @return
 	 */
 	public abstract String getName();
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.strategy.indicator;
+
+import org.ta4j.core.Decimal;
+import org.ta4j.core.TimeSeries;
+import org.ta4j.core.indicators.AbstractIndicator;
+
+/**
+ * Expose precalculated values (e.g. from the IndicatorKernels) as ta4j 
+ * indicator, so they can be used in the existing rules.
+ * <p>
+ * Position 0 of the values belongs to the begin index of the time series. 
+ * The values are not updated when bars are added to the time series. The 
+ * Decimal objects are created on first access and reused afterwards.
+ *
+ */
+public class ArrayIndicator extends AbstractIndicator<Decimal> {
+
+	private static final long serialVersionUID = 3337870263658437553L;
+
+	/**
+	 * The values
+	 */
+	private final double[] values;
+
+	/**
+	 * The already converted values
+	 */
+	private final Decimal[] decimalValues;
+
+	/**
+	 * The index of the first value
+	 */
+	private final int beginIndex;
+
+	public ArrayIndicator(final TimeSeries timeSeries, final double[] values) {
+		super(timeSeries);
+
+		if(values.length != timeSeries.getBarCount()) {
+			throw new IllegalArgumentException("Got " + values.length + " values for " 
+					+ timeSeries.getBarCount() + " bars");
+		}
+
+		this.values = values;
+		this.decimalValues = new Decimal[values.length];
+		this.beginIndex = Math.max(0, timeSeries.getBeginIndex());
+	}
+
+	@Override
+	public Decimal getValue(final int index) {
+		final int position = Math.max(0, index - beginIndex);
+		
+		Decimal result = decimalValues[position];
+
+		if(result == null) {
+			final double value = values[position];
+
+			// Decimal.valueOf(double) does not support NaN
+			result = Double.isNaN(value) ? Decimal.NaN : Decimal.valueOf(value);
+			decimalValues[position] = result;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get the value without conversion
+	 * @param index
+	 * @return
+	 */
+	public double getDoubleValue(final int index) {
+		return values[Math.max(0, index - beginIndex)];
+	}
+
+	/**
+	 * Get the values, position 0 belongs to the begin index
+	 * @return
+	 */
+	double[] getValues() {
+		return values;
+	}
+}
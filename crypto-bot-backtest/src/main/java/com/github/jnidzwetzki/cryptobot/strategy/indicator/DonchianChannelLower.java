@@ -19,7 +19,6 @@ package com.github.jnidzwetzki.cryptobot.strategy.indicator;
 
 import org.ta4j.core.Decimal;
 import org.ta4j.core.Indicator;
-import org.ta4j.core.indicators.CachedIndicator;
 
 /**
  * Lower donchian channel indicator. 
@@ -27,47 +26,17 @@ import org.ta4j.core.indicators.CachedIndicator;
  * Returns the lowest value of the time series within the tiemframe.
  *
  */
-public class DonchianChannelLower extends CachedIndicator<Decimal> {
+public class DonchianChannelLower extends SlidingWindowExtremum {
 
 	private static final long serialVersionUID = 6109484986843725281L;
 
-	/**
-	 * The price indicator
-	 */
-    private Indicator<Decimal> indicator;
-    
-    /**
-     * The time frame of the channel
-     */
-	private int timeFrame;
-
-	public DonchianChannelLower(Indicator<Decimal> indicator, int timeFrame) {
-        super(indicator.getTimeSeries());
-		this.indicator = indicator;
-		this.timeFrame = timeFrame;
-    }
+	public DonchianChannelLower(final Indicator<Decimal> indicator, final int timeFrame) {
+		super(indicator, timeFrame);
+	}
 
-	
 	@Override
-	protected Decimal calculate(int index) {
-		int startIndex = Math.max(0, index - timeFrame + 1);
-		
-		Decimal result = indicator.getValue(index);
-		
-		for(int pos = startIndex; pos <= index; pos++) {
-			final Decimal value = indicator.getValue(pos);
-			
-			if(value.isLessThanOrEqual(result)) {
-				result = value;
-			}
-		}
-		
-		return result;
+	protected boolean replaces(final Decimal value, final Decimal existingValue) {
+		return value.isLessThanOrEqual(existingValue);
 	}
-	
-    @Override
-    public String toString() {
-        return getClass().getSimpleName() + "timeFrame: " + timeFrame;
-    }
 
 }
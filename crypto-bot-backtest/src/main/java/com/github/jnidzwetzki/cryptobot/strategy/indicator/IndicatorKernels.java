@@ -0,0 +1,467 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.strategy.indicator;
+
+import java.util.function.IntToDoubleFunction;
+
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.cryptobot.util.ColumnarTimeSeries;
+
+/**
+ * Indicator calculations over whole double[] columns.
+ * <p>
+ * Each kernel calculates the values for all positions in one pass and 
+ * returns a new array. The results match the ta4j indicators with the same 
+ * name (up to the precision of double); position 0 of an array is the 
+ * first bar of the time series. The values before the first complete 
+ * time frame are calculated over the available values, like ta4j does.
+ *
+ */
+public final class IndicatorKernels {
+
+	private IndicatorKernels() {
+		// Static methods only
+	}
+
+	/**
+	 * Get the open prices of the time series
+	 * @param timeSeries
+	 * @return
+	 */
+	public static double[] getOpenPrices(final TimeSeries timeSeries) {
+		if(timeSeries instanceof ColumnarTimeSeries) {
+			return getColumn(timeSeries, ((ColumnarTimeSeries) timeSeries)::getOpenPrice);
+		}
+
+		return getColumn(timeSeries, i -> timeSeries.getBar(i).getOpenPrice().doubleValue());
+	}
+
+	/**
+	 * Get the close prices of the time series
+	 * @param timeSeries
+	 * @return
+	 */
+	public static double[] getClosePrices(final TimeSeries timeSeries) {
+		if(timeSeries instanceof ColumnarTimeSeries) {
+			return getColumn(timeSeries, ((ColumnarTimeSeries) timeSeries)::getClosePrice);
+		}
+
+		return getColumn(timeSeries, i -> timeSeries.getBar(i).getClosePrice().doubleValue());
+	}
+
+	/**
+	 * Get the max prices of the time series
+	 * @param timeSeries
+	 * @return
+	 */
+	public static double[] getMaxPrices(final TimeSeries timeSeries) {
+		if(timeSeries instanceof ColumnarTimeSeries) {
+			return getColumn(timeSeries, ((ColumnarTimeSeries) timeSeries)::getMaxPrice);
+		}
+
+		return getColumn(timeSeries, i -> timeSeries.getBar(i).getMaxPrice().doubleValue());
+	}
+
+	/**
+	 * Get the min prices of the time series
+	 * @param timeSeries
+	 * @return
+	 */
+	public static double[] getMinPrices(final TimeSeries timeSeries) {
+		if(timeSeries instanceof ColumnarTimeSeries) {
+			return getColumn(timeSeries, ((ColumnarTimeSeries) timeSeries)::getMinPrice);
+		}
+
+		return getColumn(timeSeries, i -> timeSeries.getBar(i).getMinPrice().doubleValue());
+	}
+
+	/**
+	 * Get a column of the bars between the begin and the end index
+	 * @param timeSeries
+	 * @param getter
+	 * @return
+	 */
+	private static double[] getColumn(final TimeSeries timeSeries, final IntToDoubleFunction getter) {
+		final double[] result = new double[timeSeries.getBarCount()];
+		final int beginIndex = timeSeries.getBeginIndex();
+
+		for(int i = 0; i < result.length; i++) {
+			result[i] = getter.applyAsDouble(beginIndex + i);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Exponential moving average (EMAIndicator), the first value is the seed
+	 * @param values
+	 * @param timeFrame
+	 * @return
+	 */
+	public static double[] ema(final double[] values, final int timeFrame) {
+		checkTimeFrame(timeFrame);
+		return exponentialAverage(values, 2.0 / (timeFrame + 1));
+	}
+
+	/**
+	 * Modified moving average (MMAIndicator)
+	 * @param values
+	 * @param timeFrame
+	 * @return
+	 */
+	public static double[] mma(final double[] values, final int timeFrame) {
+		checkTimeFrame(timeFrame);
+		return exponentialAverage(values, 1.0 / timeFrame);
+	}
+
+	/**
+	 * Exponential average with the given multiplier
+	 * @param values
+	 * @param multiplier
+	 * @return
+	 */
+	private static double[] exponentialAverage(final double[] values, final double multiplier) {
+		final double[] result = new double[values.length];
+
+		if(values.length == 0) {
+			return result;
+		}
+
+		double average = values[0];
+		result[0] = average;
+
+		for(int i = 1; i < values.length; i++) {
+			average = ((values[i] - average) * multiplier) + average;
+			result[i] = average;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Simple moving average (SMAIndicator)
+	 * @param values
+	 * @param timeFrame
+	 * @return
+	 */
+	public static double[] sma(final double[] values, final int timeFrame) {
+		checkTimeFrame(timeFrame);
+
+		final double[] result = new double[values.length];
+		double sum = 0;
+
+		for(int i = 0; i < values.length; i++) {
+			final int startIndex = i - timeFrame + 1;
+
+			// Sum the window again from time to time, so rounding errors do not add up
+			if(startIndex > 0 && startIndex % timeFrame == 0) {
+				sum = sum(values, startIndex, i);
+			} else {
+				sum = sum + values[i];
+
+				if(startIndex > 0) {
+					sum = sum - values[startIndex - 1];
+				}
+			}
+
+			result[i] = sum / Math.min(timeFrame, i + 1);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Population standard deviation (StandardDeviationIndicator)
+	 * @param values
+	 * @param timeFrame
+	 * @return
+	 */
+	public static double[] standardDeviation(final double[] values, final int timeFrame) {
+		checkTimeFrame(timeFrame);
+
+		final double[] result = new double[values.length];
+		double sum = 0;
+		double sumOfSquares = 0;
+
+		for(int i = 0; i < values.length; i++) {
+			final int startIndex = i - timeFrame + 1;
+
+			// Sum the window again from time to time, so rounding errors do not add up
+			if(startIndex > 0 && startIndex % timeFrame == 0) {
+				sum = 0;
+				sumOfSquares = 0;
+
+				for(int pos = startIndex; pos <= i; pos++) {
+					sum = sum + values[pos];
+					sumOfSquares = sumOfSquares + (values[pos] * values[pos]);
+				}
+			} else {
+				sum = sum + values[i];
+				sumOfSquares = sumOfSquares + (values[i] * values[i]);
+
+				if(startIndex > 0) {
+					final double removed = values[startIndex - 1];
+					sum = sum - removed;
+					sumOfSquares = sumOfSquares - (removed * removed);
+				}
+			}
+
+			final int observations = Math.min(timeFrame, i + 1);
+			final double mean = sum / observations;
+			final double variance = (sumOfSquares - (sum * mean)) / observations;
+
+			// Rounding errors can produce a tiny negative variance
+			result[i] = Math.sqrt(Math.max(0, variance));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Relative strength index (RSIIndicator)
+	 * @param values
+	 * @param timeFrame
+	 * @return
+	 */
+	public static double[] rsi(final double[] values, final int timeFrame) {
+		checkTimeFrame(timeFrame);
+
+		final double[] result = new double[values.length];
+		final double multiplier = 1.0 / timeFrame;
+		double averageGain = 0;
+		double averageLoss = 0;
+
+		for(int i = 0; i < values.length; i++) {
+			final double change = (i == 0) ? 0 : values[i] - values[i - 1];
+			final double gain = Math.max(0, change);
+			final double loss = Math.max(0, -change);
+
+			if(i == 0) {
+				averageGain = gain;
+				averageLoss = loss;
+			} else {
+				averageGain = ((gain - averageGain) * multiplier) + averageGain;
+				averageLoss = ((loss - averageLoss) * multiplier) + averageLoss;
+			}
+
+			if(averageLoss == 0) {
+				result[i] = (averageGain == 0) ? 0 : 100;
+			} else {
+				result[i] = 100 - (100 / (1 + (averageGain / averageLoss)));
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Moving average convergence divergence (MACDIndicator)
+	 * @param values
+	 * @param shortTimeFrame
+	 * @param longTimeFrame
+	 * @return
+	 */
+	public static double[] macd(final double[] values, final int shortTimeFrame, final int longTimeFrame) {
+
+		if(shortTimeFrame > longTimeFrame) {
+			throw new IllegalArgumentException("Long term period count must be greater than short term period count");
+		}
+
+		final double[] shortTermEma = ema(values, shortTimeFrame);
+		final double[] longTermEma = ema(values, longTimeFrame);
+
+		for(int i = 0; i < shortTermEma.length; i++) {
+			shortTermEma[i] = shortTermEma[i] - longTermEma[i];
+		}
+
+		return shortTermEma;
+	}
+
+	/**
+	 * Upper bollinger band (BollingerBandsUpperIndicator)
+	 * @param middle
+	 * @param deviation
+	 * @param k
+	 * @return
+	 */
+	public static double[] bollingerUpper(final double[] middle, final double[] deviation, final double k) {
+		checkSameLength(middle, deviation);
+
+		final double[] result = new double[middle.length];
+
+		for(int i = 0; i < result.length; i++) {
+			result[i] = middle[i] + (deviation[i] * k);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Lower bollinger band (BollingerBandsLowerIndicator)
+	 * @param middle
+	 * @param deviation
+	 * @param k
+	 * @return
+	 */
+	public static double[] bollingerLower(final double[] middle, final double[] deviation, final double k) {
+		checkSameLength(middle, deviation);
+
+		final double[] result = new double[middle.length];
+
+		for(int i = 0; i < result.length; i++) {
+			result[i] = middle[i] - (deviation[i] * k);
+		}
+
+		return result;
+	}
+
+	/**
+	 * The highest value within the time frame (HighestValueIndicator)
+	 * @param values
+	 * @param timeFrame
+	 * @return
+	 */
+	public static double[] highest(final double[] values, final int timeFrame) {
+		return slidingExtremum(values, timeFrame, true);
+	}
+
+	/**
+	 * The lowest value within the time frame (LowestValueIndicator)
+	 * @param values
+	 * @param timeFrame
+	 * @return
+	 */
+	public static double[] lowest(final double[] values, final int timeFrame) {
+		return slidingExtremum(values, timeFrame, false);
+	}
+
+	/**
+	 * The extremum within the time frame, calculated with a monotonic deque
+	 * @param values
+	 * @param timeFrame
+	 * @param highest
+	 * @return
+	 */
+	private static double[] slidingExtremum(final double[] values, final int timeFrame, final boolean highest) {
+		checkTimeFrame(timeFrame);
+
+		final double[] result = new double[values.length];
+		final int[] deque = new int[values.length];
+		int head = 0;
+		int tail = 0;
+
+		for(int i = 0; i < values.length; i++) {
+
+			// Remove the candidates that can no longer become the extremum
+			while(tail > head && (highest ? values[deque[tail - 1]] <= values[i] 
+					: values[deque[tail - 1]] >= values[i])) {
+				tail--;
+			}
+
+			deque[tail++] = i;
+
+			// Remove the index that left the window
+			if(deque[head] <= i - timeFrame) {
+				head++;
+			}
+
+			result[i] = values[deque[head]];
+		}
+
+		return result;
+	}
+
+	/**
+	 * Stochastic oscillator K (StochasticOscillatorKIndicator)
+	 * @param close
+	 * @param high
+	 * @param low
+	 * @param timeFrame
+	 * @return NaN for bars with a zero range, like ta4j
+	 */
+	public static double[] stochasticK(final double[] close, final double[] high, final double[] low,
+			final int timeFrame) {
+
+		checkSameLength(close, high);
+		checkSameLength(close, low);
+
+		final double[] highestHigh = highest(high, timeFrame);
+		final double[] lowestLow = lowest(low, timeFrame);
+		final double[] result = new double[close.length];
+
+		for(int i = 0; i < result.length; i++) {
+			final double range = highestHigh[i] - lowestLow[i];
+
+			if(range == 0) {
+				result[i] = Double.NaN;
+			} else {
+				result[i] = ((close[i] - lowestLow[i]) / range) * 100;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Stochastic oscillator D (StochasticOscillatorDIndicator), the 3 bar SMA of K
+	 * @param stochasticK
+	 * @return
+	 */
+	public static double[] stochasticD(final double[] stochasticK) {
+		return sma(stochasticK, 3);
+	}
+
+	/**
+	 * Sum the values between from and to (inclusive)
+	 * @param values
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	private static double sum(final double[] values, final int from, final int to) {
+		double sum = 0;
+
+		for(int i = from; i <= to; i++) {
+			sum = sum + values[i];
+		}
+
+		return sum;
+	}
+
+	/**
+	 * Check the time frame
+	 * @param timeFrame
+	 */
+	private static void checkTimeFrame(final int timeFrame) {
+		if(timeFrame < 1) {
+			throw new IllegalArgumentException("Invalid time frame: " + timeFrame);
+		}
+	}
+
+	/**
+	 * Check that both arrays have the same length
+	 * @param values1
+	 * @param values2
+	 */
+	private static void checkSameLength(final double[] values1, final double[] values2) {
+		if(values1.length != values2.length) {
+			throw new IllegalArgumentException("Length mismatch: " + values1.length + " / " + values2.length);
+		}
+	}
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.strategy.indicator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.ta4j.core.TimeSeries;
+
+/**
+ * The indicators of one time series, shared between strategies.
+ * <p>
+ * The indicators are identified by their type and parameters (e.g. 
+ * EMA(close,12)). Each indicator is calculated only once with the 
+ * IndicatorKernels, all later requests (also from other threads) get the 
+ * same instance. So a parameter sweep calculates every distinct indicator 
+ * once, instead of once per combination.
+ * <p>
+ * The values are not updated when bars are added to the time series, the 
+ * registry is intended for backtests on a complete time series.
+ *
+ */
+public class IndicatorRegistry {
+
+	/**
+	 * The time series
+	 */
+	private final TimeSeries timeSeries;
+
+	/**
+	 * The indicators by key
+	 */
+	private final Map<String, ArrayIndicator> indicators = new ConcurrentHashMap<>();
+
+	public IndicatorRegistry(final TimeSeries timeSeries) {
+		this.timeSeries = timeSeries;
+	}
+
+	/**
+	 * Get the indicator with the given key, the supplier is called only 
+	 * when the indicator does not exist.
+	 * <p>
+	 * The supplier must not request other indicators of the registry, 
+	 * the dependencies have to be fetched before.
+	 *
+	 * @param key
+	 * @param valueSupplier
+	 * @return
+	 */
+	public ArrayIndicator getIndicator(final String key, final Supplier<double[]> valueSupplier) {
+		final ArrayIndicator indicator = indicators.get(key);
+
+		if(indicator != null) {
+			return indicator;
+		}
+
+		return indicators.computeIfAbsent(key, k -> new ArrayIndicator(timeSeries, valueSupplier.get()));
+	}
+
+	/**
+	 * The open prices (OpenPriceIndicator)
+	 * @return
+	 */
+	public ArrayIndicator getOpenPrice() {
+		return getIndicator("open", () -> IndicatorKernels.getOpenPrices(timeSeries));
+	}
+
+	/**
+	 * The close prices (ClosePriceIndicator)
+	 * @return
+	 */
+	public ArrayIndicator getClosePrice() {
+		return getIndicator("close", () -> IndicatorKernels.getClosePrices(timeSeries));
+	}
+
+	/**
+	 * The high prices (MaxPriceIndicator)
+	 * @return
+	 */
+	public ArrayIndicator getHighPrice() {
+		return getIndicator("high", () -> IndicatorKernels.getMaxPrices(timeSeries));
+	}
+
+	/**
+	 * The low prices (MinPriceIndicator)
+	 * @return
+	 */
+	public ArrayIndicator getLowPrice() {
+		return getIndicator("low", () -> IndicatorKernels.getMinPrices(timeSeries));
+	}
+
+	/**
+	 * The EMA of the close prices (EMAIndicator)
+	 * @param timeFrame
+	 * @return
+	 */
+	public ArrayIndicator getEMA(final int timeFrame) {
+		final double[] close = getClosePrice().getValues();
+		return getIndicator("EMA(close," + timeFrame + ")", () -> IndicatorKernels.ema(close, timeFrame));
+	}
+
+	/**
+	 * The SMA of the close prices (SMAIndicator)
+	 * @param timeFrame
+	 * @return
+	 */
+	public ArrayIndicator getSMA(final int timeFrame) {
+		final double[] close = getClosePrice().getValues();
+		return getIndicator("SMA(close," + timeFrame + ")", () -> IndicatorKernels.sma(close, timeFrame));
+	}
+
+	/**
+	 * The RSI of the close prices (RSIIndicator)
+	 * @param timeFrame
+	 * @return
+	 */
+	public ArrayIndicator getRSI(final int timeFrame) {
+		final double[] close = getClosePrice().getValues();
+		return getIndicator("RSI(close," + timeFrame + ")", () -> IndicatorKernels.rsi(close, timeFrame));
+	}
+
+	/**
+	 * The MACD of the close prices (MACDIndicator)
+	 * @param shortTimeFrame
+	 * @param longTimeFrame
+	 * @return
+	 */
+	public ArrayIndicator getMACD(final int shortTimeFrame, final int longTimeFrame) {
+		final double[] close = getClosePrice().getValues();
+		return getIndicator("MACD(close," + shortTimeFrame + "," + longTimeFrame + ")", 
+				() -> IndicatorKernels.macd(close, shortTimeFrame, longTimeFrame));
+	}
+
+	/**
+	 * The highest high price (DonchianChannelUpper)
+	 * @param timeFrame
+	 * @return
+	 */
+	public ArrayIndicator getHighestHigh(final int timeFrame) {
+		final double[] high = getHighPrice().getValues();
+		return getIndicator("Highest(high," + timeFrame + ")", () -> IndicatorKernels.highest(high, timeFrame));
+	}
+
+	/**
+	 * The lowest low price (DonchianChannelLower)
+	 * @param timeFrame
+	 * @return
+	 */
+	public ArrayIndicator getLowestLow(final int timeFrame) {
+		final double[] low = getLowPrice().getValues();
+		return getIndicator("Lowest(low," + timeFrame + ")", () -> IndicatorKernels.lowest(low, timeFrame));
+	}
+
+	/**
+	 * The stochastic oscillator K (StochasticOscillatorKIndicator)
+	 * @param timeFrame
+	 * @return
+	 */
+	public ArrayIndicator getStochasticK(final int timeFrame) {
+		final double[] close = getClosePrice().getValues();
+		final double[] high = getHighPrice().getValues();
+		final double[] low = getLowPrice().getValues();
+		return getIndicator("StochasticK(" + timeFrame + ")", 
+				() -> IndicatorKernels.stochasticK(close, high, low, timeFrame));
+	}
+
+	/**
+	 * The stochastic oscillator D (StochasticOscillatorDIndicator)
+	 * @param timeFrame - the time frame of K
+	 * @return
+	 */
+	public ArrayIndicator getStochasticD(final int timeFrame) {
+		final double[] stochasticK = getStochasticK(timeFrame).getValues();
+		return getIndicator("StochasticD(" + timeFrame + ")", () -> IndicatorKernels.stochasticD(stochasticK));
+	}
+
+	/**
+	 * Get the time series
+	 * @return
+	 */
+	public TimeSeries getTimeSeries() {
+		return timeSeries;
+	}
+
+	/**
+	 * Get the amount of distinct indicators
+	 * @return
+	 */
+	public int size() {
+		return indicators.size();
+	}
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.strategy.indicator;
+
+import org.ta4j.core.Decimal;
+import org.ta4j.core.Indicator;
+import org.ta4j.core.indicators.CachedIndicator;
+
+/**
+ * The extremum of an indicator within a sliding window.
+ * <p>
+ * The candidates for the extremum are kept in a monotonic deque. When the
+ * values are requested in ascending order (the usual case for backtests and
+ * live bars), every index is added and removed only once, so the cost per
+ * bar is amortised O(1) instead of O(timeFrame). Other access patterns
+ * rebuild the deque for the requested window.
+ *
+ */
+public abstract class SlidingWindowExtremum extends CachedIndicator<Decimal> {
+
+	private static final long serialVersionUID = -2880123624569637466L;
+
+	/**
+	 * The price indicator
+	 */
+	private final Indicator<Decimal> indicator;
+
+	/**
+	 * The time frame of the window
+	 */
+	private final int timeFrame;
+
+	/**
+	 * The size of the window (at least one value)
+	 */
+	private final int windowSize;
+
+	/**
+	 * The indices of the deque (ring buffer)
+	 */
+	private final int[] dequeIndices;
+
+	/**
+	 * The values of the deque (ring buffer)
+	 */
+	private final Decimal[] dequeValues;
+
+	/**
+	 * The position of the first deque element
+	 */
+	private int dequeHead = 0;
+
+	/**
+	 * The amount of deque elements
+	 */
+	private int dequeSize = 0;
+
+	/**
+	 * The last index added to the deque
+	 */
+	private int lastIndex = -1;
+
+	public SlidingWindowExtremum(final Indicator<Decimal> indicator, final int timeFrame) {
+		super(indicator.getTimeSeries());
+		this.indicator = indicator;
+		this.timeFrame = timeFrame;
+		this.windowSize = Math.max(1, timeFrame);
+
+		// A window never contains more than windowSize elements
+		this.dequeIndices = new int[windowSize];
+		this.dequeValues = new Decimal[windowSize];
+	}
+
+	/**
+	 * Does the new value replace the existing value as extremum candidate
+	 * @param value
+	 * @param existingValue
+	 * @return
+	 */
+	protected abstract boolean replaces(final Decimal value, final Decimal existingValue);
+
+	@Override
+	protected Decimal calculate(final int index) {
+		final int startIndex = Math.max(0, index - windowSize + 1);
+
+		if(lastIndex < 0 || index <= lastIndex || index - lastIndex > windowSize) {
+			// Not a forward step, rebuild the deque for the window
+			dequeSize = 0;
+			lastIndex = startIndex - 1;
+		}
+
+		for(int pos = lastIndex + 1; pos <= index; pos++) {
+			addValue(pos, indicator.getValue(pos));
+		}
+
+		lastIndex = index;
+
+		// Remove the indices that left the window
+		while(dequeSize > 1 && dequeIndices[dequeHead] < startIndex) {
+			dequeValues[dequeHead] = null;
+			dequeHead = (dequeHead + 1) % dequeIndices.length;
+			dequeSize--;
+		}
+
+		return dequeValues[dequeHead];
+	}
+
+	/**
+	 * Add a value at the end of the deque
+	 * @param index
+	 * @param value
+	 */
+	private void addValue(final int index, final Decimal value) {
+
+		// Remove the candidates that can no longer become the extremum
+		while(dequeSize > 0) {
+			final int tail = (dequeHead + dequeSize - 1) % dequeIndices.length;
+
+			if(! replaces(value, dequeValues[tail])) {
+				break;
+			}
+
+			dequeValues[tail] = null;
+			dequeSize--;
+		}
+
+		// The deque is full, the oldest element is outside of the window
+		if(dequeSize == dequeIndices.length) {
+			dequeValues[dequeHead] = null;
+			dequeHead = (dequeHead + 1) % dequeIndices.length;
+			dequeSize--;
+		}
+
+		final int position = (dequeHead + dequeSize) % dequeIndices.length;
+		dequeIndices[position] = index;
+		dequeValues[position] = value;
+		dequeSize++;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "timeFrame: " + timeFrame;
+	}
+}
@@ -0,0 +1,264 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ta4j.core.BaseBar;
+import org.ta4j.core.BaseTimeSeries;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.cryptobot.backtest.BacktestResult;
+import com.github.jnidzwetzki.cryptobot.backtest.BacktestResultCache;
+import com.github.jnidzwetzki.cryptobot.strategy.BBreakoutStrategy;
+import com.github.jnidzwetzki.cryptobot.strategy.DonchianChannelStrategy;
+import com.github.jnidzwetzki.cryptobot.strategy.EMAStrategy02;
+import com.github.jnidzwetzki.cryptobot.strategy.EMAStrategy03;
+import com.github.jnidzwetzki.cryptobot.strategy.TradeStrategyFactory;
+import com.github.jnidzwetzki.cryptobot.strategy.indicator.IndicatorRegistry;
+import com.github.jnidzwetzki.cryptobot.util.ColumnarTimeSeries;
+
+public class TestBacktestResultCache {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	/**
+	 * Store and read a result, also after a restart
+	 * @throws IOException
+	 */
+	@Test
+	public void testPutAndGet() throws IOException {
+		final File directory = temporaryFolder.newFolder();
+		final BacktestResult result = buildResult("abc");
+
+		final BacktestResultCache cache = new BacktestResultCache(directory, 1024 * 1024);
+		Assert.assertNull(cache.get("key1"));
+		cache.put("key1", result);
+		assertSameResult(result, cache.get("key1"));
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(1, cache.getMisses());
+
+		final BacktestResultCache cache2 = new BacktestResultCache(directory, 1024 * 1024);
+		Assert.assertEquals(1, cache2.size());
+		assertSameResult(result, cache2.get("key1"));
+	}
+
+	/**
+	 * Execute a strategy only once
+	 * @throws IOException
+	 */
+	@Test(timeout=60000)
+	public void testExecute() throws IOException {
+		final TimeSeries timeSeries = buildTimeSeries(500, 1, false);
+		final BacktestResultCache cache = new BacktestResultCache(temporaryFolder.newFolder(), 1024 * 1024);
+
+		final BacktestResult result1 = cache.execute(new DonchianChannelStrategy(20, 10, timeSeries), 1000);
+		Assert.assertEquals(0, cache.getHits());
+
+		final BacktestResult result2 = cache.execute(new DonchianChannelStrategy(20, 10, timeSeries), 1000);
+		Assert.assertEquals(1, cache.getHits());
+		assertSameResult(result1, result2);
+
+		// Other parameters and other portfolio values are new backtests
+		cache.execute(new DonchianChannelStrategy(20, 5, timeSeries), 1000);
+		cache.execute(new DonchianChannelStrategy(20, 10, timeSeries), 2000);
+		Assert.assertEquals(1, cache.getHits());
+		Assert.assertEquals(3, cache.size());
+	}
+
+	/**
+	 * The key depends on the bars
+	 * @throws IOException
+	 */
+	@Test
+	public void testKey() throws IOException {
+		final BacktestResultCache cache = new BacktestResultCache(temporaryFolder.newFolder(), 1024 * 1024);
+
+		final TimeSeries timeSeries1 = buildTimeSeries(100, 1, false);
+		final TimeSeries timeSeries2 = buildTimeSeries(100, 1, true);
+		final TimeSeries timeSeries3 = buildTimeSeries(100, 2, false);
+
+		final String key1 = cache.getKey(timeSeries1, "Donchian-Channel-20-10", false, 1000);
+		Assert.assertEquals(64, key1.length());
+
+		// The same bars in another time series implementation
+		Assert.assertEquals(key1, cache.getKey(timeSeries2, "Donchian-Channel-20-10", false, 1000));
+
+		Assert.assertNotEquals(key1, cache.getKey(timeSeries3, "Donchian-Channel-20-10", false, 1000));
+		Assert.assertNotEquals(key1, cache.getKey(timeSeries1, "Donchian-Channel-20-11", false, 1000));
+		Assert.assertNotEquals(key1, cache.getKey(timeSeries1, "Donchian-Channel-20-10", false, 1001));
+
+		// A new bar changes the key
+		timeSeries1.addBar(new BaseBar(timeSeries1.getLastBar().getEndTime().plusMinutes(15), 
+				1.0, 1.0, 1.0, 1.0, 1.0));
+		Assert.assertNotEquals(key1, cache.getKey(timeSeries1, "Donchian-Channel-20-10", false, 1000));
+	}
+
+	/**
+	 * Two configurations of the same strategy have different keys
+	 * @throws IOException
+	 */
+	@Test
+	public void testStrategyKey() throws IOException {
+		final BacktestResultCache cache = new BacktestResultCache(temporaryFolder.newFolder(), 1024 * 1024);
+		final TimeSeries timeSeries = buildTimeSeries(100, 1, false);
+
+		final List<TradeStrategyFactory> strategies = Arrays.asList(
+				new EMAStrategy02(5, 10, 40, timeSeries), 
+				new EMAStrategy02(5, 10, 50, timeSeries),
+				new EMAStrategy03(5, 10, 40, timeSeries), 
+				new EMAStrategy03(5, 10, 50, timeSeries),
+				new BBreakoutStrategy(20, 2, 2, timeSeries), 
+				new BBreakoutStrategy(20, 2, 3, timeSeries),
+				new DonchianChannelStrategy(20, 10, timeSeries), 
+				new DonchianChannelStrategy(20, 11, timeSeries));
+
+		final long keys = strategies.stream()
+				.map(s -> cache.getKey(timeSeries, s.getName(), false, 1000))
+				.distinct()
+				.count();
+
+		Assert.assertEquals(strategies.size(), keys);
+	}
+
+	/**
+	 * The indicators of the registry and the ta4j indicators have different keys
+	 * @throws IOException
+	 */
+	@Test(timeout=60000)
+	public void testIndicatorSourceKey() throws IOException {
+		final BacktestResultCache cache = new BacktestResultCache(temporaryFolder.newFolder(), 1024 * 1024);
+		final TimeSeries timeSeries = buildTimeSeries(500, 1, false);
+
+		Assert.assertNotEquals(cache.getKey(timeSeries, "EMAStrategy03-5-10-40", false, 1000), 
+				cache.getKey(timeSeries, "EMAStrategy03-5-10-40", true, 1000));
+
+		final EMAStrategy03 ta4jStrategy = buildStrategy(timeSeries);
+		final EMAStrategy03 registryStrategy = buildStrategy(timeSeries);
+		registryStrategy.setIndicatorRegistry(new IndicatorRegistry(timeSeries));
+
+		cache.execute(ta4jStrategy, 1000);
+		cache.execute(registryStrategy, 1000);
+
+		Assert.assertEquals(0, cache.getHits());
+		Assert.assertEquals(2, cache.size());
+	}
+
+	/**
+	 * Build a strategy that leaves some room for the entry on the open price
+	 * @param timeSeries
+	 * @return
+	 */
+	private EMAStrategy03 buildStrategy(final TimeSeries timeSeries) {
+		return new EMAStrategy03(5, 10, 40, timeSeries) {
+			
+			@Override
+			public double getContracts(final double portfolioValue, final int barIndex) {
+				return super.getContracts(portfolioValue, barIndex) * 0.5;
+			}
+		};
+	}
+
+	/**
+	 * The least recently used results are removed
+	 * @throws IOException
+	 */
+	@Test
+	public void testEviction() throws IOException {
+		final File directory = temporaryFolder.newFolder();
+
+		final BacktestResultCache sizeCache = new BacktestResultCache(temporaryFolder.newFolder(), 1024 * 1024);
+		sizeCache.put("key", buildResult("abc"));
+		final long resultSize = sizeCache.getTotalSize();
+
+		final BacktestResultCache cache = new BacktestResultCache(directory, resultSize * 2);
+		cache.put("key1", buildResult("abc"));
+		cache.put("key2", buildResult("abc"));
+		Assert.assertNotNull(cache.get("key1"));
+
+		cache.put("key3", buildResult("abc"));
+		Assert.assertEquals(2, cache.size());
+		Assert.assertNull(cache.get("key2"));
+		Assert.assertNotNull(cache.get("key1"));
+		Assert.assertNotNull(cache.get("key3"));
+		Assert.assertEquals(2, directory.listFiles().length);
+	}
+
+	/**
+	 * A damaged file is a cache miss
+	 * @throws IOException
+	 */
+	@Test
+	public void testDamagedFile() throws IOException {
+		final File directory = temporaryFolder.newFolder();
+
+		try (final FileWriter writer = new FileWriter(new File(directory, "key1.result"))) {
+			writer.write("abc");
+		}
+
+		final BacktestResultCache cache = new BacktestResultCache(directory, 1024 * 1024);
+		Assert.assertEquals(1, cache.size());
+		Assert.assertNull(cache.get("key1"));
+		Assert.assertEquals(0, cache.size());
+		Assert.assertEquals(0, directory.listFiles().length);
+	}
+
+	/**
+	 * Build a result
+	 * @param name
+	 * @return
+	 */
+	private BacktestResult buildResult(final String name) {
+		return new BacktestResult(name, 1100, 100, 5, 10, 6, 4, 50, -20, 2, 1, 0.15, 42, 0.01, 0.02, 0.4, 1.5, 10);
+	}
+
+	/**
+	 * Compare two results
+	 * @param expected
+	 * @param result
+	 */
+	private void assertSameResult(final BacktestResult expected, final BacktestResult result) {
+		Assert.assertEquals(expected.toString(), result.toString());
+	}
+
+	/**
+	 * Build a random walk time series with 15 minute bars
+	 * @param bars
+	 * @param seed
+	 * @param columnar
+	 * @return
+	 */
+	private TimeSeries buildTimeSeries(final int bars, final long seed, final boolean columnar) {
+		final TimeSeries timeSeries = columnar 
+				? new ColumnarTimeSeries("test", Duration.ofMinutes(15), ZoneOffset.UTC)
+				: new BaseTimeSeries("test");
+
+		return TimeSeriesHelper.fillTimeSeries(timeSeries, bars, seed);
+	}
+}
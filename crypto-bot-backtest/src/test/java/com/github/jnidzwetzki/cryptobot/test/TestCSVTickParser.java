@@ -0,0 +1,158 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.cryptobot.backtest.CSVTickParser;
+
+public class TestCSVTickParser {
+
+	/**
+	 * Parse some lines
+	 * @throws IOException
+	 */
+	@Test
+	public void testParse() throws IOException {
+		final String data = "1417412036,300.000000000000,0.010000000000\n"
+				+ "1417412423,300.5,0.01\r\n"
+				+ "\n"
+				+ "1417415048,370,-1.25";
+
+		final List<double[]> ticks = parse(new CSVTickParser(), data);
+
+		Assert.assertEquals(3, ticks.size());
+		assertTick(ticks.get(0), 1417412036000L, 300, 0.01);
+		assertTick(ticks.get(1), 1417412423000L, 300.5, 0.01);
+		assertTick(ticks.get(2), 1417415048000L, 370, -1.25);
+	}
+
+	/**
+	 * Filter the ticks by timestamp
+	 * @throws IOException
+	 */
+	@Test
+	public void testTimestampFilter() throws IOException {
+		final String data = "1417412036,300.0,0.01\n"
+				+ "1417412423,301.0,0.01\n"
+				+ "1417415048,302.0,0.01\n";
+
+		final List<double[]> ticks = parse(new CSVTickParser(1417412423000L, 1417415048000L), data);
+
+		Assert.assertEquals(1, ticks.size());
+		assertTick(ticks.get(0), 1417412423000L, 301, 0.01);
+	}
+
+	/**
+	 * The parsed values have to be the same as Double.parseDouble
+	 * @throws IOException
+	 */
+	@Test
+	public void testSameAsParseDouble() throws IOException {
+		final Random random = new Random(1);
+		final StringBuilder sb = new StringBuilder();
+		final List<String> prices = new ArrayList<>();
+
+		// More than one read buffer
+		for(int i = 0; i < 20000; i++) {
+			final String price;
+
+			switch(i % 4) {
+			case 0:
+				price = String.format("%.12f", random.nextDouble() * 20000);
+				break;
+			case 1:
+				price = Double.toString(random.nextDouble() * 1000);
+				break;
+			case 2:
+				price = Double.toString(random.nextDouble() / 100000);
+				break;
+			default:
+				price = "0.00000000000000000000" + random.nextInt(1000);
+				break;
+			}
+
+			prices.add(price);
+			sb.append(1417412036 + i).append(',').append(price).append(',').append(price).append('\n');
+		}
+
+		final List<double[]> ticks = parse(new CSVTickParser(), sb.toString());
+		Assert.assertEquals(prices.size(), ticks.size());
+
+		for(int i = 0; i < prices.size(); i++) {
+			final double expected = Double.parseDouble(prices.get(i));
+			Assert.assertEquals(prices.get(i), Double.doubleToLongBits(expected), Double.doubleToLongBits(ticks.get(i)[1]));
+			Assert.assertEquals(prices.get(i), Double.doubleToLongBits(expected), Double.doubleToLongBits(ticks.get(i)[2]));
+		}
+	}
+
+	/**
+	 * Invalid numbers
+	 * @throws IOException
+	 */
+	@Test(expected=NumberFormatException.class)
+	public void testInvalidNumber() throws IOException {
+		parse(new CSVTickParser(), "1417412036,abc,0.01\n");
+	}
+
+	/**
+	 * Missing fields
+	 * @throws IOException
+	 */
+	@Test(expected=NumberFormatException.class)
+	public void testMissingField() throws IOException {
+		parse(new CSVTickParser(), "1417412036,300.0\n");
+	}
+
+	/**
+	 * Parse the data
+	 * @param parser
+	 * @param data
+	 * @return
+	 * @throws IOException
+	 */
+	private List<double[]> parse(final CSVTickParser parser, final String data) throws IOException {
+		final List<double[]> ticks = new ArrayList<>();
+		final byte[] bytes = data.getBytes(StandardCharsets.US_ASCII);
+
+		parser.parse(new ByteArrayInputStream(bytes), (t, p, v) -> ticks.add(new double[] {t, p, v}));
+
+		return ticks;
+	}
+
+	/**
+	 * Check the values of the tick
+	 * @param tick
+	 * @param timestamp
+	 * @param price
+	 * @param volume
+	 */
+	private void assertTick(final double[] tick, final long timestamp, final double price, final double volume) {
+		Assert.assertEquals(timestamp, (long) tick[0]);
+		Assert.assertEquals(price, tick[1], 0);
+		Assert.assertEquals(volume, tick[2], 0);
+	}
+}
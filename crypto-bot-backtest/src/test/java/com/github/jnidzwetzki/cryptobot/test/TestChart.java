@@ -0,0 +1,88 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.ui.Layer;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.cryptobot.backtest.Chart;
+import com.github.jnidzwetzki.cryptobot.strategy.DonchianChannelStrategy;
+import com.github.jnidzwetzki.cryptobot.strategy.TradeStrategyFactory;
+
+public class TestChart {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	static {
+		System.setProperty("java.awt.headless", "true");
+	}
+
+	/**
+	 * The series are downsampled, the markers are kept
+	 */
+	@Test(timeout=60000)
+	public void testBuildChart() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(20000, 1);
+		final TradeStrategyFactory factory = new DonchianChannelStrategy(20, 10, timeSeries);
+		final Chart chart = new Chart("BTC", factory.getStrategy(), timeSeries);
+
+		final JFreeChart jFreeChart = chart.buildChart(1000);
+		final XYPlot plot = (XYPlot) jFreeChart.getPlot();
+
+		Assert.assertEquals(4, plot.getDataset().getSeriesCount());
+
+		for(int series = 0; series < 4; series++) {
+			Assert.assertEquals(1000, plot.getDataset().getItemCount(series));
+		}
+
+		// One buy and one sell marker per trade
+		Assert.assertTrue(plot.getDomainMarkers(Layer.FOREGROUND).size() > 10);
+		Assert.assertEquals(0, plot.getDomainMarkers(Layer.FOREGROUND).size() % 2);
+	}
+
+	/**
+	 * Write the chart to a PNG file
+	 * @throws IOException
+	 */
+	@Test(timeout=60000)
+	public void testSaveChart() throws IOException {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(5000, 2);
+		final TradeStrategyFactory factory = new DonchianChannelStrategy(20, 10, timeSeries);
+		final Chart chart = new Chart("BTC", factory.getStrategy(), timeSeries);
+
+		final File file = new File(temporaryFolder.getRoot(), "chart.png");
+		chart.saveChartAsPNG(file, 800, 600);
+
+		final BufferedImage image = ImageIO.read(file);
+		Assert.assertEquals(800, image.getWidth());
+		Assert.assertEquals(600, image.getHeight());
+	}
+}
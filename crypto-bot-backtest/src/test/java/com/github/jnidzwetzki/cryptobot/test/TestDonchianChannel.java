@@ -0,0 +1,131 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ta4j.core.BaseTimeSeries;
+import org.ta4j.core.Decimal;
+import org.ta4j.core.Indicator;
+import org.ta4j.core.TimeSeries;
+import org.ta4j.core.indicators.helpers.MaxPriceIndicator;
+import org.ta4j.core.indicators.helpers.MinPriceIndicator;
+
+import com.github.jnidzwetzki.cryptobot.strategy.indicator.DonchianChannelLower;
+import com.github.jnidzwetzki.cryptobot.strategy.indicator.DonchianChannelUpper;
+
+public class TestDonchianChannel {
+
+	/**
+	 * Sequential access
+	 */
+	@Test
+	public void testSequential() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(2000, 1);
+
+		for(final int timeFrame : new int[] {1, 2, 5, 48, 96, 3000}) {
+			final Indicator<Decimal> maxPrice = new MaxPriceIndicator(timeSeries);
+			final Indicator<Decimal> minPrice = new MinPriceIndicator(timeSeries);
+			final DonchianChannelUpper upper = new DonchianChannelUpper(maxPrice, timeFrame);
+			final DonchianChannelLower lower = new DonchianChannelLower(minPrice, timeFrame);
+
+			for(int i = 0; i <= timeSeries.getEndIndex(); i++) {
+				Assert.assertEquals(getMax(maxPrice, i, timeFrame), upper.getValue(i));
+				Assert.assertEquals(getMin(minPrice, i, timeFrame), lower.getValue(i));
+			}
+		}
+	}
+
+	/**
+	 * Random access
+	 */
+	@Test
+	public void testRandomAccess() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(1000, 2);
+		final Random random = new Random(2);
+
+		final Indicator<Decimal> maxPrice = new MaxPriceIndicator(timeSeries);
+		final Indicator<Decimal> minPrice = new MinPriceIndicator(timeSeries);
+		final DonchianChannelUpper upper = new DonchianChannelUpper(maxPrice, 20);
+		final DonchianChannelLower lower = new DonchianChannelLower(minPrice, 20);
+
+		for(int i = 0; i < 2000; i++) {
+			final int index = random.nextInt(timeSeries.getBarCount());
+			Assert.assertEquals(getMax(maxPrice, index, 20), upper.getValue(index));
+			Assert.assertEquals(getMin(minPrice, index, 20), lower.getValue(index));
+		}
+	}
+
+	/**
+	 * Bars are added while the indicators are used (live trading)
+	 */
+	@Test
+	public void testGrowingSeries() {
+		final TimeSeries source = TimeSeriesHelper.buildTimeSeries(500, 3);
+		final TimeSeries timeSeries = new BaseTimeSeries("live");
+		timeSeries.setMaximumBarCount(200);
+
+		final Indicator<Decimal> maxPrice = new MaxPriceIndicator(timeSeries);
+		final Indicator<Decimal> minPrice = new MinPriceIndicator(timeSeries);
+		final DonchianChannelUpper upper = new DonchianChannelUpper(maxPrice, 96);
+		final DonchianChannelLower lower = new DonchianChannelLower(minPrice, 96);
+
+		for(int i = 0; i <= source.getEndIndex(); i++) {
+			timeSeries.addBar(source.getBar(i));
+			final int endIndex = timeSeries.getEndIndex();
+			Assert.assertEquals(getMax(maxPrice, endIndex, 96), upper.getValue(endIndex));
+			Assert.assertEquals(getMin(minPrice, endIndex, 96), lower.getValue(endIndex));
+		}
+	}
+
+	/**
+	 * Brute force max
+	 * @param indicator
+	 * @param index
+	 * @param timeFrame
+	 * @return
+	 */
+	private Decimal getMax(final Indicator<Decimal> indicator, final int index, final int timeFrame) {
+		Decimal result = indicator.getValue(index);
+
+		for(int pos = Math.max(0, index - timeFrame + 1); pos <= index; pos++) {
+			result = result.max(indicator.getValue(pos));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Brute force min
+	 * @param indicator
+	 * @param index
+	 * @param timeFrame
+	 * @return
+	 */
+	private Decimal getMin(final Indicator<Decimal> indicator, final int index, final int timeFrame) {
+		Decimal result = indicator.getValue(index);
+
+		for(int pos = Math.max(0, index - timeFrame + 1); pos <= index; pos++) {
+			result = result.min(indicator.getValue(pos));
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.cryptobot.backtest.BacktestResult;
+import com.github.jnidzwetzki.cryptobot.backtest.EquityCurveMetrics;
+import com.github.jnidzwetzki.cryptobot.backtest.TradeExecutor;
+import com.github.jnidzwetzki.cryptobot.strategy.DonchianChannelStrategy;
+
+public class TestEquityCurveMetrics {
+
+	private final static double DELTA = 0.000001;
+
+	/**
+	 * Compare the streaming metrics with a two pass calculation
+	 */
+	@Test
+	public void testEquityCurve() {
+		final double[] values = {100, 110, 99, 99, 121, 120, 90, 95, 100, 130};
+		final EquityCurveMetrics metrics = new EquityCurveMetrics(100);
+
+		for(int i = 1; i < values.length; i++) {
+			metrics.addBar(values[i], i % 3 != 0);
+		}
+
+		final double[] returns = new double[values.length - 1];
+		double mean = 0;
+
+		for(int i = 0; i < returns.length; i++) {
+			returns[i] = values[i + 1] / values[i] - 1;
+			mean = mean + returns[i] / returns.length;
+		}
+
+		double variance = 0;
+		double downside = 0;
+
+		for(final double value : returns) {
+			variance = variance + (value - mean) * (value - mean) / returns.length;
+			downside = downside + Math.min(0, value) * Math.min(0, value) / returns.length;
+		}
+
+		Assert.assertEquals(9, metrics.getBars());
+		Assert.assertEquals(mean, metrics.getReturnMean(), DELTA);
+		Assert.assertEquals(Math.sqrt(variance), metrics.getReturnStandardDeviation(), DELTA);
+		Assert.assertEquals(mean / Math.sqrt(variance), metrics.getSharpeRatio(), DELTA);
+		Assert.assertEquals(mean / Math.sqrt(downside), metrics.getSortinoRatio(), DELTA);
+
+		// Peak 121, low 90
+		Assert.assertEquals((121.0 - 90.0) / 121.0, metrics.getMaxDrawdown(), DELTA);
+
+		// 120, 90, 95, 100 are below the peak
+		Assert.assertEquals(4, metrics.getMaxDrawdownDuration());
+
+		// Bars 3, 6 and 9 are not invested
+		Assert.assertEquals(6.0 / 9.0, metrics.getExposure(), DELTA);
+	}
+
+	/**
+	 * The trade metrics
+	 */
+	@Test
+	public void testTrades() {
+		final EquityCurveMetrics metrics = new EquityCurveMetrics(1000);
+		Assert.assertEquals(0, metrics.getProfitFactor(), 0);
+		Assert.assertEquals(0, metrics.getAverageTrade(), 0);
+		Assert.assertEquals(0, metrics.getSharpeRatio(), 0);
+
+		metrics.addTrade(30);
+		Assert.assertEquals(Double.POSITIVE_INFINITY, metrics.getProfitFactor(), 0);
+
+		metrics.addTrade(-10);
+		metrics.addTrade(-5);
+		metrics.addTrade(15);
+
+		Assert.assertEquals(4, metrics.getTrades());
+		Assert.assertEquals(3, metrics.getProfitFactor(), DELTA);
+		Assert.assertEquals(7.5, metrics.getAverageTrade(), DELTA);
+	}
+
+	/**
+	 * The metrics of the trade executor
+	 */
+	@Test(timeout=60000)
+	public void testTradeExecutor() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(2000, 1);
+		final TradeExecutor tradeExecutor = new TradeExecutor(1000, 
+				new DonchianChannelStrategy(20, 10, timeSeries), 100, 1999);
+		tradeExecutor.executeTrades();
+
+		final EquityCurveMetrics metrics = tradeExecutor.getMetrics();
+		Assert.assertEquals(1900, metrics.getBars());
+		Assert.assertEquals(tradeExecutor.getTotalTrades(), metrics.getTrades());
+		Assert.assertTrue(tradeExecutor.getTotalTrades() > 10);
+		Assert.assertEquals(tradeExecutor.getTotalPL() / tradeExecutor.getTotalTrades(), 
+				metrics.getAverageTrade(), DELTA);
+		Assert.assertTrue(metrics.getExposure() > 0 && metrics.getExposure() < 1);
+		Assert.assertTrue(metrics.getMaxDrawdown() > 0 && metrics.getMaxDrawdown() < 1);
+		Assert.assertTrue(metrics.getMaxDrawdownDuration() > 0);
+
+		final BacktestResult result = BacktestResult.fromExecutor("test", tradeExecutor);
+		Assert.assertEquals(metrics.getMaxDrawdown(), result.getMaxDrawdown(), 0);
+		Assert.assertEquals(metrics.getMaxDrawdownDuration(), result.getMaxDrawdownDuration());
+		Assert.assertEquals(metrics.getSharpeRatio(), result.getSharpeRatio(), 0);
+		Assert.assertEquals(metrics.getSortinoRatio(), result.getSortinoRatio(), 0);
+		Assert.assertEquals(metrics.getExposure(), result.getExposure(), 0);
+		Assert.assertEquals(metrics.getProfitFactor(), result.getProfitFactor(), 0);
+		Assert.assertEquals(metrics.getAverageTrade(), result.getAverageTrade(), 0);
+	}
+}
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.cryptobot.backtest.BacktestResult;
+import com.github.jnidzwetzki.cryptobot.backtest.EvolutionaryOptimizer;
+import com.github.jnidzwetzki.cryptobot.backtest.FitnessFunction;
+import com.github.jnidzwetzki.cryptobot.backtest.OptimizerResult;
+import com.github.jnidzwetzki.cryptobot.backtest.ParameterSpace;
+import com.github.jnidzwetzki.cryptobot.strategy.DonchianChannelStrategy;
+
+public class TestEvolutionaryOptimizer {
+
+	/**
+	 * Test the range parameters
+	 */
+	@Test
+	public void testParameterRange() {
+		final ParameterSpace parameterSpace = new ParameterSpace()
+				.addRange("a", 5, 20, 5)
+				.addRange("b", 1, 3, 1)
+				.addParameter("c", Arrays.asList(7, 8));
+		
+		Assert.assertEquals(4, parameterSpace.getValueCount(0));
+		Assert.assertEquals(20, parameterSpace.getValue(0, 3));
+		Assert.assertEquals(4 * 3 * 2, parameterSpace.getCombinations());
+		
+		final int[] valueIndices = {2, 1, 1};
+		final long combination = parameterSpace.getCombinationIndex(valueIndices);
+		Assert.assertArrayEquals(new int[] {15, 2, 8}, parameterSpace.getCombination(combination));
+		
+		for(long i = 0; i < parameterSpace.getCombinations(); i++) {
+			final int[] parameters = parameterSpace.getCombination(i);
+			final int[] indices = {(parameters[0] - 5) / 5, parameters[1] - 1, parameters[2] - 7};
+			Assert.assertEquals(i, parameterSpace.getCombinationIndex(indices));
+		}
+	}
+	
+	/**
+	 * Invalid range
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidRange() {
+		new ParameterSpace().addRange("a", 10, 5, 1);
+	}
+	
+	/**
+	 * Runs with the same seed yield the same result, independent of the parallelism
+	 */
+	@Test(timeout=120000)
+	public void testDeterministic() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(1000, 1);
+		
+		final List<BacktestResult> results1 = new ArrayList<>();
+		final OptimizerResult result1 = optimize(timeSeries, 1, 1, 40, results1);
+		
+		final List<BacktestResult> results2 = new ArrayList<>();
+		final OptimizerResult result2 = optimize(timeSeries, 4, 1, 40, results2);
+		
+		Assert.assertArrayEquals(result1.getParameters(), result2.getParameters());
+		Assert.assertEquals(result1.getFitness(), result2.getFitness(), 0);
+		Assert.assertEquals(result1.getEvaluations(), result2.getEvaluations());
+		Assert.assertEquals(results1.size(), results2.size());
+		
+		for(int i = 0; i < results1.size(); i++) {
+			Assert.assertEquals(results1.get(i).getName(), results2.get(i).getName());
+		}
+	}
+	
+	/**
+	 * The budget limits the evaluations, the best evaluated combination is returned
+	 */
+	@Test(timeout=120000)
+	public void testBudget() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(1000, 2);
+		
+		final List<BacktestResult> results = new ArrayList<>();
+		final OptimizerResult result = optimize(timeSeries, 4, 2, 25, results);
+		
+		Assert.assertEquals(25, result.getEvaluations());
+		Assert.assertEquals(25, results.size());
+		Assert.assertEquals(25, results.stream().map(r -> r.getName()).distinct().count());
+		
+		final double bestFitness = results.stream()
+				.mapToDouble(r -> FitnessFunction.TOTAL_PL.getFitness(r))
+				.max()
+				.getAsDouble();
+		
+		Assert.assertEquals(bestFitness, result.getFitness(), 0);
+		Assert.assertEquals(bestFitness, result.getResult().getTotalPL(), 0);
+		
+		final int[] parameters = result.getParameters();
+		Assert.assertEquals("Donchian-Channel-" + parameters[0] + "-" + parameters[1], 
+				result.getResult().getName());
+	}
+	
+	/**
+	 * The budget is bigger than the parameter space
+	 */
+	@Test(timeout=120000)
+	public void testSmallSpace() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(500, 3);
+		
+		final ParameterSpace parameterSpace = new ParameterSpace()
+				.addRange("upper", 10, 20, 10)
+				.addRange("lower", 5, 10, 5);
+		
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(2);
+		
+		try {
+			final EvolutionaryOptimizer optimizer = new EvolutionaryOptimizer(timeSeries, parameterSpace, 
+					(p, s) -> new DonchianChannelStrategy(p[0], p[1], s), 1000, 
+					FitnessFunction.PL_PER_MAX_LOSS, 4, 100, 3, forkJoinPool);
+			
+			final OptimizerResult result = optimizer.run(r -> {});
+			Assert.assertTrue(result.getEvaluations() <= 4);
+		} finally {
+			forkJoinPool.shutdown();
+		}
+	}
+	
+	/**
+	 * The budget is smaller than the population
+	 */
+	@Test(timeout=120000)
+	public void testBudgetSmallerThanPopulation() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(500, 4);
+		
+		final ParameterSpace parameterSpace = new ParameterSpace()
+				.addRange("upper", 5, 60, 5)
+				.addRange("lower", 5, 60, 5);
+		
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(2);
+		
+		try {
+			final EvolutionaryOptimizer optimizer = new EvolutionaryOptimizer(timeSeries, parameterSpace, 
+					(p, s) -> new DonchianChannelStrategy(p[0], p[1], s), 1000, 
+					FitnessFunction.TOTAL_PL, 10, 5, 4, forkJoinPool);
+			
+			final List<BacktestResult> results = new ArrayList<>();
+			final OptimizerResult result = optimizer.run(r -> results.add(r));
+			
+			Assert.assertEquals(5, result.getEvaluations());
+			Assert.assertEquals(5, results.size());
+			Assert.assertNotNull(result.getResult());
+			
+			final double bestFitness = results.stream()
+					.mapToDouble(r -> FitnessFunction.TOTAL_PL.getFitness(r))
+					.max()
+					.getAsDouble();
+			
+			Assert.assertEquals(bestFitness, result.getFitness(), 0);
+		} finally {
+			forkJoinPool.shutdown();
+		}
+	}
+	
+	/**
+	 * Run the optimizer on the donchian periods
+	 * @param timeSeries
+	 * @param parallelism
+	 * @param seed
+	 * @param budget
+	 * @param results
+	 * @return
+	 */
+	private OptimizerResult optimize(final TimeSeries timeSeries, final int parallelism, final long seed, 
+			final int budget, final List<BacktestResult> results) {
+		
+		final ParameterSpace parameterSpace = new ParameterSpace()
+				.addRange("upper", 5, 60, 5)
+				.addRange("lower", 5, 60, 5);
+		
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+		
+		try {
+			final EvolutionaryOptimizer optimizer = new EvolutionaryOptimizer(timeSeries, parameterSpace, 
+					(p, s) -> new DonchianChannelStrategy(p[0], p[1], s), 1000, 
+					FitnessFunction.TOTAL_PL, 8, budget, seed, forkJoinPool);
+			
+			return optimizer.run(r -> results.add(r));
+		} finally {
+			forkJoinPool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,237 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ta4j.core.BaseBar;
+import org.ta4j.core.BaseStrategy;
+import org.ta4j.core.Decimal;
+import org.ta4j.core.Indicator;
+import org.ta4j.core.Strategy;
+import org.ta4j.core.TimeSeries;
+import org.ta4j.core.indicators.EMAIndicator;
+import org.ta4j.core.indicators.MACDIndicator;
+import org.ta4j.core.indicators.RSIIndicator;
+import org.ta4j.core.indicators.SMAIndicator;
+import org.ta4j.core.indicators.StochasticOscillatorDIndicator;
+import org.ta4j.core.indicators.StochasticOscillatorKIndicator;
+import org.ta4j.core.indicators.bollinger.BollingerBandsLowerIndicator;
+import org.ta4j.core.indicators.bollinger.BollingerBandsMiddleIndicator;
+import org.ta4j.core.indicators.bollinger.BollingerBandsUpperIndicator;
+import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+import org.ta4j.core.indicators.helpers.HighestValueIndicator;
+import org.ta4j.core.indicators.helpers.LowestValueIndicator;
+import org.ta4j.core.indicators.helpers.MaxPriceIndicator;
+import org.ta4j.core.indicators.helpers.MinPriceIndicator;
+import org.ta4j.core.indicators.statistics.StandardDeviationIndicator;
+import org.ta4j.core.trading.rules.CrossedDownIndicatorRule;
+import org.ta4j.core.trading.rules.CrossedUpIndicatorRule;
+
+import com.github.jnidzwetzki.cryptobot.strategy.indicator.ArrayIndicator;
+import com.github.jnidzwetzki.cryptobot.strategy.indicator.IndicatorKernels;
+import com.github.jnidzwetzki.cryptobot.util.ColumnarTimeSeries;
+
+public class TestIndicatorKernels {
+
+	/**
+	 * The maximal relative difference to the ta4j values
+	 */
+	private final static double DELTA = 0.00000001;
+
+	/**
+	 * The time series
+	 */
+	private final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(2000, 1);
+
+	/**
+	 * The close prices
+	 */
+	private final double[] close = IndicatorKernels.getClosePrices(timeSeries);
+
+	/**
+	 * The close price indicator
+	 */
+	private final ClosePriceIndicator closePrice = new ClosePriceIndicator(timeSeries);
+
+	/**
+	 * Test the price columns
+	 */
+	@Test
+	public void testPriceColumns() {
+		final TimeSeries columnar = new ColumnarTimeSeries("test", Duration.ofMinutes(15), ZoneOffset.UTC);
+
+		for(int i = 0; i <= timeSeries.getEndIndex(); i++) {
+			columnar.addBar(timeSeries.getBar(i));
+		}
+
+		Assert.assertArrayEquals(IndicatorKernels.getOpenPrices(timeSeries), IndicatorKernels.getOpenPrices(columnar), 0);
+		Assert.assertArrayEquals(close, IndicatorKernels.getClosePrices(columnar), 0);
+		Assert.assertArrayEquals(IndicatorKernels.getMaxPrices(timeSeries), IndicatorKernels.getMaxPrices(columnar), 0);
+		Assert.assertArrayEquals(IndicatorKernels.getMinPrices(timeSeries), IndicatorKernels.getMinPrices(columnar), 0);
+
+		Assert.assertEquals(timeSeries.getBar(10).getOpenPrice().doubleValue(), IndicatorKernels.getOpenPrices(timeSeries)[10], 0);
+		Assert.assertEquals(timeSeries.getBar(10).getMaxPrice().doubleValue(), IndicatorKernels.getMaxPrices(timeSeries)[10], 0);
+	}
+
+	/**
+	 * Test the moving averages
+	 */
+	@Test
+	public void testMovingAverages() {
+		for(final int timeFrame : new int[] {1, 5, 40, 3000}) {
+			assertSameValues(new EMAIndicator(closePrice, timeFrame), IndicatorKernels.ema(close, timeFrame));
+			assertSameValues(new SMAIndicator(closePrice, timeFrame), IndicatorKernels.sma(close, timeFrame));
+		}
+	}
+
+	/**
+	 * Test the RSI
+	 */
+	@Test
+	public void testRSI() {
+		for(final int timeFrame : new int[] {2, 14}) {
+			assertSameValues(new RSIIndicator(closePrice, timeFrame), IndicatorKernels.rsi(close, timeFrame));
+		}
+	}
+
+	/**
+	 * Test the MACD
+	 */
+	@Test
+	public void testMACD() {
+		assertSameValues(new MACDIndicator(closePrice, 12, 26), IndicatorKernels.macd(close, 12, 26));
+	}
+
+	/**
+	 * Test the standard deviation and the bollinger bands
+	 */
+	@Test
+	public void testBollinger() {
+		final SMAIndicator sma = new SMAIndicator(closePrice, 20);
+		final StandardDeviationIndicator standardDeviation = new StandardDeviationIndicator(closePrice, 20);
+		final BollingerBandsMiddleIndicator middle = new BollingerBandsMiddleIndicator(sma);
+
+		final double[] kernelSma = IndicatorKernels.sma(close, 20);
+		final double[] kernelStandardDeviation = IndicatorKernels.standardDeviation(close, 20);
+
+		assertSameValues(standardDeviation, kernelStandardDeviation);
+
+		assertSameValues(new BollingerBandsUpperIndicator(middle, standardDeviation, Decimal.valueOf(2)),
+				IndicatorKernels.bollingerUpper(kernelSma, kernelStandardDeviation, 2));
+
+		assertSameValues(new BollingerBandsLowerIndicator(middle, standardDeviation, Decimal.valueOf(1.5)),
+				IndicatorKernels.bollingerLower(kernelSma, kernelStandardDeviation, 1.5));
+	}
+
+	/**
+	 * Test the stochastic oscillator, including bars without a range
+	 */
+	@Test
+	public void testStochastic() {
+		final TimeSeries flatTimeSeries = TimeSeriesHelper.buildTimeSeries(200, 2);
+
+		for(int i = 0; i < 5; i++) {
+			flatTimeSeries.addBar(new BaseBar(flatTimeSeries.getLastBar().getEndTime().plusMinutes(15), 
+					10.0, 10.0, 10.0, 10.0, 1.0));
+		}
+
+		for(final TimeSeries series : new TimeSeries[] {timeSeries, flatTimeSeries}) {
+			final MaxPriceIndicator maxPrice = new MaxPriceIndicator(series);
+			final MinPriceIndicator minPrice = new MinPriceIndicator(series);
+
+			final double[] high = IndicatorKernels.getMaxPrices(series);
+			final double[] low = IndicatorKernels.getMinPrices(series);
+
+			assertSameValues(new HighestValueIndicator(maxPrice, 14), IndicatorKernels.highest(high, 14));
+			assertSameValues(new LowestValueIndicator(minPrice, 14), IndicatorKernels.lowest(low, 14));
+
+			final StochasticOscillatorKIndicator k = new StochasticOscillatorKIndicator(series, 5);
+			final double[] kernelK = IndicatorKernels.stochasticK(IndicatorKernels.getClosePrices(series), 
+					high, low, 5);
+
+			assertSameValues(k, kernelK);
+			assertSameValues(new StochasticOscillatorDIndicator(k), IndicatorKernels.stochasticD(kernelK));
+		}
+
+		Assert.assertTrue(Double.isNaN(IndicatorKernels.stochasticK(new double[] {1, 1}, 
+				new double[] {1, 1}, new double[] {1, 1}, 2)[1]));
+	}
+
+	/**
+	 * The array indicator can be used in rules
+	 */
+	@Test
+	public void testArrayIndicator() {
+		final ArrayIndicator shortEma = new ArrayIndicator(timeSeries, IndicatorKernels.ema(close, 5));
+		final ArrayIndicator longEma = new ArrayIndicator(timeSeries, IndicatorKernels.ema(close, 40));
+
+		final Strategy kernelStrategy = new BaseStrategy(new CrossedUpIndicatorRule(shortEma, longEma), 
+				new CrossedDownIndicatorRule(shortEma, longEma));
+
+		final Strategy ta4jStrategy = new BaseStrategy(
+				new CrossedUpIndicatorRule(new EMAIndicator(closePrice, 5), new EMAIndicator(closePrice, 40)), 
+				new CrossedDownIndicatorRule(new EMAIndicator(closePrice, 5), new EMAIndicator(closePrice, 40)));
+
+		for(int i = 0; i <= timeSeries.getEndIndex(); i++) {
+			Assert.assertEquals(ta4jStrategy.shouldEnter(i), kernelStrategy.shouldEnter(i));
+			Assert.assertEquals(ta4jStrategy.shouldExit(i), kernelStrategy.shouldExit(i));
+		}
+
+		Assert.assertSame(shortEma.getValue(10), shortEma.getValue(10));
+		Assert.assertEquals(IndicatorKernels.ema(close, 5)[10], shortEma.getDoubleValue(10), 0);
+
+		final double[] nanValues = new double[timeSeries.getBarCount()];
+		Arrays.fill(nanValues, Double.NaN);
+		Assert.assertSame(Decimal.NaN, new ArrayIndicator(timeSeries, nanValues).getValue(0));
+	}
+
+	/**
+	 * Invalid array length
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testArrayIndicatorLength() {
+		new ArrayIndicator(timeSeries, new double[10]);
+	}
+
+	/**
+	 * Compare the kernel values with the ta4j indicator
+	 * @param expected
+	 * @param values
+	 */
+	private void assertSameValues(final Indicator<Decimal> expected, final double[] values) {
+		Assert.assertEquals(expected.getTimeSeries().getBarCount(), values.length);
+
+		for(int i = 0; i < values.length; i++) {
+			final Decimal expectedValue = expected.getValue(i);
+
+			if(expectedValue.isNaN()) {
+				Assert.assertTrue("Expected NaN at " + i, Double.isNaN(values[i]));
+				continue;
+			}
+
+			final double expectedDouble = expectedValue.doubleValue();
+			Assert.assertEquals(expected + " at " + i, expectedDouble, values[i], 
+					DELTA * Math.max(1, Math.abs(expectedDouble)));
+		}
+	}
+}
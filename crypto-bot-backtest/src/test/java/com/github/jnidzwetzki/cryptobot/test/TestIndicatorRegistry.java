@@ -0,0 +1,176 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ta4j.core.TimeSeries;
+import org.ta4j.core.indicators.EMAIndicator;
+import org.ta4j.core.indicators.RSIIndicator;
+import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+
+import com.github.jnidzwetzki.cryptobot.backtest.BacktestResult;
+import com.github.jnidzwetzki.cryptobot.backtest.ParameterSpace;
+import com.github.jnidzwetzki.cryptobot.backtest.ParameterSweep;
+import com.github.jnidzwetzki.cryptobot.strategy.EMAStrategy03;
+import com.github.jnidzwetzki.cryptobot.strategy.indicator.ArrayIndicator;
+import com.github.jnidzwetzki.cryptobot.strategy.indicator.IndicatorRegistry;
+
+public class TestIndicatorRegistry {
+
+	/**
+	 * The time series
+	 */
+	private final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(2000, 1);
+
+	/**
+	 * The same parameters return the same indicator
+	 */
+	@Test
+	public void testSameIndicator() {
+		final IndicatorRegistry registry = new IndicatorRegistry(timeSeries);
+
+		Assert.assertSame(registry.getEMA(5), registry.getEMA(5));
+		Assert.assertSame(registry.getRSI(14), registry.getRSI(14));
+		Assert.assertNotSame(registry.getEMA(5), registry.getEMA(12));
+		Assert.assertNotSame(registry.getEMA(5), registry.getSMA(5));
+
+		// close, EMA5, RSI14, EMA12 and SMA5
+		Assert.assertEquals(5, registry.size());
+	}
+
+	/**
+	 * The values are the same as the ta4j values
+	 */
+	@Test
+	public void testValues() {
+		final IndicatorRegistry registry = new IndicatorRegistry(timeSeries);
+		final ClosePriceIndicator closePrice = new ClosePriceIndicator(timeSeries);
+		final EMAIndicator ema = new EMAIndicator(closePrice, 12);
+		final RSIIndicator rsi = new RSIIndicator(closePrice, 14);
+
+		for(int i = 0; i <= timeSeries.getEndIndex(); i++) {
+			Assert.assertEquals(closePrice.getValue(i).doubleValue(), registry.getClosePrice().getDoubleValue(i), 0);
+			Assert.assertEquals(ema.getValue(i).doubleValue(), registry.getEMA(12).getDoubleValue(i), 0.00001);
+			Assert.assertEquals(rsi.getValue(i).doubleValue(), registry.getRSI(14).getDoubleValue(i), 0.00001);
+		}
+	}
+
+	/**
+	 * Concurrent requests get the same indicator
+	 */
+	@Test
+	public void testConcurrentAccess() {
+		final IndicatorRegistry registry = new IndicatorRegistry(timeSeries);
+		final Map<Integer, ArrayIndicator> indicators = new ConcurrentHashMap<>();
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(8);
+
+		try {
+			forkJoinPool.submit(() -> IntStream.range(0, 10000).parallel().forEach(i -> {
+				final int timeFrame = 1 + (i % 50);
+				final ArrayIndicator indicator = registry.getEMA(timeFrame);
+				final ArrayIndicator existing = indicators.putIfAbsent(timeFrame, indicator);
+
+				if(existing != null) {
+					Assert.assertSame(existing, indicator);
+				}
+			})).join();
+		} finally {
+			forkJoinPool.shutdown();
+		}
+
+		// 50 EMAs and the close prices
+		Assert.assertEquals(51, registry.size());
+	}
+
+	/**
+	 * The registry has to belong to the time series of the strategy
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testOtherTimeSeries() {
+		final EMAStrategy03 strategy = new EMAStrategy03(5, 12, 40, timeSeries);
+		strategy.setIndicatorRegistry(new IndicatorRegistry(TimeSeriesHelper.buildTimeSeries(10, 2)));
+	}
+
+	/**
+	 * A sweep with shared indicators returns the same results
+	 */
+	@Test
+	public void testSweep() {
+		final ParameterSpace parameterSpace = new ParameterSpace()
+				.addParameter("sma1", Arrays.asList(5, 8))
+				.addParameter("sma2", Arrays.asList(12, 16))
+				.addParameter("sma3", Arrays.asList(40, 50, 60));
+
+		final List<BacktestResult> expected = runSweep(parameterSpace, null);
+		final IndicatorRegistry registry = new IndicatorRegistry(timeSeries);
+		final List<BacktestResult> results = runSweep(parameterSpace, registry);
+
+		Assert.assertEquals(expected.size(), results.size());
+
+		for(int i = 0; i < expected.size(); i++) {
+			Assert.assertEquals(expected.get(i).getName(), results.get(i).getName());
+			Assert.assertEquals(expected.get(i).getTotalTrades(), results.get(i).getTotalTrades());
+			Assert.assertEquals(expected.get(i).getTotalPL(), results.get(i).getTotalPL(), 0.0001);
+		}
+
+		// close, RSI14 and 7 distinct EMAs for 12 combinations
+		Assert.assertEquals(9, registry.size());
+	}
+
+	/**
+	 * Run the sweep and sort the results by name
+	 * @param parameterSpace
+	 * @param registry
+	 * @return
+	 */
+	private List<BacktestResult> runSweep(final ParameterSpace parameterSpace, final IndicatorRegistry registry) {
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+		final List<BacktestResult> results = new CopyOnWriteArrayList<>();
+
+		try {
+			final ParameterSweep parameterSweep = new ParameterSweep(timeSeries, parameterSpace,
+					(p, s) -> new EMAStrategy03(p[0], p[1], p[2], s) {
+						
+						// The entry is executed on the open price, leave some room
+						@Override
+						public double getContracts(final double portfolioValue, final int barIndex) {
+							return super.getContracts(portfolioValue, barIndex) * 0.5;
+						}
+					}, 1000, forkJoinPool);
+
+			parameterSweep.setIndicatorRegistry(registry);
+			parameterSweep.run(r -> results.add(r));
+		} finally {
+			forkJoinPool.shutdown();
+		}
+
+		return results.stream()
+				.sorted((r1, r2) -> r1.getName().compareTo(r2.getName()))
+				.collect(Collectors.toList());
+	}
+}
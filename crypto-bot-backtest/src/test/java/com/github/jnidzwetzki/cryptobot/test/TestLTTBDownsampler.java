@@ -0,0 +1,123 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.jnidzwetzki.cryptobot.backtest.LTTBDownsampler;
+
+public class TestLTTBDownsampler {
+
+	/**
+	 * Downsample a random walk
+	 */
+	@Test
+	public void testDownsample() {
+		final int length = 100000;
+		final double[] x = new double[length];
+		final double[] y = new double[length];
+		final Random random = new Random(1);
+
+		for(int i = 0; i < length; i++) {
+			x[i] = i * 1000.0;
+			y[i] = (i == 0 ? 1000 : y[i - 1]) + random.nextGaussian();
+		}
+
+		final int[] points = LTTBDownsampler.downsample(x, y, 500);
+
+		Assert.assertEquals(500, points.length);
+		Assert.assertEquals(0, points[0]);
+		Assert.assertEquals(length - 1, points[499]);
+
+		for(int i = 1; i < points.length; i++) {
+			Assert.assertTrue(points[i] > points[i - 1]);
+		}
+	}
+
+	/**
+	 * A single spike is kept
+	 */
+	@Test
+	public void testSpike() {
+		final double[] x = new double[1000];
+		final double[] y = new double[1000];
+
+		for(int i = 0; i < x.length; i++) {
+			x[i] = i;
+			y[i] = 10;
+		}
+
+		y[567] = 100;
+		y[123] = -50;
+
+		final int[] points = LTTBDownsampler.downsample(x, y, 20);
+
+		Assert.assertTrue(contains(points, 567));
+		Assert.assertTrue(contains(points, 123));
+	}
+
+	/**
+	 * Short series are not downsampled
+	 */
+	@Test
+	public void testShortSeries() {
+		final double[] values = {1, 2, 3, 4};
+
+		Assert.assertArrayEquals(new int[] {0, 1, 2, 3}, LTTBDownsampler.downsample(values, values, 10));
+		Assert.assertArrayEquals(new int[] {0, 1, 2, 3}, LTTBDownsampler.downsample(values, values, 4));
+		Assert.assertArrayEquals(new int[] {0, 3}, removeMiddle(LTTBDownsampler.downsample(values, values, 3)));
+		Assert.assertEquals(0, LTTBDownsampler.downsample(new double[0], new double[0], 10).length);
+	}
+
+	/**
+	 * Different lengths of x and y
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testDifferentLength() {
+		LTTBDownsampler.downsample(new double[10], new double[9], 5);
+	}
+
+	/**
+	 * Is the value contained in the array
+	 * @param values
+	 * @param value
+	 * @return
+	 */
+	private boolean contains(final int[] values, final int value) {
+		for(final int element : values) {
+			if(element == value) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Get the first and the last element
+	 * @param values
+	 * @return
+	 */
+	private int[] removeMiddle(final int[] values) {
+		Assert.assertEquals(3, values.length);
+		return new int[] {values[0], values[2]};
+	}
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.cryptobot.backtest.MonteCarloResult;
+import com.github.jnidzwetzki.cryptobot.backtest.MonteCarloSimulation;
+import com.github.jnidzwetzki.cryptobot.backtest.TradeExecutor;
+import com.github.jnidzwetzki.cryptobot.strategy.DonchianChannelStrategy;
+
+public class TestMonteCarloSimulation {
+
+	private final static double DELTA = 0.000001;
+
+	/**
+	 * The executor records the P/L of each trade
+	 */
+	@Test(timeout=60000)
+	public void testTradeRecording() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(1000, 1);
+		final TradeExecutor tradeExecutor = new TradeExecutor(1000, new DonchianChannelStrategy(20, 10, timeSeries));
+		tradeExecutor.executeTrades();
+
+		final double[] tradePL = tradeExecutor.getTradePL();
+		final double[] tradeReturns = tradeExecutor.getTradeReturns();
+
+		Assert.assertTrue(tradeExecutor.getTotalTrades() > 16);
+		Assert.assertEquals(tradeExecutor.getTotalTrades(), tradePL.length);
+		Assert.assertEquals(tradeExecutor.getTotalTrades(), tradeReturns.length);
+
+		// The P/L includes the fees
+		Assert.assertEquals(tradeExecutor.getTotalPL(), Arrays.stream(tradePL).sum(), DELTA);
+
+		double value = 1000;
+
+		for(final double tradeReturn : tradeReturns) {
+			value = value * (1 + tradeReturn);
+		}
+
+		Assert.assertEquals(tradeExecutor.getPortfolioValue(), value, DELTA);
+	}
+
+	/**
+	 * A permutation changes the order but not the final value
+	 */
+	@Test(timeout=60000)
+	public void testPermutation() {
+		final double[] tradeReturns = {0.1, -0.2, 0.05, -0.1, 0.3, -0.05};
+		final MonteCarloSimulation simulation = new MonteCarloSimulation(tradeReturns, 1000, 0.5,
+				MonteCarloSimulation.Mode.PERMUTATION);
+
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+
+		try {
+			final MonteCarloResult result = simulation.run(5000, 1, forkJoinPool);
+
+			final double expected = 1000 * 1.1 * 0.8 * 1.05 * 0.9 * 1.3 * 0.95;
+			Assert.assertEquals(5000, result.getPaths());
+			Assert.assertEquals(expected, result.getFinalValuePercentile(0), DELTA);
+			Assert.assertEquals(expected, result.getFinalValuePercentile(100), DELTA);
+			Assert.assertEquals(0, result.getRuinProbability(), 0);
+
+			// The three losses in a row are the worst case, the biggest single loss is the best case
+			Assert.assertEquals(1 - (0.8 * 0.9 * 0.95), result.getMaxDrawdownPercentile(100), DELTA);
+			Assert.assertEquals(0.2, result.getMaxDrawdownPercentile(0), DELTA);
+		} finally {
+			forkJoinPool.shutdown();
+		}
+	}
+
+	/**
+	 * Bootstrap samples with known outcomes
+	 */
+	@Test(timeout=60000)
+	public void testBootstrap() {
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+
+		try {
+			final MonteCarloResult winner = new MonteCarloSimulation(new double[] {0.01}, 1000, 0.5,
+					MonteCarloSimulation.Mode.BOOTSTRAP).run(100, 1, forkJoinPool);
+
+			Assert.assertEquals(1010, winner.getFinalValuePercentile(50), DELTA);
+			Assert.assertEquals(0, winner.getMaxDrawdownPercentile(100), 0);
+			Assert.assertEquals(0, winner.getRuinProbability(), 0);
+
+			final double[] losses = new double[10];
+			Arrays.fill(losses, -0.1);
+
+			final MonteCarloResult looser = new MonteCarloSimulation(losses, 1000, 0.5,
+					MonteCarloSimulation.Mode.BOOTSTRAP).run(100, 1, forkJoinPool);
+
+			Assert.assertEquals(1000 * Math.pow(0.9, 10), looser.getMeanFinalValue(), DELTA);
+			Assert.assertEquals(1 - Math.pow(0.9, 10), looser.getMaxDrawdownPercentile(50), DELTA);
+			Assert.assertEquals(1, looser.getRuinProbability(), 0);
+
+			final MonteCarloResult mixed = new MonteCarloSimulation(new double[] {0.5, -0.5}, 1000, 0.5,
+					MonteCarloSimulation.Mode.BOOTSTRAP).run(20000, 1, forkJoinPool);
+
+			// The ruin level is only reached when the first draw is a loss
+			Assert.assertEquals(0.5, mixed.getRuinProbability(), 0.02);
+		} finally {
+			forkJoinPool.shutdown();
+		}
+	}
+
+	/**
+	 * The result depends only on the seed
+	 */
+	@Test(timeout=60000)
+	public void testDeterministic() {
+		final double[] tradeReturns = {0.1, -0.2, 0.05, -0.1, 0.3, -0.05, 0.02};
+		final MonteCarloSimulation simulation = new MonteCarloSimulation(tradeReturns, 1000, 0.7,
+				MonteCarloSimulation.Mode.BOOTSTRAP);
+
+		final ForkJoinPool singleThread = new ForkJoinPool(1);
+		final ForkJoinPool multiThread = new ForkJoinPool(4);
+
+		try {
+			final MonteCarloResult result1 = simulation.run(10000, 7, singleThread);
+			final MonteCarloResult result2 = simulation.run(10000, 7, multiThread);
+			final MonteCarloResult result3 = simulation.run(10000, 8, multiThread);
+
+			Assert.assertEquals(result1.toString(), result2.toString());
+			Assert.assertEquals(result1.getMeanFinalValue(), result2.getMeanFinalValue(), 0);
+			Assert.assertNotEquals(result1.getMeanFinalValue(), result3.getMeanFinalValue(), 0);
+		} finally {
+			singleThread.shutdown();
+			multiThread.shutdown();
+		}
+	}
+
+	/**
+	 * No trades to resample
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testNoTrades() {
+		new MonteCarloSimulation(new double[0], 1000, 0.5, MonteCarloSimulation.Mode.BOOTSTRAP);
+	}
+}
@@ -0,0 +1,196 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.cryptobot.backtest.BacktestResult;
+import com.github.jnidzwetzki.cryptobot.backtest.ParameterSpace;
+import com.github.jnidzwetzki.cryptobot.backtest.ParameterSweep;
+import com.github.jnidzwetzki.cryptobot.strategy.EMAStrategy03;
+
+public class TestParameterSweep {
+
+	/**
+	 * The time series
+	 */
+	private final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(1000, 1);
+
+	/**
+	 * The combinations are in the order of nested for loops
+	 */
+	@Test
+	public void testCombinationIndex() {
+		final ParameterSpace parameterSpace = new ParameterSpace()
+				.addParameter("a", Arrays.asList(1, 2))
+				.addRange("b", 10, 30, 10)
+				.addParameter("c", Arrays.asList(7, 8, 9, 10));
+
+		Assert.assertEquals(3, parameterSpace.getDimensions());
+		Assert.assertEquals(24, parameterSpace.getCombinations());
+		Assert.assertEquals(3, parameterSpace.getValueCount(1));
+		Assert.assertEquals(30, parameterSpace.getValue(1, 2));
+
+		long index = 0;
+
+		for(int a = 0; a < 2; a++) {
+			for(int b = 0; b < 3; b++) {
+				for(int c = 0; c < 4; c++) {
+					final int[] expected = {
+							parameterSpace.getValue(0, a),
+							parameterSpace.getValue(1, b),
+							parameterSpace.getValue(2, c) };
+
+					Assert.assertArrayEquals(expected, parameterSpace.getCombination(index));
+					Assert.assertEquals(index, parameterSpace.getCombinationIndex(new int[] {a, b, c}));
+					index++;
+				}
+			}
+		}
+
+		Assert.assertArrayEquals(new int[] {1, 10, 7}, parameterSpace.getCombination(0));
+		Assert.assertArrayEquals(new int[] {2, 30, 10}, parameterSpace.getCombination(23));
+	}
+
+	/**
+	 * Invalid combinations
+	 */
+	@Test
+	public void testInvalidCombination() {
+		final ParameterSpace parameterSpace = new ParameterSpace()
+				.addRange("a", 1, 5, 1);
+
+		Assert.assertEquals(0, new ParameterSpace().getCombinations());
+
+		for(final long index : new long[] {-1, 5}) {
+			try {
+				parameterSpace.getCombination(index);
+				Assert.fail("Exception expected for " + index);
+			} catch (IllegalArgumentException e) {
+				// Expected
+			}
+		}
+
+		try {
+			parameterSpace.getCombinationIndex(new int[] {5});
+			Assert.fail("Exception expected");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	/**
+	 * Every combination is reported exactly once, independent of the parallelism
+	 */
+	@Test
+	public void testOneResultPerCombination() {
+		final ParameterSpace parameterSpace = new ParameterSpace()
+				.addParameter("sma1", Arrays.asList(5, 8, 10))
+				.addParameter("sma2", Arrays.asList(12, 16))
+				.addParameter("sma3", Arrays.asList(40, 50, 60));
+
+		final Set<String> expectedNames = new HashSet<>();
+
+		for(long i = 0; i < parameterSpace.getCombinations(); i++) {
+			final int[] p = parameterSpace.getCombination(i);
+			expectedNames.add("EMAStrategy03-" + p[0] + "-" + p[1] + "-" + p[2]);
+		}
+
+		final Map<String, BacktestResult> results1 = runSweep(parameterSpace, 1);
+		final Map<String, BacktestResult> results4 = runSweep(parameterSpace, 4);
+
+		Assert.assertEquals(expectedNames, results1.keySet());
+		Assert.assertEquals(expectedNames, results4.keySet());
+
+		for(final String name : expectedNames) {
+			final BacktestResult result1 = results1.get(name);
+			final BacktestResult result4 = results4.get(name);
+			Assert.assertEquals(result1.getTotalTrades(), result4.getTotalTrades());
+			Assert.assertEquals(result1.getTotalPL(), result4.getTotalPL(), 0);
+			Assert.assertEquals(result1.getPortfolioValue(), result4.getPortfolioValue(), 0);
+			Assert.assertEquals(result1.getMaxDrawdown(), result4.getMaxDrawdown(), 0);
+		}
+	}
+
+	/**
+	 * An empty parameter space produces no results
+	 */
+	@Test
+	public void testEmptySpace() {
+		final List<BacktestResult> results = new ArrayList<>();
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(2);
+
+		try {
+			new ParameterSweep(timeSeries, new ParameterSpace(), 
+					(p, s) -> new EMAStrategy03(p[0], p[1], p[2], s), 1000, forkJoinPool)
+				.run(r -> results.add(r));
+		} finally {
+			forkJoinPool.shutdown();
+		}
+
+		Assert.assertTrue(results.isEmpty());
+	}
+
+	/**
+	 * Run the sweep, fail on duplicate results
+	 * @param parameterSpace
+	 * @param parallelism
+	 * @return
+	 */
+	private Map<String, BacktestResult> runSweep(final ParameterSpace parameterSpace, final int parallelism) {
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+		final Map<String, BacktestResult> results = new ConcurrentHashMap<>();
+		final AtomicInteger reportedResults = new AtomicInteger();
+
+		try {
+			final ParameterSweep parameterSweep = new ParameterSweep(timeSeries, parameterSpace,
+					(p, s) -> new EMAStrategy03(p[0], p[1], p[2], s) {
+
+						// The entry is executed on the open price, leave some room
+						@Override
+						public double getContracts(final double portfolioValue, final int barIndex) {
+							return super.getContracts(portfolioValue, barIndex) * 0.5;
+						}
+					}, 1000, forkJoinPool);
+
+			parameterSweep.run(r -> {
+				reportedResults.incrementAndGet();
+				results.put(r.getName(), r);
+			});
+		} finally {
+			forkJoinPool.shutdown();
+		}
+
+		Assert.assertEquals(parameterSpace.getCombinations(), reportedResults.get());
+		Assert.assertEquals(parameterSpace.getCombinations(), results.size());
+
+		return results;
+	}
+}
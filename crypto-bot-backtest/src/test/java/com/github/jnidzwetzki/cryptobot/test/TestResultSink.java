@@ -0,0 +1,174 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.jnidzwetzki.cryptobot.backtest.BacktestResult;
+import com.github.jnidzwetzki.cryptobot.backtest.FitnessFunction;
+import com.github.jnidzwetzki.cryptobot.backtest.ResultQuery;
+import com.github.jnidzwetzki.cryptobot.backtest.ResultSink;
+import com.github.jnidzwetzki.cryptobot.backtest.TopResults;
+
+public class TestResultSink {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	/**
+	 * Keep the best results
+	 */
+	@Test
+	public void testTopResults() {
+		final TopResults topResults = new TopResults(FitnessFunction.TOTAL_PL, 3);
+
+		for(final int pl : new int[] {5, -3, 12, 7, 1, 9}) {
+			topResults.offer(buildResult("r" + pl, pl, 0));
+		}
+
+		Assert.assertFalse(topResults.offer(buildResult("nan", Double.NaN, 0)));
+
+		final List<String> names = topResults.getResults().stream()
+				.map(BacktestResult::getName)
+				.collect(Collectors.toList());
+
+		Assert.assertEquals("[r12, r9, r7]", names.toString());
+	}
+
+	/**
+	 * Add results concurrently and query the written file
+	 * @throws IOException
+	 */
+	@Test(timeout=60000)
+	public void testSinkAndQuery() throws IOException {
+		final File file = temporaryFolder.newFile();
+		final Map<String, FitnessFunction> metrics = new LinkedHashMap<>();
+		metrics.put("pl", FitnessFunction.TOTAL_PL);
+		metrics.put("sharpe", FitnessFunction.SHARPE_RATIO);
+
+		final List<BacktestResult> results = new ArrayList<>();
+
+		for(int i = 0; i < 10000; i++) {
+			results.add(buildResult("r" + i, (i * 7919) % 10007, ((i * 104729) % 10009) / 1000.0));
+		}
+
+		try (final ResultSink resultSink = new ResultSink(file, metrics, 10)) {
+			IntStream.range(0, results.size()).parallel().forEach(i -> resultSink.accept(results.get(i)));
+
+			Assert.assertEquals(getBest(results, FitnessFunction.TOTAL_PL, 10), 
+					getNames(resultSink.getTopResults("pl")));
+			Assert.assertEquals(getBest(results, FitnessFunction.SHARPE_RATIO, 10), 
+					getNames(resultSink.getTopResults("sharpe")));
+		}
+
+		final List<BacktestResult> readResults = new ArrayList<>();
+		Assert.assertEquals(results.size(), ResultQuery.read(file, r -> readResults.add(r)));
+		Assert.assertEquals(getNames(results).stream().sorted().collect(Collectors.toList()), 
+				getNames(readResults).stream().sorted().collect(Collectors.toList()));
+
+		final List<BacktestResult> filteredResults = results.stream()
+				.filter(r -> r.getSharpeRatio() < 5)
+				.collect(Collectors.toList());
+
+		Assert.assertEquals(getBest(filteredResults, FitnessFunction.TOTAL_PL, 5), 
+				getNames(ResultQuery.query(file, r -> r.getSharpeRatio() < 5, FitnessFunction.TOTAL_PL, 5)));
+	}
+
+	/**
+	 * A partly written last result is ignored
+	 * @throws IOException
+	 */
+	@Test
+	public void testTruncatedFile() throws IOException {
+		final File file = temporaryFolder.newFile();
+
+		try (final ResultSink resultSink = new ResultSink(file, new LinkedHashMap<>(), 1)) {
+			resultSink.accept(buildResult("r1", 1, 0));
+			resultSink.accept(buildResult("r2", 2, 0));
+		}
+
+		try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			randomAccessFile.setLength(randomAccessFile.length() - 3);
+		}
+
+		Assert.assertEquals(1, ResultQuery.read(file, r -> Assert.assertEquals("r1", r.getName())));
+	}
+
+	/**
+	 * No results after close
+	 * @throws IOException
+	 */
+	@Test(expected=IllegalStateException.class)
+	public void testClosed() throws IOException {
+		final ResultSink resultSink = new ResultSink(temporaryFolder.newFile(), new LinkedHashMap<>(), 1);
+		resultSink.close();
+		resultSink.accept(buildResult("r1", 1, 0));
+	}
+
+	/**
+	 * Get the names of the best results (brute force)
+	 * @param results
+	 * @param fitnessFunction
+	 * @param limit
+	 * @return
+	 */
+	private List<String> getBest(final List<BacktestResult> results, final FitnessFunction fitnessFunction, 
+			final int limit) {
+
+		return results.stream()
+				.sorted(Comparator.comparingDouble((BacktestResult r) -> fitnessFunction.getFitness(r)).reversed())
+				.limit(limit)
+				.map(BacktestResult::getName)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Get the names of the results
+	 * @param results
+	 * @return
+	 */
+	private List<String> getNames(final List<BacktestResult> results) {
+		return results.stream().map(BacktestResult::getName).collect(Collectors.toList());
+	}
+
+	/**
+	 * Build a result
+	 * @param name
+	 * @param totalPL
+	 * @param sharpeRatio
+	 * @return
+	 */
+	private BacktestResult buildResult(final String name, final double totalPL, final double sharpeRatio) {
+		return new BacktestResult(name, 1000 + totalPL, totalPL, 5, 10, 6, 4, 50, -20, 2, 1, 0.15, 42, 
+				sharpeRatio, 0.02, 0.4, 1.5, 10);
+	}
+}
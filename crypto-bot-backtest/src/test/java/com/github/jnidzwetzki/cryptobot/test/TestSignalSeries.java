@@ -0,0 +1,195 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.cryptobot.backtest.SignalSeries;
+import com.github.jnidzwetzki.cryptobot.backtest.TradeExecutor;
+import com.github.jnidzwetzki.cryptobot.strategy.BBreakoutStrategy;
+import com.github.jnidzwetzki.cryptobot.strategy.DonchianChannelStrategy;
+import com.github.jnidzwetzki.cryptobot.strategy.EMAStrategy03;
+import com.github.jnidzwetzki.cryptobot.strategy.TradeStrategyFactory;
+
+public class TestSignalSeries {
+
+	/**
+	 * Parallel chunks produce the same signals as the sequential evaluation
+	 */
+	@Test(timeout=60000)
+	public void testParallelChunks() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(1000, 1);
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+
+		try {
+			final SignalSeries donchian = SignalSeries.compute(
+					new DonchianChannelStrategy(20, 10, timeSeries).getStrategy(), 0, 999);
+
+			final SignalSeries donchianParallel = SignalSeries.compute(
+					() -> new DonchianChannelStrategy(20, 10, timeSeries).getStrategy(), 
+					0, 999, 97, forkJoinPool);
+
+			assertSameSignals(donchian, donchianParallel);
+
+			final SignalSeries ema = SignalSeries.compute(
+					new EMAStrategy03(5, 12, 40, timeSeries).getStrategy(), 100, 899);
+
+			final SignalSeries emaParallel = SignalSeries.compute(
+					() -> new EMAStrategy03(5, 12, 40, timeSeries).getStrategy(), 
+					100, 899, 64, forkJoinPool);
+
+			assertSameSignals(ema, emaParallel);
+		} finally {
+			forkJoinPool.shutdown();
+		}
+	}
+
+	/**
+	 * Replaying the signals gives the same result as evaluating the rules
+	 */
+	@Test(timeout=60000)
+	public void testReplay() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(1000, 2);
+
+		assertSameReplay(new DonchianChannelStrategy(20, 10, timeSeries), 0, 999);
+		assertSameReplay(new DonchianChannelStrategy(40, 5, timeSeries), 200, 700);
+		assertSameReplay(buildEMAStrategy(timeSeries), 0, 999);
+		assertSameReplay(buildBBreakoutStrategy(timeSeries), 0, 999);
+	}
+
+	/**
+	 * Replay the same signals with a different position size
+	 */
+	@Test(timeout=60000)
+	public void testReplayOtherPositionSize() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(1000, 3);
+
+		final SignalSeries signals = SignalSeries.compute(
+				new DonchianChannelStrategy(20, 10, timeSeries).getStrategy(), 0, 999);
+
+		final TradeStrategyFactory quarter = new DonchianChannelStrategy(20, 10, timeSeries) {
+			@Override
+			public double getContracts(final double portfolioValue, final int barIndex) {
+				return super.getContracts(portfolioValue, barIndex) / 4;
+			}
+		};
+
+		final TradeExecutor expected = new TradeExecutor(1000, quarter);
+		expected.executeTrades();
+
+		final TradeExecutor replay = new TradeExecutor(1000, quarter);
+		replay.executeTrades(signals);
+
+		assertSameResult(expected, replay);
+	}
+
+	/**
+	 * The signals have to cover the range of the executor
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testSignalsNotCovered() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(100, 4);
+		final TradeStrategyFactory factory = new DonchianChannelStrategy(20, 10, timeSeries);
+		final SignalSeries signals = SignalSeries.compute(factory.getStrategy(), 10, 99);
+
+		new TradeExecutor(1000, factory).executeTrades(signals);
+	}
+
+	/**
+	 * Compare the replay with the evaluation of the rules
+	 * @param factory
+	 * @param beginIndex
+	 * @param endIndex
+	 */
+	private void assertSameReplay(final TradeStrategyFactory factory, final int beginIndex, final int endIndex) {
+		final TradeExecutor expected = new TradeExecutor(1000, factory, beginIndex, endIndex);
+		expected.executeTrades();
+
+		final SignalSeries signals = SignalSeries.compute(factory.getStrategy(), beginIndex, endIndex);
+		final TradeExecutor replay = new TradeExecutor(1000, factory, beginIndex, endIndex);
+		replay.executeTrades(signals);
+
+		assertSameResult(expected, replay);
+	}
+
+	/**
+	 * Build the EMA strategy, invest only the half of the portfolio (the 
+	 * contracts are calculated on the close price, but the trade is opened 
+	 * on the open price of the bar)
+	 * @param timeSeries
+	 * @return
+	 */
+	private TradeStrategyFactory buildEMAStrategy(final TimeSeries timeSeries) {
+		return new EMAStrategy03(5, 12, 40, timeSeries) {
+			@Override
+			public double getContracts(final double portfolioValue, final int barIndex) {
+				return super.getContracts(portfolioValue, barIndex) / 2;
+			}
+		};
+	}
+
+	/**
+	 * Build the bollinger strategy, invest only the half of the portfolio
+	 * @param timeSeries
+	 * @return
+	 */
+	private TradeStrategyFactory buildBBreakoutStrategy(final TimeSeries timeSeries) {
+		return new BBreakoutStrategy(20, 2, 1, timeSeries) {
+			@Override
+			public double getContracts(final double portfolioValue, final int barIndex) {
+				return super.getContracts(portfolioValue, barIndex) / 2;
+			}
+		};
+	}
+
+	/**
+	 * Compare two signal series
+	 * @param expected
+	 * @param signals
+	 */
+	private void assertSameSignals(final SignalSeries expected, final SignalSeries signals) {
+		Assert.assertEquals(expected.getBeginIndex(), signals.getBeginIndex());
+		Assert.assertEquals(expected.getEndIndex(), signals.getEndIndex());
+		Assert.assertTrue(expected.getEntryCount() > 0);
+		Assert.assertTrue(expected.getExitCount() > 0);
+
+		for(int i = expected.getBeginIndex(); i <= expected.getEndIndex(); i++) {
+			Assert.assertEquals(expected.isEntry(i), signals.isEntry(i));
+			Assert.assertEquals(expected.isExit(i), signals.isExit(i));
+		}
+	}
+
+	/**
+	 * Compare two executors
+	 * @param expected
+	 * @param result
+	 */
+	private void assertSameResult(final TradeExecutor expected, final TradeExecutor result) {
+		Assert.assertTrue(expected.getTotalTrades() > 0);
+		Assert.assertEquals(expected.getTotalTrades(), result.getTotalTrades());
+		Assert.assertEquals(expected.getWinner(), result.getWinner());
+		Assert.assertEquals(expected.getExecutedStopLoss(), result.getExecutedStopLoss());
+		Assert.assertEquals(expected.getPortfolioValue(), result.getPortfolioValue(), 0);
+		Assert.assertEquals(expected.getFees(), result.getFees(), 0);
+		Assert.assertEquals(expected.getMetrics().toString(), result.getMetrics().toString());
+	}
+}
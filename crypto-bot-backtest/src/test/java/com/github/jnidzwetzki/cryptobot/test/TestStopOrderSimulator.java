@@ -0,0 +1,251 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.jnidzwetzki.cryptobot.backtest.StopOrderSimulator;
+import com.github.jnidzwetzki.cryptobot.backtest.TickArchive;
+import com.github.jnidzwetzki.cryptobot.backtest.TickArchiveWriter;
+
+public class TestStopOrderSimulator {
+
+	private final static double DELTA = 0.000001;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	/**
+	 * Fill a buy and a sell stop
+	 */
+	@Test
+	public void testFill() {
+		final List<Integer> fills = new ArrayList<>();
+		final StopOrderSimulator simulator = new StopOrderSimulator(0.001, (o, t, p, a) -> fills.add(o));
+
+		final int buyOrder = simulator.placeOrder(2, 102);
+		final int sellOrder = simulator.placeOrder(-2, 95);
+
+		simulator.accept(1000, 100, 1);
+		simulator.accept(2000, 101.99, 1);
+		Assert.assertTrue(fills.isEmpty());
+		Assert.assertEquals(2, simulator.getActiveOrders());
+
+		// First crossing tick
+		simulator.accept(3000, 103, 1);
+		Assert.assertEquals(1, fills.size());
+		Assert.assertTrue(simulator.isFilled(buyOrder));
+		Assert.assertEquals(103 * 1.001, simulator.getFillPrice(buyOrder), DELTA);
+		Assert.assertEquals(3000, simulator.getFillTimestamp(buyOrder));
+
+		// Gap below the stop price
+		simulator.accept(4000, 90, 1);
+		Assert.assertEquals(2, fills.size());
+		Assert.assertEquals(90 * 0.999, simulator.getFillPrice(sellOrder), DELTA);
+		Assert.assertEquals(0, simulator.getActiveOrders());
+		Assert.assertEquals(2, simulator.getFilledOrders());
+	}
+
+	/**
+	 * The orders are filled by price, orders with the same price by time
+	 */
+	@Test
+	public void testFillOrder() {
+		final List<Integer> fills = new ArrayList<>();
+		final StopOrderSimulator simulator = new StopOrderSimulator(0, (o, t, p, a) -> fills.add(o));
+
+		final int order1 = simulator.placeOrder(1, 105);
+		final int order2 = simulator.placeOrder(1, 101);
+		final int order3 = simulator.placeOrder(1, 103);
+		final int order4 = simulator.placeOrder(1, 101);
+
+		simulator.accept(1000, 110, 1);
+
+		Assert.assertEquals(4, fills.size());
+		Assert.assertEquals(order2, (int) fills.get(0));
+		Assert.assertEquals(order4, (int) fills.get(1));
+		Assert.assertEquals(order3, (int) fills.get(2));
+		Assert.assertEquals(order1, (int) fills.get(3));
+	}
+
+	/**
+	 * Canceled orders are not filled
+	 */
+	@Test
+	public void testCancel() {
+		final List<Integer> fills = new ArrayList<>();
+		final StopOrderSimulator simulator = new StopOrderSimulator(0, (o, t, p, a) -> fills.add(o));
+
+		final int order1 = simulator.placeOrder(-1, 99);
+		final int order2 = simulator.placeOrder(-1, 98);
+
+		Assert.assertTrue(simulator.cancelOrder(order1));
+		Assert.assertFalse(simulator.cancelOrder(order1));
+		Assert.assertFalse(simulator.isActive(order1));
+		Assert.assertEquals(1, simulator.getActiveOrders());
+
+		simulator.accept(1000, 97, 1);
+
+		Assert.assertEquals(1, fills.size());
+		Assert.assertEquals(order2, (int) fills.get(0));
+		Assert.assertFalse(simulator.isFilled(order1));
+		Assert.assertTrue(Double.isNaN(simulator.getFillPrice(order1)));
+		Assert.assertFalse(simulator.cancelOrder(order2));
+
+		// Many canceled orders (compaction of the heap)
+		final List<Integer> orders = new ArrayList<>();
+
+		for(int i = 0; i < 5000; i++) {
+			orders.add(simulator.placeOrder(1, 200 + i));
+		}
+
+		for(int i = 0; i < 4990; i++) {
+			simulator.cancelOrder(orders.get(i));
+		}
+
+		Assert.assertEquals(10, simulator.getActiveOrders());
+
+		simulator.accept(2000, 10000, 1);
+		Assert.assertEquals(11, fills.size());
+		Assert.assertEquals(orders.get(4990), fills.get(1));
+		Assert.assertEquals(orders.get(4999), fills.get(10));
+	}
+
+	/**
+	 * Compare the fills with a brute force implementation
+	 */
+	@Test(timeout=60000)
+	public void testCompareWithBruteForce() {
+		final Random random = new Random(1);
+		final List<long[]> fills = new ArrayList<>();
+		final StopOrderSimulator simulator = new StopOrderSimulator(0, 
+				(o, t, p, a) -> fills.add(new long[] {o, t}));
+
+		final List<double[]> orders = new ArrayList<>();
+		final List<Long> expectedFills = new ArrayList<>();
+		double price = 1000;
+
+		for(int tick = 0; tick < 100000; tick++) {
+
+			// Place and cancel orders
+			if(random.nextInt(20) == 0) {
+				final double amount = random.nextBoolean() ? 1 : -1;
+				final double stopPrice = price + (random.nextGaussian() * 20);
+				final int orderId = simulator.placeOrder(amount, stopPrice);
+				Assert.assertEquals(orders.size(), orderId);
+				orders.add(new double[] {amount, stopPrice, 1});
+				expectedFills.add(-1L);
+			}
+
+			if(random.nextInt(40) == 0 && ! orders.isEmpty()) {
+				final int orderId = random.nextInt(orders.size());
+				final boolean active = orders.get(orderId)[2] == 1;
+				Assert.assertEquals(active, simulator.cancelOrder(orderId));
+				orders.get(orderId)[2] = 0;
+			}
+
+			price = Math.max(1, price + random.nextGaussian());
+			simulator.accept(tick, price, 1);
+
+			for(int orderId = 0; orderId < orders.size(); orderId++) {
+				final double[] order = orders.get(orderId);
+
+				if(order[2] == 1 && ((order[0] > 0 && price >= order[1]) || (order[0] < 0 && price <= order[1]))) {
+					order[2] = 0;
+					expectedFills.set(orderId, (long) tick);
+				}
+			}
+		}
+
+		Assert.assertTrue(fills.size() > 1000);
+
+		int expectedFillCount = 0;
+
+		for(int orderId = 0; orderId < orders.size(); orderId++) {
+			Assert.assertEquals((long) expectedFills.get(orderId), simulator.getFillTimestamp(orderId));
+
+			if(expectedFills.get(orderId) >= 0) {
+				expectedFillCount++;
+			}
+		}
+
+		Assert.assertEquals(expectedFillCount, fills.size());
+	}
+
+	/**
+	 * Replay a tick archive, the fill consumer places the stop loss
+	 * @throws IOException
+	 */
+	@Test
+	public void testReplayArchive() throws IOException {
+		final File file = temporaryFolder.newFile();
+
+		try (final TickArchiveWriter writer = new TickArchiveWriter(file)) {
+			for(int i = 0; i < 100; i++) {
+				writer.write(i * 1000, 100 + (i < 50 ? i : 100 - i), 1);
+			}
+		}
+
+		final List<Double> fillPrices = new ArrayList<>();
+		final StopOrderSimulator[] simulator = new StopOrderSimulator[1];
+
+		simulator[0] = new StopOrderSimulator(0, (o, t, p, a) -> {
+			fillPrices.add(p);
+
+			if(a > 0) {
+				simulator[0].placeOrder(-a, p - 10);
+			}
+		});
+
+		simulator[0].placeOrder(1, 120);
+
+		try (final TickArchive tickArchive = new TickArchive(file)) {
+			simulator[0].replay(tickArchive, 0, 100 * 1000);
+		}
+
+		Assert.assertEquals(100, simulator[0].getTicks());
+		Assert.assertEquals(2, fillPrices.size());
+		Assert.assertEquals(120, fillPrices.get(0), DELTA);
+		Assert.assertEquals(110, fillPrices.get(1), DELTA);
+	}
+
+	/**
+	 * Invalid orders
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidOrder() {
+		new StopOrderSimulator(0, (o, t, p, a) -> {}).placeOrder(0, 100);
+	}
+
+	/**
+	 * Unknown orders
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testUnknownOrder() {
+		new StopOrderSimulator(0, (o, t, p, a) -> {}).cancelOrder(0);
+	}
+}
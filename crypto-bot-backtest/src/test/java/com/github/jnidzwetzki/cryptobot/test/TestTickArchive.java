@@ -0,0 +1,200 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.github.jnidzwetzki.cryptobot.backtest.TickArchive;
+import com.github.jnidzwetzki.cryptobot.backtest.TickArchiveConverter;
+import com.github.jnidzwetzki.cryptobot.backtest.TickArchiveWriter;
+
+public class TestTickArchive {
+
+	private final static double DELTA = 0.00001;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	/**
+	 * Write and read the ticks
+	 * @throws IOException
+	 */
+	@Test
+	public void testWriteAndRead() throws IOException {
+		final File file = writeArchive(100);
+
+		try (final TickArchive tickArchive = new TickArchive(file)) {
+			Assert.assertEquals(100, tickArchive.getTickCount());
+
+			for(int i = 0; i < 100; i++) {
+				Assert.assertEquals(i * 1000, tickArchive.getTimestamp(i));
+				Assert.assertEquals(i + 0.5, tickArchive.getPrice(i), DELTA);
+				Assert.assertEquals(i * 2, tickArchive.getVolume(i), DELTA);
+			}
+		}
+	}
+
+	/**
+	 * Read an archive that is mapped in multiple chunks
+	 * @throws IOException
+	 */
+	@Test
+	public void testMultipleChunks() throws IOException {
+		final File file = writeArchive(100);
+
+		try (final TickArchive tickArchive = new TickArchive(file, 7) {}) {
+			Assert.assertEquals(100, tickArchive.getTickCount());
+			Assert.assertEquals(99 * 1000, tickArchive.getTimestamp(99));
+			Assert.assertEquals(49.5, tickArchive.getPrice(49), DELTA);
+
+			final List<Long> timestamps = new ArrayList<>();
+			tickArchive.forEach((t, p, v) -> timestamps.add(t));
+			Assert.assertEquals(100, timestamps.size());
+
+			for(int i = 0; i < 100; i++) {
+				Assert.assertEquals(i * 1000, (long) timestamps.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Read a time range of the archive
+	 * @throws IOException
+	 */
+	@Test
+	public void testTimeRange() throws IOException {
+		final File file = writeArchive(100);
+
+		try (final TickArchive tickArchive = new TickArchive(file)) {
+			final List<Double> prices = new ArrayList<>();
+			tickArchive.forEach(10000, 20000, (t, p, v) -> prices.add(p));
+
+			Assert.assertEquals(10, prices.size());
+			Assert.assertEquals(10.5, prices.get(0), DELTA);
+			Assert.assertEquals(19.5, prices.get(9), DELTA);
+		}
+	}
+
+	/**
+	 * Test the empty archive
+	 * @throws IOException
+	 */
+	@Test
+	public void testEmptyArchive() throws IOException {
+		final File file = writeArchive(0);
+
+		try (final TickArchive tickArchive = new TickArchive(file)) {
+			Assert.assertEquals(0, tickArchive.getTickCount());
+			tickArchive.forEach((t, p, v) -> Assert.fail());
+		}
+	}
+
+	/**
+	 * Convert a CSV file
+	 * @throws IOException
+	 */
+	@Test
+	public void testConverter() throws IOException {
+		final File csvFile = temporaryFolder.newFile("ticks.csv");
+		final File archiveFile = new File(temporaryFolder.getRoot(), "ticks.bin");
+
+		try (final FileWriter writer = new FileWriter(csvFile)) {
+			writer.write("1417412036,300.000000000000,0.010000000000\n");
+			writer.write("1417412423,300.000000000000,0.010000000000\n");
+			writer.write("1417415048,370.000000000000,0.010000000000\n");
+		}
+
+		Assert.assertEquals(3, TickArchiveConverter.convert(csvFile, archiveFile));
+
+		try (final TickArchive tickArchive = new TickArchive(archiveFile)) {
+			Assert.assertEquals(3, tickArchive.getTickCount());
+			Assert.assertEquals(1417412036000L, tickArchive.getTimestamp(0));
+			Assert.assertEquals(370, tickArchive.getPrice(2), DELTA);
+			Assert.assertEquals(0.01, tickArchive.getVolume(1), DELTA);
+		}
+	}
+
+	/**
+	 * A failed conversion leaves no archive behind
+	 * @throws IOException
+	 */
+	@Test
+	public void testFailedConversion() throws IOException {
+		final File csvFile = temporaryFolder.newFile("invalid.csv");
+		final File archiveFile = new File(temporaryFolder.getRoot(), "invalid.bin");
+
+		try (final FileWriter writer = new FileWriter(csvFile)) {
+			writer.write("1417412036,300.000000000000,0.010000000000\n");
+			writer.write("1417412423,abc,0.010000000000\n");
+		}
+
+		try {
+			TickArchiveConverter.convert(csvFile, archiveFile);
+			Assert.fail("Exception expected");
+		} catch (NumberFormatException e) {
+			// Expected
+		}
+
+		Assert.assertFalse(archiveFile.exists());
+
+		// Only the CSV file is left, the temporary file is deleted
+		Assert.assertArrayEquals(new String[] {csvFile.getName()}, temporaryFolder.getRoot().list());
+	}
+
+	/**
+	 * Open an invalid file
+	 * @throws IOException
+	 */
+	@Test(expected=IOException.class)
+	public void testInvalidFile() throws IOException {
+		final File file = temporaryFolder.newFile("invalid.bin");
+
+		try (final FileWriter writer = new FileWriter(file)) {
+			writer.write("1417412036,300.000000000000,0.010000000000\n");
+		}
+
+		new TickArchive(file).close();
+	}
+
+	/**
+	 * Write an archive with the given amount of ticks
+	 * @param ticks
+	 * @return
+	 * @throws IOException
+	 */
+	private File writeArchive(final int ticks) throws IOException {
+		final File file = temporaryFolder.newFile();
+
+		try (final TickArchiveWriter writer = new TickArchiveWriter(file)) {
+			for(int i = 0; i < ticks; i++) {
+				writer.write(i * 1000, i + 0.5, i * 2);
+			}
+		}
+
+		return file;
+	}
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ta4j.core.Strategy;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.cryptobot.backtest.BacktestResult;
+import com.github.jnidzwetzki.cryptobot.backtest.TradeExecutor;
+import com.github.jnidzwetzki.cryptobot.strategy.BBreakoutStrategy;
+import com.github.jnidzwetzki.cryptobot.strategy.DonchianChannelStrategy;
+import com.github.jnidzwetzki.cryptobot.strategy.EMAStrategy03;
+import com.github.jnidzwetzki.cryptobot.strategy.TradeStrategyFactory;
+
+public class TestTradeExecutor {
+
+	/**
+	 * Same trades with a strategy built once and a strategy built per bar (EMA)
+	 */
+	@Test(timeout=60000)
+	public void testStrategyReuseEMA() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(400, 1);
+
+		final TradeStrategyFactory cached = buildEMAStrategy(timeSeries, false);
+		final TradeStrategyFactory rebuilt = buildEMAStrategy(timeSeries, true);
+
+		assertSameResult(execute(rebuilt), execute(cached));
+	}
+
+	/**
+	 * Same trades with a strategy built once and a strategy built per bar (Bollinger)
+	 */
+	@Test(timeout=60000)
+	public void testStrategyReuseBBreakout() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(400, 2);
+
+		final TradeStrategyFactory cached = new BBreakoutStrategy(20, 2, 1, timeSeries) {
+			@Override
+			public double getContracts(final double portfolioValue, final int barIndex) {
+				return super.getContracts(portfolioValue, barIndex) / 2;
+			}
+		};
+		
+		final TradeStrategyFactory rebuilt = new BBreakoutStrategy(20, 2, 1, timeSeries) {
+			@Override
+			public Strategy getStrategy() {
+				return buildStrategy();
+			}
+			
+			@Override
+			public double getContracts(final double portfolioValue, final int barIndex) {
+				return super.getContracts(portfolioValue, barIndex) / 2;
+			}
+		};
+
+		assertSameResult(execute(rebuilt), execute(cached));
+	}
+
+	/**
+	 * Same trades with a strategy built once and a strategy built per bar (Donchian)
+	 */
+	@Test(timeout=60000)
+	public void testStrategyReuseDonchian() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(400, 3);
+
+		final TradeStrategyFactory cached = new DonchianChannelStrategy(20, 10, timeSeries);
+		final TradeStrategyFactory rebuilt = new DonchianChannelStrategy(20, 10, timeSeries) {
+			@Override
+			public Strategy getStrategy() {
+				return buildStrategy();
+			}
+		};
+
+		assertSameResult(execute(rebuilt), execute(cached));
+	}
+
+	/**
+	 * The strategy is built only once per factory
+	 */
+	@Test
+	public void testStrategyIsBuiltOnce() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(10, 4);
+		final TradeStrategyFactory factory = new EMAStrategy03(5, 12, 40, timeSeries);
+		Assert.assertSame(factory.getStrategy(), factory.getStrategy());
+	}
+
+	/**
+	 * The trade executor builds the strategy only once per run, the indicator 
+	 * recursion is not started from scratch on every bar
+	 */
+	@Test(timeout=60000)
+	public void testExecutorBuildsStrategyOnce() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(400, 5);
+		final AtomicInteger builds = new AtomicInteger();
+		
+		final TradeStrategyFactory factory = new EMAStrategy03(5, 12, 40, timeSeries) {
+			@Override
+			public Strategy buildStrategy() {
+				builds.incrementAndGet();
+				return super.buildStrategy();
+			}
+			
+			@Override
+			public double getContracts(final double portfolioValue, final int barIndex) {
+				return super.getContracts(portfolioValue, barIndex) / 2;
+			}
+		};
+		
+		execute(factory);
+		Assert.assertEquals(1, builds.get());
+	}
+
+	/**
+	 * Build the EMA strategy, invest only the half of the portfolio (the 
+	 * contracts are calculated on the close price, but the trade is opened 
+	 * on the open price of the bar)
+	 * 
+	 * @param timeSeries
+	 * @param rebuildPerBar
+	 * @return
+	 */
+	private TradeStrategyFactory buildEMAStrategy(final TimeSeries timeSeries, final boolean rebuildPerBar) {
+		return new EMAStrategy03(5, 12, 40, timeSeries) {
+			@Override
+			public Strategy getStrategy() {
+				if(rebuildPerBar) {
+					return buildStrategy();
+				}
+				
+				return super.getStrategy();
+			}
+			
+			@Override
+			public double getContracts(final double portfolioValue, final int barIndex) {
+				return super.getContracts(portfolioValue, barIndex) / 2;
+			}
+		};
+	}
+	
+	/**
+	 * Execute the trades of the factory
+	 * @param factory
+	 * @return
+	 */
+	private BacktestResult execute(final TradeStrategyFactory factory) {
+		final TradeExecutor tradeExecutor = new TradeExecutor(1000, factory);
+		tradeExecutor.executeTrades();
+		return BacktestResult.fromExecutor(factory.getName(), tradeExecutor);
+	}
+
+	/**
+	 * Compare two results
+	 * @param expected
+	 * @param result
+	 */
+	private void assertSameResult(final BacktestResult expected, final BacktestResult result) {
+		Assert.assertTrue(expected.getTotalTrades() > 0);
+		Assert.assertEquals(expected.getTotalTrades(), result.getTotalTrades());
+		Assert.assertEquals(expected.getWinner(), result.getWinner());
+		Assert.assertEquals(expected.getLooser(), result.getLooser());
+		Assert.assertEquals(expected.getExecutedStopLoss(), result.getExecutedStopLoss());
+		Assert.assertEquals(expected.getLooserInARow(), result.getLooserInARow());
+		Assert.assertEquals(expected.getPortfolioValue(), result.getPortfolioValue(), 0);
+		Assert.assertEquals(expected.getFees(), result.getFees(), 0);
+		Assert.assertEquals(expected.getMaxWin(), result.getMaxWin(), 0);
+		Assert.assertEquals(expected.getMaxLoose(), result.getMaxLoose(), 0);
+	}
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.cryptobot.backtest.BacktestResult;
+import com.github.jnidzwetzki.cryptobot.backtest.ParameterSpace;
+import com.github.jnidzwetzki.cryptobot.backtest.TradeExecutor;
+import com.github.jnidzwetzki.cryptobot.backtest.WalkForwardOptimizer;
+import com.github.jnidzwetzki.cryptobot.backtest.WalkForwardResult;
+import com.github.jnidzwetzki.cryptobot.backtest.WalkForwardWindow;
+import com.github.jnidzwetzki.cryptobot.strategy.DonchianChannelStrategy;
+import com.github.jnidzwetzki.cryptobot.strategy.TradeStrategyFactory;
+
+public class TestWalkForwardOptimizer {
+
+	/**
+	 * Split a range into rolling windows
+	 */
+	@Test
+	public void testRollingWindows() {
+		final List<WalkForwardWindow> windows = WalkForwardWindow.rolling(0, 99, 40, 20);
+		
+		Assert.assertEquals(3, windows.size());
+		
+		assertWindow(windows.get(0), 0, 39, 40, 59);
+		assertWindow(windows.get(1), 20, 59, 60, 79);
+		assertWindow(windows.get(2), 40, 79, 80, 99);
+		
+		Assert.assertTrue(WalkForwardWindow.rolling(0, 58, 40, 20).isEmpty());
+	}
+	
+	/**
+	 * Invalid windows
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidWindow() {
+		new WalkForwardWindow(0, 40, 40, 60);
+	}
+	
+	/**
+	 * The whole range is the same as the default range of the executor
+	 */
+	@Test(timeout=60000)
+	public void testExecutorRange() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(500, 1);
+		
+		final TradeExecutor defaultRange = new TradeExecutor(1000, new DonchianChannelStrategy(20, 10, timeSeries));
+		defaultRange.executeTrades();
+		
+		final TradeExecutor fullRange = new TradeExecutor(1000, new DonchianChannelStrategy(20, 10, timeSeries), 
+				timeSeries.getBeginIndex(), timeSeries.getEndIndex());
+		fullRange.executeTrades();
+		
+		Assert.assertTrue(defaultRange.getTotalTrades() > 0);
+		Assert.assertEquals(defaultRange.getTotalTrades(), fullRange.getTotalTrades());
+		Assert.assertEquals(defaultRange.getPortfolioValue(), fullRange.getPortfolioValue(), 0);
+	}
+	
+	/**
+	 * Invalid executor range
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidExecutorRange() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(100, 1);
+		new TradeExecutor(1000, new DonchianChannelStrategy(20, 10, timeSeries), 50, 100);
+	}
+	
+	/**
+	 * The optimizer selects the same parameters as a brute force search 
+	 * with a new strategy per window
+	 */
+	@Test(timeout=60000)
+	public void testSameAsBruteForce() {
+		final TimeSeries timeSeries = TimeSeriesHelper.buildTimeSeries(2000, 2);
+		
+		final ParameterSpace parameterSpace = new ParameterSpace()
+				.addParameter("upper", Arrays.asList(10, 20, 40))
+				.addParameter("lower", Arrays.asList(5, 10, 20));
+		
+		final List<WalkForwardWindow> windows = WalkForwardWindow.rolling(timeSeries.getBeginIndex(), 
+				timeSeries.getEndIndex(), 400, 100);
+		
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(4);
+		
+		try {
+			final WalkForwardOptimizer optimizer = new WalkForwardOptimizer(timeSeries, parameterSpace, 
+					(p, s) -> new DonchianChannelStrategy(p[0], p[1], s), 1000, windows, 
+					BacktestResult::getTotalPL, forkJoinPool);
+			
+			final List<WalkForwardResult> results = optimizer.run();
+			Assert.assertEquals(windows.size(), results.size());
+			
+			double outOfSamplePL = 0;
+			
+			for(int i = 0; i < windows.size(); i++) {
+				final WalkForwardWindow window = windows.get(i);
+				final WalkForwardResult result = results.get(i);
+				
+				int[] bestParameters = null;
+				double bestPL = 0;
+				
+				for(long combination = 0; combination < parameterSpace.getCombinations(); combination++) {
+					final int[] parameters = parameterSpace.getCombination(combination);
+					final double pl = execute(timeSeries, parameters, window.getInSampleBegin(), 
+							window.getInSampleEnd()).getTotalPL();
+					
+					if(bestParameters == null || pl > bestPL) {
+						bestParameters = parameters;
+						bestPL = pl;
+					}
+				}
+				
+				final TradeExecutor outOfSample = execute(timeSeries, bestParameters, 
+						window.getOutOfSampleBegin(), window.getOutOfSampleEnd());
+				
+				Assert.assertSame(window, result.getWindow());
+				Assert.assertArrayEquals(bestParameters, result.getParameters());
+				Assert.assertEquals(bestPL, result.getInSampleResult().getTotalPL(), 0);
+				Assert.assertEquals(outOfSample.getTotalPL(), result.getOutOfSampleResult().getTotalPL(), 0);
+				Assert.assertEquals(outOfSample.getTotalTrades(), result.getOutOfSampleResult().getTotalTrades());
+				
+				outOfSamplePL = outOfSamplePL + outOfSample.getTotalPL();
+			}
+			
+			Assert.assertEquals(outOfSamplePL, WalkForwardOptimizer.getOutOfSamplePL(results), 0.00001);
+		} finally {
+			forkJoinPool.shutdown();
+		}
+	}
+	
+	/**
+	 * Execute the range with a new strategy
+	 * @param timeSeries
+	 * @param parameters
+	 * @param beginIndex
+	 * @param endIndex
+	 * @return
+	 */
+	private TradeExecutor execute(final TimeSeries timeSeries, final int[] parameters, 
+			final int beginIndex, final int endIndex) {
+		
+		final TradeStrategyFactory factory = new DonchianChannelStrategy(parameters[0], parameters[1], timeSeries);
+		final TradeExecutor tradeExecutor = new TradeExecutor(1000, factory, beginIndex, endIndex);
+		tradeExecutor.executeTrades();
+		return tradeExecutor;
+	}
+
+	/**
+	 * Check the indices of the window
+	 * @param window
+	 * @param inSampleBegin
+	 * @param inSampleEnd
+	 * @param outOfSampleBegin
+	 * @param outOfSampleEnd
+	 */
+	private void assertWindow(final WalkForwardWindow window, final int inSampleBegin, final int inSampleEnd, 
+			final int outOfSampleBegin, final int outOfSampleEnd) {
+		
+		Assert.assertEquals(inSampleBegin, window.getInSampleBegin());
+		Assert.assertEquals(inSampleEnd, window.getInSampleEnd());
+		Assert.assertEquals(outOfSampleBegin, window.getOutOfSampleBegin());
+		Assert.assertEquals(outOfSampleEnd, window.getOutOfSampleEnd());
+	}
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Random;
+
+import org.ta4j.core.BaseBar;
+import org.ta4j.core.BaseTimeSeries;
+import org.ta4j.core.TimeSeries;
+
+/**
+ * Build time series for the tests
+ *
+ */
+public class TimeSeriesHelper {
+
+	/**
+	 * The end time of the first bar (2018-01-01 00:00 UTC)
+	 */
+	private final static long START_TIME_SECONDS = 1514764800L;
+
+	/**
+	 * The duration of a bar
+	 */
+	private final static long BAR_SECONDS = 15 * 60;
+
+	/**
+	 * Build a random walk time series with 15 minute bars
+	 * @param bars
+	 * @param seed
+	 * @return
+	 */
+	public static TimeSeries buildTimeSeries(final int bars, final long seed) {
+		return fillTimeSeries(new BaseTimeSeries("test"), bars, seed);
+	}
+
+	/**
+	 * Add a random walk with 15 minute bars to the time series
+	 * @param timeSeries
+	 * @param bars
+	 * @param seed
+	 * @return
+	 */
+	public static TimeSeries fillTimeSeries(final TimeSeries timeSeries, final int bars, final long seed) {
+		final Random random = new Random(seed);
+
+		double price = 1000;
+
+		for(int i = 0; i < bars; i++) {
+			final double open = price;
+			final double close = Math.max(1, open + (random.nextGaussian() * 10));
+			final double high = Math.max(open, close) + random.nextDouble() * 5;
+			final double low = Math.min(open, close) - random.nextDouble() * 5;
+
+			addBar(timeSeries, i, open, high, low, close, random.nextDouble() * 100);
+			price = close;
+		}
+
+		return timeSeries;
+	}
+
+	/**
+	 * Add the n-th 15 minute bar to the time series
+	 * @param timeSeries
+	 * @param bar
+	 * @param open
+	 * @param high
+	 * @param low
+	 * @param close
+	 * @param volume
+	 */
+	public static void addBar(final TimeSeries timeSeries, final int bar, final double open, 
+			final double high, final double low, final double close, final double volume) {
+
+		final Instant endTime = Instant.ofEpochSecond(START_TIME_SECONDS + (bar * BAR_SECONDS));
+
+		timeSeries.addBar(new BaseBar(ZonedDateTime.ofInstant(endTime, ZoneOffset.UTC),
+				open, high, low, close, volume));
+	}
+}
@@ -0,0 +1,102 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.Timeframe;
+import com.github.jnidzwetzki.cryptobot.benchmark.SyntheticData.Ticks;
+import com.github.jnidzwetzki.cryptobot.util.BarMerger;
+
+/**
+ * Merge ticks into 15 minute bars. The score is the time per tick, 
+ * closeBar() is called once per ticksPerBar ticks.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BarMergerBenchmark {
+
+	/**
+	 * The amount of ticks per invocation
+	 */
+	private final static int TICKS = 100_000;
+
+	/**
+	 * The tick density
+	 */
+	@Param({"10", "1000"})
+	public int ticksPerBar;
+
+	/**
+	 * The ticks
+	 */
+	private Ticks ticks;
+
+	@Setup
+	public void setup() {
+		ticks = SyntheticData.buildTicks(TICKS, ticksPerBar, 1);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public void addNewPricePrimitive(final Blackhole blackhole) {
+		final BarMerger barMerger = new BarMerger(BitfinexCurrencyPair.BTC_USD, 
+				Timeframe.MINUTES_15, (s, b) -> blackhole.consume(b));
+
+		for(int i = 0; i < TICKS; i++) {
+			barMerger.addNewPrice(ticks.timestamps[i], ticks.prices[i], ticks.volumes[i]);
+		}
+
+		barMerger.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public void addNewPriceBigDecimal(final Blackhole blackhole) {
+		final BarMerger barMerger = new BarMerger(BitfinexCurrencyPair.BTC_USD, 
+				Timeframe.MINUTES_15, (s, b) -> blackhole.consume(b));
+
+		for(int i = 0; i < TICKS; i++) {
+			barMerger.addNewPrice(ticks.timestamps[i], new BigDecimal(ticks.prices[i]), 
+					new BigDecimal(ticks.volumes[i]));
+		}
+
+		barMerger.close();
+	}
+}
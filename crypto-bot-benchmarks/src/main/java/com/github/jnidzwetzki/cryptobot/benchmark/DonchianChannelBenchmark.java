@@ -0,0 +1,117 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.ta4j.core.Decimal;
+import org.ta4j.core.Indicator;
+import org.ta4j.core.TimeSeries;
+import org.ta4j.core.indicators.helpers.MaxPriceIndicator;
+import org.ta4j.core.indicators.helpers.MinPriceIndicator;
+
+import com.github.jnidzwetzki.cryptobot.strategy.indicator.DonchianChannelLower;
+import com.github.jnidzwetzki.cryptobot.strategy.indicator.DonchianChannelUpper;
+
+/**
+ * Calculate the donchian channel over a whole time series (backtest) and
+ * for the last bar only (live trading)
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DonchianChannelBenchmark {
+
+	/**
+	 * The amount of bars
+	 */
+	private final static int BARS = 10_000;
+
+	/**
+	 * The period of the channel
+	 */
+	@Param({"24", "96"})
+	public int period;
+
+	/**
+	 * The high prices
+	 */
+	private Indicator<Decimal> maxPrice;
+
+	/**
+	 * The low prices
+	 */
+	private Indicator<Decimal> minPrice;
+
+	/**
+	 * The time series
+	 */
+	private TimeSeries timeSeries;
+
+	@Setup
+	public void setup() {
+		timeSeries = SyntheticData.buildTimeSeries(BARS, 1, false);
+
+		// Keep the price caches warm, only the channel is measured
+		maxPrice = new MaxPriceIndicator(timeSeries);
+		minPrice = new MinPriceIndicator(timeSeries);
+
+		for(int i = 0; i < BARS; i++) {
+			maxPrice.getValue(i);
+			minPrice.getValue(i);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BARS)
+	public void fullSeries(final Blackhole blackhole) {
+		final DonchianChannelUpper upper = new DonchianChannelUpper(maxPrice, period);
+		final DonchianChannelLower lower = new DonchianChannelLower(minPrice, period);
+
+		for(int i = 0; i < BARS; i++) {
+			blackhole.consume(upper.getValue(i));
+			blackhole.consume(lower.getValue(i));
+		}
+	}
+
+	@Benchmark
+	public void lastBar(final Blackhole blackhole) {
+		final DonchianChannelUpper upper = new DonchianChannelUpper(maxPrice, period);
+		final DonchianChannelLower lower = new DonchianChannelLower(minPrice, period);
+
+		blackhole.consume(upper.getValue(timeSeries.getEndIndex()));
+		blackhole.consume(lower.getValue(timeSeries.getEndIndex()));
+	}
+}
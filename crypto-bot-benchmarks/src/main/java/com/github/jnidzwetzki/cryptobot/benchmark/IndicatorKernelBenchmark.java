@@ -0,0 +1,112 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.ta4j.core.TimeSeries;
+import org.ta4j.core.indicators.EMAIndicator;
+import org.ta4j.core.indicators.RSIIndicator;
+import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+
+import com.github.jnidzwetzki.cryptobot.strategy.indicator.IndicatorKernels;
+
+/**
+ * Calculate indicators over a whole time series with ta4j and with the
+ * double[] kernels
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IndicatorKernelBenchmark {
+
+	/**
+	 * The amount of bars
+	 */
+	private final static int BARS = 10_000;
+
+	/**
+	 * The close prices
+	 */
+	private ClosePriceIndicator closePrice;
+
+	/**
+	 * The close prices as column
+	 */
+	private double[] close;
+
+	@Setup
+	public void setup() {
+		final TimeSeries timeSeries = SyntheticData.buildTimeSeries(BARS, 1, false);
+		closePrice = new ClosePriceIndicator(timeSeries);
+		close = IndicatorKernels.getClosePrices(timeSeries);
+
+		// Keep the price cache warm, only the indicator is measured
+		for(int i = 0; i < BARS; i++) {
+			closePrice.getValue(i);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BARS)
+	public void emaTa4j(final Blackhole blackhole) {
+		final EMAIndicator ema = new EMAIndicator(closePrice, 40);
+
+		for(int i = 0; i < BARS; i++) {
+			blackhole.consume(ema.getValue(i));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BARS)
+	public double[] emaKernel() {
+		return IndicatorKernels.ema(close, 40);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BARS)
+	public void rsiTa4j(final Blackhole blackhole) {
+		final RSIIndicator rsi = new RSIIndicator(closePrice, 14);
+
+		for(int i = 0; i < BARS; i++) {
+			blackhole.consume(rsi.getValue(i));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BARS)
+	public double[] rsiKernel() {
+		return IndicatorKernels.rsi(close, 14);
+	}
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.benchmark;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.Wallet;
+import com.github.jnidzwetzki.bitfinex.v2.manager.WalletManager;
+import com.github.jnidzwetzki.cryptobot.CurrencyEntry;
+import com.github.jnidzwetzki.cryptobot.portfolio.BasePortfolioManager;
+import com.github.jnidzwetzki.cryptobot.portfolio.PortfolioManager;
+
+/**
+ * Calculate the position sizes of the entries with mocked wallets
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PortfolioManagerBenchmark {
+
+	/**
+	 * The amount of entries
+	 */
+	@Param({"1", "10"})
+	public int entryCount;
+
+	/**
+	 * The portfolio manager
+	 */
+	private PortfolioManager portfolioManager;
+
+	/**
+	 * The entries
+	 */
+	private Map<BitfinexCurrencyPair, CurrencyEntry> entries;
+
+	@Setup
+	public void setup() throws APIException {
+		final Collection<Wallet> wallets = new ArrayList<>();
+
+		wallets.add(new Wallet(Wallet.WALLET_TYPE_EXCHANGE, "USD", new BigDecimal(1000), 
+				new BigDecimal(0), new BigDecimal(1000)));
+
+		final BitfinexApiBroker apiBroker = Mockito.mock(BitfinexApiBroker.class);
+		final WalletManager walletManager = Mockito.mock(WalletManager.class);
+
+		Mockito.when(walletManager.getWallets()).thenReturn(wallets);
+		Mockito.when(apiBroker.getWalletManager()).thenReturn(walletManager);
+
+		portfolioManager = new BasePortfolioManager(apiBroker, 0.05);
+
+		entries = new HashMap<>();
+		final BitfinexCurrencyPair[] currencyPairs = BitfinexCurrencyPair.values();
+
+		for(int i = 0; i < entryCount; i++) {
+			final double entryPrice = 1000 + (i * 10);
+			entries.put(currencyPairs[i], new CurrencyEntry(currencyPairs[i], entryPrice, entryPrice * 0.98));
+		}
+	}
+
+	@Benchmark
+	public Map<BitfinexCurrencyPair, CurrencyEntry> calculatePositionSizes() throws APIException {
+		portfolioManager.calculatePositionSizes(entries);
+		return entries;
+	}
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.jnidzwetzki.cryptobot.backtest.StopOrderSimulator;
+import com.github.jnidzwetzki.cryptobot.benchmark.SyntheticData.Ticks;
+
+/**
+ * Replay ticks against resting stop orders. The score is the time per tick,
+ * every filled order is replaced by a new order around the fill price, so
+ * the amount of pending orders stays constant.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StopOrderSimulatorBenchmark {
+
+	/**
+	 * The amount of ticks per invocation
+	 */
+	private final static int TICKS = 1_000_000;
+
+	/**
+	 * The amount of pending orders
+	 */
+	@Param({"10", "10000"})
+	public int orders;
+
+	/**
+	 * The ticks
+	 */
+	private Ticks ticks;
+
+	@Setup
+	public void setup() {
+		ticks = SyntheticData.buildTicks(TICKS, 1000, 1);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(TICKS)
+	public int replay() {
+		final Random random = new Random(1);
+		final StopOrderSimulator[] simulator = new StopOrderSimulator[1];
+
+		simulator[0] = new StopOrderSimulator(0.001, (o, t, p, a) -> {
+			placeOrder(simulator[0], random, p);
+		});
+
+		for(int i = 0; i < orders; i++) {
+			placeOrder(simulator[0], random, ticks.prices[0]);
+		}
+
+		for(int i = 0; i < TICKS; i++) {
+			simulator[0].accept(ticks.timestamps[i], ticks.prices[i], ticks.volumes[i]);
+		}
+
+		return simulator[0].getFilledOrders();
+	}
+
+	/**
+	 * Place a buy or sell stop 0 - 2% away from the price
+	 * @param simulator
+	 * @param random
+	 * @param price
+	 */
+	private void placeOrder(final StopOrderSimulator simulator, final Random random, final double price) {
+		final double distance = price * random.nextDouble() * 0.02;
+
+		if(random.nextBoolean()) {
+			simulator.placeOrder(1, price + distance);
+		} else {
+			simulator.placeOrder(-1, price - distance);
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ta4j.core.Strategy;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.cryptobot.strategy.EMAStrategy03;
+import com.github.jnidzwetzki.cryptobot.strategy.TradeStrategyFactory;
+
+/**
+ * Evaluate the entry and exit rules of a strategy for every bar, like the 
+ * bar loop of the trade executor. The strategy is built once per run or 
+ * once per bar (the old behavior of the trade executor). With a strategy 
+ * per bar, the recursive indicators are calculated from the first bar on 
+ * every bar, so the runtime grows quadratic with the amount of bars instead 
+ * of linear.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StrategyReuseBenchmark {
+
+	/**
+	 * The amount of bars
+	 */
+	@Param({"500", "1000", "2000"})
+	public int bars;
+
+	/**
+	 * Build a new strategy on every bar
+	 */
+	@Param({"false", "true"})
+	public boolean rebuildPerBar;
+
+	/**
+	 * The time series
+	 */
+	private TimeSeries timeSeries;
+
+	@Setup
+	public void setup() {
+		timeSeries = SyntheticData.buildTimeSeries(bars, 1, false);
+	}
+
+	@Benchmark
+	public int evaluateRules() {
+		final TradeStrategyFactory strategyFactory = new EMAStrategy03(5, 12, 40, timeSeries);
+		Strategy strategy = strategyFactory.getStrategy();
+		int signals = 0;
+
+		for(int i = timeSeries.getBeginIndex(); i < timeSeries.getEndIndex(); i++) {
+			if(rebuildPerBar) {
+				strategy = strategyFactory.buildStrategy();
+			}
+
+			if(strategy.shouldEnter(i) || strategy.shouldExit(i)) {
+				signals++;
+			}
+		}
+
+		return signals;
+	}
+}
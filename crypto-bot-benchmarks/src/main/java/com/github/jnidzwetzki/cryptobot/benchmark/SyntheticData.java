@@ -0,0 +1,127 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.benchmark;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Random;
+
+import org.ta4j.core.BaseBar;
+import org.ta4j.core.BaseTimeSeries;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.cryptobot.util.ColumnarTimeSeries;
+
+/**
+ * Generate reproducible random walk data for the benchmarks
+ *
+ */
+public class SyntheticData {
+
+	/**
+	 * The begin of the data (01.01.2018)
+	 */
+	public final static long BEGIN_TIMESTAMP = 1514764800000L;
+
+	/**
+	 * The period of the bars
+	 */
+	public final static Duration BAR_PERIOD = Duration.ofMinutes(15);
+
+	/**
+	 * Build a random walk time series
+	 * @param bars
+	 * @param seed
+	 * @param columnar - use a columnar or a base time series
+	 * @return
+	 */
+	public static TimeSeries buildTimeSeries(final int bars, final long seed, final boolean columnar) {
+		final Random random = new Random(seed);
+
+		final TimeSeries timeSeries = columnar 
+				? new ColumnarTimeSeries("benchmark", BAR_PERIOD, ZoneOffset.UTC) 
+				: new BaseTimeSeries("benchmark");
+
+		double price = 10000;
+
+		for(int i = 0; i < bars; i++) {
+			final double open = price;
+			final double close = Math.max(1, open * (1 + random.nextGaussian() * 0.005));
+			final double high = Math.max(open, close) * (1 + random.nextDouble() * 0.002);
+			final double low = Math.min(open, close) * (1 - random.nextDouble() * 0.002);
+			final long endTime = BEGIN_TIMESTAMP + ((i + 1) * BAR_PERIOD.toMillis()) - 1;
+
+			timeSeries.addBar(new BaseBar(ZonedDateTime.ofInstant(Instant.ofEpochMilli(endTime), ZoneOffset.UTC),
+					open, high, low, close, random.nextDouble() * 100));
+
+			price = close;
+		}
+
+		return timeSeries;
+	}
+
+	/**
+	 * Build random walk ticks with ascending timestamps
+	 * @param ticks
+	 * @param ticksPerBar
+	 * @param seed
+	 * @return the timestamps, prices and volumes
+	 */
+	public static Ticks buildTicks(final int ticks, final int ticksPerBar, final long seed) {
+		final Random random = new Random(seed);
+		final Ticks result = new Ticks(ticks);
+		final long tickDistance = Math.max(1, BAR_PERIOD.toMillis() / ticksPerBar);
+
+		double price = 10000;
+
+		for(int i = 0; i < ticks; i++) {
+			price = Math.max(1, price * (1 + random.nextGaussian() * 0.0005));
+			result.timestamps[i] = BEGIN_TIMESTAMP + (i * tickDistance);
+			result.prices[i] = price;
+			result.volumes[i] = random.nextDouble();
+		}
+
+		return result;
+	}
+
+	public static class Ticks {
+
+		/**
+		 * The timestamps of the ticks
+		 */
+		public final long[] timestamps;
+
+		/**
+		 * The prices of the ticks
+		 */
+		public final double[] prices;
+
+		/**
+		 * The volumes of the ticks
+		 */
+		public final double[] volumes;
+
+		public Ticks(final int ticks) {
+			this.timestamps = new long[ticks];
+			this.prices = new double[ticks];
+			this.volumes = new double[ticks];
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.cryptobot.backtest.TradeExecutor;
+import com.github.jnidzwetzki.cryptobot.strategy.BBreakoutStrategy;
+import com.github.jnidzwetzki.cryptobot.strategy.DonchianChannelStrategy;
+import com.github.jnidzwetzki.cryptobot.strategy.EMAStrategy01;
+import com.github.jnidzwetzki.cryptobot.strategy.EMAStrategy02;
+import com.github.jnidzwetzki.cryptobot.strategy.EMAStrategy03;
+import com.github.jnidzwetzki.cryptobot.strategy.ForexStrategy01;
+import com.github.jnidzwetzki.cryptobot.strategy.TradeStrategyFactory;
+
+/**
+ * Execute a full backtest for each of the shipped strategies. A new 
+ * strategy factory (and new indicators) is built for each invocation.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TradeExecutorBenchmark {
+
+	/**
+	 * The amount of bars (about 100 days of 15 minute bars)
+	 */
+	private final static int BARS = 10_000;
+
+	/**
+	 * The strategy
+	 */
+	@Param({"EMAStrategy01", "EMAStrategy02", "EMAStrategy03", "BBreakoutStrategy", 
+		"DonchianChannelStrategy", "ForexStrategy01"})
+	public String strategy;
+
+	/**
+	 * Use a columnar or a base time series
+	 */
+	@Param({"false", "true"})
+	public boolean columnar;
+
+	/**
+	 * The time series
+	 */
+	private TimeSeries timeSeries;
+
+	@Setup
+	public void setup() {
+		timeSeries = SyntheticData.buildTimeSeries(BARS, 1, columnar);
+	}
+
+	@Benchmark
+	public double executeTrades() {
+		final TradeExecutor tradeExecutor = new TradeExecutor(1000, buildStrategy());
+		tradeExecutor.executeTrades();
+		return tradeExecutor.getPortfolioValue();
+	}
+
+	/**
+	 * Build the strategy factory. The contracts are calculated on the close 
+	 * price but the trades are opened on the next open price, so only half 
+	 * of the portfolio is used (like in the TradeExecutor tests).
+	 * @return
+	 */
+	private TradeStrategyFactory buildStrategy() {
+		switch(strategy) {
+		case "EMAStrategy01":
+			return new EMAStrategy01(timeSeries) {
+				@Override
+				public double getContracts(final double portfolioValue, final int barIndex) {
+					return super.getContracts(portfolioValue, barIndex) / 2;
+				}
+			};
+		case "EMAStrategy02":
+			return new EMAStrategy02(5, 10, 40, timeSeries) {
+				@Override
+				public double getContracts(final double portfolioValue, final int barIndex) {
+					return super.getContracts(portfolioValue, barIndex) / 2;
+				}
+			};
+		case "EMAStrategy03":
+			return new EMAStrategy03(5, 12, 40, timeSeries) {
+				@Override
+				public double getContracts(final double portfolioValue, final int barIndex) {
+					return super.getContracts(portfolioValue, barIndex) / 2;
+				}
+			};
+		case "BBreakoutStrategy":
+			return new BBreakoutStrategy(20, 2, 1, timeSeries) {
+				@Override
+				public double getContracts(final double portfolioValue, final int barIndex) {
+					return super.getContracts(portfolioValue, barIndex) / 2;
+				}
+			};
+		case "DonchianChannelStrategy":
+			return new DonchianChannelStrategy(24 * 4, 12 * 4, timeSeries) {
+				@Override
+				public double getContracts(final double portfolioValue, final int barIndex) {
+					return super.getContracts(portfolioValue, barIndex) / 2;
+				}
+			};
+		case "ForexStrategy01":
+			return new ForexStrategy01(timeSeries) {
+				@Override
+				public double getContracts(final double portfolioValue, final int barIndex) {
+					return super.getContracts(portfolioValue, barIndex) / 2;
+				}
+			};
+		default:
+			throw new IllegalArgumentException("Unknown strategy: " + strategy);
+		}
+	}
+}
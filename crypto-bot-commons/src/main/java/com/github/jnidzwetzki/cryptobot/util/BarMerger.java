@@ -21,8 +21,6 @@ import java.io.Closeable;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.ZonedDateTime;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.function.BiConsumer;
 
 import org.ta4j.core.Bar;
@@ -42,7 +40,31 @@ public class BarMerger implements Closeable {
 	private long timeframeBegin = -1;
 	
 	private double  totalVolume = 0;
-		private final List<BigDecimal> prices = new ArrayList<>();
+	
+	/**
+	 * The amount of prices of the current bar
+	 */
+	private int priceCount = 0;
+	
+	/**
+	 * The open price of the current bar
+	 */
+	private double open;
+	
+	/**
+	 * The high price of the current bar
+	 */
+	private double high;
+	
+	/**
+	 * The low price of the current bar
+	 */
+	private double low;
+	
+	/**
+	 * The close price of the current bar
+	 */
+	private double close;
 
 	private BitfinexCurrencyPair symbol;
 
@@ -53,6 +75,16 @@ public class BarMerger implements Closeable {
 	}
 	
 	public void addNewPrice(final long timestamp, final BigDecimal price, final BigDecimal volume)  {
+		addNewPrice(timestamp, price.doubleValue(), volume.doubleValue());
+	}
+	
+	/**
+	 * Add a new price without creating any objects
+	 * @param timestamp
+	 * @param price
+	 * @param volume
+	 */
+	public void addNewPrice(final long timestamp, final double price, final double volume)  {
 
 		if (timeframeBegin == -1) {
 			// Align timeframe
@@ -64,7 +96,7 @@ public class BarMerger implements Closeable {
 
 		if (timestamp >= periodEnd) {
 			
-			if (prices.isEmpty()) {
+			if (priceCount == 0) {
 				System.err.println("Error: prices for series are empty: " + timeframeBegin);
 			}
 
@@ -75,26 +107,31 @@ public class BarMerger implements Closeable {
 			}
 		}
 
-		prices.add(price);
+		if(priceCount == 0) {
+			open = price;
+			high = price;
+			low = price;
+		} else {
+			high = Math.max(high, price);
+			low = Math.min(low, price);
+		}
+		
+		close = price;
+		priceCount++;
 		
-		totalVolume = totalVolume + volume.doubleValue();
+		totalVolume = totalVolume + volume;
 	}
 
 	protected void closeBar() {
-		if(prices.isEmpty()) {
+		if(priceCount == 0) {
 			return;
 		}
 		
-		final BigDecimal open = prices.get(0);
-		final BigDecimal close = prices.get(prices.size() - 1);
-		final double high = prices.stream().mapToDouble(e -> e.doubleValue()).max().orElse(-1);
-		final double low = prices.stream().mapToDouble(e -> e.doubleValue()).min().orElse(-1);
 
 		final Instant i = Instant.ofEpochMilli(timeframeBegin + timeframe.getMilliSeconds() - 1);
 		final ZonedDateTime withTimezone = ZonedDateTime.ofInstant(i, Const.BITFINEX_TIMEZONE);
 	
-		final Bar bar = new BaseBar(withTimezone, open.doubleValue(), high, low, 
-				close.doubleValue(), totalVolume);
+		final Bar bar = new BaseBar(withTimezone, open, high, low, close, totalVolume);
 
 		try {
 			tickConsumer.accept(symbol, bar);
@@ -103,7 +140,7 @@ public class BarMerger implements Closeable {
 		}
 
 		totalVolume = 0;
-		prices.clear();
+		priceCount = 0;
 	}
 
 	@Override
@@ -0,0 +1,578 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.AbstractList;
+import java.util.List;
+
+import org.ta4j.core.Bar;
+import org.ta4j.core.Decimal;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.bitfinex.v2.Const;
+
+/**
+ * A time series that stores the bars in primitive columns (end time,
+ * open, high, low, close and volume).
+ * <p>
+ * A bar costs 48 bytes instead of a BaseBar with a ZonedDateTime and
+ * seven Decimal objects. The bars returned by {@link #getBar(int)} are
+ * lightweight copies of the column values, the Decimal values are created
+ * on access. The index semantics (begin index, end index, removed bars)
+ * are the same as in BaseTimeSeries.
+ *
+ */
+public class ColumnarTimeSeries implements TimeSeries {
+
+	private static final long serialVersionUID = 4713937658410934530L;
+
+	/**
+	 * The initial capacity of the columns
+	 */
+	private final static int INITIAL_CAPACITY = 1024;
+
+	/**
+	 * The name of the series
+	 */
+	private final String name;
+
+	/**
+	 * The period of the bars
+	 */
+	private final Duration barPeriod;
+
+	/**
+	 * The time zone of the bar times
+	 */
+	private final ZoneId zoneId;
+
+	/**
+	 * The end times of the bars (milliseconds since epoch)
+	 */
+	private long[] endTimes;
+
+	/**
+	 * The open prices
+	 */
+	private double[] openPrices;
+
+	/**
+	 * The high prices
+	 */
+	private double[] highPrices;
+
+	/**
+	 * The low prices
+	 */
+	private double[] lowPrices;
+
+	/**
+	 * The close prices
+	 */
+	private double[] closePrices;
+
+	/**
+	 * The volumes
+	 */
+	private double[] volumes;
+
+	/**
+	 * The position of the first stored bar in the columns
+	 */
+	private int firstPosition = 0;
+
+	/**
+	 * The amount of stored bars
+	 */
+	private int storedBars = 0;
+
+	/**
+	 * The begin index of the series
+	 */
+	private int seriesBeginIndex = -1;
+
+	/**
+	 * The end index of the series
+	 */
+	private int seriesEndIndex = -1;
+
+	/**
+	 * The maximum amount of stored bars
+	 */
+	private int maximumBarCount = Integer.MAX_VALUE;
+
+	/**
+	 * The amount of removed bars
+	 */
+	private int removedBarsCount = 0;
+
+	public ColumnarTimeSeries(final String name, final Duration barPeriod) {
+		this(name, barPeriod, Const.BITFINEX_TIMEZONE);
+	}
+
+	public ColumnarTimeSeries(final String name, final Duration barPeriod, final ZoneId zoneId) {
+		this(name, barPeriod, zoneId, INITIAL_CAPACITY);
+	}
+
+	public ColumnarTimeSeries(final String name, final Duration barPeriod, final ZoneId zoneId,
+			final int initialCapacity) {
+
+		if(initialCapacity <= 0) {
+			throw new IllegalArgumentException("Invalid initial capacity: " + initialCapacity);
+		}
+
+		this.name = name;
+		this.barPeriod = barPeriod;
+		this.zoneId = zoneId;
+		this.endTimes = new long[initialCapacity];
+		this.openPrices = new double[initialCapacity];
+		this.highPrices = new double[initialCapacity];
+		this.lowPrices = new double[initialCapacity];
+		this.closePrices = new double[initialCapacity];
+		this.volumes = new double[initialCapacity];
+	}
+
+	/**
+	 * Add a new bar. Only the end time and the prices of the bar are
+	 * stored, the period of the series is used as bar period.
+	 */
+	@Override
+	public void addBar(final Bar bar) {
+		addBar(bar.getEndTime().toInstant().toEpochMilli(), bar.getOpenPrice().doubleValue(),
+				bar.getMaxPrice().doubleValue(), bar.getMinPrice().doubleValue(),
+				bar.getClosePrice().doubleValue(), bar.getVolume().doubleValue());
+	}
+
+	/**
+	 * Add a new bar without creating any objects
+	 *
+	 * @param endTime - the end time in milliseconds since epoch
+	 * @param open
+	 * @param high
+	 * @param low
+	 * @param close
+	 * @param volume
+	 */
+	public void addBar(final long endTime, final double open, final double high, final double low,
+			final double close, final double volume) {
+
+		if(storedBars > 0 && endTime <= endTimes[firstPosition + storedBars - 1]) {
+			throw new IllegalArgumentException("Cannot add a bar with end time <= to series end time");
+		}
+
+		ensureCapacity();
+
+		final int position = firstPosition + storedBars;
+		endTimes[position] = endTime;
+		openPrices[position] = open;
+		highPrices[position] = high;
+		lowPrices[position] = low;
+		closePrices[position] = close;
+		volumes[position] = volume;
+		storedBars++;
+
+		if(seriesBeginIndex == -1) {
+			seriesBeginIndex = 0;
+		}
+
+		seriesEndIndex++;
+		removeExceedingBars();
+	}
+
+	/**
+	 * Ensure that one more bar can be stored at the end of the columns. The
+	 * space of removed bars is reused before the columns are enlarged.
+	 */
+	private void ensureCapacity() {
+		if(firstPosition + storedBars < endTimes.length) {
+			return;
+		}
+
+		final int capacity = (storedBars < endTimes.length / 2)
+				? endTimes.length : endTimes.length * 2;
+
+		endTimes = compact(endTimes, capacity);
+		openPrices = compact(openPrices, capacity);
+		highPrices = compact(highPrices, capacity);
+		lowPrices = compact(lowPrices, capacity);
+		closePrices = compact(closePrices, capacity);
+		volumes = compact(volumes, capacity);
+		firstPosition = 0;
+	}
+
+	/**
+	 * Copy the stored bars of the column to the begin of a new column
+	 * @param column
+	 * @param capacity
+	 * @return
+	 */
+	private long[] compact(final long[] column, final int capacity) {
+		final long[] result = new long[capacity];
+		System.arraycopy(column, firstPosition, result, 0, storedBars);
+		return result;
+	}
+
+	/**
+	 * Copy the stored bars of the column to the begin of a new column
+	 * @param column
+	 * @param capacity
+	 * @return
+	 */
+	private double[] compact(final double[] column, final int capacity) {
+		final double[] result = new double[capacity];
+		System.arraycopy(column, firstPosition, result, 0, storedBars);
+		return result;
+	}
+
+	/**
+	 * Remove the bars that exceed the maximum bar count
+	 */
+	private void removeExceedingBars() {
+		if(storedBars <= maximumBarCount) {
+			return;
+		}
+
+		final int barsToRemove = storedBars - maximumBarCount;
+		firstPosition = firstPosition + barsToRemove;
+		storedBars = storedBars - barsToRemove;
+		removedBarsCount = removedBarsCount + barsToRemove;
+	}
+
+	/**
+	 * Get the position of the bar in the columns. Removed bars are
+	 * mapped to the first stored bar like in BaseTimeSeries.
+	 *
+	 * @param index
+	 * @return
+	 */
+	private int getPosition(final int index) {
+		int innerIndex = index - removedBarsCount;
+
+		if(innerIndex < 0) {
+			if(index < 0 || storedBars == 0) {
+				throw new IndexOutOfBoundsException("Unable to get bar " + index + " from series "
+						+ name + " (" + storedBars + " bars)");
+			}
+			innerIndex = 0;
+		} else if(innerIndex >= storedBars) {
+			throw new IndexOutOfBoundsException("Unable to get bar " + index + " from series "
+					+ name + " (" + storedBars + " bars)");
+		}
+
+		return firstPosition + innerIndex;
+	}
+
+	/**
+	 * Get the end time of the bar in milliseconds since epoch
+	 * @param index
+	 * @return
+	 */
+	public long getEndTime(final int index) {
+		return endTimes[getPosition(index)];
+	}
+
+	/**
+	 * Get the open price of the bar
+	 * @param index
+	 * @return
+	 */
+	public double getOpenPrice(final int index) {
+		return openPrices[getPosition(index)];
+	}
+
+	/**
+	 * Get the high price of the bar
+	 * @param index
+	 * @return
+	 */
+	public double getMaxPrice(final int index) {
+		return highPrices[getPosition(index)];
+	}
+
+	/**
+	 * Get the low price of the bar
+	 * @param index
+	 * @return
+	 */
+	public double getMinPrice(final int index) {
+		return lowPrices[getPosition(index)];
+	}
+
+	/**
+	 * Get the close price of the bar
+	 * @param index
+	 * @return
+	 */
+	public double getClosePrice(final int index) {
+		return closePrices[getPosition(index)];
+	}
+
+	/**
+	 * Get the volume of the bar
+	 * @param index
+	 * @return
+	 */
+	public double getVolume(final int index) {
+		return volumes[getPosition(index)];
+	}
+
+	/**
+	 * Get the period of the bars
+	 * @return
+	 */
+	public Duration getBarPeriod() {
+		return barPeriod;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public Bar getBar(final int index) {
+		// Copy the values, the position is reused after the bar is removed
+		final int position = getPosition(index);
+		return new ColumnarBar(endTimes[position], openPrices[position], highPrices[position],
+				lowPrices[position], closePrices[position], volumes[position]);
+	}
+
+	@Override
+	public int getBarCount() {
+		if(seriesEndIndex < 0) {
+			return 0;
+		}
+
+		final int startIndex = Math.max(removedBarsCount, seriesBeginIndex);
+		return seriesEndIndex - startIndex + 1;
+	}
+
+	@Override
+	public List<Bar> getBarData() {
+		return new AbstractList<Bar>() {
+
+			@Override
+			public Bar get(final int index) {
+				if(index < 0 || index >= storedBars) {
+					throw new IndexOutOfBoundsException("Invalid index: " + index);
+				}
+
+				return getBar(removedBarsCount + index);
+			}
+
+			@Override
+			public int size() {
+				return storedBars;
+			}
+		};
+	}
+
+	@Override
+	public int getBeginIndex() {
+		return seriesBeginIndex;
+	}
+
+	@Override
+	public int getEndIndex() {
+		return seriesEndIndex;
+	}
+
+	@Override
+	public void setMaximumBarCount(final int maximumBarCount) {
+		if(maximumBarCount <= 0) {
+			throw new IllegalArgumentException("Maximum bar count must be strictly positive");
+		}
+
+		this.maximumBarCount = maximumBarCount;
+		removeExceedingBars();
+	}
+
+	@Override
+	public int getMaximumBarCount() {
+		return maximumBarCount;
+	}
+
+	@Override
+	public int getRemovedBarsCount() {
+		return removedBarsCount;
+	}
+
+	/**
+	 * Copy the bars [startIndex, endIndex) into a new series. The indices 
+	 * are series indices like in getBar, removed bars are skipped.
+	 */
+	@Override
+	public TimeSeries getSubSeries(final int startIndex, final int endIndex) {
+		if(startIndex > endIndex) {
+			throw new IllegalArgumentException(String.format(
+					"the endIndex: %s must be bigger than startIndex: %s", endIndex, startIndex));
+		}
+
+		final ColumnarTimeSeries result = new ColumnarTimeSeries(name, barPeriod, zoneId,
+				Math.max(1, endIndex - startIndex));
+
+		if(storedBars == 0) {
+			return result;
+		}
+
+		final int start = Math.max(startIndex, Math.max(seriesBeginIndex, removedBarsCount));
+		final int end = Math.min(endIndex, seriesEndIndex + 1);
+
+		for(int i = start; i < end; i++) {
+			final int position = getPosition(i);
+			result.addBar(endTimes[position], openPrices[position], highPrices[position],
+					lowPrices[position], closePrices[position], volumes[position]);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Reduce the memory of the columns to the stored bars
+	 */
+	public void trimToSize() {
+		final int capacity = Math.max(1, storedBars);
+		endTimes = compact(endTimes, capacity);
+		openPrices = compact(openPrices, capacity);
+		highPrices = compact(highPrices, capacity);
+		lowPrices = compact(lowPrices, capacity);
+		closePrices = compact(closePrices, capacity);
+		volumes = compact(volumes, capacity);
+		firstPosition = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "ColumnarTimeSeries [name=" + name + ", barPeriod=" + barPeriod + ", bars=" + storedBars
+				+ ", capacity=" + endTimes.length + ", removedBarsCount=" + removedBarsCount + "]";
+	}
+
+	/**
+	 * A read only copy of one bar of the columns
+	 */
+	private class ColumnarBar implements Bar {
+
+		private static final long serialVersionUID = -3157428542432358166L;
+
+		/**
+		 * The end time of the bar (milliseconds since epoch)
+		 */
+		private final long endTime;
+
+		/**
+		 * The open price
+		 */
+		private final double open;
+
+		/**
+		 * The high price
+		 */
+		private final double high;
+
+		/**
+		 * The low price
+		 */
+		private final double low;
+
+		/**
+		 * The close price
+		 */
+		private final double close;
+
+		/**
+		 * The volume
+		 */
+		private final double volume;
+
+		public ColumnarBar(final long endTime, final double open, final double high, final double low,
+				final double close, final double volume) {
+			this.endTime = endTime;
+			this.open = open;
+			this.high = high;
+			this.low = low;
+			this.close = close;
+			this.volume = volume;
+		}
+
+		@Override
+		public Decimal getOpenPrice() {
+			return Decimal.valueOf(open);
+		}
+
+		@Override
+		public Decimal getMinPrice() {
+			return Decimal.valueOf(low);
+		}
+
+		@Override
+		public Decimal getMaxPrice() {
+			return Decimal.valueOf(high);
+		}
+
+		@Override
+		public Decimal getClosePrice() {
+			return Decimal.valueOf(close);
+		}
+
+		@Override
+		public Decimal getVolume() {
+			return Decimal.valueOf(volume);
+		}
+
+		@Override
+		public int getTrades() {
+			return 0;
+		}
+
+		@Override
+		public Decimal getAmount() {
+			return Decimal.ZERO;
+		}
+
+		@Override
+		public Duration getTimePeriod() {
+			return barPeriod;
+		}
+
+		@Override
+		public ZonedDateTime getBeginTime() {
+			return getEndTime().minus(barPeriod);
+		}
+
+		@Override
+		public ZonedDateTime getEndTime() {
+			return ZonedDateTime.ofInstant(Instant.ofEpochMilli(endTime), zoneId);
+		}
+
+		@Override
+		public void addTrade(final Decimal tradeVolume, final Decimal tradePrice) {
+			throw new UnsupportedOperationException("The bars of a columnar time series are read only");
+		}
+
+		@Override
+		public String toString() {
+			return "ColumnarBar [endTime=" + getEndTime() + ", open=" + getOpenPrice()
+				+ ", high=" + getMaxPrice() + ", low=" + getMinPrice() + ", close=" + getClosePrice()
+				+ ", volume=" + getVolume() + "]";
+		}
+	}
+}
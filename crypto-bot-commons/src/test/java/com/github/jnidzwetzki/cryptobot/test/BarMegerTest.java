@@ -22,6 +22,8 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.function.BiConsumer;
 
@@ -247,4 +249,72 @@ public class BarMegerTest {
 		latch.await();
 	}
 
+	/**
+	 * Test the primitive entry point with many ticks per bar
+	 * @throws InterruptedException
+	 * @throws IOException
+	 */
+	@Test(timeout=6000)
+	public void testTickMergerPrimitive() throws InterruptedException, IOException {
+		
+		final CountDownLatch latch = new CountDownLatch(1);
+		
+		final BiConsumer<BitfinexCurrencyPair, Bar> tickConsumer = (s, t) -> {
+			Assert.assertEquals(1000.0, t.getOpenPrice().doubleValue(), DELTA);
+			Assert.assertEquals(999.0, t.getClosePrice().doubleValue(), DELTA);
+			Assert.assertEquals(1.0, t.getMinPrice().doubleValue(), DELTA);
+			Assert.assertEquals(1000.0, t.getMaxPrice().doubleValue(), DELTA);
+			Assert.assertEquals(500.0, t.getVolume().doubleValue(), DELTA);
+			latch.countDown();
+		};
+		
+		final BarMerger tickMerger = new BarMerger(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_1, tickConsumer);
+		
+		tickMerger.addNewPrice(0, 1000.0, 0.5);
+		
+		for(int i = 1; i < 1000; i++) {
+			tickMerger.addNewPrice(i, i, 0.5);
+		}
+		
+		tickMerger.close();
+		
+		latch.await();
+	}
+
+	/**
+	 * The OHLC values are reset for every bar
+	 * @throws InterruptedException
+	 * @throws IOException
+	 * @throws ParseException
+	 */
+	@Test(timeout=6000)
+	public void testTickMergerReset() throws InterruptedException, IOException, ParseException {
+		
+		final SimpleDateFormat parser = new SimpleDateFormat("HH:mm:ss");
+		
+		final List<Bar> bars = new ArrayList<>();
+		
+		final BarMerger tickMerger = new BarMerger(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_1, (s, t) -> bars.add(t));
+		tickMerger.addNewPrice(parser.parse("01:01:01").getTime(), 3.0, 5.0);
+		tickMerger.addNewPrice(parser.parse("01:01:02").getTime(), 9.0, 5.0);
+		tickMerger.addNewPrice(parser.parse("01:01:03").getTime(), 1.0, 5.0);
+		tickMerger.addNewPrice(parser.parse("01:02:01").getTime(), 5.0, 1.0);
+		tickMerger.addNewPrice(parser.parse("01:02:02").getTime(), 4.0, 1.0);
+		tickMerger.close();
+		
+		Assert.assertEquals(2, bars.size());
+		
+		Assert.assertEquals(3.0, bars.get(0).getOpenPrice().doubleValue(), DELTA);
+		Assert.assertEquals(9.0, bars.get(0).getMaxPrice().doubleValue(), DELTA);
+		Assert.assertEquals(1.0, bars.get(0).getMinPrice().doubleValue(), DELTA);
+		Assert.assertEquals(1.0, bars.get(0).getClosePrice().doubleValue(), DELTA);
+		Assert.assertEquals(15.0, bars.get(0).getVolume().doubleValue(), DELTA);
+		
+		Assert.assertEquals(5.0, bars.get(1).getOpenPrice().doubleValue(), DELTA);
+		Assert.assertEquals(5.0, bars.get(1).getMaxPrice().doubleValue(), DELTA);
+		Assert.assertEquals(4.0, bars.get(1).getMinPrice().doubleValue(), DELTA);
+		Assert.assertEquals(4.0, bars.get(1).getClosePrice().doubleValue(), DELTA);
+		Assert.assertEquals(2.0, bars.get(1).getVolume().doubleValue(), DELTA);
+	}
+
 }
@@ -0,0 +1,271 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ta4j.core.Bar;
+import org.ta4j.core.BaseBar;
+import org.ta4j.core.BaseTimeSeries;
+import org.ta4j.core.TimeSeries;
+import org.ta4j.core.indicators.EMAIndicator;
+import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+
+import com.github.jnidzwetzki.cryptobot.util.ColumnarTimeSeries;
+
+public class ColumnarTimeSeriesTest {
+
+	private final static double DELTA = 0.00001;
+
+	/**
+	 * The bar period of the tests
+	 */
+	private final static Duration BAR_PERIOD = Duration.ofMinutes(15);
+
+	/**
+	 * Test the empty series
+	 */
+	@Test
+	public void testEmptySeries() {
+		final ColumnarTimeSeries timeSeries = new ColumnarTimeSeries("test", BAR_PERIOD);
+		Assert.assertTrue(timeSeries.isEmpty());
+		Assert.assertEquals(0, timeSeries.getBarCount());
+		Assert.assertEquals(-1, timeSeries.getBeginIndex());
+		Assert.assertEquals(-1, timeSeries.getEndIndex());
+		Assert.assertTrue(timeSeries.getBarData().isEmpty());
+	}
+
+	/**
+	 * Test the bar values and the index semantics
+	 */
+	@Test
+	public void testBars() {
+		final BaseTimeSeries baseTimeSeries = new BaseTimeSeries("test");
+		final ColumnarTimeSeries timeSeries = new ColumnarTimeSeries("test", BAR_PERIOD, ZoneOffset.UTC, 4);
+		fillSeries(5000, baseTimeSeries, timeSeries);
+
+		Assert.assertEquals(baseTimeSeries.getBarCount(), timeSeries.getBarCount());
+		Assert.assertEquals(baseTimeSeries.getBeginIndex(), timeSeries.getBeginIndex());
+		Assert.assertEquals(baseTimeSeries.getEndIndex(), timeSeries.getEndIndex());
+		Assert.assertEquals(baseTimeSeries.getBarData().size(), timeSeries.getBarData().size());
+
+		for(int i = timeSeries.getBeginIndex(); i <= timeSeries.getEndIndex(); i++) {
+			assertSameBar(baseTimeSeries.getBar(i), timeSeries.getBar(i));
+			Assert.assertEquals(BAR_PERIOD, timeSeries.getBar(i).getTimePeriod());
+		}
+	}
+
+	/**
+	 * Test indicators on the columnar series
+	 */
+	@Test
+	public void testIndicator() {
+		final BaseTimeSeries baseTimeSeries = new BaseTimeSeries("test");
+		final ColumnarTimeSeries timeSeries = new ColumnarTimeSeries("test", BAR_PERIOD, ZoneOffset.UTC);
+		fillSeries(1000, baseTimeSeries, timeSeries);
+
+		final EMAIndicator baseEma = new EMAIndicator(new ClosePriceIndicator(baseTimeSeries), 12);
+		final EMAIndicator ema = new EMAIndicator(new ClosePriceIndicator(timeSeries), 12);
+
+		for(int i = timeSeries.getBeginIndex(); i <= timeSeries.getEndIndex(); i++) {
+			Assert.assertEquals(baseEma.getValue(i), ema.getValue(i));
+		}
+	}
+
+	/**
+	 * Test the maximum bar count
+	 */
+	@Test
+	public void testMaximumBarCount() {
+		final BaseTimeSeries baseTimeSeries = new BaseTimeSeries("test");
+		final ColumnarTimeSeries timeSeries = new ColumnarTimeSeries("test", BAR_PERIOD, ZoneOffset.UTC, 8);
+		baseTimeSeries.setMaximumBarCount(100);
+		timeSeries.setMaximumBarCount(100);
+
+		fillSeries(1000, baseTimeSeries, timeSeries);
+
+		Assert.assertEquals(100, timeSeries.getBarCount());
+		Assert.assertEquals(baseTimeSeries.getBarCount(), timeSeries.getBarCount());
+		Assert.assertEquals(baseTimeSeries.getRemovedBarsCount(), timeSeries.getRemovedBarsCount());
+		Assert.assertEquals(baseTimeSeries.getBeginIndex(), timeSeries.getBeginIndex());
+		Assert.assertEquals(baseTimeSeries.getEndIndex(), timeSeries.getEndIndex());
+
+		// Removed bars are mapped to the first stored bar
+		assertSameBar(baseTimeSeries.getBar(0), timeSeries.getBar(0));
+		assertSameBar(baseTimeSeries.getFirstBar(), timeSeries.getFirstBar());
+		assertSameBar(baseTimeSeries.getLastBar(), timeSeries.getLastBar());
+
+		for(int i = 0; i < timeSeries.getBarData().size(); i++) {
+			assertSameBar(baseTimeSeries.getBarData().get(i), timeSeries.getBarData().get(i));
+		}
+	}
+
+	/**
+	 * A bar obtained before the eviction keeps its values
+	 */
+	@Test
+	public void testBarAfterEviction() {
+		final BaseTimeSeries baseTimeSeries = new BaseTimeSeries("test");
+		final ColumnarTimeSeries timeSeries = new ColumnarTimeSeries("test", BAR_PERIOD, ZoneOffset.UTC, 8);
+		timeSeries.setMaximumBarCount(4);
+		fillSeries(2, baseTimeSeries, timeSeries);
+
+		final Bar firstBar = timeSeries.getBar(0);
+		final Bar lastBar = timeSeries.getLastBar();
+		final Bar expectedFirstBar = baseTimeSeries.getBar(0);
+		final Bar expectedLastBar = baseTimeSeries.getLastBar();
+
+		// Evict the bars and reuse their positions in the columns
+		for(int i = 0; i < 20; i++) {
+			timeSeries.addBar(timeSeries.getEndTime(timeSeries.getEndIndex()) + 1000, i, i, i, i, i);
+		}
+
+		Assert.assertEquals(18, timeSeries.getRemovedBarsCount());
+		assertSameBar(expectedFirstBar, firstBar);
+		assertSameBar(expectedLastBar, lastBar);
+	}
+
+	/**
+	 * Test the sub series
+	 */
+	@Test
+	public void testSubSeries() {
+		final BaseTimeSeries baseTimeSeries = new BaseTimeSeries("test");
+		final ColumnarTimeSeries timeSeries = new ColumnarTimeSeries("test", BAR_PERIOD, ZoneOffset.UTC);
+		fillSeries(100, baseTimeSeries, timeSeries);
+
+		final TimeSeries baseSubSeries = baseTimeSeries.getSubSeries(10, 20);
+		final TimeSeries subSeries = timeSeries.getSubSeries(10, 20);
+
+		Assert.assertEquals(baseSubSeries.getBarCount(), subSeries.getBarCount());
+		Assert.assertEquals(baseSubSeries.getEndIndex(), subSeries.getEndIndex());
+
+		for(int i = subSeries.getBeginIndex(); i <= subSeries.getEndIndex(); i++) {
+			assertSameBar(baseSubSeries.getBar(i), subSeries.getBar(i));
+		}
+	}
+
+	/**
+	 * Test the sub series with removed bars
+	 */
+	@Test
+	public void testSubSeriesMaximumBarCount() {
+		final BaseTimeSeries baseTimeSeries = new BaseTimeSeries("test");
+		final ColumnarTimeSeries timeSeries = new ColumnarTimeSeries("test", BAR_PERIOD, ZoneOffset.UTC, 8);
+		timeSeries.setMaximumBarCount(100);
+		fillSeries(1000, baseTimeSeries, timeSeries);
+
+		Assert.assertEquals(900, timeSeries.getRemovedBarsCount());
+
+		final TimeSeries subSeries = timeSeries.getSubSeries(950, 960);
+		Assert.assertEquals(10, subSeries.getBarCount());
+
+		for(int i = 0; i < subSeries.getBarCount(); i++) {
+			assertSameBar(baseTimeSeries.getBar(950 + i), subSeries.getBar(i));
+		}
+
+		// The removed bars are skipped
+		final TimeSeries partialSeries = timeSeries.getSubSeries(850, 910);
+		Assert.assertEquals(10, partialSeries.getBarCount());
+		assertSameBar(baseTimeSeries.getBar(900), partialSeries.getBar(0));
+		assertSameBar(baseTimeSeries.getBar(909), partialSeries.getBar(9));
+
+		// The end is limited to the last bar
+		final TimeSeries tailSeries = timeSeries.getSubSeries(990, 2000);
+		Assert.assertEquals(10, tailSeries.getBarCount());
+		assertSameBar(baseTimeSeries.getLastBar(), tailSeries.getLastBar());
+
+		Assert.assertEquals(0, timeSeries.getSubSeries(100, 200).getBarCount());
+	}
+
+	/**
+	 * Bars have to be added in order
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testAddBarInvalidOrder() {
+		final ColumnarTimeSeries timeSeries = new ColumnarTimeSeries("test", BAR_PERIOD);
+		timeSeries.addBar(2000, 1, 1, 1, 1, 1);
+		timeSeries.addBar(1000, 1, 1, 1, 1, 1);
+	}
+
+	/**
+	 * Invalid bar index
+	 */
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testInvalidIndex() {
+		final ColumnarTimeSeries timeSeries = new ColumnarTimeSeries("test", BAR_PERIOD);
+		timeSeries.addBar(2000, 1, 1, 1, 1, 1);
+		timeSeries.getBar(1);
+	}
+
+	/**
+	 * The bars are read only
+	 */
+	@Test(expected=UnsupportedOperationException.class)
+	public void testReadOnlyBar() {
+		final ColumnarTimeSeries timeSeries = new ColumnarTimeSeries("test", BAR_PERIOD);
+		timeSeries.addBar(2000, 1, 1, 1, 1, 1);
+		timeSeries.getBar(0).addTrade(1, 1);
+	}
+
+	/**
+	 * Compare the values of two bars
+	 * @param expected
+	 * @param bar
+	 */
+	private void assertSameBar(final Bar expected, final Bar bar) {
+		Assert.assertEquals(expected.getEndTime(), bar.getEndTime());
+		Assert.assertEquals(expected.getOpenPrice().doubleValue(), bar.getOpenPrice().doubleValue(), DELTA);
+		Assert.assertEquals(expected.getMaxPrice().doubleValue(), bar.getMaxPrice().doubleValue(), DELTA);
+		Assert.assertEquals(expected.getMinPrice().doubleValue(), bar.getMinPrice().doubleValue(), DELTA);
+		Assert.assertEquals(expected.getClosePrice().doubleValue(), bar.getClosePrice().doubleValue(), DELTA);
+		Assert.assertEquals(expected.getVolume().doubleValue(), bar.getVolume().doubleValue(), DELTA);
+	}
+
+	/**
+	 * Add the same random walk bars to both series
+	 * @param bars
+	 * @param baseTimeSeries
+	 * @param timeSeries
+	 */
+	private void fillSeries(final int bars, final TimeSeries baseTimeSeries, final TimeSeries timeSeries) {
+		final Random random = new Random(bars);
+		double price = 1000;
+
+		for(int i = 0; i < bars; i++) {
+			final double open = price;
+			final double close = Math.max(1, open + (random.nextGaussian() * 10));
+			final double high = Math.max(open, close) + random.nextDouble() * 5;
+			final double low = Math.min(open, close) - random.nextDouble() * 5;
+			final Instant endTime = Instant.ofEpochSecond(1514764800L + (i * 15 * 60));
+
+			final Bar bar = new BaseBar(ZonedDateTime.ofInstant(endTime, ZoneOffset.UTC),
+					open, high, low, close, random.nextDouble() * 100);
+
+			baseTimeSeries.addBar(bar);
+			timeSeries.addBar(bar);
+			price = close;
+		}
+	}
+}
@@ -17,19 +17,23 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.cryptobot;
 
+import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.bboxdb.commons.MathUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.ta4j.core.Bar;
-import org.ta4j.core.Decimal;
 import org.ta4j.core.TimeSeries;
 import org.ta4j.core.indicators.helpers.MaxPriceIndicator;
 import org.ta4j.core.indicators.helpers.MinPriceIndicator;
@@ -43,10 +47,12 @@ import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexCandlestickSymbo
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
 import com.github.jnidzwetzki.cryptobot.portfolio.BasePortfolioManager;
 import com.github.jnidzwetzki.cryptobot.portfolio.PortfolioManager;
+import com.github.jnidzwetzki.cryptobot.portfolio.PortfolioManagerExecutor;
 import com.github.jnidzwetzki.cryptobot.strategy.indicator.DonchianChannelLower;
 import com.github.jnidzwetzki.cryptobot.strategy.indicator.DonchianChannelUpper;
 import com.github.jnidzwetzki.cryptobot.util.BarMerger;
 import com.github.jnidzwetzki.cryptobot.util.BitfinexClientFactory;
+import com.github.jnidzwetzki.cryptobot.util.CandleStore;
 
 public class DonchianBot implements Runnable {
 	
@@ -60,6 +66,26 @@ public class DonchianBot implements Runnable {
 	 */
 	private final Map<BitfinexCurrencyPair, TimeSeries> timeSeries;
 	
+	/**
+	 * The upper channels, updated incrementally with each bar
+	 */
+	private final Map<BitfinexCurrencyPair, DonchianChannelUpper> upperChannels;
+	
+	/**
+	 * The lower channels, updated incrementally with each bar
+	 */
+	private final Map<BitfinexCurrencyPair, DonchianChannelLower> lowerChannels;
+	
+	/**
+	 * The upper channel values of the last bar
+	 */
+	private final Map<BitfinexCurrencyPair, Double> upperChannelValues;
+	
+	/**
+	 * The lower channel values of the last bar
+	 */
+	private final Map<BitfinexCurrencyPair, Double> lowerChannelValues;
+	
 	/**
 	 * The traded currencies
 	 */
@@ -85,16 +111,48 @@ public class DonchianBot implements Runnable {
 	 */
 	private final List<BitfinexApiBroker> apiBrokerList;
 	
+	/**
+	 * The executor for the portfolio managers
+	 */
+	private final PortfolioManagerExecutor portfolioManagerExecutor;
+	
 	/**
 	 * The ticker latch
 	 */
 	private volatile CountDownLatch tickerLatch;
 	
+	/**
+	 * The local store for the closed bars
+	 */
+	private CandleStore candleStore;
+	
+	/**
+	 * The symbols without a closed bar since the start, the first bar 
+	 * contains only the ticks since the subscription and is not stored. 
+	 * The gap is filled from the candle snapshot on the next start.
+	 */
+	private final Set<BitfinexCurrencyPair> partialBars = ConcurrentHashMap.newKeySet();
+	
 	/**
 	 * The timeframe to trade
 	 */
 	private static final Timeframe TIMEFRAME = Timeframe.MINUTES_15;
 	
+	/**
+	 * The directory of the candle store
+	 */
+	private static final String CANDLE_DIRECTORY = "candles";
+	
+	/**
+	 * The maximal amount of concurrently executed portfolio managers
+	 */
+	private static final int MAX_PORTFOLIO_THREADS = 8;
+	
+	/**
+	 * The time a portfolio manager has to sync its orders
+	 */
+	private static final long PORTFOLIO_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+	
 	/**
 	 * The Logger
 	 */
@@ -105,6 +163,10 @@ public class DonchianBot implements Runnable {
 		this.periodOut = periodOut;
 		this.tickMerger = new HashMap<>();
 		this.timeSeries = new HashMap<>();		
+		this.upperChannels = new HashMap<>();
+		this.lowerChannels = new HashMap<>();
+		this.upperChannelValues = new ConcurrentHashMap<>();
+		this.lowerChannelValues = new ConcurrentHashMap<>();
 		
 		this.tradedCurrencies = Arrays.asList(BitfinexCurrencyPair.BTC_USD,
 				BitfinexCurrencyPair.ETH_USD, BitfinexCurrencyPair.LTC_USD, 
@@ -123,6 +185,9 @@ public class DonchianBot implements Runnable {
 		for(final BitfinexApiBroker bitfinexApiBroker : apiBrokerList) {
 			portfolioManagers.add(new BasePortfolioManager(bitfinexApiBroker, maxLossPerPosition));
 		}
+		
+		this.portfolioManagerExecutor = new PortfolioManagerExecutor(
+				Math.min(portfolioManagers.size(), MAX_PORTFOLIO_THREADS), PORTFOLIO_TIMEOUT_MILLIS);
 	}
 
 	@Override
@@ -136,10 +201,14 @@ public class DonchianBot implements Runnable {
 				bitfinexApiBroker.connect();
 			}
 			
+			candleStore = new CandleStore(new File(CANDLE_DIRECTORY));
+			
 			final Map<BitfinexCandlestickSymbol, TimeSeries> historicalCandles = HistoricalCandlesHelper
-					.requestHistoricalCandles(apiBrokerList.get(0), TIMEFRAME, tradedCurrencies);
+					.requestHistoricalCandles(apiBrokerList.get(0), TIMEFRAME, tradedCurrencies, candleStore);
 			
 			historicalCandles.forEach((k, v) -> timeSeries.put(k.getSymbol(), v));
+			
+			createChannels();
 
 			registerTicker();
 
@@ -155,9 +224,40 @@ public class DonchianBot implements Runnable {
 			}
 		} catch (Throwable e) {
 			logger.error("Got exception", e);
+		} finally {
+			portfolioManagerExecutor.close();
 		}
 	}
 	
+	/**
+	 * Create the channels for the traded currencies
+	 */
+	private synchronized void createChannels() {
+		for(final BitfinexCurrencyPair currency : tradedCurrencies) {
+			final TimeSeries currencyTimeSeries = timeSeries.get(currency);
+			
+			upperChannels.put(currency, new DonchianChannelUpper(new MaxPriceIndicator(currencyTimeSeries), periodIn));
+			lowerChannels.put(currency, new DonchianChannelLower(new MinPriceIndicator(currencyTimeSeries), periodOut));
+			
+			updateChannelValues(currency);
+		}
+	}
+	
+	/**
+	 * Update the channel values with the last bar of the currency
+	 * @param currency
+	 */
+	private void updateChannelValues(final BitfinexCurrencyPair currency) {
+		final int endIndex = timeSeries.get(currency).getEndIndex();
+		
+		if(endIndex < 0) {
+			return;
+		}
+		
+		upperChannelValues.put(currency, upperChannels.get(currency).getValue(endIndex).doubleValue());
+		lowerChannelValues.put(currency, lowerChannels.get(currency).getValue(endIndex).doubleValue());
+	}
+	
 	/**
 	 * Register the ticker
 	 * @throws InterruptedException
@@ -182,6 +282,7 @@ public class DonchianBot implements Runnable {
 			}
 
 			// Use only one connection for merging
+			partialBars.add(currency);
 			tickMerger.put(currency, new BarMerger(currency, TIMEFRAME, (s, t) -> barDoneCallback(s, t)));
  
 			final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(currency);
@@ -208,7 +309,20 @@ public class DonchianBot implements Runnable {
 					bar, symbol, symbolTimeSeries.getLastBar());
 		}
 		
-		logger.info("Newest bar is {}", bar);
+		if(partialBars.remove(symbol)) {
+			logger.info("Not storing the partial bar {} for symbol {}", bar, symbol);
+		} else {
+			try {
+				candleStore.append(symbol, TIMEFRAME, bar);
+			} catch (IOException e) {
+				logger.error("Unable to store {} for symbol {}", bar, symbol, e);
+			}
+		}
+		
+		updateChannelValues(symbol);
+		
+		logger.info("Newest bar is {}, channel is {} / {}", bar, 
+				upperChannelValues.get(symbol), lowerChannelValues.get(symbol));
 		
 		// Notify portfolio manager about bar done
 		if(tickerLatch != null) {
@@ -238,23 +352,18 @@ public class DonchianBot implements Runnable {
 	}
 	
 	/**
-	 * Execute the trading system
-	 * @throws APIException
+	 * Execute the trading system, the portfolio managers are executed concurrently
+	 * @throws InterruptedException 
 	 */
-	private void executeSystem() {
+	private void executeSystem() throws InterruptedException {
 		
-		for(final PortfolioManager portfolioManager : portfolioManagers) {
-			
-			logger.info("Apply orders to portfolio manager {}", portfolioManager);
-			logger.info("===============================================");
-
-			applySystemToPortfolioManager(portfolioManager);
-			
-			if(Thread.interrupted()) {
-				return;
-			}
-		}
+		final List<PortfolioManager> failedPortfolioManagers = portfolioManagerExecutor.execute(
+				portfolioManagers, p -> applySystemToPortfolioManager(p));
 		
+		if(! failedPortfolioManagers.isEmpty()) {
+			logger.error("Unable to apply orders to {} of {} portfolio managers: {}", 
+					failedPortfolioManagers.size(), portfolioManagers.size(), failedPortfolioManagers);
+		}
 	}
 
 	/**
@@ -262,18 +371,25 @@ public class DonchianBot implements Runnable {
 	 * @param portfolioManager
 	 */
 	private void applySystemToPortfolioManager(final PortfolioManager portfolioManager) {
+		
+		logger.info("Apply orders to portfolio manager {}", portfolioManager);
+		
 		try {	
 			final Map<BitfinexCurrencyPair, CurrencyEntry> entries = new HashMap<>();
 			final Map<BitfinexCurrencyPair, Double> exits = new HashMap<>();
 			
 			for(final BitfinexCurrencyPair currencyPair : tradedCurrencies) {
 				
-				final boolean open = portfolioManager.isPositionOpen(currencyPair.getCurrency1());
-				
 				// The channel values
-				final double upperValue = getUpperChannelValue(currencyPair).doubleValue();
-				final double lowerValue = getLowerChannelValue(currencyPair).doubleValue();
-				final double channelSize = upperValue - lowerValue;
+				final Double upperValue = getUpperChannelValue(currencyPair);
+				final Double lowerValue = getLowerChannelValue(currencyPair);
+				
+				if(upperValue == null || lowerValue == null) {
+					logger.warn("No channel values for {}, skipping", currencyPair);
+					continue;
+				}
+				
+				final boolean open = portfolioManager.isPositionOpen(currencyPair.getCurrency1());
 				
 				// The prices
 				final double entryPrice = adjustEntryPrice(upperValue);
@@ -283,7 +399,7 @@ public class DonchianBot implements Runnable {
 					final double lastPrice = getLastPriceForSymbol(currencyPair);
 					
 					// Filter entry orders to reduce capital allocation
-					final double upperChannelHalf = lowerValue + (channelSize / 2);
+					final double upperChannelHalf = getEntryFilterPrice(upperValue, lowerValue);
 
 					if(lastPrice > upperChannelHalf) {
 						final CurrencyEntry currencyEntry = new CurrencyEntry(currencyPair, entryPrice, exitPrice);
@@ -301,7 +417,8 @@ public class DonchianBot implements Runnable {
 			portfolioManager.syncOrders(entries, exits);
 
 		} catch (APIException e) {
-			logger.error("Got exception while executing trading system", e);
+			// Reported by the executor as failed portfolio manager
+			throw new IllegalStateException("Unable to apply orders to " + portfolioManager, e);
 		} catch (InterruptedException e) {
 			logger.error("Got interrupted exception");
 			Thread.currentThread().interrupt();
@@ -309,30 +426,21 @@ public class DonchianBot implements Runnable {
 	}
 
 	/**
-	 * Get the upper channel value
+	 * Get the upper channel value of the last bar
 	 * @param currencyPair
-	 * @return
+	 * @return the value or null if the currency has no bars
 	 */
-	private Decimal getUpperChannelValue(final BitfinexCurrencyPair currencyPair) {
-		final TimeSeries currencyTimeSeries = timeSeries.get(currencyPair);
-		final MaxPriceIndicator maxPrice = new MaxPriceIndicator(currencyTimeSeries);
-
-		final DonchianChannelUpper donchianChannelUpper = new DonchianChannelUpper(maxPrice, periodIn);
-		return donchianChannelUpper.getValue(currencyTimeSeries.getEndIndex());
+	public Double getUpperChannelValue(final BitfinexCurrencyPair currencyPair) {
+		return upperChannelValues.get(currencyPair);
 	}
 	
 	/**
-	 * Get the lower channel value
+	 * Get the lower channel value of the last bar
 	 * @param currencyPair
-	 * @return
+	 * @return the value or null if the currency has no bars
 	 */
-	private Decimal getLowerChannelValue(final BitfinexCurrencyPair currencyPair) {
-		final TimeSeries currencyTimeSeries = timeSeries.get(currencyPair);
-		
-		final MinPriceIndicator minPrice = new MinPriceIndicator(currencyTimeSeries);
-
-		final DonchianChannelLower donchianChannelLower = new DonchianChannelLower(minPrice, periodOut);
-		return donchianChannelLower.getValue(currencyTimeSeries.getEndIndex());
+	public Double getLowerChannelValue(final BitfinexCurrencyPair currencyPair) {
+		return lowerChannelValues.get(currencyPair);
 	}
 
 	/**
@@ -340,7 +448,7 @@ public class DonchianBot implements Runnable {
 	 * @param upperValue
 	 * @return
 	 */
-	private double adjustEntryPrice(final double upperValue) {
+	static double adjustEntryPrice(final double upperValue) {
 		return MathUtil.round(upperValue + (upperValue / 100.0 * 0.5), 2);
 	}
 	
@@ -349,10 +457,22 @@ public class DonchianBot implements Runnable {
 	 * @param newStopLoss
 	 * @return
 	 */
-	private double adjustExitPrice(final double lowerValue) {
+	static double adjustExitPrice(final double lowerValue) {
 		return  MathUtil.round(lowerValue - (lowerValue / 100.0 * 0.2), 2);
 	}
 
+	/**
+	 * Get the price the last price has to exceed to place an entry order
+	 * (the middle of the channel)
+	 * @param upperValue
+	 * @param lowerValue
+	 * @return
+	 */
+	static double getEntryFilterPrice(final double upperValue, final double lowerValue) {
+		final double channelSize = upperValue - lowerValue;
+		return lowerValue + (channelSize / 2);
+	}
+
 	/**
 	 * The main method
 	 * @param args
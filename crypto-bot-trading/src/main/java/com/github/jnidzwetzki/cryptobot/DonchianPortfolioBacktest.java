@@ -0,0 +1,457 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.cryptobot.backtest.TradeExecutor;
+import com.github.jnidzwetzki.cryptobot.portfolio.BasePortfolioManager;
+import com.github.jnidzwetzki.cryptobot.portfolio.CapitalAllocation;
+import com.github.jnidzwetzki.cryptobot.strategy.indicator.IndicatorKernels;
+import com.github.jnidzwetzki.cryptobot.util.MathHelper;
+
+/**
+ * Backtest the donchian bot on a portfolio of currencies with shared capital.
+ * <p>
+ * The bar series of all currencies are advanced in lockstep. On every bar
+ * close, the same rules as in the live bot are applied: entry orders are
+ * placed for the currencies without position when the price is above the
+ * middle of the channel, the position sizes are calculated with the capital
+ * allocation of the portfolio manager and the stop loss orders of the open
+ * positions are moved up. The stop orders are executed on the next bar.
+ * <p>
+ * The channels and order prices of the currencies are independent, they
+ * are calculated in parallel before the simulation. The simulation itself
+ * is sequential, because all currencies share the same capital.
+ *
+ */
+public class DonchianPortfolioBacktest {
+
+	/**
+	 * The traded currencies
+	 */
+	private final List<BitfinexCurrencyPair> currencies;
+	
+	/**
+	 * The time series of the currencies
+	 */
+	private final List<TimeSeries> timeSeries;
+	
+	/**
+	 * The channel period in
+	 */
+	private final int periodIn;
+	
+	/**
+	 * The channel period out
+	 */
+	private final int periodOut;
+	
+	/**
+	 * The capital allocation
+	 */
+	private final CapitalAllocation capitalAllocation;
+	
+	/**
+	 * The initial portfolio value in USD
+	 */
+	private final double portfolioValue;
+	
+	/**
+	 * The precomputed data of the currencies
+	 */
+	private final SymbolData[] symbolData;
+	
+	/**
+	 * The entry order prices (0 = no order)
+	 */
+	private final double[] entryOrderPrice;
+	
+	/**
+	 * The entry order sizes
+	 */
+	private final double[] entryOrderSize;
+	
+	/**
+	 * The exit order prices (0 = no order)
+	 */
+	private final double[] exitOrderPrice;
+	
+	/**
+	 * The open positions
+	 */
+	private final double[] openPositions;
+	
+	/**
+	 * The USD value of the positions when opened (including fees)
+	 */
+	private final double[] openPositionCosts;
+	
+	/**
+	 * The USD balance
+	 */
+	private double cash;
+	
+	/**
+	 * The result
+	 */
+	private PortfolioBacktestResult result;
+
+	public DonchianPortfolioBacktest(final Map<BitfinexCurrencyPair, TimeSeries> timeSeries, 
+			final int periodIn, final int periodOut, final double maxLossPerPosition, 
+			final double portfolioValue) {
+		
+		if(timeSeries.isEmpty()) {
+			throw new IllegalArgumentException("No time series given");
+		}
+		
+		if(periodIn < 1 || periodOut < 1) {
+			throw new IllegalArgumentException("Invalid periods: " + periodIn + " / " + periodOut);
+		}
+		
+		this.currencies = new ArrayList<>(timeSeries.keySet());
+		this.timeSeries = new ArrayList<>(timeSeries.values());
+		this.periodIn = periodIn;
+		this.periodOut = periodOut;
+		this.portfolioValue = portfolioValue;
+		this.capitalAllocation = new CapitalAllocation(maxLossPerPosition, BasePortfolioManager.INVESTMENT_RATE);
+		
+		final int barCount = this.timeSeries.get(0).getBarCount();
+		
+		for(int i = 0; i < currencies.size(); i++) {
+			if(this.timeSeries.get(i).getBarCount() != barCount) {
+				throw new IllegalArgumentException("Time series of " + currencies.get(i) + " has " 
+						+ this.timeSeries.get(i).getBarCount() + " bars, expected " + barCount);
+			}
+		}
+		
+		this.symbolData = new SymbolData[currencies.size()];
+		this.entryOrderPrice = new double[currencies.size()];
+		this.entryOrderSize = new double[currencies.size()];
+		this.exitOrderPrice = new double[currencies.size()];
+		this.openPositions = new double[currencies.size()];
+		this.openPositionCosts = new double[currencies.size()];
+	}
+	
+	/**
+	 * Run the backtest
+	 * @param forkJoinPool - the pool for the calculation of the channels
+	 * @return
+	 */
+	public PortfolioBacktestResult run(final ForkJoinPool forkJoinPool) {
+		forkJoinPool.invoke(new PrecomputeTask(0, currencies.size()));
+		
+		checkAlignment();
+		
+		final int barCount = timeSeries.get(0).getBarCount();
+		
+		// The first bar with complete channels
+		final int beginIndex = Math.min(barCount, Math.max(periodIn, periodOut) - 1);
+		
+		Arrays.fill(entryOrderPrice, 0);
+		Arrays.fill(exitOrderPrice, 0);
+		Arrays.fill(openPositions, 0);
+		Arrays.fill(openPositionCosts, 0);
+		
+		cash = portfolioValue;
+		result = new PortfolioBacktestResult(currencies, portfolioValue, barCount - beginIndex);
+		
+		for(int bar = beginIndex; bar < barCount; bar++) {
+			executeOrders(bar);
+			
+			final double totalPortfolioValue = getTotalPortfolioValue(bar);
+			result.setPortfolioValue(bar - beginIndex, totalPortfolioValue);
+			
+			placeOrders(bar, totalPortfolioValue);
+		}
+		
+		// Close the open positions on the last bar
+		for(int symbol = 0; symbol < currencies.size(); symbol++) {
+			if(openPositions[symbol] > 0) {
+				closePosition(symbol, symbolData[symbol].close[barCount - 1]);
+			}
+		}
+		
+		result.setFinalPortfolioValue(cash);
+		
+		return result;
+	}
+
+	/**
+	 * All time series need bars with the same end time
+	 */
+	private void checkAlignment() {
+		final long[] referenceEndTimes = symbolData[0].endTimes;
+		
+		for(int symbol = 1; symbol < symbolData.length; symbol++) {
+			final long[] endTimes = symbolData[symbol].endTimes;
+			
+			for(int bar = 0; bar < endTimes.length; bar++) {
+				if(endTimes[bar] != referenceEndTimes[bar]) {
+					throw new IllegalArgumentException("Bar " + bar + " of " + currencies.get(symbol) 
+						+ " is not aligned with " + currencies.get(0));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Execute the stop orders that were placed on the close of the last bar
+	 * @param bar
+	 */
+	private void executeOrders(final int bar) {
+		for(int symbol = 0; symbol < currencies.size(); symbol++) {
+			final SymbolData data = symbolData[symbol];
+			
+			if(openPositions[symbol] > 0) {
+				if(exitOrderPrice[symbol] > 0 && data.low[bar] <= exitOrderPrice[symbol]) {
+					closePosition(symbol, Math.min(data.open[bar], exitOrderPrice[symbol]));
+				}
+			} else if(entryOrderPrice[symbol] > 0 && data.high[bar] >= entryOrderPrice[symbol]) {
+				openPosition(symbol, Math.max(data.open[bar], entryOrderPrice[symbol]));
+			}
+		}
+	}
+
+	/**
+	 * Open a position
+	 * @param symbol
+	 * @param price
+	 */
+	private void openPosition(final int symbol, final double price) {
+		final double positionValue = entryOrderSize[symbol] * price;
+		final double fees = positionValue * TradeExecutor.COMISSION;
+		
+		// The exchange rejects the order when the balance is not sufficient
+		if(positionValue + fees > cash) {
+			result.addRejectedOrder();
+			return;
+		}
+		
+		cash = cash - positionValue - fees;
+		openPositions[symbol] = entryOrderSize[symbol];
+		openPositionCosts[symbol] = positionValue + fees;
+		entryOrderPrice[symbol] = 0;
+		exitOrderPrice[symbol] = 0;
+		result.addFees(fees);
+	}
+	
+	/**
+	 * Close a position
+	 * @param symbol
+	 * @param price
+	 */
+	private void closePosition(final int symbol, final double price) {
+		final double positionValue = openPositions[symbol] * price;
+		final double fees = positionValue * TradeExecutor.COMISSION;
+		
+		cash = cash + positionValue - fees;
+		result.addFees(fees);
+		result.addTrade(symbol, positionValue - fees - openPositionCosts[symbol]);
+		
+		openPositions[symbol] = 0;
+		openPositionCosts[symbol] = 0;
+		exitOrderPrice[symbol] = 0;
+	}
+	
+	/**
+	 * Get the total portfolio value on the close of the bar
+	 * @param bar
+	 * @return
+	 */
+	private double getTotalPortfolioValue(final int bar) {
+		double totalPortfolioValue = cash;
+		
+		for(int symbol = 0; symbol < currencies.size(); symbol++) {
+			totalPortfolioValue = totalPortfolioValue + openPositions[symbol] * symbolData[symbol].close[bar];
+		}
+		
+		return totalPortfolioValue;
+	}
+
+	/**
+	 * Apply the trading system on the close of the bar (like DonchianBot.applySystemToPortfolioManager)
+	 * @param bar
+	 * @param totalPortfolioValue
+	 */
+	private void placeOrders(final int bar, final double totalPortfolioValue) {
+		final Map<BitfinexCurrencyPair, CurrencyEntry> entries = new EnumMap<>(BitfinexCurrencyPair.class);
+		
+		for(int symbol = 0; symbol < currencies.size(); symbol++) {
+			final SymbolData data = symbolData[symbol];
+			
+			if(openPositions[symbol] > 0) {
+				// The stop loss is only moved up
+				exitOrderPrice[symbol] = Math.max(exitOrderPrice[symbol], data.exitPrice[bar]);
+				continue;
+			}
+			
+			if(data.close[bar] > data.entryFilterPrice[bar]) {
+				final BitfinexCurrencyPair currency = currencies.get(symbol);
+				entries.put(currency, new CurrencyEntry(currency, data.entryPrice[bar], data.exitPrice[bar]));
+			} else {
+				// Entry order is canceled
+				entryOrderPrice[symbol] = 0;
+			}
+		}
+		
+		capitalAllocation.calculatePositionSizes(entries, totalPortfolioValue, cash);
+		
+		for(int symbol = 0; symbol < currencies.size(); symbol++) {
+			final CurrencyEntry entry = entries.get(currencies.get(symbol));
+			
+			if(entry == null) {
+				continue;
+			}
+			
+			if(entry.getPositionSize() < currencies.get(symbol).getMinimumOrderSize()) {
+				entryOrderPrice[symbol] = 0;
+				continue;
+			}
+			
+			// The old order is kept when the price has not changed (see PortfolioManager)
+			if(entryOrderPrice[symbol] > 0 
+					&& entryOrderPrice[symbol] <= entry.getEntryPrice()
+					&& MathHelper.almostEquals(entryOrderPrice[symbol], entry.getEntryPrice(), 500)) {
+				continue;
+			}
+			
+			entryOrderPrice[symbol] = entry.getEntryPrice();
+			entryOrderSize[symbol] = entry.getPositionSize();
+		}
+	}
+	
+	/**
+	 * The precomputed prices of a currency
+	 */
+	private static class SymbolData {
+		
+		/**
+		 * The end times of the bars
+		 */
+		private final long[] endTimes;
+		
+		/**
+		 * The open prices
+		 */
+		private final double[] open;
+		
+		/**
+		 * The high prices
+		 */
+		private final double[] high;
+		
+		/**
+		 * The low prices
+		 */
+		private final double[] low;
+		
+		/**
+		 * The close prices
+		 */
+		private final double[] close;
+		
+		/**
+		 * The prices of the entry orders
+		 */
+		private final double[] entryPrice;
+		
+		/**
+		 * The prices of the exit orders
+		 */
+		private final double[] exitPrice;
+		
+		/**
+		 * The price the close has to exceed for an entry order
+		 */
+		private final double[] entryFilterPrice;
+
+		public SymbolData(final TimeSeries timeSeries, final int periodIn, final int periodOut) {
+			final int barCount = timeSeries.getBarCount();
+			
+			endTimes = new long[barCount];
+			
+			for(int i = 0; i < barCount; i++) {
+				endTimes[i] = timeSeries.getBar(timeSeries.getBeginIndex() + i)
+						.getEndTime().toInstant().toEpochMilli();
+			}
+			
+			open = IndicatorKernels.getOpenPrices(timeSeries);
+			high = IndicatorKernels.getMaxPrices(timeSeries);
+			low = IndicatorKernels.getMinPrices(timeSeries);
+			close = IndicatorKernels.getClosePrices(timeSeries);
+			
+			final double[] upper = IndicatorKernels.highest(high, periodIn);
+			final double[] lower = IndicatorKernels.lowest(low, periodOut);
+			
+			entryPrice = new double[barCount];
+			exitPrice = new double[barCount];
+			entryFilterPrice = new double[barCount];
+			
+			for(int i = 0; i < barCount; i++) {
+				entryPrice[i] = DonchianBot.adjustEntryPrice(upper[i]);
+				exitPrice[i] = DonchianBot.adjustExitPrice(lower[i]);
+				entryFilterPrice[i] = DonchianBot.getEntryFilterPrice(upper[i], lower[i]);
+			}
+		}
+	}
+	
+	/**
+	 * Precompute the data of the currencies
+	 */
+	private class PrecomputeTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 4205640981873958633L;
+
+		/**
+		 * The first currency (inclusive)
+		 */
+		private final int from;
+		
+		/**
+		 * The last currency (exclusive)
+		 */
+		private final int to;
+
+		public PrecomputeTask(final int from, final int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from == 1) {
+				symbolData[from] = new SymbolData(timeSeries.get(from), periodIn, periodOut);
+				return;
+			}
+			
+			final int middle = from + ((to - from) / 2);
+			
+			invokeAll(new PrecomputeTask(from, middle), new PrecomputeTask(middle, to));
+		}
+	}
+}
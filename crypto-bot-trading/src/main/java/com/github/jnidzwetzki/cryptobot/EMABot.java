@@ -17,12 +17,16 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.cryptobot;
 
+import java.io.File;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -50,6 +54,7 @@ import com.github.jnidzwetzki.cryptobot.strategy.EMAStrategy03;
 import com.github.jnidzwetzki.cryptobot.strategy.TradeStrategyFactory;
 import com.github.jnidzwetzki.cryptobot.util.BarMerger;
 import com.github.jnidzwetzki.cryptobot.util.BitfinexClientFactory;
+import com.github.jnidzwetzki.cryptobot.util.CandleStore;
 
 public class EMABot implements Runnable {
 
@@ -68,6 +73,23 @@ public class EMABot implements Runnable {
 	public static boolean UPDATE_SCREEN = true;
 		
 	protected static final Timeframe TIMEFRAME = Timeframe.MINUTES_15;
+	
+	/**
+	 * The directory of the candle store
+	 */
+	protected static final String CANDLE_DIRECTORY = "candles";
+	
+	/**
+	 * The local store for the closed bars
+	 */
+	private CandleStore candleStore;
+	
+	/**
+	 * The symbols without a closed bar since the start, the first bar 
+	 * contains only the ticks since the subscription and is not stored. 
+	 * The gap is filled from the candle snapshot on the next start.
+	 */
+	private final Set<BitfinexCurrencyPair> partialBars = ConcurrentHashMap.newKeySet();
 
 	/**
 	 * The API broker
@@ -107,8 +129,10 @@ public class EMABot implements Runnable {
 			
 			bitfinexApiBroker.connect();
 			
+			candleStore = new CandleStore(new File(CANDLE_DIRECTORY));
+			
 			final Map<BitfinexCandlestickSymbol, TimeSeries> historicalCandles = HistoricalCandlesHelper
-					.requestHistoricalCandles(bitfinexApiBroker, TIMEFRAME, tradedCurrencies);
+					.requestHistoricalCandles(bitfinexApiBroker, TIMEFRAME, tradedCurrencies, candleStore);
 			
 			historicalCandles.forEach((k, v) -> timeSeries.put(k.getSymbol(), v));
 			
@@ -140,6 +164,7 @@ public class EMABot implements Runnable {
 		
 		for(final BitfinexCurrencyPair currency : tradedCurrencies) {
 
+			partialBars.add(currency);
 			tickMerger.put(currency, new BarMerger(currency, TIMEFRAME, (s, t) -> barDoneCallback(s, t)));
 		
 			final BitfinexTickerSymbol symbol = new BitfinexTickerSymbol(currency);
@@ -164,6 +189,16 @@ public class EMABot implements Runnable {
 			logger.error("Unable to add {} to symbol {}", bar, symbol);
 		}
 		
+		if(partialBars.remove(symbol)) {
+			logger.info("Not storing the partial bar {} for symbol {}", bar, symbol);
+		} else {
+			try {
+				candleStore.append(symbol, TIMEFRAME, bar);
+			} catch (IOException e) {
+				logger.error("Unable to store {} for symbol {}", bar, symbol, e);
+			}
+		}
+		
 		final int endIndex = timeSeries.get(symbol).getEndIndex();
 
 		try {
@@ -17,9 +17,17 @@
  *******************************************************************************/
 package com.github.jnidzwetzki.cryptobot;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
@@ -36,7 +44,9 @@ import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
 import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
 import com.github.jnidzwetzki.bitfinex.v2.entity.Timeframe;
 import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexCandlestickSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.manager.QuoteManager;
 import com.github.jnidzwetzki.cryptobot.util.BarConverter;
+import com.github.jnidzwetzki.cryptobot.util.CandleStore;
 
 
 public class HistoricalCandlesHelper {
@@ -46,6 +56,16 @@ public class HistoricalCandlesHelper {
 	 */
 	private final static Logger logger = LoggerFactory.getLogger(HistoricalCandlesHelper.class);
 	
+	/**
+	 * The amount of bars to wait for per symbol
+	 */
+	private final static int MIN_BARS = 100;
+	
+	/**
+	 * The time to wait for the bars of all symbols
+	 */
+	private final static long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+	
 	/**
 	 * Request historical candles
 	 * 
@@ -60,52 +80,344 @@ public class HistoricalCandlesHelper {
 			final Timeframe timeframe, final List<BitfinexCurrencyPair> tradedCurrencies) 
 			throws InterruptedException, APIException {
 		
+		return requestHistoricalCandles(bitfinexApiBroker.getQuoteManager(), timeframe, 
+				tradedCurrencies, null, TIMEOUT_MILLIS);
+	}
+	
+	/**
+	 * Load the candles from the candle store and request the missing candles
+	 * 
+	 * @param bitfinexApiBroker
+	 * @param timeframe
+	 * @param tradedCurrencies
+	 * @param candleStore
+	 * @return
+	 * @throws InterruptedException
+	 * @throws APIException
+	 */
+	public static Map<BitfinexCandlestickSymbol, TimeSeries> requestHistoricalCandles(final BitfinexApiBroker bitfinexApiBroker, 
+			final Timeframe timeframe, final List<BitfinexCurrencyPair> tradedCurrencies, 
+			final CandleStore candleStore) throws InterruptedException, APIException {
+		
+		return requestHistoricalCandles(bitfinexApiBroker.getQuoteManager(), timeframe, 
+				tradedCurrencies, candleStore, TIMEOUT_MILLIS);
+	}
+	
+	/**
+	 * Request historical candles. The candles of all currencies are requested 
+	 * at once, so the time is determined by the slowest currency and not by 
+	 * the sum of all currencies.
+	 * <p>
+	 * When a candle store is given, the stored candles are loaded first. The 
+	 * candles are requested only for the currencies with missing candles, and 
+	 * only the candles newer than the stored candles are added. The new 
+	 * closed candles are appended to the store. Gaps between the stored 
+	 * candles (e.g. the partial candle that the bot does not store after a 
+	 * restart) are filled with the candles of the snapshot.
+	 * 
+	 * @param quoteManager
+	 * @param timeframe
+	 * @param tradedCurrencies
+	 * @param candleStore - the candle store or null
+	 * @param timeoutMillis - the time to wait for all currencies
+	 * @return
+	 * @throws InterruptedException
+	 * @throws APIException
+	 */
+	public static Map<BitfinexCandlestickSymbol, TimeSeries> requestHistoricalCandles(final QuoteManager quoteManager, 
+			final Timeframe timeframe, final List<BitfinexCurrencyPair> tradedCurrencies, 
+			final CandleStore candleStore, final long timeoutMillis) throws InterruptedException, APIException {
+		
 		logger.info("Request historical candles");
 		
 		final Map<BitfinexCandlestickSymbol, TimeSeries> timeSeries = new HashMap<>();
+		final Map<BitfinexCandlestickSymbol, Integer> storedBars = new HashMap<>();
+		final Map<BitfinexCandlestickSymbol, SortedMap<Long, Bar>> missingBars = new HashMap<>();
+		final Map<BitfinexCandlestickSymbol, CountDownLatch> tickCountdowns = new HashMap<>();
+		final Map<BitfinexCandlestickSymbol, BiConsumer<BitfinexCandlestickSymbol, BitfinexTick>> callbacks 
+			= new HashMap<>();
 
 		for(final BitfinexCurrencyPair currency : tradedCurrencies) {
 			
-			final String bitfinexString = currency.toBitfinexString();
-			final BaseTimeSeries currencyTimeSeries = new BaseTimeSeries(bitfinexString);
+			final TimeSeries currencyTimeSeries = loadStoredCandles(candleStore, currency, timeframe);
 			final BitfinexCandlestickSymbol barSymbol = new BitfinexCandlestickSymbol(currency, timeframe);
-
+			
 			timeSeries.put(barSymbol, currencyTimeSeries);
-
-			final CountDownLatch tickCountdown = new CountDownLatch(100);
+			storedBars.put(barSymbol, currencyTimeSeries.getBarCount());
+			
+			if(isUpToDate(currencyTimeSeries, timeframe)) {
+				logger.info("Stored candles for symbol {} are up to date", currency.toBitfinexString());
+				continue;
+			}
+			
+			final CountDownLatch tickCountdown = new CountDownLatch(MIN_BARS);
+			final Set<Long> storedPeriods = getPeriods(currencyTimeSeries, timeframe);
+			final long lastStoredPeriod = storedPeriods.isEmpty() ? Long.MIN_VALUE : Collections.max(storedPeriods);
+			final SortedMap<Long, Bar> symbolMissingBars = new ConcurrentSkipListMap<>();
 			
 			// Add bars to timeseries callback
 			final BiConsumer<BitfinexCandlestickSymbol, BitfinexTick> callback = (channelSymbol, tick) -> {
 
-				final TimeSeries timeSeriesToAdd = timeSeries.get(channelSymbol);
 				final Bar bar = BarConverter.convertBitfinexTick(tick);
 
 				try { 
-					timeSeriesToAdd.addBar(bar);
-					tickCountdown.countDown();
+					// Already stored or missing between the stored bars
+					if(currencyTimeSeries.getBarCount() > 0 
+							&& ! bar.getEndTime().isAfter(currencyTimeSeries.getLastBar().getEndTime())) {
+						
+						final long period = getPeriod(bar, timeframe);
+						
+						if(period < lastStoredPeriod && ! storedPeriods.contains(period)) {
+							symbolMissingBars.put(period, bar);
+						}
+						
+						return;
+					}
+					
+					currencyTimeSeries.addBar(bar);
 				} catch(IllegalArgumentException e) {
-					logger.error("Unable to add tick {} to time series, last tick is {}", 
+					logger.error("Unable to add tick {} to time series, last tick is {}", 
 							bar, 
-							timeSeriesToAdd.getLastBar());
+							currencyTimeSeries.getLastBar());
+				} finally {
+					// Count down after the bar is added, the waiting thread reads the time series
+					tickCountdown.countDown();
 				}
 			};
 			
-								
-			bitfinexApiBroker.getQuoteManager().registerCandlestickCallback(barSymbol, callback);
-			bitfinexApiBroker.getQuoteManager().subscribeCandles(barSymbol);
+			tickCountdowns.put(barSymbol, tickCountdown);
+			callbacks.put(barSymbol, callback);
+			missingBars.put(barSymbol, symbolMissingBars);
+		}
+		
+		try {
+			for(final BitfinexCandlestickSymbol barSymbol : callbacks.keySet()) {
+				quoteManager.registerCandlestickCallback(barSymbol, callbacks.get(barSymbol));
+				quoteManager.subscribeCandles(barSymbol);
+			}
 			
-			// Wait for 100 bars or 10 seconds. All snapshot ticks are handled in 
-			// a synchronized block, so we receive the full snapshot even if we 
-			// call removeTickCallback.
-			tickCountdown.await(10, TimeUnit.SECONDS);
+			// Wait for 100 bars per symbol or until the deadline is reached. All 
+			// snapshot ticks are handled in a synchronized block, so we receive 
+			// the full snapshot even if we call removeCandlestickCallback.
+			final long deadline = System.currentTimeMillis() + timeoutMillis;
 			
-			bitfinexApiBroker.getQuoteManager().registerCandlestickCallback(barSymbol, callback);
-			bitfinexApiBroker.getQuoteManager().unsubscribeCandles(barSymbol);
+			for(final BitfinexCandlestickSymbol barSymbol : tickCountdowns.keySet()) {
+				final long remainingMillis = Math.max(0, deadline - System.currentTimeMillis());
+				
+				if(! tickCountdowns.get(barSymbol).await(remainingMillis, TimeUnit.MILLISECONDS)) {
+					logger.warn("Got only {} bars for symbol {} within {} ms", 
+							MIN_BARS - tickCountdowns.get(barSymbol).getCount(), barSymbol, timeoutMillis);
+				}
+			}
+		} finally {
+			for(final BitfinexCandlestickSymbol barSymbol : callbacks.keySet()) {
+				quoteManager.removeCandlestickCallback(barSymbol, callbacks.get(barSymbol));
+				quoteManager.unsubscribeCandles(barSymbol);
+			}
+		}
+		
+		for(final BitfinexCandlestickSymbol barSymbol : missingBars.keySet()) {
+			fillMissingBars(candleStore, barSymbol, timeSeries, storedBars, missingBars.get(barSymbol));
+		}
+		
+		for(final BitfinexCandlestickSymbol barSymbol : timeSeries.keySet()) {
+			
+			if(candleStore != null) {
+				storeNewCandles(candleStore, barSymbol, timeSeries.get(barSymbol), storedBars.get(barSymbol));
+			}
 			
-			logger.info("Loaded ticks for symbol {} {}", bitfinexString,
-					+ timeSeries.get(barSymbol).getEndIndex());
+			logger.info("Loaded ticks for symbol {} {}", barSymbol.getSymbol().toBitfinexString(),
+					timeSeries.get(barSymbol).getEndIndex());
 		}
 		
 		return timeSeries;
 	}
+	
+	/**
+	 * Load the stored candles, an empty time series is returned when 
+	 * no candles are available
+	 * @param candleStore
+	 * @param currency
+	 * @param timeframe
+	 * @return
+	 */
+	private static TimeSeries loadStoredCandles(final CandleStore candleStore, 
+			final BitfinexCurrencyPair currency, final Timeframe timeframe) {
+		
+		if(candleStore != null) {
+			try {
+				return candleStore.load(currency, timeframe);
+			} catch (IOException e) {
+				logger.error("Unable to load stored candles for {}", currency, e);
+			}
+		}
+		
+		return new BaseTimeSeries(currency.toBitfinexString());
+	}
+	
+	/**
+	 * Insert the missing bars between the stored bars and replace the 
+	 * stored bars in the candle store
+	 * @param candleStore
+	 * @param barSymbol
+	 * @param timeSeries
+	 * @param storedBars
+	 * @param symbolMissingBars
+	 */
+	private static void fillMissingBars(final CandleStore candleStore, final BitfinexCandlestickSymbol barSymbol, 
+			final Map<BitfinexCandlestickSymbol, TimeSeries> timeSeries, 
+			final Map<BitfinexCandlestickSymbol, Integer> storedBars, 
+			final SortedMap<Long, Bar> symbolMissingBars) {
+		
+		if(symbolMissingBars.isEmpty()) {
+			return;
+		}
+		
+		final Timeframe timeframe = barSymbol.getTimeframe();
+		final TimeSeries symbolTimeSeries = timeSeries.get(barSymbol);
+		final int symbolStoredBars = storedBars.get(barSymbol);
+		final List<Bar> mergedStoredBars = new ArrayList<>();
+		final Iterator<Bar> missingIterator = symbolMissingBars.values().iterator();
+		Bar missingBar = missingIterator.next();
+		
+		for(int i = 0; i < symbolStoredBars; i++) {
+			final Bar bar = symbolTimeSeries.getBar(symbolTimeSeries.getBeginIndex() + i);
+			
+			while(missingBar != null && getPeriod(missingBar, timeframe) < getPeriod(bar, timeframe)) {
+				mergedStoredBars.add(missingBar);
+				missingBar = missingIterator.hasNext() ? missingIterator.next() : null;
+			}
+			
+			mergedStoredBars.add(bar);
+		}
+		
+		final TimeSeries mergedTimeSeries = new BaseTimeSeries(symbolTimeSeries.getName());
+		mergedStoredBars.forEach(b -> mergedTimeSeries.addBar(b));
+		
+		for(int i = symbolTimeSeries.getBeginIndex() + symbolStoredBars; i <= symbolTimeSeries.getEndIndex(); i++) {
+			mergedTimeSeries.addBar(symbolTimeSeries.getBar(i));
+		}
+		
+		timeSeries.put(barSymbol, mergedTimeSeries);
+		storedBars.put(barSymbol, mergedStoredBars.size());
+		
+		logger.info("Filled {} missing candles for symbol {}", symbolMissingBars.size(), barSymbol);
+		
+		if(candleStore == null) {
+			return;
+		}
+		
+		try {
+			candleStore.replace(barSymbol.getSymbol(), timeframe, mergedStoredBars);
+		} catch (IOException e) {
+			logger.error("Unable to store the missing candles for {}", barSymbol, e);
+		}
+	}
+	
+	/**
+	 * Is the last candle of the time series the last closed candle and 
+	 * are all candles before available
+	 * @param timeSeries
+	 * @param timeframe
+	 * @return
+	 */
+	private static boolean isUpToDate(final TimeSeries timeSeries, final Timeframe timeframe) {
+		
+		if(timeSeries.getBarCount() == 0) {
+			return false;
+		}
+		
+		final int gaps = getGaps(timeSeries, timeframe);
+		
+		if(gaps > 0) {
+			logger.warn("Stored candles for {} contain {} gaps", timeSeries.getName(), gaps);
+			return false;
+		}
+		
+		final long lastBarEnd = timeSeries.getLastBar().getEndTime().toInstant().toEpochMilli();
+		
+		return System.currentTimeMillis() - lastBarEnd < timeframe.getMilliSeconds();
+	}
+	
+	/**
+	 * Get the amount of gaps between the bars of the time series
+	 * @param timeSeries
+	 * @param timeframe
+	 * @return
+	 */
+	private static int getGaps(final TimeSeries timeSeries, final Timeframe timeframe) {
+		int gaps = 0;
+		
+		for(int i = timeSeries.getBeginIndex() + 1; i <= timeSeries.getEndIndex(); i++) {
+			final long period = getPeriod(timeSeries.getBar(i), timeframe);
+			
+			if(period - getPeriod(timeSeries.getBar(i - 1), timeframe) > 1) {
+				gaps++;
+			}
+		}
+		
+		return gaps;
+	}
+	
+	/**
+	 * Get the periods of the bars
+	 * @param timeSeries
+	 * @param timeframe
+	 * @return
+	 */
+	private static Set<Long> getPeriods(final TimeSeries timeSeries, final Timeframe timeframe) {
+		final Set<Long> periods = new HashSet<>();
+		
+		if(timeSeries.getBarCount() == 0) {
+			return periods;
+		}
+		
+		for(int i = timeSeries.getBeginIndex(); i <= timeSeries.getEndIndex(); i++) {
+			periods.add(getPeriod(timeSeries.getBar(i), timeframe));
+		}
+		
+		return periods;
+	}
+	
+	/**
+	 * Get the period of the bar. The bitfinex candles are timestamped with 
+	 * the begin of the period, the merged bars with the end of the period.
+	 * @param bar
+	 * @param timeframe
+	 * @return
+	 */
+	private static long getPeriod(final Bar bar, final Timeframe timeframe) {
+		return bar.getEndTime().toInstant().toEpochMilli() / timeframe.getMilliSeconds();
+	}
+	
+	/**
+	 * Append the new closed candles to the candle store. The candle of the 
+	 * running period is not stored, it is still changing.
+	 * @param candleStore
+	 * @param barSymbol
+	 * @param timeSeries
+	 * @param storedBars
+	 */
+	private static void storeNewCandles(final CandleStore candleStore, final BitfinexCandlestickSymbol barSymbol, 
+			final TimeSeries timeSeries, final int storedBars) {
+		
+		final long now = System.currentTimeMillis();
+		final long timeframeMillis = barSymbol.getTimeframe().getMilliSeconds();
+		final int firstNewIndex = timeSeries.getBeginIndex() + storedBars;
+		
+		try {
+			for(int i = firstNewIndex; i <= timeSeries.getEndIndex(); i++) {
+				final Bar bar = timeSeries.getBar(i);
+				
+				// The bitfinex candles are timestamped with the begin of the period
+				if(bar.getEndTime().toInstant().toEpochMilli() + timeframeMillis > now) {
+					break;
+				}
+				
+				candleStore.append(barSymbol.getSymbol(), barSymbol.getTimeframe(), bar);
+			}
+		} catch (IOException e) {
+			logger.error("Unable to store candles for {}", barSymbol, e);
+		}
+	}
 }
@@ -0,0 +1,222 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+
+public class PortfolioBacktestResult {
+
+	/**
+	 * The traded currencies
+	 */
+	private final List<BitfinexCurrencyPair> currencies;
+	
+	/**
+	 * The initial portfolio value
+	 */
+	private final double initialPortfolioValue;
+	
+	/**
+	 * The portfolio value on the close of each bar
+	 */
+	private final double[] portfolioValues;
+	
+	/**
+	 * The trades per currency
+	 */
+	private final int[] trades;
+	
+	/**
+	 * The P/L per currency
+	 */
+	private final double[] pl;
+	
+	/**
+	 * The final portfolio value
+	 */
+	private double finalPortfolioValue;
+	
+	/**
+	 * The winning trades
+	 */
+	private int winner;
+	
+	/**
+	 * The loosing trades
+	 */
+	private int looser;
+	
+	/**
+	 * The paid fees
+	 */
+	private double fees;
+	
+	/**
+	 * The entry orders rejected because of insufficient balance
+	 */
+	private int rejectedOrders;
+
+	public PortfolioBacktestResult(final List<BitfinexCurrencyPair> currencies, 
+			final double initialPortfolioValue, final int bars) {
+		
+		this.currencies = new ArrayList<>(currencies);
+		this.initialPortfolioValue = initialPortfolioValue;
+		this.finalPortfolioValue = initialPortfolioValue;
+		this.portfolioValues = new double[bars];
+		this.trades = new int[currencies.size()];
+		this.pl = new double[currencies.size()];
+	}
+	
+	/**
+	 * Set the portfolio value of the bar
+	 * @param bar
+	 * @param portfolioValue
+	 */
+	void setPortfolioValue(final int bar, final double portfolioValue) {
+		portfolioValues[bar] = portfolioValue;
+	}
+	
+	/**
+	 * Add a closed trade
+	 * @param symbol
+	 * @param tradePL
+	 */
+	void addTrade(final int symbol, final double tradePL) {
+		trades[symbol]++;
+		pl[symbol] = pl[symbol] + tradePL;
+		
+		if(tradePL < 0) {
+			looser++;
+		} else {
+			winner++;
+		}
+	}
+	
+	/**
+	 * Add paid fees
+	 * @param fees
+	 */
+	void addFees(final double fees) {
+		this.fees = this.fees + fees;
+	}
+	
+	/**
+	 * Add a rejected order
+	 */
+	void addRejectedOrder() {
+		rejectedOrders++;
+	}
+	
+	void setFinalPortfolioValue(final double finalPortfolioValue) {
+		this.finalPortfolioValue = finalPortfolioValue;
+	}
+
+	/**
+	 * Get the portfolio value on the close of each simulated bar
+	 * @return
+	 */
+	public double[] getPortfolioValues() {
+		return portfolioValues.clone();
+	}
+	
+	/**
+	 * Get the maximal drawdown of the portfolio value (0.1 = 10%)
+	 * @return
+	 */
+	public double getMaxDrawdown() {
+		double peak = initialPortfolioValue;
+		double maxDrawdown = 0;
+		
+		for(final double portfolioValue : portfolioValues) {
+			peak = Math.max(peak, portfolioValue);
+			maxDrawdown = Math.max(maxDrawdown, (peak - portfolioValue) / peak);
+		}
+		
+		return maxDrawdown;
+	}
+	
+	/**
+	 * Get the trades of the currency
+	 * @param currency
+	 * @return
+	 */
+	public int getTrades(final BitfinexCurrencyPair currency) {
+		final int symbol = currencies.indexOf(currency);
+		return symbol < 0 ? 0 : trades[symbol];
+	}
+	
+	/**
+	 * Get the P/L of the currency (including fees)
+	 * @param currency
+	 * @return
+	 */
+	public double getPL(final BitfinexCurrencyPair currency) {
+		final int symbol = currencies.indexOf(currency);
+		return symbol < 0 ? 0 : pl[symbol];
+	}
+	
+	public int getTotalTrades() {
+		return winner + looser;
+	}
+	
+	public double getInitialPortfolioValue() {
+		return initialPortfolioValue;
+	}
+	
+	public double getFinalPortfolioValue() {
+		return finalPortfolioValue;
+	}
+	
+	public double getTotalPL() {
+		return finalPortfolioValue - initialPortfolioValue;
+	}
+	
+	public int getWinner() {
+		return winner;
+	}
+	
+	public int getLooser() {
+		return looser;
+	}
+	
+	public double getFees() {
+		return fees;
+	}
+	
+	public int getRejectedOrders() {
+		return rejectedOrders;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format("Portfolio value %.2f -> %.2f (P/L %.2f, fees %.2f, max drawdown %.2f%%)%n", 
+				initialPortfolioValue, finalPortfolioValue, getTotalPL(), fees, getMaxDrawdown() * 100));
+		sb.append(String.format("Trades %d (winner %d, looser %d, rejected orders %d)%n", 
+				getTotalTrades(), winner, looser, rejectedOrders));
+		
+		for(int symbol = 0; symbol < currencies.size(); symbol++) {
+			sb.append(String.format("%s\t%d\t%.2f%n", currencies.get(symbol), trades[symbol], pl[symbol]));
+		}
+		
+		return sb.toString();
+	}
+}
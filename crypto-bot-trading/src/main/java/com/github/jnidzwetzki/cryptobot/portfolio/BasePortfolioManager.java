@@ -33,6 +33,11 @@ import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexTickerSymbol;
 
 public class BasePortfolioManager extends PortfolioManager {
 	
+	/**
+	 * The investment rate
+	 */
+	public final static double INVESTMENT_RATE = 0.9;
+	
 	/**
 	 * The Logger
 	 */
@@ -78,7 +83,7 @@ public class BasePortfolioManager extends PortfolioManager {
 	 */
 	@Override
 	protected BigDecimal getInvestmentRate() {
-		return new BigDecimal(0.9);
+		return new BigDecimal(INVESTMENT_RATE);
 	}
 
 	@Override
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.portfolio;
+
+import java.util.Map;
+
+import org.bboxdb.commons.MathUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.cryptobot.CurrencyEntry;
+
+/**
+ * The capital allocation of the portfolio managers.
+ * <p>
+ * The position size of an entry is limited by the maximal capital per
+ * position and by the maximal loss per position (distance between the entry
+ * and the stop loss price). When the entries need more than the available
+ * capital, all positions are scaled down by the same correction factor.
+ * <p>
+ * The calculation works on plain portfolio values, so the live portfolio
+ * managers and the portfolio backtest use the same code.
+ *
+ */
+public class CapitalAllocation {
+	
+	/**
+	 * The maximum position size
+	 */
+	public final static double MAX_SINGLE_POSITION_SIZE = 0.5;
+	
+	/**
+	 * Maximum loss per position
+	 */
+	private final double maxLossPerPosition;
+	
+	/**
+	 * The investment rate
+	 */
+	private final double investmentRate;
+	
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(CapitalAllocation.class);
+
+	public CapitalAllocation(final double maxLossPerPosition, final double investmentRate) {
+		this.maxLossPerPosition = maxLossPerPosition;
+		this.investmentRate = investmentRate;
+	}
+	
+	/**
+	 * Calculate the position sizes
+	 * @param entries
+	 * @param totalPortfolioValue - the total portfolio value in USD
+	 * @param availablePortfolioValue - the available (not invested) portfolio value in USD
+	 * @return the investment correction factor (1.0 if the capital is sufficient)
+	 */
+	public double calculatePositionSizes(final Map<BitfinexCurrencyPair, CurrencyEntry> entries, 
+			final double totalPortfolioValue, final double availablePortfolioValue) {
+		
+		final double capitalAvailable = availablePortfolioValue * investmentRate;
+		double capitalNeeded = 0;
+		
+		for(final CurrencyEntry entry : entries.values()) {
+			final double positionSize = calculatePositionSize(entry, totalPortfolioValue);
+			entry.setPositionSize(positionSize);
+			capitalNeeded = capitalNeeded + (positionSize * entry.getEntryPrice());
+		}
+		
+		// Need the n% risk per position more than the available capital
+		if(capitalNeeded <= capitalAvailable) {
+			return 1.0;
+		}
+		
+		final double investmentCorrectionFactor = capitalAvailable / capitalNeeded;
+		
+		logger.debug("Needed capital {}, available capital {} ({})", capitalNeeded, 
+				capitalAvailable, investmentCorrectionFactor);
+		
+		for(final CurrencyEntry entry : entries.values()) {
+			final double newPositionSize = roundPositionSize(entry.getPositionSize() * investmentCorrectionFactor);
+			entry.setPositionSize(newPositionSize);
+		}
+		
+		return investmentCorrectionFactor;
+	}
+	
+	/**
+	 * Calculate the position size
+	 * @param entry
+	 * @param totalPortfolioValue
+	 * @return
+	 */
+	public double calculatePositionSize(final CurrencyEntry entry, final double totalPortfolioValue) {
+		
+		final double investedPortfolioValue = totalPortfolioValue * investmentRate;
+		
+		// Max position size (capital)
+		final double positionSizePerCapital = investedPortfolioValue 
+				* MAX_SINGLE_POSITION_SIZE / entry.getEntryPrice();
+		
+		// Max position size per stop loss
+		final double maxLossPerContract = entry.getEntryPrice() - entry.getStopLossPrice();
+		final double positionSizePerLoss = investedPortfolioValue * maxLossPerPosition / maxLossPerContract;
+		
+		logger.debug("Position size {} per capital is {}, position size per max loss is {}", 
+				entry.getCurrencyPair(), positionSizePerCapital, positionSizePerLoss);
+		
+		final double positionSize = Math.min(positionSizePerCapital, positionSizePerLoss);
+		
+		return roundPositionSize(positionSize);
+	}
+
+	/**
+	 * Round the position size
+	 * @param positionSize
+	 * @return
+	 */
+	public static double roundPositionSize(final double positionSize) {
+		return MathUtil.round(positionSize, 6);
+	}
+	
+	public double getMaxLossPerPosition() {
+		return maxLossPerPosition;
+	}
+	
+	public double getInvestmentRate() {
+		return investmentRate;
+	}
+}
@@ -0,0 +1,203 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.portfolio;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrder;
+import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrder;
+import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrderState;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderManager;
+
+/**
+ * Send the order requests of a sync cycle at once and wait for all 
+ * acknowledgements with one deadline.
+ * <p>
+ * The requests are collected first. On execution, all cancel requests 
+ * are sent before the place requests. The requests use the same connection 
+ * and are processed by the exchange in the order they are sent, so the 
+ * cancel of an order always happens before the placement of its replacement.
+ * Placements are acknowledged by their client id, cancels by their order id.
+ *
+ */
+public class OrderPipeline {
+
+	/**
+	 * The order manager
+	 */
+	private final OrderManager orderManager;
+
+	/**
+	 * The ids of the orders to cancel
+	 */
+	private final Set<Long> cancelRequests = new LinkedHashSet<>();
+
+	/**
+	 * The orders to place (client id / order)
+	 */
+	private final Map<Long, BitfinexOrder> placeRequests = new LinkedHashMap<>();
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(OrderPipeline.class);
+
+	public OrderPipeline(final OrderManager orderManager) {
+		this.orderManager = orderManager;
+	}
+
+	/**
+	 * Add a cancel request for the order
+	 * @param orderId
+	 */
+	public void cancelOrder(final long orderId) {
+		cancelRequests.add(orderId);
+	}
+
+	/**
+	 * Add a place request for the order
+	 * @param order
+	 */
+	public void placeOrder(final BitfinexOrder order) {
+		placeRequests.put(order.getCid(), order);
+	}
+
+	/**
+	 * Is a cancel request for the order pending
+	 * @param orderId
+	 * @return
+	 */
+	public boolean isCancelPending(final long orderId) {
+		return cancelRequests.contains(orderId);
+	}
+
+	/**
+	 * Get the amount of pending requests
+	 * @return
+	 */
+	public int getPendingRequests() {
+		return cancelRequests.size() + placeRequests.size();
+	}
+
+	/**
+	 * Remove all pending requests without sending them
+	 */
+	public void clear() {
+		cancelRequests.clear();
+		placeRequests.clear();
+	}
+
+	/**
+	 * Send all pending requests and wait for the acknowledgements
+	 * @param timeout
+	 * @param unit
+	 * @return true if all requests are acknowledged successfully
+	 * @throws InterruptedException
+	 */
+	public boolean execute(final long timeout, final TimeUnit unit) throws InterruptedException {
+
+		if(getPendingRequests() == 0) {
+			return true;
+		}
+
+		final Set<Long> pendingCancels = ConcurrentHashMap.newKeySet();
+		final Map<Long, BitfinexOrder> pendingPlacements = new ConcurrentHashMap<>(placeRequests);
+		final List<ExchangeOrder> failedOrders = new ArrayList<>();
+		pendingCancels.addAll(cancelRequests);
+
+		final CountDownLatch acknowledgements = new CountDownLatch(getPendingRequests());
+
+		final Consumer<ExchangeOrder> callback = (o) -> {
+			if(pendingPlacements.remove(o.getCid()) != null) {
+				if(o.getState() == ExchangeOrderState.STATE_ERROR) {
+					synchronized (failedOrders) {
+						failedOrders.add(o);
+					}
+				}
+				acknowledgements.countDown();
+			} else if(o.getState() == ExchangeOrderState.STATE_CANCELED 
+					&& pendingCancels.remove(o.getOrderId())) {
+				acknowledgements.countDown();
+			}
+		};
+
+		orderManager.registerCallback(callback);
+
+		try {
+			boolean sendFailed = false;
+
+			// The cancels have to be sent before the replacements
+			for(final long orderId : cancelRequests) {
+				try {
+					orderManager.cancelOrder(orderId);
+				} catch (APIException e) {
+					logger.error("Unable to cancel order {}", orderId, e);
+					if(pendingCancels.remove(orderId)) {
+						acknowledgements.countDown();
+					}
+					sendFailed = true;
+				}
+			}
+
+			for(final BitfinexOrder order : placeRequests.values()) {
+				try {
+					orderManager.placeOrder(order);
+				} catch (APIException e) {
+					logger.error("Unable to place order {}", order, e);
+					if(pendingPlacements.remove(order.getCid()) != null) {
+						acknowledgements.countDown();
+					}
+					sendFailed = true;
+				}
+			}
+
+			acknowledgements.await(timeout, unit);
+
+			if(! pendingCancels.isEmpty() || ! pendingPlacements.isEmpty()) {
+				logger.error("Timeout while waiting for acknowledgements, cancels {}, placements {}", 
+						pendingCancels, pendingPlacements.values());
+				return false;
+			}
+
+			synchronized (failedOrders) {
+				if(! failedOrders.isEmpty()) {
+					logger.error("Placement of orders failed {}", failedOrders);
+					return false;
+				}
+			}
+
+			return ! sendFailed;
+		} finally {
+			orderManager.removeCallback(callback);
+			clear();
+		}
+	}
+}
@@ -20,9 +20,9 @@ package com.github.jnidzwetzki.cryptobot.portfolio;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import org.bboxdb.commons.MathUtil;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.slf4j.Logger;
@@ -55,21 +55,26 @@ public abstract class PortfolioManager {
 	 * The order manager
 	 */
 	protected final OrderManager orderManager;
+	
+	/**
+	 * The pipeline for the order requests
+	 */
+	private final OrderPipeline orderPipeline;
 
 	/**
 	 * The threshold for invested / not invested
 	 */
 	private static final double INVESTED_THRESHOLD = 0.002;
-
+	
 	/**
-	 * Maximum loss per position 
+	 * The time to wait for the acknowledgements of a sync cycle
 	 */
-	private final BigDecimal maxLossPerPosition;
-	
+	private static final long ORDER_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
 	/**
-	 * The maximum position size
+	 * Maximum loss per position 
 	 */
-	private static final BigDecimal MAX_SINGLE_POSITION_SIZE = new BigDecimal(0.5);
+	private final double maxLossPerPosition;
 	
 	/**
 	 * Simulate or real trading
@@ -85,7 +90,8 @@ public abstract class PortfolioManager {
 		this.bitfinexApiBroker = bitfinexApiBroker;
 		
 		this.orderManager = bitfinexApiBroker.getOrderManager();
-		this.maxLossPerPosition = new BigDecimal(maxLossPerPosition);
+		this.orderPipeline = new OrderPipeline(orderManager);
+		this.maxLossPerPosition = maxLossPerPosition;
 		
 		// Init to store orders in DB
 		new PortfolioOrderManager(bitfinexApiBroker);
@@ -94,12 +100,35 @@ public abstract class PortfolioManager {
 	public void syncOrders(final Map<BitfinexCurrencyPair, CurrencyEntry> entries, 
 			final Map<BitfinexCurrencyPair, Double> exits) throws InterruptedException, APIException {
 				
-		placeEntryOrders(entries);
-		placeExitOrders(exits);
+		// One deadline for all order requests of the sync cycle
+		final long deadline = System.currentTimeMillis() + ORDER_TIMEOUT_MILLIS;
+		
+		try {
+			placeEntryOrders(entries, deadline);
+			placeExitOrders(exits);
+			
+			executeOrderPipeline(deadline);
+		} finally {
+			// Requests of a failed sync cycle are based on old prices and sizes
+			orderPipeline.clear();
+		}
 		
 		updatePortfolioValue();
 	}
 
+	/**
+	 * Send the pending order requests and wait for the acknowledgements
+	 * @param deadline
+	 * @throws InterruptedException
+	 */
+	private void executeOrderPipeline(final long deadline) throws InterruptedException {
+		final long remainingMillis = Math.max(0, deadline - System.currentTimeMillis());
+		
+		if(! orderPipeline.execute(remainingMillis, TimeUnit.MILLISECONDS)) {
+			logger.error("Not all order requests of {} are successful", this);
+		}
+	}
+
 	/**
 	 * Write the USD portfolio value to DB
 	 * @throws APIException
@@ -123,16 +152,22 @@ public abstract class PortfolioManager {
 	/**
 	 * Place the entry orders for the market
 	 * @param currencyPair
+	 * @param deadline
 	 * @throws APIException 
 	 */
-	private void placeEntryOrders(final Map<BitfinexCurrencyPair, CurrencyEntry> entries) 
-			throws InterruptedException, APIException {
+	private void placeEntryOrders(final Map<BitfinexCurrencyPair, CurrencyEntry> entries, 
+			final long deadline) throws InterruptedException, APIException {
 		
 		logger.info("Processing entry orders {}", entries);
 		
 		// Cancel old open entry orders
 		cancelRemovedEntryOrders(entries);
 		
+		// The available capital depends on the canceled orders
+		if(orderPipeline.getPendingRequests() > 0) {
+			executeOrderPipeline(deadline);
+		}
+		
 		// Calculate the position sizes
 		calculatePositionSizes(entries);
 
@@ -154,32 +189,21 @@ public abstract class PortfolioManager {
 			throw new APIException("Unable to find USD wallet");
 		}
 		
-		final BigDecimal capitalAvailable = getAvailablePortfolioValueInUSD().multiply(getInvestmentRate());
-		BigDecimal capitalNeeded = new BigDecimal(0);
+		final CapitalAllocation capitalAllocation = new CapitalAllocation(maxLossPerPosition, 
+				getInvestmentRate().doubleValue());
 		
-		for(final BitfinexCurrencyPair currency : entries.keySet()) {
-			final CurrencyEntry entry = entries.get(currency);
-			final double positionSize = calculatePositionSize(entry);
-			entry.setPositionSize(positionSize);
-			capitalNeeded = capitalNeeded.add(new BigDecimal(positionSize * entry.getEntryPrice()));
-		}
+		final double totalPortfolioValue = getTotalPortfolioValueInUSD().doubleValue();
+		final double availablePortfolioValue = getAvailablePortfolioValueInUSD().doubleValue();
 		
-		// Need the n% risk per position more than the available capital
-		if(capitalNeeded.doubleValue() > capitalAvailable.doubleValue()) {
-			
-			final double investmentCorrectionFactor = capitalAvailable.doubleValue() / capitalNeeded.doubleValue();
-
-			logger.info("Needed capital {}, available capital {} ({})", capitalNeeded, 
-					capitalAvailable, investmentCorrectionFactor);
-			
-			capitalNeeded = new BigDecimal(0);
-			for(final BitfinexCurrencyPair currency : entries.keySet()) {
-				final CurrencyEntry entry = entries.get(currency);
-				final double newPositionSize = roundPositionSize(entry.getPositionSize() * investmentCorrectionFactor);
-				entry.setPositionSize(newPositionSize);
-				capitalNeeded = capitalNeeded.add(new BigDecimal(newPositionSize * entry.getEntryPrice()));
-			}			
+		final double investmentCorrectionFactor = capitalAllocation.calculatePositionSizes(entries, 
+				totalPortfolioValue, availablePortfolioValue);
+		
+		if(investmentCorrectionFactor < 1.0) {
+			logger.info("Not enough capital available {}, position sizes corrected by factor {}", 
+					availablePortfolioValue, investmentCorrectionFactor);
 		}
+		
+		logger.info("Position sizes {}", entries.values());
 	}
 
 	/** 
@@ -249,19 +273,15 @@ public abstract class PortfolioManager {
 	}
 
 	/**
-	 *  Place an order and catch exceptions
-	 * @throws InterruptedException 
+	 * Add the order to the order pipeline
+	 * @param newOrder
 	 */
-	private void placeOrder(final BitfinexOrder newOrder) throws InterruptedException {
+	private void placeOrder(final BitfinexOrder newOrder) {
 		if(SIMULATION) {
 			return;
 		}
 		
-		try {
-			orderManager.placeOrderAndWaitUntilActive(newOrder);
-		} catch(APIException e) {
-			logger.error("Unable to place order", e);
-		} 
+		orderPipeline.placeOrder(newOrder);
 	}
 
 	/**
@@ -387,74 +407,17 @@ public abstract class PortfolioManager {
 	}
 
 	/**
-	 * Cancel the order and catch the exception
+	 * Add the cancel request for the order to the order pipeline
 	 * @param order
-	 * @throws APIException
-	 * @throws InterruptedException
 	 */
-	private void cancelOrder(final ExchangeOrder order) throws InterruptedException {
+	private void cancelOrder(final ExchangeOrder order) {
 		if(SIMULATION) {
 			return;
 		}
 		
-		try {
-			orderManager.cancelOrderAndWaitForCompletion(order.getOrderId());
-		} catch (APIException e) {
-			logger.error("Got an exception while canceling the order", e);
-		}
+		orderPipeline.cancelOrder(order.getOrderId());
 	}
 	
-	/**
-	 * Calculate the position size
-	 * @param upperValue
-	 * @return
-	 * @throws APIException 
-	 */
-	private double calculatePositionSize(final CurrencyEntry entry) throws APIException  {
-
-		final BigDecimal entryPrice = new BigDecimal(entry.getEntryPrice());
-		
-		/**
-		 * Calculate position size by max capital
-		 */		
-		// Max position size (capital)
-		final BigDecimal positionSizePerCapital = getTotalPortfolioValueInUSD()
-				.multiply(getInvestmentRate())
-				.multiply(MAX_SINGLE_POSITION_SIZE)
-				.divide(entryPrice);
-		
-		/**
-		 * Calculate position size by max loss
-		 */
-		// Max loss per position
-		final BigDecimal maxLossPerContract = new BigDecimal(entry.getEntryPrice() - entry.getStopLossPrice());
-		
-		// The total portfolio value
-		final BigDecimal totalPortfolioValueInUSD = getTotalPortfolioValueInUSD().multiply(getInvestmentRate());
-		
-		// Max position size per stop loss
-		final BigDecimal positionSizePerLoss = totalPortfolioValueInUSD
-				.multiply(maxLossPerPosition)
-				.divide(maxLossPerContract);
-
-		// =============
-		logger.info("Position size {} per capital is {}, position size per max loss is {}", 
-				entry.getCurrencyPair(), positionSizePerCapital, positionSizePerLoss);
-		
-		final double positionSize = Math.min(positionSizePerCapital.doubleValue(), positionSizePerLoss.doubleValue());
-
-		return roundPositionSize(positionSize);
-	}
-
-	/**
-	 * Round the position size
-	 * @param positionSize
-	 * @return
-	 */
-	private double roundPositionSize(final double positionSize) {
-		return MathUtil.round(positionSize, 6);
-	}
-
 	/**
 	 * Get the open stop loss order
 	 * @param symbol
@@ -469,6 +432,7 @@ public abstract class PortfolioManager {
 		return openOrders.stream()
 			.filter(e -> e.getOrderType() == getOrderType())
 			.filter(e -> e.getState() == ExchangeOrderState.STATE_ACTIVE)
+			.filter(e -> ! orderPipeline.isCancelPending(e.getOrderId()))
 			.filter(e -> e.getSymbol().equals(symbol))
 			.findAny()
 			.orElse(null);
@@ -485,6 +449,7 @@ public abstract class PortfolioManager {
 		return openOrders.stream()
 			.filter(e -> e.getOrderType() == getOrderType())
 			.filter(e -> e.getState() == ExchangeOrderState.STATE_ACTIVE)
+			.filter(e -> ! orderPipeline.isCancelPending(e.getOrderId()))
 			.filter(e -> e.getAmount().doubleValue() > 0)
 			.collect(Collectors.toList());
 	}
@@ -500,6 +465,7 @@ public abstract class PortfolioManager {
 		return openOrders.stream()
 			.filter(e -> e.getOrderType() == getOrderType())
 			.filter(e -> e.getState() == ExchangeOrderState.STATE_ACTIVE)
+			.filter(e -> ! orderPipeline.isCancelPending(e.getOrderId()))
 			.filter(e -> e.getAmount().doubleValue() <= 0)
 			.collect(Collectors.toList());
 	}
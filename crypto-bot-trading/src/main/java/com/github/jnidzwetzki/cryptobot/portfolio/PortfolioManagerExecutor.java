@@ -0,0 +1,209 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.portfolio;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Execute an action for all portfolio managers concurrently.
+ * <p>
+ * Each portfolio manager (API key) is handled by its own task on a bounded 
+ * thread pool. A failing or hanging portfolio manager does not delay the 
+ * other portfolio managers; it is reported and cancelled after the timeout.
+ * Portfolio managers that wait for a thread get their full timeout once 
+ * they are started.
+ *
+ */
+public class PortfolioManagerExecutor implements Closeable {
+
+	/**
+	 * The executor
+	 */
+	private final ExecutorService executorService;
+
+	/**
+	 * The timeout per portfolio manager
+	 */
+	private final long timeoutMillis;
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(PortfolioManagerExecutor.class);
+
+	/**
+	 * @param threads - the maximal amount of concurrently handled portfolio managers
+	 * @param timeoutMillis - the timeout per portfolio manager
+	 */
+	public PortfolioManagerExecutor(final int threads, final long timeoutMillis) {
+
+		if(threads <= 0) {
+			throw new IllegalArgumentException("Invalid amount of threads: " + threads);
+		}
+
+		final AtomicInteger threadNumber = new AtomicInteger();
+
+		this.timeoutMillis = timeoutMillis;
+		this.executorService = Executors.newFixedThreadPool(threads, r -> {
+			final Thread thread = new Thread(r, "Portfolio manager executor " + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Execute the action for all portfolio managers and wait until all 
+	 * actions are done or timed out. The timeout of a portfolio manager 
+	 * starts when its action is started by the thread pool.
+	 * @param portfolioManagers
+	 * @param action
+	 * @return the portfolio managers that failed or timed out
+	 * @throws InterruptedException
+	 */
+	public List<PortfolioManager> execute(final List<PortfolioManager> portfolioManagers, 
+			final Consumer<PortfolioManager> action) throws InterruptedException {
+
+		final CompletionService<Integer> completionService = new ExecutorCompletionService<>(executorService);
+		final AtomicLongArray startTimes = new AtomicLongArray(portfolioManagers.size());
+		final Map<Future<Integer>, Integer> pendingFutures = new HashMap<>();
+
+		for(int i = 0; i < portfolioManagers.size(); i++) {
+			final int index = i;
+			startTimes.set(index, -1);
+
+			final Future<Integer> future = completionService.submit(() -> {
+				startTimes.set(index, System.currentTimeMillis());
+				action.accept(portfolioManagers.get(index));
+				return index;
+			});
+
+			pendingFutures.put(future, index);
+		}
+
+		final List<PortfolioManager> failedPortfolioManagers = new ArrayList<>();
+		long lastProgress = System.currentTimeMillis();
+
+		try {
+			while(! pendingFutures.isEmpty()) {
+				final long now = System.currentTimeMillis();
+				long nextDeadline = Long.MAX_VALUE;
+
+				final Iterator<Entry<Future<Integer>, Integer>> iterator = pendingFutures.entrySet().iterator();
+
+				while(iterator.hasNext()) {
+					final Entry<Future<Integer>, Integer> entry = iterator.next();
+					final long startTime = startTimes.get(entry.getValue());
+
+					// Still waiting for a thread
+					if(startTime < 0) {
+						continue;
+					}
+
+					final long deadline = startTime + timeoutMillis;
+
+					if(deadline > now) {
+						nextDeadline = Math.min(nextDeadline, deadline);
+						continue;
+					}
+
+					final PortfolioManager portfolioManager = portfolioManagers.get(entry.getValue());
+					logger.error("{} is not done after {} ms, cancelling", portfolioManager, timeoutMillis);
+					entry.getKey().cancel(true);
+					failedPortfolioManagers.add(portfolioManager);
+					iterator.remove();
+					lastProgress = now;
+				}
+
+				if(pendingFutures.isEmpty()) {
+					break;
+				}
+
+				// No action is running, the threads are blocked by cancelled actions
+				if(nextDeadline == Long.MAX_VALUE) {
+					nextDeadline = lastProgress + timeoutMillis;
+
+					if(nextDeadline <= now) {
+						for(final Entry<Future<Integer>, Integer> entry : pendingFutures.entrySet()) {
+							final PortfolioManager portfolioManager = portfolioManagers.get(entry.getValue());
+							logger.error("{} was not started after {} ms, cancelling", portfolioManager, timeoutMillis);
+							entry.getKey().cancel(true);
+							failedPortfolioManagers.add(portfolioManager);
+						}
+
+						break;
+					}
+				}
+
+				final Future<Integer> future = completionService.poll(nextDeadline - now, TimeUnit.MILLISECONDS);
+
+				if(future == null) {
+					continue;
+				}
+
+				lastProgress = System.currentTimeMillis();
+
+				// Cancelled futures are already handled
+				final Integer index = pendingFutures.remove(future);
+
+				if(index == null) {
+					continue;
+				}
+
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					final PortfolioManager portfolioManager = portfolioManagers.get(index);
+					logger.error("Got exception while executing {}", portfolioManager, e.getCause());
+					failedPortfolioManagers.add(portfolioManager);
+				}
+			}
+		} catch (InterruptedException e) {
+			pendingFutures.keySet().forEach(f -> f.cancel(true));
+			throw e;
+		}
+
+		return failedPortfolioManagers;
+	}
+
+	/**
+	 * Stop the executor, running actions are interrupted
+	 */
+	@Override
+	public void close() {
+		executorService.shutdownNow();
+	}
+}
@@ -0,0 +1,336 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.ta4j.core.Bar;
+import org.ta4j.core.BaseBar;
+import org.ta4j.core.BaseTimeSeries;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.bitfinex.v2.Const;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.Timeframe;
+
+/**
+ * A local store for the bars of the traded symbols, one file per symbol 
+ * and timeframe. 
+ * <p>
+ * The closed bars are appended to the file, so a restarted bot loads its 
+ * history from the disk and has to request only the missing bars from the 
+ * exchange. Each bar is stored as end time in milliseconds followed by 
+ * open, high, low, close and volume as doubles. Bars that are not newer 
+ * than the last stored bar are ignored; missing bars are filled by 
+ * replacing the stored bars. A partly written last bar (e.g. after a 
+ * crash) is removed on load. The methods are thread safe.
+ *
+ */
+public class CandleStore {
+
+	/**
+	 * The magic number of the bar files
+	 */
+	private final static int MAGIC = 0x43424353;
+
+	/**
+	 * The version of the file format
+	 */
+	private final static int VERSION = 1;
+
+	/**
+	 * The size of the file header
+	 */
+	private final static int HEADER_SIZE = 2 * Integer.BYTES;
+
+	/**
+	 * The size of one bar
+	 */
+	private final static int BAR_SIZE = Long.BYTES + 5 * Double.BYTES;
+
+	/**
+	 * The suffix of the bar files
+	 */
+	private final static String SUFFIX = ".bars";
+
+	/**
+	 * The directory of the bar files
+	 */
+	private final File directory;
+
+	/**
+	 * The end time of the last stored bar per file
+	 */
+	private final Map<File, Long> lastEndTimes = new HashMap<>();
+
+	/**
+	 * The Logger
+	 */
+	private final static Logger logger = LoggerFactory.getLogger(CandleStore.class);
+
+	public CandleStore(final File directory) throws IOException {
+		this.directory = directory;
+
+		if(! directory.isDirectory() && ! directory.mkdirs()) {
+			throw new IOException("Unable to create candle directory " + directory);
+		}
+	}
+
+	/**
+	 * Load the stored bars of the symbol into a new time series
+	 * @param currency
+	 * @param timeframe
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized TimeSeries load(final BitfinexCurrencyPair currency, final Timeframe timeframe) 
+			throws IOException {
+
+		final TimeSeries timeSeries = new BaseTimeSeries(currency.toBitfinexString());
+		final File file = getFile(currency, timeframe);
+
+		if(! file.exists()) {
+			return timeSeries;
+		}
+
+		// The header is incomplete, nothing to load
+		if(file.length() < HEADER_SIZE) {
+			logger.warn("Removing the incomplete candle file {}", file);
+			Files.delete(file.toPath());
+			return timeSeries;
+		}
+
+		truncatePartialBar(file);
+
+		try (final DataInputStream inputStream = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+
+			if(inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION) {
+				throw new IOException("Invalid candle file " + file);
+			}
+
+			while(true) {
+				final long endTime;
+
+				try {
+					endTime = inputStream.readLong();
+				} catch (EOFException e) {
+					return timeSeries;
+				}
+
+				final ZonedDateTime time = ZonedDateTime.ofInstant(Instant.ofEpochMilli(endTime), 
+						Const.BITFINEX_TIMEZONE);
+
+				final Bar bar = new BaseBar(time, inputStream.readDouble(), inputStream.readDouble(), 
+						inputStream.readDouble(), inputStream.readDouble(), inputStream.readDouble());
+
+				timeSeries.addBar(bar);
+				lastEndTimes.put(file, endTime);
+			}
+		}
+	}
+
+	/**
+	 * Append a closed bar to the file of the symbol
+	 * @param currency
+	 * @param timeframe
+	 * @param bar
+	 * @return false if the bar is not newer than the last stored bar
+	 * @throws IOException
+	 */
+	public synchronized boolean append(final BitfinexCurrencyPair currency, final Timeframe timeframe, 
+			final Bar bar) throws IOException {
+
+		final File file = getFile(currency, timeframe);
+		final long endTime = bar.getEndTime().toInstant().toEpochMilli();
+		final Long lastEndTime = getLastEndTime(file);
+
+		if(lastEndTime != null && endTime <= lastEndTime) {
+			return false;
+		}
+
+		final boolean newFile = ! file.exists();
+
+		try (final DataOutputStream outputStream = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file, true)))) {
+
+			if(newFile) {
+				outputStream.writeInt(MAGIC);
+				outputStream.writeInt(VERSION);
+			}
+
+			writeBar(outputStream, endTime, bar);
+		}
+
+		lastEndTimes.put(file, endTime);
+		return true;
+	}
+
+	/**
+	 * Replace the stored bars of the symbol, e.g. to fill the gaps between 
+	 * the stored bars. The bars are written to a temporary file that is 
+	 * moved atomically, so the old bars are kept when writing fails.
+	 * @param currency
+	 * @param timeframe
+	 * @param bars - the bars ordered by the end time
+	 * @throws IOException
+	 */
+	public synchronized void replace(final BitfinexCurrencyPair currency, final Timeframe timeframe, 
+			final List<Bar> bars) throws IOException {
+
+		final File file = getFile(currency, timeframe);
+		final File tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+
+		boolean replaced = false;
+
+		try {
+			long lastEndTime = Long.MIN_VALUE;
+
+			try (final DataOutputStream outputStream = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+
+				outputStream.writeInt(MAGIC);
+				outputStream.writeInt(VERSION);
+
+				for(final Bar bar : bars) {
+					final long endTime = bar.getEndTime().toInstant().toEpochMilli();
+
+					if(endTime <= lastEndTime) {
+						throw new IllegalArgumentException("Bar " + bar + " is not newer than the previous bar");
+					}
+
+					writeBar(outputStream, endTime, bar);
+					lastEndTime = endTime;
+				}
+			}
+
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			replaced = true;
+
+			if(bars.isEmpty()) {
+				lastEndTimes.remove(file);
+			} else {
+				lastEndTimes.put(file, lastEndTime);
+			}
+		} finally {
+			if(! replaced) {
+				Files.deleteIfExists(tempFile.toPath());
+			}
+		}
+	}
+
+	/**
+	 * Write the bar
+	 * @param outputStream
+	 * @param endTime
+	 * @param bar
+	 * @throws IOException
+	 */
+	private void writeBar(final DataOutputStream outputStream, final long endTime, final Bar bar) 
+			throws IOException {
+
+		outputStream.writeLong(endTime);
+		outputStream.writeDouble(bar.getOpenPrice().doubleValue());
+		outputStream.writeDouble(bar.getMaxPrice().doubleValue());
+		outputStream.writeDouble(bar.getMinPrice().doubleValue());
+		outputStream.writeDouble(bar.getClosePrice().doubleValue());
+		outputStream.writeDouble(bar.getVolume().doubleValue());
+	}
+
+	/**
+	 * Get the end time of the last stored bar
+	 * @param file
+	 * @return the end time or null if the file contains no bars
+	 * @throws IOException
+	 */
+	private Long getLastEndTime(final File file) throws IOException {
+		final Long lastEndTime = lastEndTimes.get(file);
+
+		if(lastEndTime != null || ! file.exists()) {
+			return lastEndTime;
+		}
+
+		// The header is incomplete, the file is written again
+		if(file.length() < HEADER_SIZE) {
+			Files.delete(file.toPath());
+			return null;
+		}
+
+		truncatePartialBar(file);
+
+		if(file.length() < HEADER_SIZE + BAR_SIZE) {
+			return null;
+		}
+
+		try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			randomAccessFile.seek(file.length() - BAR_SIZE);
+			final long endTime = randomAccessFile.readLong();
+			lastEndTimes.put(file, endTime);
+			return endTime;
+		}
+	}
+
+	/**
+	 * Remove a partly written last bar, so the next bar is appended at 
+	 * the right position
+	 * @param file
+	 * @throws IOException
+	 */
+	private void truncatePartialBar(final File file) throws IOException {
+		final long length = file.length();
+		final long partialBytes = Math.max(0, length - HEADER_SIZE) % BAR_SIZE;
+
+		if(partialBytes == 0) {
+			return;
+		}
+
+		logger.warn("Removing {} bytes of a partly written bar from {}", partialBytes, file);
+
+		try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			randomAccessFile.setLength(length - partialBytes);
+		}
+	}
+
+	/**
+	 * Get the file of the symbol
+	 * @param currency
+	 * @param timeframe
+	 * @return
+	 */
+	private File getFile(final BitfinexCurrencyPair currency, final Timeframe timeframe) {
+		return new File(directory, currency.toBitfinexString() + "-" + timeframe.getBitfinexString() + SUFFIX);
+	}
+}
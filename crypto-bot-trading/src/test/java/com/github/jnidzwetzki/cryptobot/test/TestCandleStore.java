@@ -0,0 +1,197 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.ta4j.core.Bar;
+import org.ta4j.core.BaseBar;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.bitfinex.v2.Const;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.Timeframe;
+import com.github.jnidzwetzki.cryptobot.util.CandleStore;
+
+public class TestCandleStore {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	/**
+	 * Store and load bars, also after a restart
+	 * @throws IOException
+	 */
+	@Test
+	public void testAppendAndLoad() throws IOException {
+		final File directory = temporaryFolder.newFolder();
+		final CandleStore candleStore = new CandleStore(directory);
+
+		for(int i = 0; i < 3; i++) {
+			Assert.assertTrue(candleStore.append(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, buildBar(i)));
+		}
+
+		final TimeSeries timeSeries = new CandleStore(directory).load(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15);
+		Assert.assertEquals(3, timeSeries.getBarCount());
+
+		for(int i = 0; i < 3; i++) {
+			assertSameBar(buildBar(i), timeSeries.getBar(i));
+		}
+
+		// One file per symbol and timeframe
+		Assert.assertEquals(0, candleStore.load(BitfinexCurrencyPair.BTC_USD, Timeframe.HOUR_1).getBarCount());
+		Assert.assertEquals(0, candleStore.load(BitfinexCurrencyPair.ETH_USD, Timeframe.MINUTES_15).getBarCount());
+	}
+
+	/**
+	 * Bars that are not newer than the last bar are ignored
+	 * @throws IOException
+	 */
+	@Test
+	public void testOlderBar() throws IOException {
+		final File directory = temporaryFolder.newFolder();
+		final CandleStore candleStore = new CandleStore(directory);
+
+		Assert.assertTrue(candleStore.append(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, buildBar(5)));
+		Assert.assertFalse(candleStore.append(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, buildBar(5)));
+		Assert.assertFalse(candleStore.append(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, buildBar(4)));
+
+		// The last bar is read from the file after a restart
+		final CandleStore candleStore2 = new CandleStore(directory);
+		Assert.assertFalse(candleStore2.append(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, buildBar(4)));
+		Assert.assertTrue(candleStore2.append(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, buildBar(6)));
+
+		Assert.assertEquals(2, candleStore2.load(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15).getBarCount());
+	}
+
+	/**
+	 * A partly written bar is removed
+	 * @throws IOException
+	 */
+	@Test
+	public void testPartialBar() throws IOException {
+		final File directory = temporaryFolder.newFolder();
+		final CandleStore candleStore = new CandleStore(directory);
+
+		candleStore.append(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, buildBar(0));
+		candleStore.append(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, buildBar(1));
+
+		final File file = directory.listFiles()[0];
+
+		try (final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+			randomAccessFile.setLength(randomAccessFile.length() - 5);
+		}
+
+		final CandleStore candleStore2 = new CandleStore(directory);
+		Assert.assertEquals(1, candleStore2.load(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15).getBarCount());
+
+		candleStore2.append(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, buildBar(1));
+
+		final TimeSeries timeSeries = new CandleStore(directory).load(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15);
+		Assert.assertEquals(2, timeSeries.getBarCount());
+		assertSameBar(buildBar(1), timeSeries.getBar(1));
+	}
+
+	/**
+	 * Replace the stored bars to fill a gap
+	 * @throws IOException
+	 */
+	@Test
+	public void testReplace() throws IOException {
+		final File directory = temporaryFolder.newFolder();
+		final CandleStore candleStore = new CandleStore(directory);
+
+		candleStore.append(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, buildBar(0));
+		candleStore.append(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, buildBar(2));
+
+		candleStore.replace(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, 
+				Arrays.asList(buildBar(0), buildBar(1), buildBar(2)));
+
+		// Only newer bars are appended after the replace
+		Assert.assertFalse(candleStore.append(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, buildBar(2)));
+		Assert.assertTrue(candleStore.append(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, buildBar(3)));
+
+		final TimeSeries timeSeries = new CandleStore(directory).load(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15);
+		Assert.assertEquals(4, timeSeries.getBarCount());
+
+		for(int i = 0; i < 4; i++) {
+			assertSameBar(buildBar(i), timeSeries.getBar(i));
+		}
+
+		// No temporary files are left
+		Assert.assertEquals(1, directory.listFiles().length);
+	}
+
+	/**
+	 * Unordered bars are rejected and the stored bars are kept
+	 * @throws IOException
+	 */
+	@Test
+	public void testReplaceUnordered() throws IOException {
+		final File directory = temporaryFolder.newFolder();
+		final CandleStore candleStore = new CandleStore(directory);
+
+		candleStore.append(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, buildBar(0));
+
+		try {
+			candleStore.replace(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, 
+					Arrays.asList(buildBar(2), buildBar(1)));
+			Assert.fail("Exception expected");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+
+		Assert.assertEquals(1, directory.listFiles().length);
+		Assert.assertEquals(1, candleStore.load(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15).getBarCount());
+	}
+
+	/**
+	 * Build the bar with the given number
+	 * @param number
+	 * @return
+	 */
+	private Bar buildBar(final int number) {
+		final Instant endTime = Instant.ofEpochMilli(1514764800000L + (number * 15 * 60 * 1000));
+
+		return new BaseBar(ZonedDateTime.ofInstant(endTime, Const.BITFINEX_TIMEZONE), 
+				100 + number, 110 + number, 90 + number, 105 + number, 0.5 * number);
+	}
+
+	/**
+	 * Compare the bars
+	 * @param expected
+	 * @param bar
+	 */
+	private void assertSameBar(final Bar expected, final Bar bar) {
+		Assert.assertEquals(expected.getEndTime().toInstant(), bar.getEndTime().toInstant());
+		Assert.assertEquals(expected.getOpenPrice().doubleValue(), bar.getOpenPrice().doubleValue(), 0);
+		Assert.assertEquals(expected.getMaxPrice().doubleValue(), bar.getMaxPrice().doubleValue(), 0);
+		Assert.assertEquals(expected.getMinPrice().doubleValue(), bar.getMinPrice().doubleValue(), 0);
+		Assert.assertEquals(expected.getClosePrice().doubleValue(), bar.getClosePrice().doubleValue(), 0);
+		Assert.assertEquals(expected.getVolume().doubleValue(), bar.getVolume().doubleValue(), 0);
+	}
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ta4j.core.BaseTimeSeries;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.cryptobot.DonchianPortfolioBacktest;
+import com.github.jnidzwetzki.cryptobot.PortfolioBacktestResult;
+
+public class TestDonchianPortfolioBacktest {
+
+	private final static double DELTA = 0.000001;
+
+	/**
+	 * A breakout followed by a crash, the loss is limited by the stop loss
+	 */
+	@Test(timeout=60000)
+	public void testBreakoutAndStopLoss() {
+		final TimeSeries timeSeries = new BaseTimeSeries("test");
+		TimeSeriesHelper.addBar(timeSeries, 0, 100, 101, 99, 100, 1);
+		TimeSeriesHelper.addBar(timeSeries, 1, 100, 101, 99, 100, 1);
+		TimeSeriesHelper.addBar(timeSeries, 2, 100, 101, 99, 100.5, 1);
+		
+		// Breakout, the entry order (101 + 0.5%) is executed
+		TimeSeriesHelper.addBar(timeSeries, 3, 100, 110, 100, 108, 1);
+		
+		// Crash, the stop loss (99 - 0.2%) is executed
+		TimeSeriesHelper.addBar(timeSeries, 4, 108, 108, 50, 60, 1);
+		TimeSeriesHelper.addBar(timeSeries, 5, 60, 61, 59, 60, 1);
+
+		final Map<BitfinexCurrencyPair, TimeSeries> series = new LinkedHashMap<>();
+		series.put(BitfinexCurrencyPair.BTC_USD, timeSeries);
+		
+		final PortfolioBacktestResult result = runBacktest(series, 1000, 1);
+		
+		Assert.assertEquals(1, result.getTotalTrades());
+		Assert.assertEquals(1, result.getLooser());
+		Assert.assertEquals(1, result.getTrades(BitfinexCurrencyPair.BTC_USD));
+		Assert.assertEquals(0, result.getRejectedOrders());
+		
+		// The trade is sized by the max capital per position (50% of 90%)
+		final double positionSize = Math.round(1000 * 0.9 * 0.5 / 101.51 * 1000000) / 1000000.0;
+		final double buyValue = positionSize * 101.51;
+		final double sellValue = positionSize * 98.8;
+		final double expectedPL = sellValue * (1 - 0.002) - buyValue * (1 + 0.002);
+		
+		Assert.assertEquals(expectedPL, result.getPL(BitfinexCurrencyPair.BTC_USD), 0.01);
+		Assert.assertEquals(1000 + expectedPL, result.getFinalPortfolioValue(), 0.01);
+		Assert.assertEquals(4, result.getPortfolioValues().length);
+		Assert.assertTrue(result.getMaxDrawdown() > 0);
+	}
+	
+	/**
+	 * Several currencies share the capital
+	 */
+	@Test(timeout=60000)
+	public void testPortfolio() {
+		final Map<BitfinexCurrencyPair, TimeSeries> series = new LinkedHashMap<>();
+		series.put(BitfinexCurrencyPair.BTC_USD, TimeSeriesHelper.buildTimeSeries(3000, 1));
+		series.put(BitfinexCurrencyPair.ETH_USD, TimeSeriesHelper.buildTimeSeries(3000, 2));
+		series.put(BitfinexCurrencyPair.LTC_USD, TimeSeriesHelper.buildTimeSeries(3000, 3));
+		series.put(BitfinexCurrencyPair.XRP_USD, TimeSeriesHelper.buildTimeSeries(3000, 4));
+		
+		// Enough capital for the minimum order sizes of all currencies
+		final PortfolioBacktestResult result1 = runBacktest(series, 100000, 1);
+		final PortfolioBacktestResult result2 = runBacktest(series, 100000, 4);
+		
+		Assert.assertTrue(result1.getTotalTrades() > 10);
+		Assert.assertEquals(result1.getTotalTrades(), result1.getWinner() + result1.getLooser());
+		Assert.assertEquals(result1.toString(), result2.toString());
+		Assert.assertEquals(result1.getFinalPortfolioValue(), result2.getFinalPortfolioValue(), 0);
+		
+		// The P/L of the currencies sums up to the total P/L
+		double pl = 0;
+		int trades = 0;
+		
+		for(final BitfinexCurrencyPair currency : series.keySet()) {
+			pl = pl + result1.getPL(currency);
+			trades = trades + result1.getTrades(currency);
+			Assert.assertTrue(result1.getTrades(currency) > 0);
+		}
+		
+		Assert.assertEquals(result1.getTotalPL(), pl, DELTA);
+		Assert.assertEquals(result1.getTotalTrades(), trades);
+		
+		for(final double portfolioValue : result1.getPortfolioValues()) {
+			Assert.assertTrue(portfolioValue > 0);
+		}
+	}
+	
+	/**
+	 * The bars of the time series have to be aligned
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testNotAligned() {
+		final TimeSeries timeSeries = new BaseTimeSeries("test");
+		TimeSeriesHelper.addBar(timeSeries, 0, 100, 101, 99, 100, 1);
+		TimeSeriesHelper.addBar(timeSeries, 2, 100, 101, 99, 100, 1);
+		
+		final Map<BitfinexCurrencyPair, TimeSeries> series = new LinkedHashMap<>();
+		series.put(BitfinexCurrencyPair.BTC_USD, TimeSeriesHelper.buildTimeSeries(2, 1));
+		series.put(BitfinexCurrencyPair.ETH_USD, timeSeries);
+		
+		runBacktest(series, 1000, 1);
+	}
+	
+	/**
+	 * The time series need the same amount of bars
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void testDifferentLength() {
+		final Map<BitfinexCurrencyPair, TimeSeries> series = new LinkedHashMap<>();
+		series.put(BitfinexCurrencyPair.BTC_USD, TimeSeriesHelper.buildTimeSeries(100, 1));
+		series.put(BitfinexCurrencyPair.ETH_USD, TimeSeriesHelper.buildTimeSeries(99, 2));
+		
+		new DonchianPortfolioBacktest(series, 20, 10, 0.05, 1000);
+	}
+	
+	/**
+	 * Run the backtest
+	 * @param series
+	 * @param portfolioValue
+	 * @param parallelism
+	 * @return
+	 */
+	private PortfolioBacktestResult runBacktest(final Map<BitfinexCurrencyPair, TimeSeries> series, 
+			final double portfolioValue, final int parallelism) {
+		
+		final int period = series.values().iterator().next().getBarCount() > 10 ? 20 : 3;
+		final DonchianPortfolioBacktest backtest = new DonchianPortfolioBacktest(series, 
+				period, period, 0.05, portfolioValue);
+		
+		final ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+		
+		try {
+			return backtest.run(forkJoinPool);
+		} finally {
+			forkJoinPool.shutdown();
+		}
+	}
+}
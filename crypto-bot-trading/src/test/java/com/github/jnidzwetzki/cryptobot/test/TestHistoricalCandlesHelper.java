@@ -0,0 +1,302 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.ta4j.core.Bar;
+import org.ta4j.core.BaseBar;
+import org.ta4j.core.TimeSeries;
+
+import com.github.jnidzwetzki.bitfinex.v2.Const;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexTick;
+import com.github.jnidzwetzki.bitfinex.v2.entity.Timeframe;
+import com.github.jnidzwetzki.bitfinex.v2.entity.symbol.BitfinexCandlestickSymbol;
+import com.github.jnidzwetzki.bitfinex.v2.manager.QuoteManager;
+import com.github.jnidzwetzki.cryptobot.HistoricalCandlesHelper;
+import com.github.jnidzwetzki.cryptobot.util.CandleStore;
+
+public class TestHistoricalCandlesHelper {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	/**
+	 * The delay of the snapshot per symbol
+	 */
+	private final static long SNAPSHOT_DELAY = 500;
+
+	/**
+	 * The currencies
+	 */
+	private final static List<BitfinexCurrencyPair> CURRENCIES = Arrays.asList(
+			BitfinexCurrencyPair.BTC_USD, BitfinexCurrencyPair.ETH_USD, BitfinexCurrencyPair.LTC_USD,
+			BitfinexCurrencyPair.BCH_USD, BitfinexCurrencyPair.XRP_USD, BitfinexCurrencyPair.EOS_USD);
+
+	/**
+	 * The snapshots of all symbols are requested concurrently
+	 * @throws InterruptedException
+	 * @throws APIException
+	 */
+	@Test(timeout=60000)
+	public void testConcurrentRequests() throws InterruptedException, APIException {
+		final QuoteManager quoteManager = buildQuoteManager(null);
+
+		final long start = System.currentTimeMillis();
+		final Map<BitfinexCandlestickSymbol, TimeSeries> timeSeries = HistoricalCandlesHelper
+				.requestHistoricalCandles(quoteManager, Timeframe.MINUTES_15, CURRENCIES, null, 10000);
+		final long duration = System.currentTimeMillis() - start;
+
+		// Sequential requests need at least CURRENCIES * SNAPSHOT_DELAY
+		Assert.assertTrue("Duration " + duration, duration < SNAPSHOT_DELAY * 3);
+		Assert.assertEquals(CURRENCIES.size(), timeSeries.size());
+
+		for(final BitfinexCurrencyPair currency : CURRENCIES) {
+			final BitfinexCandlestickSymbol symbol = new BitfinexCandlestickSymbol(currency, Timeframe.MINUTES_15);
+			Assert.assertEquals(100, timeSeries.get(symbol).getBarCount());
+			Mockito.verify(quoteManager).removeCandlestickCallback(Mockito.eq(symbol), Mockito.any());
+			Mockito.verify(quoteManager).unsubscribeCandles(symbol);
+		}
+	}
+
+	/**
+	 * A symbol without snapshot does not delay the other symbols after the deadline
+	 * @throws InterruptedException
+	 * @throws APIException
+	 */
+	@Test(timeout=60000)
+	public void testDeadline() throws InterruptedException, APIException {
+		final BitfinexCandlestickSymbol missingSymbol = new BitfinexCandlestickSymbol(
+				BitfinexCurrencyPair.XRP_USD, Timeframe.MINUTES_15);
+
+		final QuoteManager quoteManager = buildQuoteManager(missingSymbol);
+
+		final long start = System.currentTimeMillis();
+		final Map<BitfinexCandlestickSymbol, TimeSeries> timeSeries = HistoricalCandlesHelper
+				.requestHistoricalCandles(quoteManager, Timeframe.MINUTES_15, CURRENCIES, null, 2000);
+		final long duration = System.currentTimeMillis() - start;
+
+		Assert.assertTrue("Duration " + duration, duration >= 2000 && duration < 4000);
+		Assert.assertEquals(0, timeSeries.get(missingSymbol).getBarCount());
+		Assert.assertEquals(100, timeSeries.get(new BitfinexCandlestickSymbol(
+				BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15)).getBarCount());
+		Mockito.verify(quoteManager).unsubscribeCandles(missingSymbol);
+	}
+
+	/**
+	 * Only the candles newer than the stored candles are added and stored
+	 * @throws InterruptedException
+	 * @throws APIException
+	 * @throws IOException
+	 */
+	@Test(timeout=60000)
+	public void testCandleStore() throws InterruptedException, APIException, IOException {
+		final CandleStore candleStore = new CandleStore(temporaryFolder.newFolder());
+		final BitfinexCandlestickSymbol symbol = new BitfinexCandlestickSymbol(
+				BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15);
+
+		final Map<BitfinexCandlestickSymbol, TimeSeries> snapshot = HistoricalCandlesHelper
+				.requestHistoricalCandles(buildQuoteManager(null), Timeframe.MINUTES_15, 
+						Arrays.asList(BitfinexCurrencyPair.BTC_USD), null, 10000);
+
+		// Store the first 40 bars and request the missing bars
+		for(int i = 0; i < 40; i++) {
+			candleStore.append(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, snapshot.get(symbol).getBar(i));
+		}
+
+		final Map<BitfinexCandlestickSymbol, TimeSeries> timeSeries = HistoricalCandlesHelper
+				.requestHistoricalCandles(buildQuoteManager(null), Timeframe.MINUTES_15, 
+						Arrays.asList(BitfinexCurrencyPair.BTC_USD), candleStore, 10000);
+
+		Assert.assertEquals(100, timeSeries.get(symbol).getBarCount());
+		Assert.assertEquals(100, candleStore.load(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15).getBarCount());
+
+		// Up to date candles without gaps are not requested
+		final CandleStore upToDateCandleStore = new CandleStore(temporaryFolder.newFolder());
+		final long currentPeriod = System.currentTimeMillis() / Timeframe.MINUTES_15.getMilliSeconds();
+		appendMergedBars(upToDateCandleStore, currentPeriod - 10, currentPeriod - 1);
+
+		final QuoteManager quoteManager = buildQuoteManager(null);
+		final Map<BitfinexCandlestickSymbol, TimeSeries> storedTimeSeries = HistoricalCandlesHelper
+				.requestHistoricalCandles(quoteManager, Timeframe.MINUTES_15, 
+						Arrays.asList(BitfinexCurrencyPair.BTC_USD), upToDateCandleStore, 10000);
+
+		Assert.assertEquals(10, storedTimeSeries.get(symbol).getBarCount());
+		Mockito.verify(quoteManager, Mockito.never()).subscribeCandles(Mockito.any());
+	}
+
+	/**
+	 * The bars that are not stored by the bot after the restarts are filled 
+	 * from the snapshot, also when the stored bars are up to date
+	 * @throws InterruptedException
+	 * @throws APIException
+	 * @throws IOException
+	 */
+	@Test(timeout=60000)
+	public void testRestarts() throws InterruptedException, APIException, IOException {
+		final CandleStore candleStore = new CandleStore(temporaryFolder.newFolder());
+		final List<BitfinexCurrencyPair> currencies = Arrays.asList(BitfinexCurrencyPair.BTC_USD);
+		final long periodMillis = Timeframe.MINUTES_15.getMilliSeconds();
+		final long currentPeriod = System.currentTimeMillis() / periodMillis;
+
+		// First start, all bars of the snapshot are closed
+		HistoricalCandlesHelper.requestHistoricalCandles(buildQuoteManager(null, (currentPeriod - 150) * periodMillis), 
+				Timeframe.MINUTES_15, currencies, candleStore, 10000);
+
+		// The bot does not store the first (partial) bar after the start
+		appendMergedBars(candleStore, currentPeriod - 49, currentPeriod - 30);
+
+		// First restart
+		HistoricalCandlesHelper.requestHistoricalCandles(buildQuoteManager(null, (currentPeriod - 119) * periodMillis), 
+				Timeframe.MINUTES_15, currencies, candleStore, 10000);
+
+		appendMergedBars(candleStore, currentPeriod - 18, currentPeriod - 1);
+
+		// Second restart, the stored bars are up to date but contain a gap
+		final Map<BitfinexCandlestickSymbol, TimeSeries> timeSeries = HistoricalCandlesHelper
+				.requestHistoricalCandles(buildQuoteManager(null, (currentPeriod - 99) * periodMillis), 
+						Timeframe.MINUTES_15, currencies, candleStore, 10000);
+
+		final TimeSeries storedTimeSeries = candleStore.load(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15);
+
+		Assert.assertTrue(storedTimeSeries.getBarCount() >= 150);
+		Assert.assertEquals(currentPeriod - 150, getPeriod(storedTimeSeries.getFirstBar()));
+		assertNoGaps(storedTimeSeries);
+
+		final TimeSeries symbolTimeSeries = timeSeries.get(new BitfinexCandlestickSymbol(
+				BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15));
+
+		Assert.assertEquals(currentPeriod, getPeriod(symbolTimeSeries.getLastBar()));
+		assertNoGaps(symbolTimeSeries);
+	}
+
+	/**
+	 * Append the bars of the bar merger (timestamped with the end of the period)
+	 * @param candleStore
+	 * @param firstPeriod
+	 * @param lastPeriod
+	 * @throws IOException
+	 */
+	private void appendMergedBars(final CandleStore candleStore, final long firstPeriod, 
+			final long lastPeriod) throws IOException {
+
+		final long periodMillis = Timeframe.MINUTES_15.getMilliSeconds();
+
+		for(long period = firstPeriod; period <= lastPeriod; period++) {
+			final Instant endTime = Instant.ofEpochMilli(((period + 1) * periodMillis) - 1);
+			final Bar bar = new BaseBar(ZonedDateTime.ofInstant(endTime, Const.BITFINEX_TIMEZONE), 
+					100, 101, 99, 100, 1);
+
+			Assert.assertTrue(candleStore.append(BitfinexCurrencyPair.BTC_USD, Timeframe.MINUTES_15, bar));
+		}
+	}
+
+	/**
+	 * Each period is contained in the time series
+	 * @param timeSeries
+	 */
+	private void assertNoGaps(final TimeSeries timeSeries) {
+		for(int i = timeSeries.getBeginIndex() + 1; i <= timeSeries.getEndIndex(); i++) {
+			Assert.assertEquals(getPeriod(timeSeries.getBar(i - 1)) + 1, getPeriod(timeSeries.getBar(i)));
+		}
+	}
+
+	/**
+	 * Get the 15 minute period of the bar
+	 * @param bar
+	 * @return
+	 */
+	private long getPeriod(final Bar bar) {
+		return bar.getEndTime().toInstant().toEpochMilli() / Timeframe.MINUTES_15.getMilliSeconds();
+	}
+
+	/**
+	 * Build a quote manager that sends a snapshot of 100 bars for each 
+	 * subscribed symbol after SNAPSHOT_DELAY
+	 * @param missingSymbol - the symbol without snapshot or null
+	 * @return
+	 * @throws APIException
+	 */
+	private QuoteManager buildQuoteManager(final BitfinexCandlestickSymbol missingSymbol) throws APIException {
+		return buildQuoteManager(missingSymbol, 1514764800000L);
+	}
+
+	/**
+	 * Build a quote manager that sends a snapshot of 100 bars for each 
+	 * subscribed symbol after SNAPSHOT_DELAY
+	 * @param missingSymbol - the symbol without snapshot or null
+	 * @param firstTimestamp - the begin of the first bar of the snapshot
+	 * @return
+	 * @throws APIException
+	 */
+	@SuppressWarnings("unchecked")
+	private QuoteManager buildQuoteManager(final BitfinexCandlestickSymbol missingSymbol, 
+			final long firstTimestamp) throws APIException {
+		final QuoteManager quoteManager = Mockito.mock(QuoteManager.class);
+		final Map<BitfinexCandlestickSymbol, BiConsumer<BitfinexCandlestickSymbol, BitfinexTick>> callbacks 
+			= new ConcurrentHashMap<>();
+
+		Mockito.doAnswer(i -> {
+			callbacks.put(i.getArgument(0), i.getArgument(1));
+			return null;
+		}).when(quoteManager).registerCandlestickCallback(Mockito.any(), Mockito.any());
+
+		Mockito.doAnswer(i -> {
+			final BitfinexCandlestickSymbol symbol = i.getArgument(0);
+
+			if(symbol.equals(missingSymbol)) {
+				return null;
+			}
+
+			final Thread thread = new Thread(() -> {
+				try {
+					Thread.sleep(SNAPSHOT_DELAY);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+
+				final BiConsumer<BitfinexCandlestickSymbol, BitfinexTick> callback = callbacks.get(symbol);
+
+				for(int bar = 0; bar < 100; bar++) {
+					final long timestamp = firstTimestamp + (bar * 15 * 60 * 1000);
+					callback.accept(symbol, new BitfinexTick(timestamp, 100, 101, 102, 99, 10));
+				}
+			});
+
+			thread.start();
+			return null;
+		}).when(quoteManager).subscribeCandles(Mockito.any());
+
+		return quoteManager;
+	}
+}
@@ -0,0 +1,307 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexApiBroker;
+import com.github.jnidzwetzki.bitfinex.v2.BitfinexOrderBuilder;
+import com.github.jnidzwetzki.bitfinex.v2.entity.APIException;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexCurrencyPair;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrder;
+import com.github.jnidzwetzki.bitfinex.v2.entity.BitfinexOrderType;
+import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrder;
+import com.github.jnidzwetzki.bitfinex.v2.entity.ExchangeOrderState;
+import com.github.jnidzwetzki.bitfinex.v2.entity.Wallet;
+import com.github.jnidzwetzki.bitfinex.v2.manager.OrderManager;
+import com.github.jnidzwetzki.bitfinex.v2.manager.WalletManager;
+import com.github.jnidzwetzki.cryptobot.CurrencyEntry;
+import com.github.jnidzwetzki.cryptobot.portfolio.BasePortfolioManager;
+import com.github.jnidzwetzki.cryptobot.portfolio.OrderPipeline;
+import com.github.jnidzwetzki.cryptobot.portfolio.PortfolioManager;
+
+public class TestOrderPipeline {
+
+	/**
+	 * The delay of the acknowledgements
+	 */
+	private final static long ACK_DELAY = 300;
+
+	/**
+	 * The amount of symbols
+	 */
+	private final static int SYMBOLS = 8;
+
+	/**
+	 * The simulated exchange
+	 */
+	private ScheduledExecutorService exchange;
+
+	/**
+	 * The registered callback
+	 */
+	private final AtomicReference<Consumer<ExchangeOrder>> callback = new AtomicReference<>();
+
+	@Before
+	public void before() {
+		exchange = Executors.newSingleThreadScheduledExecutor();
+	}
+
+	@After
+	public void after() {
+		exchange.shutdownNow();
+	}
+
+	/**
+	 * All requests are sent at once, the cancels before the placements
+	 * @throws Exception
+	 */
+	@Test(timeout=10000)
+	public void testPipelinedRequests() throws Exception {
+		final OrderManager orderManager = buildOrderManager(ExchangeOrderState.STATE_ACTIVE, true);
+		final OrderPipeline orderPipeline = new OrderPipeline(orderManager);
+		final List<BitfinexOrder> orders = new ArrayList<>();
+
+		for(int i = 0; i < SYMBOLS; i++) {
+			final BitfinexOrder order = buildOrder(BitfinexCurrencyPair.values()[i]);
+			orders.add(order);
+			orderPipeline.cancelOrder(i);
+			orderPipeline.placeOrder(order);
+		}
+
+		Assert.assertEquals(2 * SYMBOLS, orderPipeline.getPendingRequests());
+		Assert.assertTrue(orderPipeline.isCancelPending(0));
+
+		final long start = System.currentTimeMillis();
+		Assert.assertTrue(orderPipeline.execute(5, TimeUnit.SECONDS));
+		final long duration = System.currentTimeMillis() - start;
+
+		// One round-trip instead of one per request
+		Assert.assertTrue("Duration " + duration, duration < SYMBOLS * ACK_DELAY);
+
+		final InOrder inOrder = Mockito.inOrder(orderManager);
+		inOrder.verify(orderManager).registerCallback(Mockito.any());
+
+		for(int i = 0; i < SYMBOLS; i++) {
+			inOrder.verify(orderManager).cancelOrder(i);
+		}
+
+		for(final BitfinexOrder order : orders) {
+			inOrder.verify(orderManager).placeOrder(order);
+		}
+
+		inOrder.verify(orderManager).removeCallback(callback.get());
+
+		Assert.assertEquals(0, orderPipeline.getPendingRequests());
+		Assert.assertFalse(orderPipeline.isCancelPending(0));
+	}
+
+	/**
+	 * Not acknowledged requests
+	 * @throws Exception
+	 */
+	@Test(timeout=10000)
+	public void testTimeout() throws Exception {
+		final OrderManager orderManager = buildOrderManager(ExchangeOrderState.STATE_ACTIVE, false);
+		final OrderPipeline orderPipeline = new OrderPipeline(orderManager);
+
+		orderPipeline.cancelOrder(1);
+		orderPipeline.placeOrder(buildOrder(BitfinexCurrencyPair.BTC_USD));
+
+		final long start = System.currentTimeMillis();
+		Assert.assertFalse(orderPipeline.execute(500, TimeUnit.MILLISECONDS));
+		Assert.assertTrue(System.currentTimeMillis() - start >= 500);
+
+		Mockito.verify(orderManager).removeCallback(callback.get());
+		Assert.assertEquals(0, orderPipeline.getPendingRequests());
+	}
+
+	/**
+	 * Rejected orders
+	 * @throws Exception
+	 */
+	@Test(timeout=10000)
+	public void testFailedPlacement() throws Exception {
+		final OrderManager orderManager = buildOrderManager(ExchangeOrderState.STATE_ERROR, true);
+		final OrderPipeline orderPipeline = new OrderPipeline(orderManager);
+
+		orderPipeline.placeOrder(buildOrder(BitfinexCurrencyPair.BTC_USD));
+		Assert.assertFalse(orderPipeline.execute(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * The requests of a failed sync cycle are not sent in the next sync cycle
+	 * @throws Exception
+	 */
+	@Test(timeout=10000)
+	public void testFailedSyncCycle() throws Exception {
+		final OrderManager orderManager = Mockito.mock(OrderManager.class);
+		final List<ExchangeOrder> noOrders = new ArrayList<>();
+
+		// The lookup of the exit orders fails after the entry order is queued
+		Mockito.when(orderManager.getOrders())
+			.thenReturn(noOrders, noOrders)
+			.thenThrow(new APIException("Connection lost"))
+			.thenReturn(noOrders);
+
+		final Collection<Wallet> wallets = new ArrayList<>();
+		wallets.add(new Wallet(Wallet.WALLET_TYPE_EXCHANGE, "USD", new BigDecimal(1000), 
+				new BigDecimal(0), new BigDecimal(1000)));
+
+		final WalletManager walletManager = Mockito.mock(WalletManager.class);
+		Mockito.when(walletManager.getWallets()).thenReturn(wallets);
+
+		final BitfinexApiBroker apiBroker = Mockito.mock(BitfinexApiBroker.class);
+		Mockito.when(apiBroker.getOrderManager()).thenReturn(orderManager);
+		Mockito.when(apiBroker.getWalletManager()).thenReturn(walletManager);
+
+		final AtomicInteger positionSizeCalculations = new AtomicInteger();
+
+		final PortfolioManager portfolioManager = new BasePortfolioManager(apiBroker, 0.05) {
+			@Override
+			public void calculatePositionSizes(final Map<BitfinexCurrencyPair, CurrencyEntry> entries) 
+					throws APIException {
+
+				if(positionSizeCalculations.incrementAndGet() > 1) {
+					throw new APIException("Unable to find USD wallet");
+				}
+
+				super.calculatePositionSizes(entries);
+			}
+		};
+
+		final Map<BitfinexCurrencyPair, CurrencyEntry> entries = new HashMap<>();
+		entries.put(BitfinexCurrencyPair.BTC_USD, new CurrencyEntry(BitfinexCurrencyPair.BTC_USD, 1000, 990));
+
+		final Map<BitfinexCurrencyPair, Double> exits = new HashMap<>();
+		exits.put(BitfinexCurrencyPair.ETH_USD, 500.0);
+
+		try {
+			portfolioManager.syncOrders(entries, exits);
+			Assert.fail("Exception expected");
+		} catch (APIException e) {
+			// Expected
+		}
+
+		try {
+			portfolioManager.syncOrders(new HashMap<>(), new HashMap<>());
+			Assert.fail("Exception expected");
+		} catch (APIException e) {
+			// Expected
+		}
+
+		Assert.assertEquals(2, positionSizeCalculations.get());
+		Mockito.verify(orderManager, Mockito.never()).placeOrder(Mockito.any());
+		Mockito.verify(orderManager, Mockito.never()).cancelOrder(Mockito.anyLong());
+	}
+
+	/**
+	 * An empty pipeline does not use the order manager
+	 * @throws Exception
+	 */
+	@Test
+	public void testEmptyPipeline() throws Exception {
+		final OrderManager orderManager = Mockito.mock(OrderManager.class);
+		final OrderPipeline orderPipeline = new OrderPipeline(orderManager);
+
+		Assert.assertTrue(orderPipeline.execute(1, TimeUnit.SECONDS));
+		Mockito.verifyZeroInteractions(orderManager);
+	}
+
+	/**
+	 * Build the order
+	 * @param currencyPair
+	 * @return
+	 */
+	private BitfinexOrder buildOrder(final BitfinexCurrencyPair currencyPair) {
+		return BitfinexOrderBuilder
+				.create(currencyPair, BitfinexOrderType.EXCHANGE_LIMIT, 1)
+				.withPrice(100)
+				.setPostOnly()
+				.build();
+	}
+
+	/**
+	 * Build an order manager, the requests are acknowledged after ACK_DELAY
+	 * @param placementState
+	 * @param acknowledge
+	 * @return
+	 * @throws APIException
+	 */
+	private OrderManager buildOrderManager(final ExchangeOrderState placementState, 
+			final boolean acknowledge) throws APIException {
+
+		final OrderManager orderManager = Mockito.mock(OrderManager.class);
+
+		Mockito.doAnswer(i -> {
+			callback.set(i.getArgument(0));
+			return null;
+		}).when(orderManager).registerCallback(Mockito.any());
+
+		Mockito.doAnswer(i -> {
+			final ExchangeOrder exchangeOrder = new ExchangeOrder();
+			exchangeOrder.setOrderId(i.getArgument(0));
+			exchangeOrder.setState(ExchangeOrderState.STATE_CANCELED);
+			sendAcknowledgement(exchangeOrder, acknowledge);
+			return null;
+		}).when(orderManager).cancelOrder(Mockito.anyLong());
+
+		Mockito.doAnswer(i -> {
+			final BitfinexOrder order = i.getArgument(0);
+			final ExchangeOrder exchangeOrder = new ExchangeOrder();
+			exchangeOrder.setOrderId(order.getCid() + 1000);
+			exchangeOrder.setCid(order.getCid());
+			exchangeOrder.setState(placementState);
+			sendAcknowledgement(exchangeOrder, acknowledge);
+			return null;
+		}).when(orderManager).placeOrder(Mockito.any());
+
+		return orderManager;
+	}
+
+	/**
+	 * Send the acknowledgement to the registered callback
+	 * @param exchangeOrder
+	 * @param acknowledge
+	 */
+	private void sendAcknowledgement(final ExchangeOrder exchangeOrder, final boolean acknowledge) {
+		if(! acknowledge) {
+			return;
+		}
+
+		exchange.schedule(() -> callback.get().accept(exchangeOrder), ACK_DELAY, TimeUnit.MILLISECONDS);
+	}
+}
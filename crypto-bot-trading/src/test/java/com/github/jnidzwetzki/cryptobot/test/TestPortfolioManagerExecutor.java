@@ -0,0 +1,166 @@
+/*******************************************************************************
+ *
+ *    Copyright (C) 2015-2018 Jan Kristof Nidzwetzki
+ *  
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License. 
+ *    
+ *******************************************************************************/
+package com.github.jnidzwetzki.cryptobot.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.jnidzwetzki.cryptobot.portfolio.PortfolioManager;
+import com.github.jnidzwetzki.cryptobot.portfolio.PortfolioManagerExecutor;
+
+public class TestPortfolioManagerExecutor {
+
+	/**
+	 * All portfolio managers are executed concurrently
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=10000)
+	public void testConcurrentExecution() throws InterruptedException {
+		final List<PortfolioManager> portfolioManagers = createPortfolioManagers(4);
+		final CountDownLatch allStarted = new CountDownLatch(portfolioManagers.size());
+		final Set<PortfolioManager> executed = ConcurrentHashMap.newKeySet();
+
+		try(final PortfolioManagerExecutor executor = new PortfolioManagerExecutor(4, 5000)) {
+			final List<PortfolioManager> failed = executor.execute(portfolioManagers, p -> {
+				allStarted.countDown();
+
+				// Only returns when all managers are running at the same time
+				try {
+					Assert.assertTrue(allStarted.await(5, TimeUnit.SECONDS));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+
+				executed.add(p);
+			});
+
+			Assert.assertTrue(failed.isEmpty());
+			Assert.assertEquals(portfolioManagers.size(), executed.size());
+		}
+	}
+
+	/**
+	 * A failing portfolio manager does not affect the other ones
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=10000)
+	public void testErrorIsolation() throws InterruptedException {
+		final List<PortfolioManager> portfolioManagers = createPortfolioManagers(3);
+		final PortfolioManager failingManager = portfolioManagers.get(1);
+		final Set<PortfolioManager> executed = ConcurrentHashMap.newKeySet();
+
+		try(final PortfolioManagerExecutor executor = new PortfolioManagerExecutor(2, 5000)) {
+			final List<PortfolioManager> failed = executor.execute(portfolioManagers, p -> {
+				if(p == failingManager) {
+					throw new IllegalStateException("Connection lost");
+				}
+				executed.add(p);
+			});
+
+			Assert.assertEquals(Arrays.asList(failingManager), failed);
+			Assert.assertEquals(2, executed.size());
+			Assert.assertFalse(executed.contains(failingManager));
+		}
+	}
+
+	/**
+	 * A hanging portfolio manager is cancelled after the timeout
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=10000)
+	public void testTimeout() throws InterruptedException {
+		final List<PortfolioManager> portfolioManagers = createPortfolioManagers(3);
+		final PortfolioManager hangingManager = portfolioManagers.get(0);
+		final CountDownLatch interrupted = new CountDownLatch(1);
+		final Set<PortfolioManager> executed = ConcurrentHashMap.newKeySet();
+
+		try(final PortfolioManagerExecutor executor = new PortfolioManagerExecutor(3, 500)) {
+			final long start = System.currentTimeMillis();
+
+			final List<PortfolioManager> failed = executor.execute(portfolioManagers, p -> {
+				if(p == hangingManager) {
+					try {
+						Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+					} catch (InterruptedException e) {
+						interrupted.countDown();
+					}
+					return;
+				}
+				executed.add(p);
+			});
+
+			final long duration = System.currentTimeMillis() - start;
+
+			Assert.assertEquals(Arrays.asList(hangingManager), failed);
+			Assert.assertEquals(2, executed.size());
+			Assert.assertTrue("Duration " + duration, duration < 5000);
+			Assert.assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+		}
+	}
+
+	/**
+	 * The timeout starts when the portfolio manager is started, not when it is queued
+	 * @throws InterruptedException
+	 */
+	@Test(timeout=10000)
+	public void testTimeoutPerPortfolioManager() throws InterruptedException {
+		final List<PortfolioManager> portfolioManagers = createPortfolioManagers(4);
+		final Set<PortfolioManager> executed = ConcurrentHashMap.newKeySet();
+
+		// Together the managers need longer than the timeout of one manager
+		try(final PortfolioManagerExecutor executor = new PortfolioManagerExecutor(1, 500)) {
+			final List<PortfolioManager> failed = executor.execute(portfolioManagers, p -> {
+				try {
+					Thread.sleep(200);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+				executed.add(p);
+			});
+
+			Assert.assertTrue(failed.isEmpty());
+			Assert.assertEquals(portfolioManagers.size(), executed.size());
+		}
+	}
+
+	/**
+	 * Create the mocked portfolio managers
+	 * @param amount
+	 * @return
+	 */
+	private List<PortfolioManager> createPortfolioManagers(final int amount) {
+		final List<PortfolioManager> portfolioManagers = new ArrayList<>();
+
+		for(int i = 0; i < amount; i++) {
+			portfolioManagers.add(Mockito.mock(PortfolioManager.class));
+		}
+
+		return portfolioManagers;
+	}
+}